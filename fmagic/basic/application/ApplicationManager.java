@@ -1,6 +1,10 @@
 package fmagic.basic.application;
 
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import fmagic.basic.context.Context;
 import fmagic.basic.file.FileLocationFunctions;
@@ -60,6 +64,10 @@ public abstract class ApplicationManager implements ManagerInterface
 	// of severe errors during initialization
 	private boolean shutdown = false;
 
+	// Executor for client commands executed asynchronously, created on first
+	// use
+	private ExecutorService clientCommandExecutor = null;
+
 	// Application codes
 	public static enum ApplicationIdentifierEnum
 	{
@@ -494,6 +502,58 @@ public abstract class ApplicationManager implements ManagerInterface
 		return isSuccessful;
 	}
 
+	/**
+	 * Get the executor for client commands executed asynchronously (see
+	 * <TT>ClientCommand.executeAsync()</TT>).
+	 * <p>
+	 * The executor is created on first use, with a fixed number of daemon
+	 * threads defined by the configuration property
+	 * <TT>Application/AsynchronousCommandThreads</TT>. Commands exceeding
+	 * this number wait in the queue of the executor, so the number of threads
+	 * doesn't depend on the number of commands in flight.
+	 * 
+	 * @return Returns the executor.
+	 */
+	public synchronized ExecutorService getClientCommandExecutor()
+	{
+		if (this.clientCommandExecutor != null) return this.clientCommandExecutor;
+
+		// Get number of threads
+		Integer numberOfThreads = this.getContext().getConfigurationManager().getPropertyAsIntegerValue(this.getContext(), ResourceManager.configuration(this.getContext(), "Application", "AsynchronousCommandThreads"), false);
+		if (numberOfThreads == null || numberOfThreads < 1) numberOfThreads = 8;
+
+		// Create executor
+		final String threadNamePrefix = "ClientCommand-" + this.getCodeName() + "-";
+
+		this.clientCommandExecutor = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, threadNamePrefix + this.threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		// Return
+		return this.clientCommandExecutor;
+	}
+
+	/**
+	 * Shut down the executor for client commands executed asynchronously.
+	 * Commands already submitted are still executed.
+	 */
+	protected synchronized void releaseClientCommandExecutor()
+	{
+		if (this.clientCommandExecutor == null) return;
+
+		this.clientCommandExecutor.shutdown();
+		this.clientCommandExecutor = null;
+	}
+
 	/**
 	 * Shut down the application.
 	 */
@@ -1,5 +1,10 @@
 package fmagic.basic.command;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.SocketTimeoutException;
 
 import fmagic.basic.context.Context;
@@ -18,6 +23,14 @@ public class CommandHandler
 {
 	private final ConnectionContainer connectionContainer;
 	private final int socketTimeoutInMilliseconds;
+
+	// Range of the content file to stream, the whole file by default
+	private long contentOffset = 0;
+	private long contentLength = -1;
+
+	// Media category of the media content sent, in order to decide about its
+	// compression, or null if the request carries no media content
+	private String mediaCategory = null;
 	
 	/**
 	 * Constructor
@@ -28,6 +41,37 @@ public class CommandHandler
 		this.socketTimeoutInMilliseconds = socketTimeoutInMilliseconds;
 	}
 
+	/**
+	 * Set the range of the content file to stream after the request, in order
+	 * to upload a part of a file only.
+	 * 
+	 * @param contentOffset
+	 *            The position of the first byte to stream.
+	 * 
+	 * @param contentLength
+	 *            The number of bytes to stream, or <TT>-1</TT> to stream up to
+	 *            the end of the file.
+	 */
+	public void setContentRange(long contentOffset, long contentLength)
+	{
+		this.contentOffset = contentOffset;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * Set the media category of the media content sent with the request,
+	 * embedded or as content frames, so it is compressed only if it is worth
+	 * it (see <TT>CompressionPolicy</TT>).
+	 * 
+	 * @param mediaCategory
+	 *            The media category, or <TT>null</TT> if the request carries
+	 *            no media content.
+	 */
+	public void setMediaCategory(String mediaCategory)
+	{
+		this.mediaCategory = mediaCategory;
+	}
+
 	/**
 	 * Executes a command on server and waits for response.
 	 * 
@@ -35,6 +79,44 @@ public class CommandHandler
 	 *            Request container that hold all data to send to the server.
 	 */
 	public ResponseContainer execute(Context executingContext, RequestContainer requestContainer)
+	{
+		return this.execute(executingContext, requestContainer, null);
+	}
+
+	/**
+	 * Executes a command on server and waits for response. The content of a
+	 * file is streamed to the server directly after the request, as a
+	 * sequence of content frames.
+	 * 
+	 * @param requestContainer
+	 *            Request container that hold all data to send to the server.
+	 * 
+	 * @param contentFileName
+	 *            Name of the file to stream after the request, or
+	 *            <TT>null</TT> if no content follows the request.
+	 */
+	public ResponseContainer execute(Context executingContext, RequestContainer requestContainer, String contentFileName)
+	{
+		return this.execute(executingContext, requestContainer, contentFileName, null);
+	}
+
+	/**
+	 * Executes a command on server and waits for response. The content of a
+	 * file is streamed to the server directly after the request, and content
+	 * the server streams directly after the response is written into a file.
+	 * 
+	 * @param requestContainer
+	 *            Request container that hold all data to send to the server.
+	 * 
+	 * @param contentFileName
+	 *            Name of the file to stream after the request, or
+	 *            <TT>null</TT> if no content follows the request.
+	 * 
+	 * @param receivedContentFileName
+	 *            Name of the file to write the content following the response
+	 *            into, or <TT>null</TT> if no content is accepted.
+	 */
+	public ResponseContainer execute(Context executingContext, RequestContainer requestContainer, String contentFileName, String receivedContentFileName)
 	{
 		// Logging on start
 		executingContext.getNotificationManager().notifyLogMessage(executingContext, NotificationManager.SystemLogLevelEnum.NOTICE, "Client request to server started.");
@@ -49,43 +131,115 @@ public class CommandHandler
 		// Get public key of the server
 		String serverPublicKey = null;
 
+		// Decide about keep-alive and multiplexing before encoding, because
+		// both are notified to the server via the request container
+		boolean keepAlive = workstepCheckKeepAlive(executingContext, requestContainer);
+
+		MultiplexedConnection multiplexedConnection = null;
+		if (keepAlive == true && contentFileName == null && receivedContentFileName == null) multiplexedConnection = workstepGetMultiplexedConnection(executingContext, requestContainer);
+
 		// Encode request container
 		StringBuffer commandEncrypted = workstepConvertRequestContainerObjectToSocketData(executingContext, requestContainer, serverPublicKey, responseContainer);
 
-		// Open a socket connection to the server
-		SocketHandler socketHandler = workstepOpenSocketConnectionToServer(executingContext, responseContainer);
-		
-		if (socketHandler == null )
+		// Send request over the connection shared with other commands
+		// (multiplexing)
+		if (multiplexedConnection != null)
 		{
-			responseContainer.setErrorCode(ResourceManager.notification(executingContext, "Socket", "ErrorOnSocketConnection").getRecourceIdentifier());
+			responseContainer = workstepExecuteMultiplexedRequest(executingContext, multiplexedConnection, requestContainer, commandEncrypted, responseContainer);
+
+			// Logging on stop
+			executingContext.getNotificationManager().notifyLogMessage(executingContext, NotificationManager.SystemLogLevelEnum.NOTICE, "Client request to server ended.");
+
+			// Return
 			return responseContainer;
 		}
 
-		// Do handshake
-		if (socketHandler != null && commandEncrypted != null)
+		// Borrow a live connection from the connection pool (keep-alive), or
+		// open a new socket connection
+		SocketHandler socketHandler = null;
+		boolean retried = false;
+
+		while (true)
 		{
+			if (keepAlive == true)
+			{
+				socketHandler = connectionContainer.getConnectionPool(executingContext).borrowSocketHandler(executingContext, this.socketTimeoutInMilliseconds, retried == false);
+			}
+			else
+			{
+				socketHandler = workstepOpenSocketConnectionToServer(executingContext, responseContainer);
+			}
+
+			if (socketHandler == null)
+			{
+				responseContainer.setErrorCode(ResourceManager.notification(executingContext, "Socket", "ErrorOnSocketConnection").getRecourceIdentifier());
+				return responseContainer;
+			}
+
+			// Use binary framing and compression if they were negotiated with
+			// the server
+			socketHandler.setFramingEnabled(connectionContainer.getFramingVersion() > 0);
+			socketHandler.setCompressionCodec(connectionContainer.getFramingVersion() > 0 ? EncodingHandler.getCompressionCodec(executingContext, connectionContainer.getCompressionCodec()) : null);
+
+			// Do handshake
+			if (commandEncrypted == null) break;
+
 			// Write request container to the socket
-			socketHandler.writeData(commandEncrypted);
+			boolean written = socketHandler.writeData(commandEncrypted, this.mediaCategory);
+
+			// Write content following the request
+			if (written == true && contentFileName != null) workstepWriteContent(executingContext, socketHandler, contentFileName, responseContainer);
 
 			// Read raw response data from socket
-			String responseData = null;
+			Reader responseData = null;
+			boolean timeout = false;
 
 			try
 			{
-				responseData = socketHandler.readData();
+				responseData = socketHandler.readDataReader();
 			}
 			catch (SocketTimeoutException socketTimeoutException)
 			{
+				timeout = true;
 				String errorText = "--> Timeout value: '" + socketHandler.getTimeoutTimeInMilliseconds() + "' Milliseconds";
 				responseContainer.notifyError(executingContext, "Application", "SocketTimeout", errorText, socketTimeoutException);
 			}
 
+			// A connection of the pool may have been closed by the server
+			// after it was checked, so the request is sent once again on a
+			// new connection. The server closes idle connections only while
+			// waiting for the next request, so it didn't process the request.
+			if (responseData == null && timeout == false && socketHandler.isReused() == true && retried == false)
+			{
+				connectionContainer.getConnectionPool(executingContext).returnSocketHandler(socketHandler, false);
+				executingContext.getNotificationManager().notifyLogMessage(executingContext, NotificationManager.SystemLogLevelEnum.NOTICE, "Connection of the connection pool was closed by the server, the request is sent again on a new connection.");
+
+				responseContainer = new ResponseContainer(null, 0, null);
+				this.workstepTransferContainerData(requestContainer, responseContainer);
+				retried = true;
+				continue;
+			}
+
 			// Decode raw response data onto a response container
 			responseContainer = workstepConvertSocketDataToResponseContainer(executingContext, responseData, responseContainer);
+
+			// Read content following the response
+			if (responseData != null && responseContainer.isContentFollows() == true) workstepReadContent(executingContext, socketHandler, receivedContentFileName, responseContainer);
+
+			// Done
+			break;
 		}
 
-		// Close socket
-		if (socketHandler != null) socketHandler.closeSocket();
+		// Give back the socket to the connection pool, it is kept open for
+		// further commands if the server agreed, otherwise close it
+		if (requestContainer != null && requestContainer.isKeepAlive() == true)
+		{
+			connectionContainer.getConnectionPool(executingContext).returnSocketHandler(socketHandler, responseContainer.isKeepAlive() == true && socketHandler.isContentPending() == false);
+		}
+		else
+		{
+			socketHandler.closeSocket();
+		}
 
 		// Logging on stop
 		executingContext.getNotificationManager().notifyLogMessage(executingContext, NotificationManager.SystemLogLevelEnum.NOTICE, "Client request to server ended.");
@@ -97,6 +251,141 @@ public class CommandHandler
 		return responseContainer;
 	}
 
+	/**
+	 * Stream the content of a file to the server, as a sequence of content
+	 * frames following the request.
+	 * <p>
+	 * if an error occurred, the error message is set automatically by this
+	 * method.
+	 * 
+	 * @param executingContext
+	 *            The context to use.
+	 * 
+	 * @param socketHandler
+	 *            The socket connection the request was written to.
+	 * 
+	 * @param contentFileName
+	 *            Name of the file to stream.
+	 * 
+	 * @param responseContainer
+	 *            The response container to hold the return value if an error
+	 *            occurs.
+	 * 
+	 * @return Returns <TT>true</TT> if the content could be written, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean workstepWriteContent(Context executingContext, SocketHandler socketHandler, String contentFileName, ResponseContainer responseContainer)
+	{
+		InputStream content = null;
+
+		try
+		{
+			// Get chunk size
+			Integer chunkSizeInBytes = executingContext.getConfigurationManager().getPropertyAsIntegerValue(executingContext, ResourceManager.configuration(executingContext, "Application", "ContentChunkSizeInBytes"), false);
+			if (chunkSizeInBytes == null) chunkSizeInBytes = 65536;
+
+			// Stream file content, or the range set
+			FileInputStream fileInputStream = new FileInputStream(contentFileName);
+			content = fileInputStream;
+			if (this.contentOffset > 0) fileInputStream.getChannel().position(this.contentOffset);
+			if (socketHandler.writeContent(content, this.contentLength, chunkSizeInBytes, this.mediaCategory) == true) return true;
+
+			String errorText = "--> Error on streaming content to server";
+			errorText += "\n--> File name: '" + contentFileName + "'";
+			responseContainer.notifyError(executingContext, "Socket", "ErrorOnSocketConnection", errorText, null);
+			return false;
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on streaming content to server";
+			errorText += "\n--> File name: '" + contentFileName + "'";
+			responseContainer.notifyError(executingContext, "Socket", "ErrorOnSocketConnection", errorText, e);
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if (content != null) content.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+	}
+
+	/**
+	 * Read the content the server streams as a sequence of content frames
+	 * following the response, and write it into a file chunk by chunk.
+	 * <p>
+	 * if an error occurred, the error message is set automatically by this
+	 * method.
+	 * 
+	 * @param executingContext
+	 *            The context to use.
+	 * 
+	 * @param socketHandler
+	 *            The socket connection the response was read from.
+	 * 
+	 * @param receivedContentFileName
+	 *            Name of the file to write the content into, or <TT>null</TT>
+	 *            if the content is to be skipped.
+	 * 
+	 * @param responseContainer
+	 *            The response container to hold the return value if an error
+	 *            occurs.
+	 * 
+	 * @return Returns <TT>true</TT> if the content could be read, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean workstepReadContent(Context executingContext, SocketHandler socketHandler, String receivedContentFileName, ResponseContainer responseContainer)
+	{
+		// Skip content nobody asked for
+		socketHandler.setContentPending(true);
+		if (receivedContentFileName == null) return socketHandler.skipContent();
+
+		// Write content into the file
+		OutputStream receivedContent = null;
+
+		try
+		{
+			InputStream content = socketHandler.getContentInputStream();
+			receivedContent = new FileOutputStream(receivedContentFileName);
+
+			byte[] buffer = new byte[65536];
+			int byteCount = 0;
+
+			while ((byteCount = content.read(buffer)) != -1)
+			{
+				receivedContent.write(buffer, 0, byteCount);
+			}
+
+			return true;
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on receiving content from server";
+			errorText += "\n--> File name: '" + receivedContentFileName + "'";
+			responseContainer.notifyError(executingContext, "Socket", "ErrorOnSocketConnection", errorText, e);
+
+			// The connection can't be used anymore
+			socketHandler.closeSocket();
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if (receivedContent != null) receivedContent.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+	}
+
 	/**
 	 * Convert a request container to a raw socket data string, in order to send
 	 * it to the server.
@@ -134,7 +423,18 @@ public class CommandHandler
 
 		try
 		{
-			commandEncrypted = encodingUitility.encodeRequestContainer(executingContext, requestContainer, serverPublicKey);
+			// Encrypt with the session key, if it was exchanged on creating
+			// the session
+			SessionCipher sessionCipher = connectionContainer.getSessionCipher();
+
+			if (sessionCipher != null)
+			{
+				commandEncrypted = encodingUitility.encodeRequestContainer(executingContext, requestContainer, sessionCipher);
+			}
+			else
+			{
+				commandEncrypted = encodingUitility.encodeRequestContainer(executingContext, requestContainer, serverPublicKey);
+			}
 		}
 		catch (Exception exception)
 		{
@@ -145,6 +445,147 @@ public class CommandHandler
 		return commandEncrypted;
 	}
 
+	/**
+	 * Check if keep-alive connections are enabled (see configuration property
+	 * <TT>Application/EnableKeepAlive</TT>).
+	 * <p>
+	 * The request container is marked to ask the server for keeping the
+	 * connection open. In this case the socket connection is borrowed from the
+	 * connection pool of the connection container.
+	 * 
+	 * @param executingContext
+	 *            The context to use.
+	 * 
+	 * @param requestContainer
+	 *            The request container to mark.
+	 * 
+	 * @return Returns <TT>true</TT> if keep-alive connections are enabled,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private boolean workstepCheckKeepAlive(Context executingContext, RequestContainer requestContainer)
+	{
+		// Validate parameter
+		if (executingContext == null) return false;
+		if (requestContainer == null) return false;
+
+		try
+		{
+			// Check if keep-alive connections are enabled
+			Boolean enableKeepAlive = executingContext.getConfigurationManager().getPropertyAsBooleanValue(executingContext, ResourceManager.configuration(executingContext, "Application", "EnableKeepAlive"), false);
+			if (enableKeepAlive == null) enableKeepAlive = false;
+
+			// Mark request container
+			requestContainer.setKeepAlive(enableKeepAlive);
+
+			// Return
+			return enableKeepAlive;
+		}
+		catch (Exception exception)
+		{
+			// Be silent
+			requestContainer.setKeepAlive(false);
+			return false;
+		}
+	}
+
+	/**
+	 * Get the connection to the server that is shared with other commands
+	 * (multiplexing), if multiplexing is enabled (see configuration property
+	 * <TT>Application/EnableMultiplexing</TT>) and binary framing was
+	 * negotiated with the server.
+	 * <p>
+	 * The request container gets a correlation identifier, in order to assign
+	 * the response of the server to it.
+	 * 
+	 * @param executingContext
+	 *            The context to use.
+	 * 
+	 * @param requestContainer
+	 *            The request container to mark.
+	 * 
+	 * @return Returns the multiplexed connection, or <TT>null</TT> if
+	 *         multiplexing is not enabled or the connection couldn't be opened.
+	 */
+	private MultiplexedConnection workstepGetMultiplexedConnection(Context executingContext, RequestContainer requestContainer)
+	{
+		// Validate parameter
+		if (executingContext == null) return null;
+		if (requestContainer == null) return null;
+
+		try
+		{
+			// Check if multiplexing is enabled
+			Boolean enableMultiplexing = executingContext.getConfigurationManager().getPropertyAsBooleanValue(executingContext, ResourceManager.configuration(executingContext, "Application", "EnableMultiplexing"), false);
+			if (enableMultiplexing == null || enableMultiplexing == false) return null;
+
+			// Check framing, pipelined text messages can't be separated
+			if (connectionContainer.getFramingVersion() <= 0) return null;
+
+			// Get connection
+			MultiplexedConnection multiplexedConnection = connectionContainer.getMultiplexedConnection(executingContext);
+			if (multiplexedConnection == null) return null;
+
+			// Mark request container
+			requestContainer.setCorrelationIdentifier(multiplexedConnection.createCorrelationIdentifier());
+
+			// Return
+			return multiplexedConnection;
+		}
+		catch (Exception exception)
+		{
+			// Be silent
+			requestContainer.setCorrelationIdentifier(null);
+			return null;
+		}
+	}
+
+	/**
+	 * Send a request over the connection shared with other commands
+	 * (multiplexing) and wait for its response.
+	 * <p>
+	 * if an error occurred, the error message is set automatically by this
+	 * method.
+	 * 
+	 * @param executingContext
+	 *            The context to use.
+	 * 
+	 * @param multiplexedConnection
+	 *            The connection to use.
+	 * 
+	 * @param requestContainer
+	 *            The request container, marked with a correlation identifier.
+	 * 
+	 * @param commandEncrypted
+	 *            The encoded request container.
+	 * 
+	 * @param parameterResponseContainer
+	 *            The response container to hold the return value if an error
+	 *            occurs.
+	 * 
+	 * @return Returns the response container of the server, or the given
+	 *         response container if an error occurred.
+	 */
+	private ResponseContainer workstepExecuteMultiplexedRequest(Context executingContext, MultiplexedConnection multiplexedConnection, RequestContainer requestContainer, StringBuffer commandEncrypted, ResponseContainer parameterResponseContainer)
+	{
+		// Validate parameter
+		if (commandEncrypted == null) return parameterResponseContainer;
+
+		// Send request and wait for the response
+		ResponseContainer newResponseContainer = multiplexedConnection.execute(requestContainer.getCorrelationIdentifier(), commandEncrypted, this.mediaCategory, this.socketTimeoutInMilliseconds);
+
+		if (newResponseContainer == null)
+		{
+			String errorText = "--> Error on executing a multiplexed request";
+			errorText += "\n--> Correlation identifier: '" + requestContainer.getCorrelationIdentifier() + "'";
+			errorText += "\n--> Timeout value: '" + String.valueOf(this.socketTimeoutInMilliseconds) + "' Milliseconds";
+			parameterResponseContainer.notifyError(executingContext, "Application", "ErrorOnProcessingRequestToServer", errorText, null);
+			return parameterResponseContainer;
+		}
+
+		// Return
+		return newResponseContainer;
+	}
+
 	/**
 	 * Open a socket connection to the server.
 	 * <p>
@@ -206,8 +647,10 @@ public class CommandHandler
 	 *            The context to use.
 	 * 
 	 * @param responseData
-	 *            The raw text data read from socket, containing all information
-	 *            to recreate the response container object, sent by the server.
+	 *            The reader of the raw data read from socket, containing all
+	 *            information to recreate the response container object, sent
+	 *            by the server. The response container is parsed
+	 *            incrementally while reading.
 	 * 
 	 * @param parameterResponseContainer
 	 *            The response container to work with.
@@ -215,7 +658,7 @@ public class CommandHandler
 	 * @return Returns response container object, or <TT>null</TT> if an error
 	 *         occurred.
 	 */
-	private ResponseContainer workstepConvertSocketDataToResponseContainer(Context executingContext, String responseData, ResponseContainer parameterResponseContainer)
+	private ResponseContainer workstepConvertSocketDataToResponseContainer(Context executingContext, Reader responseData, ResponseContainer parameterResponseContainer)
 	{
 		// Validate parameter
 		if (responseData == null) return parameterResponseContainer;
@@ -227,7 +670,7 @@ public class CommandHandler
 		try
 		{
 			EncodingHandler encodingUitility = new EncodingHandler();
-			newResponseContainer = encodingUitility.decodeResponseContainer(executingContext, responseData, connectionContainer.getKeyApplicationPrivateKey());
+			newResponseContainer = encodingUitility.decodeResponseContainer(executingContext, responseData, connectionContainer.getKeyApplicationPrivateKey(), connectionContainer.getSessionCipher());
 		}
 		catch (Exception exception)
 		{
@@ -0,0 +1,57 @@
+package fmagic.basic.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This interface describes a compression codec that is applied as a stream to
+ * the payload of binary frames.
+ * <p>
+ * The codec to use is negotiated with the server by the command 'Handshake'.
+ * Each compressed frame carries the identifier of its codec in the frame
+ * flags, so the receiver can decompress it without knowing the negotiation.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 11.08.2013 - Created
+ */
+public interface CompressionCodec
+{
+	/**
+	 * Get the identifier of the codec, as set in the frame flags of
+	 * compressed frames. The identifier must be unique and in the range of 1
+	 * to 255.
+	 * 
+	 * @return Returns the identifier.
+	 */
+	public byte getIdentifier();
+
+	/**
+	 * Get the name of the codec, as negotiated by the command 'Handshake'.
+	 * 
+	 * @return Returns the name.
+	 */
+	public String getName();
+
+	/**
+	 * Open a stream that compresses all data written to it. Closing the
+	 * stream finishes the compressed data and closes the target stream.
+	 * 
+	 * @param outputStream
+	 *            The stream to write the compressed data to.
+	 * 
+	 * @return Returns the compressing stream.
+	 */
+	public OutputStream openCompressingStream(OutputStream outputStream) throws IOException;
+
+	/**
+	 * Open a stream that decompresses all data read from a stream.
+	 * 
+	 * @param inputStream
+	 *            The stream to read the compressed data from.
+	 * 
+	 * @return Returns the decompressing stream.
+	 */
+	public InputStream openDecompressingStream(InputStream inputStream) throws IOException;
+}
@@ -0,0 +1,105 @@
+package fmagic.basic.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression codec using raw DEFLATE data, without ZIP or GZIP headers and
+ * checksums, at a configurable compression level.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 11.08.2013 - Created
+ */
+public class CompressionCodecDeflate implements CompressionCodec
+{
+	// Identifier and name of the codec
+	public static final byte IDENTIFIER = 1;
+	public static final String NAME = "deflate";
+
+	// Compression level, from 1 (fastest) to 9 (best compression)
+	private final int level;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param level
+	 *            The compression level, from 1 (fastest) to 9 (best
+	 *            compression).
+	 */
+	public CompressionCodecDeflate(int level)
+	{
+		this.level = Math.max(Deflater.BEST_SPEED, Math.min(level, Deflater.BEST_COMPRESSION));
+	}
+
+	@Override
+	public byte getIdentifier()
+	{
+		return IDENTIFIER;
+	}
+
+	@Override
+	public String getName()
+	{
+		return NAME;
+	}
+
+	@Override
+	public OutputStream openCompressingStream(OutputStream outputStream) throws IOException
+	{
+		final Deflater deflater = new Deflater(this.level, true);
+
+		// Release the native memory of the deflater on closing
+		return new DeflaterOutputStream(outputStream, deflater, 8192)
+		{
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	@Override
+	public InputStream openDecompressingStream(InputStream inputStream) throws IOException
+	{
+		final Inflater inflater = new Inflater(true);
+
+		// Release the native memory of the inflater on closing
+		return new InflaterInputStream(inputStream, inflater, 8192)
+		{
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getLevel()
+	{
+		return level;
+	}
+}
@@ -0,0 +1,527 @@
+package fmagic.basic.command;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Fast compression codec of the LZ77 family, trading compression ratio for
+ * speed.
+ * <p>
+ * The data are compressed in independent blocks of up to 64 KB. Each block
+ * starts with its uncompressed and its stored length (4 bytes each). If
+ * compressing doesn't shrink a block, it is stored as is, with both lengths
+ * being equal.
+ * <p>
+ * A compressed block is a sequence of literals and matches. Each sequence
+ * starts with a token byte, containing the number of literals (upper 4 bits)
+ * and the length of the match minus 4 (lower 4 bits). The value 15 means that
+ * further length bytes follow, each adding up to 255. The literals follow the
+ * token, then the offset of the match (2 bytes, little endian). The last
+ * sequence of a block has literals only.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 11.08.2013 - Created
+ */
+public class CompressionCodecLz implements CompressionCodec
+{
+	// Identifier and name of the codec
+	public static final byte IDENTIFIER = 2;
+	public static final String NAME = "lz";
+
+	// Block and match settings
+	private static final int BLOCK_SIZE = 65536;
+	private static final int MINIMUM_MATCH = 4;
+	private static final int MAXIMUM_OFFSET = 65535;
+	private static final int HASH_BITS = 14;
+
+	@Override
+	public byte getIdentifier()
+	{
+		return IDENTIFIER;
+	}
+
+	@Override
+	public String getName()
+	{
+		return NAME;
+	}
+
+	@Override
+	public OutputStream openCompressingStream(OutputStream outputStream) throws IOException
+	{
+		return new LzOutputStream(outputStream);
+	}
+
+	@Override
+	public InputStream openDecompressingStream(InputStream inputStream) throws IOException
+	{
+		return new LzInputStream(inputStream);
+	}
+
+	/**
+	 * Compress a block of data.
+	 * 
+	 * @param source
+	 *            The data to compress.
+	 * 
+	 * @param length
+	 *            The number of bytes to compress.
+	 * 
+	 * @param target
+	 *            The buffer for the compressed data, at least
+	 *            <TT>getMaximumCompressedLength(length)</TT> bytes long.
+	 * 
+	 * @param hashTable
+	 *            Table of recent positions, reused for all blocks.
+	 * 
+	 * @param hashBits
+	 *            Number of bits of the hash values, the table must have
+	 *            <TT>2^hashBits</TT> entries at least.
+	 * 
+	 * @return Returns the length of the compressed data.
+	 */
+	private static int compressBlock(byte[] source, int length, byte[] target, int[] hashTable, int hashBits)
+	{
+		// Clear positions of the previous block
+		Arrays.fill(hashTable, 0, 1 << hashBits, -1);
+
+		int position = 0;
+		int anchor = 0;
+		int targetPosition = 0;
+		int matchLimit = length - MINIMUM_MATCH;
+
+		while (position <= matchLimit)
+		{
+			// Look for a previous occurrence of the next 4 bytes
+			int sequence = readInt(source, position);
+			int hash = (sequence * -1640531535) >>> (32 - hashBits);
+			int reference = hashTable[hash];
+			hashTable[hash] = position;
+
+			if (reference < 0 || position - reference > MAXIMUM_OFFSET || readInt(source, reference) != sequence)
+			{
+				position++;
+				continue;
+			}
+
+			// Extend the match
+			int matchLength = MINIMUM_MATCH;
+			while (position + matchLength < length && source[reference + matchLength] == source[position + matchLength])
+			{
+				matchLength++;
+			}
+
+			// Write sequence
+			targetPosition = writeSequence(source, anchor, position - anchor, position - reference, matchLength, target, targetPosition);
+
+			position += matchLength;
+			anchor = position;
+		}
+
+		// Write remaining literals
+		return writeSequence(source, anchor, length - anchor, 0, 0, target, targetPosition);
+	}
+
+	/**
+	 * Write a sequence of literals and a match.
+	 * 
+	 * @return Returns the position in the target buffer behind the sequence.
+	 */
+	private static int writeSequence(byte[] source, int literalStart, int literalLength, int offset, int matchLength, byte[] target, int targetPosition)
+	{
+		// Token
+		int literalCode = Math.min(literalLength, 15);
+		int matchCode = matchLength == 0 ? 0 : Math.min(matchLength - MINIMUM_MATCH, 15);
+		target[targetPosition++] = (byte) ((literalCode << 4) | matchCode);
+
+		// Literals
+		targetPosition = writeLength(literalLength, literalCode, target, targetPosition);
+		System.arraycopy(source, literalStart, target, targetPosition, literalLength);
+		targetPosition += literalLength;
+
+		// Match
+		if (matchLength == 0) return targetPosition;
+
+		target[targetPosition++] = (byte) offset;
+		target[targetPosition++] = (byte) (offset >>> 8);
+		return writeLength(matchLength - MINIMUM_MATCH, matchCode, target, targetPosition);
+	}
+
+	/**
+	 * Write the length bytes following the token, if the length doesn't fit
+	 * into the token.
+	 * 
+	 * @return Returns the position in the target buffer behind the length.
+	 */
+	private static int writeLength(int length, int code, byte[] target, int targetPosition)
+	{
+		if (code < 15) return targetPosition;
+
+		int remainingLength = length - 15;
+
+		while (remainingLength >= 255)
+		{
+			target[targetPosition++] = (byte) 255;
+			remainingLength -= 255;
+		}
+
+		target[targetPosition++] = (byte) remainingLength;
+		return targetPosition;
+	}
+
+	/**
+	 * Decompress a block of data.
+	 * 
+	 * @param source
+	 *            The compressed data.
+	 * 
+	 * @param sourceLength
+	 *            The length of the compressed data.
+	 * 
+	 * @param target
+	 *            The buffer for the decompressed data.
+	 * 
+	 * @param targetLength
+	 *            The length of the decompressed data.
+	 */
+	private static void decompressBlock(byte[] source, int sourceLength, byte[] target, int targetLength) throws IOException
+	{
+		int position = 0;
+		int targetPosition = 0;
+
+		try
+		{
+			while (true)
+			{
+				// Token
+				int token = source[position++] & 0xFF;
+
+				// Literals
+				int literalLength = token >>> 4;
+
+				if (literalLength == 15)
+				{
+					int lengthByte;
+					do
+					{
+						lengthByte = source[position++] & 0xFF;
+						literalLength += lengthByte;
+					}
+					while (lengthByte == 255);
+				}
+
+				System.arraycopy(source, position, target, targetPosition, literalLength);
+				position += literalLength;
+				targetPosition += literalLength;
+
+				// Last sequence has literals only
+				if (position >= sourceLength) break;
+
+				// Match
+				int offset = (source[position++] & 0xFF) | ((source[position++] & 0xFF) << 8);
+				int matchLength = token & 0x0F;
+
+				if (matchLength == 15)
+				{
+					int lengthByte;
+					do
+					{
+						lengthByte = source[position++] & 0xFF;
+						matchLength += lengthByte;
+					}
+					while (lengthByte == 255);
+				}
+
+				matchLength += MINIMUM_MATCH;
+
+				if (offset == 0 || offset > targetPosition || targetPosition + matchLength > targetLength) throw new IOException("Invalid match in compressed block");
+
+				// Copy byte by byte, because the match may overlap
+				int reference = targetPosition - offset;
+
+				for (int i = 0; i < matchLength; i++)
+				{
+					target[targetPosition++] = target[reference++];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IOException("Corrupted compressed block", e);
+		}
+
+		if (targetPosition != targetLength) throw new IOException("Invalid length of compressed block");
+	}
+
+	/**
+	 * Get the maximum length of the compressed data of a block, in the worst
+	 * case of data that can't be compressed.
+	 */
+	private static int getMaximumCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Get the number of bits of the hash values for a block, so the hash table
+	 * of short blocks is small.
+	 */
+	private static int getHashBits(int length)
+	{
+		int hashBits = 8;
+		while (hashBits < HASH_BITS && (1 << hashBits) < length) hashBits++;
+		return hashBits;
+	}
+
+	/**
+	 * Read 4 bytes as integer.
+	 */
+	private static int readInt(byte[] buffer, int position)
+	{
+		return (buffer[position] & 0xFF) | ((buffer[position + 1] & 0xFF) << 8) | ((buffer[position + 2] & 0xFF) << 16) | ((buffer[position + 3] & 0xFF) << 24);
+	}
+
+	/**
+	 * Write an integer as 4 bytes, big endian.
+	 */
+	private static void writeBlockHeaderValue(OutputStream outputStream, int value) throws IOException
+	{
+		outputStream.write(value >>> 24);
+		outputStream.write(value >>> 16);
+		outputStream.write(value >>> 8);
+		outputStream.write(value);
+	}
+
+	/**
+	 * Stream that collects the data written to it into blocks, and writes each
+	 * block compressed.
+	 */
+	private static class LzOutputStream extends OutputStream
+	{
+		private final OutputStream outputStream;
+
+		// Buffers grow with the data written, up to the block size, so short
+		// data don't allocate the buffers of a whole block
+		private byte[] block = new byte[1024];
+		private byte[] compressedBlock = null;
+		private int[] hashTable = null;
+		private int blockLength = 0;
+		private boolean closed = false;
+
+		private LzOutputStream(OutputStream outputStream)
+		{
+			this.outputStream = outputStream;
+		}
+
+		@Override
+		public void write(int value) throws IOException
+		{
+			if (this.blockLength == BLOCK_SIZE) this.writeBlock();
+			if (this.blockLength == this.block.length) this.block = Arrays.copyOf(this.block, Math.min(this.block.length * 2, BLOCK_SIZE));
+			this.block[this.blockLength++] = (byte) value;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException
+		{
+			while (length > 0)
+			{
+				if (this.blockLength == BLOCK_SIZE) this.writeBlock();
+
+				// Grow buffer
+				if (this.blockLength + length > this.block.length && this.block.length < BLOCK_SIZE)
+				{
+					int capacity = this.block.length;
+					while (capacity < this.blockLength + length && capacity < BLOCK_SIZE) capacity *= 2;
+					this.block = Arrays.copyOf(this.block, Math.min(capacity, BLOCK_SIZE));
+				}
+
+				int byteCount = Math.min(length, this.block.length - this.blockLength);
+				System.arraycopy(buffer, offset, this.block, this.blockLength, byteCount);
+				this.blockLength += byteCount;
+				offset += byteCount;
+				length -= byteCount;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			this.writeBlock();
+			this.outputStream.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (this.closed == true) return;
+			this.closed = true;
+
+			try
+			{
+				this.writeBlock();
+			}
+			finally
+			{
+				this.outputStream.close();
+			}
+		}
+
+		/**
+		 * Write the collected data as one block.
+		 */
+		private void writeBlock() throws IOException
+		{
+			if (this.blockLength == 0) return;
+
+			// Provide buffers
+			int hashBits = getHashBits(this.blockLength);
+			if (this.hashTable == null || this.hashTable.length < (1 << hashBits)) this.hashTable = new int[1 << hashBits];
+
+			int maximumCompressedLength = getMaximumCompressedLength(this.blockLength);
+			if (this.compressedBlock == null || this.compressedBlock.length < maximumCompressedLength) this.compressedBlock = new byte[maximumCompressedLength];
+
+			// Compress
+			int compressedLength = compressBlock(this.block, this.blockLength, this.compressedBlock, this.hashTable, hashBits);
+
+			// Store block as is if compressing doesn't shrink it
+			writeBlockHeaderValue(this.outputStream, this.blockLength);
+
+			if (compressedLength < this.blockLength)
+			{
+				writeBlockHeaderValue(this.outputStream, compressedLength);
+				this.outputStream.write(this.compressedBlock, 0, compressedLength);
+			}
+			else
+			{
+				writeBlockHeaderValue(this.outputStream, this.blockLength);
+				this.outputStream.write(this.block, 0, this.blockLength);
+			}
+
+			this.blockLength = 0;
+		}
+	}
+
+	/**
+	 * Stream that reads compressed blocks and returns their decompressed data.
+	 */
+	private static class LzInputStream extends InputStream
+	{
+		private final InputStream inputStream;
+
+		// Buffers are allocated by the size of the blocks read
+		private byte[] block = null;
+		private byte[] compressedBlock = null;
+		private int blockLength = 0;
+		private int blockPosition = 0;
+		private boolean endOfData = false;
+
+		private LzInputStream(InputStream inputStream)
+		{
+			this.inputStream = inputStream;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (this.blockPosition == this.blockLength && this.readBlock() == false) return -1;
+			return this.block[this.blockPosition++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			if (length == 0) return 0;
+			if (this.blockPosition == this.blockLength && this.readBlock() == false) return -1;
+
+			int byteCount = Math.min(length, this.blockLength - this.blockPosition);
+			System.arraycopy(this.block, this.blockPosition, buffer, offset, byteCount);
+			this.blockPosition += byteCount;
+			return byteCount;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return this.blockLength - this.blockPosition;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			this.inputStream.close();
+		}
+
+		/**
+		 * Read and decompress the next block.
+		 * 
+		 * @return Returns <TT>false</TT> if there are no more blocks.
+		 */
+		private boolean readBlock() throws IOException
+		{
+			if (this.endOfData == true) return false;
+
+			// Read block header
+			int firstByte = this.inputStream.read();
+
+			if (firstByte == -1)
+			{
+				this.endOfData = true;
+				return false;
+			}
+
+			int length = (firstByte << 24) | (this.readByte() << 16) | (this.readByte() << 8) | this.readByte();
+			int storedLength = this.readInt();
+
+			if (length <= 0 || length > BLOCK_SIZE || storedLength <= 0 || storedLength > length) throw new IOException("Invalid header of compressed block");
+
+			// Provide buffers
+			if (this.block == null || this.block.length < length) this.block = new byte[length];
+			if (storedLength < length && (this.compressedBlock == null || this.compressedBlock.length < storedLength)) this.compressedBlock = new byte[storedLength];
+
+			// Read stored block
+			if (storedLength == length)
+			{
+				this.readFully(this.block, storedLength);
+			}
+			// Read and decompress block
+			else
+			{
+				this.readFully(this.compressedBlock, storedLength);
+				decompressBlock(this.compressedBlock, storedLength, this.block, length);
+			}
+
+			this.blockLength = length;
+			this.blockPosition = 0;
+			return true;
+		}
+
+		private int readByte() throws IOException
+		{
+			int value = this.inputStream.read();
+			if (value == -1) throw new EOFException("Compressed block ended unexpectedly");
+			return value;
+		}
+
+		private int readInt() throws IOException
+		{
+			return (this.readByte() << 24) | (this.readByte() << 16) | (this.readByte() << 8) | this.readByte();
+		}
+
+		private void readFully(byte[] buffer, int length) throws IOException
+		{
+			int position = 0;
+
+			while (position < length)
+			{
+				int byteCount = this.inputStream.read(buffer, position, length - position);
+				if (byteCount == -1) throw new EOFException("Compressed block ended unexpectedly");
+				position += byteCount;
+			}
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package fmagic.basic.command;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.media.ResourceContainerMedia;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class decides if data carrying media content are worth compressing,
+ * depending on the media type and the file type of the media.
+ * <p>
+ * Compressed formats, like most images, videos and audio files, don't shrink
+ * anymore, so compressing them only burns CPU time on both sides of the
+ * connection. The policy works in two steps:
+ * <OL>
+ * <LI>Fixed rules: Images, videos and audio files are sent uncompressed,
+ * except the file types that are stored without compression (see
+ * configuration property <TT>Application/CompressionUncompressedMediaFileTypes</TT>).
+ * Documents and other media are compressed, except the file types that are
+ * compressed already (see configuration property
+ * <TT>Application/CompressionIncompressibleFileTypes</TT>).</LI>
+ * <LI>Adaptive rule: The compression ratio reached is recorded per media
+ * category. If a category doesn't shrink below a threshold (see configuration
+ * property <TT>Application/CompressionRatioThresholdInPercent</TT>), it is sent
+ * uncompressed, but probed again from time to time.</LI>
+ * </OL>
+ * A media category is named by the media type and the file type, e. g.
+ * <TT>Image/jpg</TT> or <TT>Document/txt</TT>. Data without a category, e. g.
+ * commands without media content, are always compressed.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 12.08.2013 - Created
+ */
+public class CompressionPolicy
+{
+	// Names of the media types used in media categories
+	public static final String MEDIA_TYPE_IMAGE = "Image";
+	public static final String MEDIA_TYPE_VIDEO = "Video";
+	public static final String MEDIA_TYPE_AUDIO = "Audio";
+	public static final String MEDIA_TYPE_DOCUMENT = "Document";
+	public static final String MEDIA_TYPE_OTHER = "Media";
+
+	// Number of samples needed before the ratio of a category is considered
+	private static final int MINIMUM_SAMPLES = 8;
+
+	// Number of samples after that the recorded sizes are halved, so recent
+	// samples weigh more than old ones
+	private static final int DECAY_SAMPLES = 64;
+
+	// A category that doesn't shrink is compressed again every n-th time, in
+	// order to notice if its ratio changes
+	private static final int PROBING_INTERVAL = 32;
+
+	// Compression ratios recorded per media category
+	private static final ConcurrentHashMap<String, CompressionRatio> compressionRatios = new ConcurrentHashMap<String, CompressionRatio>();
+
+	/**
+	 * Compression ratio recorded for a media category.
+	 */
+	private static class CompressionRatio
+	{
+		private long rawBytes = 0;
+		private long compressedBytes = 0;
+		private int samples = 0;
+		private int skipped = 0;
+
+		/**
+		 * Record the sizes of data compressed.
+		 */
+		private synchronized void record(long rawSize, long compressedSize)
+		{
+			this.rawBytes += rawSize;
+			this.compressedBytes += compressedSize;
+			this.samples++;
+
+			// Decay old samples
+			if (this.samples >= DECAY_SAMPLES)
+			{
+				this.rawBytes /= 2;
+				this.compressedBytes /= 2;
+				this.samples /= 2;
+			}
+		}
+
+		/**
+		 * Check if the category shrinks enough to be compressed.
+		 */
+		private synchronized boolean isCompressionWorthwhile(int thresholdInPercent)
+		{
+			// Not enough samples yet
+			if (this.samples < MINIMUM_SAMPLES || this.rawBytes <= 0) return true;
+
+			// Category shrinks
+			if (this.compressedBytes * 100 < this.rawBytes * thresholdInPercent) return true;
+
+			// Probe from time to time
+			this.skipped++;
+			if (this.skipped < PROBING_INTERVAL) return false;
+			this.skipped = 0;
+			return true;
+		}
+
+		/**
+		 * Get the ratio of compressed size to raw size.
+		 */
+		private synchronized double getRatio()
+		{
+			if (this.rawBytes <= 0) return 1.0;
+			return (double) this.compressedBytes / (double) this.rawBytes;
+		}
+	}
+
+	/**
+	 * Get the media category of media content, in order to decide about its
+	 * compression.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container of the media content.
+	 * 
+	 * @param fileType
+	 *            The file type of the media content.
+	 * 
+	 * @return Returns the name of the media category, or <TT>null</TT> if
+	 *         the file type is unknown.
+	 */
+	public static String getMediaCategory(Context context, ResourceContainerMedia mediaResourceContainer, String fileType)
+	{
+		// Validate parameter
+		if (fileType == null || fileType.trim().length() == 0) return null;
+
+		// Get media type
+		String mediaType = MEDIA_TYPE_OTHER;
+
+		if (mediaResourceContainer != null)
+		{
+			if (mediaResourceContainer.attributeIsMediaTypeImage(context) == true) mediaType = MEDIA_TYPE_IMAGE;
+			else if (mediaResourceContainer.attributeIsMediaTypeVideo(context) == true) mediaType = MEDIA_TYPE_VIDEO;
+			else if (mediaResourceContainer.attributeIsMediaTypeAudio(context) == true) mediaType = MEDIA_TYPE_AUDIO;
+			else if (mediaResourceContainer.attributeIsMediaTypeDocument(context) == true) mediaType = MEDIA_TYPE_DOCUMENT;
+		}
+
+		// Return
+		return mediaType + "/" + fileType.trim().toLowerCase();
+	}
+
+	/**
+	 * Check if data of a media category are to be compressed.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the data, or <TT>null</TT> if the data
+	 *            carry no media content.
+	 * 
+	 * @return Returns <TT>true</TT> if the data are to be compressed,
+	 *         otherwise <TT>false</TT>.
+	 */
+	public static boolean isCompressionRecommended(Context context, String mediaCategory)
+	{
+		// Data without media content
+		if (mediaCategory == null) return true;
+
+		int separatorPosition = mediaCategory.indexOf('/');
+		if (separatorPosition < 0) return true;
+
+		String mediaType = mediaCategory.substring(0, separatorPosition);
+		String fileType = mediaCategory.substring(separatorPosition + 1);
+
+		try
+		{
+			// Images, videos and audio files are compressed already, except
+			// some raw formats
+			if (mediaType.equals(MEDIA_TYPE_IMAGE) || mediaType.equals(MEDIA_TYPE_VIDEO) || mediaType.equals(MEDIA_TYPE_AUDIO))
+			{
+				String uncompressedFileTypes = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Application", "CompressionUncompressedMediaFileTypes"), false);
+				if (CompressionPolicy.isFileTypeListed(uncompressedFileTypes, fileType) == false) return false;
+			}
+			// Documents and other media are compressed, except formats
+			// compressed already
+			else
+			{
+				String incompressibleFileTypes = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Application", "CompressionIncompressibleFileTypes"), false);
+				if (CompressionPolicy.isFileTypeListed(incompressibleFileTypes, fileType) == true) return false;
+			}
+
+			// Consider the compression ratio recorded for the category
+			CompressionRatio compressionRatio = compressionRatios.get(mediaCategory);
+			if (compressionRatio == null) return true;
+
+			Integer thresholdInPercent = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "CompressionRatioThresholdInPercent"), false);
+			if (thresholdInPercent == null) thresholdInPercent = 90;
+
+			return compressionRatio.isCompressionWorthwhile(thresholdInPercent);
+		}
+		catch (Exception e)
+		{
+			// Be silent
+			return true;
+		}
+	}
+
+	/**
+	 * Record the compression ratio reached for data of a media category.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the data, or <TT>null</TT> if the data
+	 *            carry no media content.
+	 * 
+	 * @param rawSize
+	 *            The size of the data before compressing.
+	 * 
+	 * @param compressedSize
+	 *            The size of the data after compressing.
+	 */
+	public static void recordCompressionRatio(String mediaCategory, long rawSize, long compressedSize)
+	{
+		// Validate parameter
+		if (mediaCategory == null) return;
+		if (rawSize <= 0 || compressedSize < 0) return;
+
+		// Get or create the ratio of the category
+		CompressionRatio compressionRatio = compressionRatios.get(mediaCategory);
+
+		if (compressionRatio == null)
+		{
+			compressionRatios.putIfAbsent(mediaCategory, new CompressionRatio());
+			compressionRatio = compressionRatios.get(mediaCategory);
+		}
+
+		// Record
+		compressionRatio.record(rawSize, compressedSize);
+	}
+
+	/**
+	 * Get the compression ratios recorded, as the ratio of compressed size to
+	 * raw size per media category.
+	 * 
+	 * @return Returns a sorted copy of the compression ratios.
+	 */
+	public static Map<String, Double> getCompressionRatios()
+	{
+		Map<String, Double> ratios = new TreeMap<String, Double>();
+
+		for (Map.Entry<String, CompressionRatio> entry : compressionRatios.entrySet())
+		{
+			ratios.put(entry.getKey(), entry.getValue().getRatio());
+		}
+
+		return ratios;
+	}
+
+	/**
+	 * Check if a file type is contained in a comma separated list of file
+	 * types.
+	 * 
+	 * @param fileTypeList
+	 *            The comma separated list of file types.
+	 * 
+	 * @param fileType
+	 *            The file type to look for.
+	 * 
+	 * @return Returns <TT>true</TT> if the file type is listed, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private static boolean isFileTypeListed(String fileTypeList, String fileType)
+	{
+		if (fileTypeList == null || fileType == null) return false;
+
+		for (String listedFileType : fileTypeList.split(","))
+		{
+			if (listedFileType.trim().equalsIgnoreCase(fileType)) return true;
+		}
+
+		return false;
+	}
+}
@@ -31,10 +31,38 @@ public class ConnectionContainer
 	private String serverCodeName;
 	private String clientCodeName;
 
+	// Version of the binary framing negotiated with the server by the command
+	// 'Handshake', or 0 if the end of data mark is to be used
+	private int framingVersion = 0;
+
+	// Compression codec negotiated with the server by the command 'Handshake',
+	// or null if frames are not compressed
+	private String compressionCodec = null;
+
+	// Cipher for the commands of the session, with the session key sent by
+	// the server on the command 'CreateSession', or null if commands are not
+	// encrypted
+	private volatile SessionCipher sessionCipher = null;
+
+	// Ticket the server issued on the command 'CreateSession' in order to
+	// resume the session later on without creating a new one, or null if the
+	// server doesn't issue tickets, and flag if the ticket is to be sent along
+	// with the next command
+	private volatile String resumptionTicket = null;
+	private volatile boolean resumptionPending = false;
+
 	// Processing
 	private boolean initialized = false;
 	private boolean error = false;
 
+	// Pool of live socket connections to the server, kept open for further
+	// commands (keep-alive)
+	private ConnectionPool connectionPool = null;
+
+	// Connection to the server shared by several commands at the same time
+	// (multiplexing)
+	private MultiplexedConnection multiplexedConnection = null;
+
 	/**
 	 * Constructor 1
 	 * 
@@ -99,7 +127,10 @@ public class ConnectionContainer
 	 * Establish a connection by executing the commands 'CreateSession' and
 	 * 'Handshake', if not done yet for the current connection container.
 	 * <p>
-	 * If the connection already is established nothing is executed.
+	 * If the connection already is established nothing is executed. If a
+	 * resumption ticket is available, no command is executed either, but the
+	 * ticket is sent along with the next command, in order to resume the last
+	 * session on the server.
 	 * 
 	 * @return Returns <TT>true</TT> if the connection could be established
 	 *         resp. is already established, otherwise <TT>false</TT>.
@@ -141,6 +172,18 @@ public class ConnectionContainer
 					break;
 				}
 
+				// Resume the last session with the resumption ticket instead
+				// of a handshake, the ticket is sent along with the next
+				// command
+				if (this.isResumable(context) == true)
+				{
+					this.resumptionPending = true;
+					this.initialized = true;
+					this.error = false;
+					resultValue = true;
+					break;
+				}
+
 				// First try a handshake to see if the last known connection
 				// works yet
 				if (this.commandHandshake(context) == true)
@@ -205,6 +248,11 @@ public class ConnectionContainer
 		// Process
 		try
 		{
+			// The handshake itself is always sent with the end of data mark,
+			// the framing version is negotiated again
+			this.setFramingVersion(0);
+			this.setCompressionCodec(null);
+
 			// COMMAND Handshake
 			ClientCommand command = new ClientCommandHandshake(context, context.getApplicationManager(), this);
 			ResponseContainer responseContainer = command.execute();
@@ -239,6 +287,11 @@ public class ConnectionContainer
 		// Process
 		try
 		{
+			// A new session gets a new session key, so the command itself is
+			// sent unencrypted
+			this.setSessionCipher(null);
+			this.setResumptionTicket(null);
+
 			// COMMAND Create Session
 			ClientCommand command = new ClientCommandCreateSession(context, context.getApplicationManager(), this);
 			ResponseContainer responseContainer = command.execute();
@@ -277,6 +330,123 @@ public class ConnectionContainer
 		}
 	}
 
+	/**
+	 * Check if the last session can be resumed with a resumption ticket.
+	 * <p>
+	 * If session encryption is enabled, but the session key is not known, e.
+	 * g. after a restart of the client, a new session is created instead,
+	 * because commands would be sent unencrypted otherwise.
+	 * 
+	 * @return Returns <TT>true</TT> if the session can be resumed, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean isResumable(Context context)
+	{
+		if (this.resumptionTicket == null || this.resumptionTicket.length() == 0) return false;
+
+		Boolean enableSessionEncryption = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableSessionEncryption"), false);
+		if (enableSessionEncryption != null && enableSessionEncryption == true && this.sessionCipher == null) return false;
+
+		return true;
+	}
+
+	/**
+	 * Drop the resumption ticket, because the server rejected it, so the
+	 * connection is established by the commands 'Handshake' and
+	 * 'CreateSession' next time.
+	 */
+	public void rejectResumptionTicket()
+	{
+		this.resumptionTicket = null;
+		this.resumptionPending = false;
+		this.initialized = false;
+	}
+
+	/**
+	 * Get the pool of live socket connections to the server. The pool is
+	 * created on first use, according to the configuration properties
+	 * <TT>Application/ConnectionPoolMaximumSize</TT>,
+	 * <TT>Application/ConnectionPoolMaximumIdleTimeInMilliseconds</TT> and
+	 * <TT>Application/ConnectionPoolBorrowTimeoutInMilliseconds</TT>.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @return Returns the connection pool of the connection container.
+	 */
+	public synchronized ConnectionPool getConnectionPool(Context context)
+	{
+		// Pool already created
+		if (this.connectionPool != null) return this.connectionPool;
+
+		// Read configuration
+		Integer maximumSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ConnectionPoolMaximumSize"), false);
+		if (maximumSize == null || maximumSize <= 0) maximumSize = 16;
+
+		Integer maximumIdleTime = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ConnectionPoolMaximumIdleTimeInMilliseconds"), false);
+		if (maximumIdleTime == null || maximumIdleTime <= 0) maximumIdleTime = 20000;
+
+		Integer borrowTimeout = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ConnectionPoolBorrowTimeoutInMilliseconds"), false);
+		if (borrowTimeout == null || borrowTimeout < 0) borrowTimeout = 5000;
+
+		// Create pool
+		this.connectionPool = new ConnectionPool(this.host, this.port, maximumSize, maximumIdleTime, borrowTimeout);
+
+		// Return
+		return this.connectionPool;
+	}
+
+	/**
+	 * Get the connection to the server that is shared by several commands at
+	 * the same time (multiplexing). The connection is opened on first use, and
+	 * opened again if it was closed, or if it was idle longer than the time
+	 * set by the configuration property
+	 * <TT>Application/ConnectionPoolMaximumIdleTimeInMilliseconds</TT>.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @return Returns the multiplexed connection, or <TT>null</TT> if the
+	 *         connection couldn't be opened.
+	 */
+	public synchronized MultiplexedConnection getMultiplexedConnection(Context context)
+	{
+		// Read configuration
+		Integer maximumIdleTime = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ConnectionPoolMaximumIdleTimeInMilliseconds"), false);
+		if (maximumIdleTime == null || maximumIdleTime <= 0) maximumIdleTime = 20000;
+
+		// Connection already opened
+		if (this.multiplexedConnection != null && this.multiplexedConnection.isUsable(maximumIdleTime) == true) return this.multiplexedConnection;
+
+		// Close connection that is idle for too long
+		if (this.multiplexedConnection != null) this.multiplexedConnection.close();
+
+		// Open connection
+		this.multiplexedConnection = MultiplexedConnection.open(context, this);
+
+		// Return
+		return this.multiplexedConnection;
+	}
+
+	/**
+	 * Close all idle socket connections to the server, if there are some.
+	 */
+	public void closeConnection()
+	{
+		ConnectionPool poolToClose = null;
+		MultiplexedConnection multiplexedConnectionToClose = null;
+
+		synchronized (this)
+		{
+			poolToClose = this.connectionPool;
+			multiplexedConnectionToClose = this.multiplexedConnection;
+			this.multiplexedConnection = null;
+		}
+
+		if (poolToClose != null) poolToClose.close();
+		if (multiplexedConnectionToClose != null) multiplexedConnectionToClose.close();
+	}
+
 	/**
 	 * Check if all parameters are set to establish a connection.
 	 * 
@@ -451,6 +621,86 @@ public class ConnectionContainer
 		return clientCodeName;
 	}
 
+	/**
+	 * Getter
+	 */
+	public int getFramingVersion()
+	{
+		return framingVersion;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setFramingVersion(int framingVersion)
+	{
+		this.framingVersion = framingVersion;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getCompressionCodec()
+	{
+		return compressionCodec;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setCompressionCodec(String compressionCodec)
+	{
+		this.compressionCodec = compressionCodec;
+	}
+
+	/**
+	 * Getter
+	 */
+	public SessionCipher getSessionCipher()
+	{
+		return sessionCipher;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setSessionCipher(SessionCipher sessionCipher)
+	{
+		this.sessionCipher = sessionCipher;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getResumptionTicket()
+	{
+		return resumptionTicket;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setResumptionTicket(String resumptionTicket)
+	{
+		this.resumptionTicket = resumptionTicket;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isResumptionPending()
+	{
+		return resumptionPending;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setResumptionPending(boolean resumptionPending)
+	{
+		this.resumptionPending = resumptionPending;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -471,6 +721,11 @@ public class ConnectionContainer
 		if (this.getSessionIdentifier() != null) outputString += "Session identifier: '" + this.getSessionIdentifier() + "'\n";
 		outputString += "Is initialized: '" + String.valueOf(this.isInitialized()) + "'\n";
 		outputString += "Is error: '" + String.valueOf(this.isError()) + "'\n";
+		outputString += "Framing version: '" + String.valueOf(this.getFramingVersion()) + "'\n";
+		if (this.getCompressionCodec() != null) outputString += "Compression codec: '" + this.getCompressionCodec() + "'\n";
+		outputString += "Session encryption: '" + String.valueOf(this.getSessionCipher() != null) + "'\n";
+		outputString += "Resumption ticket: '" + String.valueOf(this.getResumptionTicket() != null) + "'\n";
+		if (this.connectionPool != null) outputString += this.connectionPool.toString() + "\n";
 		outputString += "----------" + "\n";
 
 		// End of output string
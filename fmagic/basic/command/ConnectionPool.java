@@ -0,0 +1,313 @@
+package fmagic.basic.command;
+
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class implements a bounded pool of reusable socket connections to one
+ * and the same application server, described by a
+ * <TT>ConnectionContainer</TT>.
+ * <p>
+ * A command borrows a connection, uses it for one request/response exchange
+ * and gives it back to the pool. Idle connections are checked before reuse,
+ * and connections that were idle longer than the maximum idle time are closed
+ * (eviction). If all connections are borrowed, the command waits up to the
+ * borrow timeout for a connection to be given back.
+ * <p>
+ * The pool is used only if keep-alive connections are enabled (see
+ * configuration property <TT>Application/EnableKeepAlive</TT>).
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 30.06.2013 - Created
+ */
+public class ConnectionPool
+{
+	// Connection data
+	private final String host;
+	private final int port;
+
+	// Pool settings
+	private final int maximumSize;
+	private final int maximumIdleTimeInMilliseconds;
+	private final int borrowTimeoutInMilliseconds;
+
+	// Permits for borrowed connections
+	private final Semaphore permits;
+
+	// Idle connections, the most recently used connection first
+	private final LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+
+	/**
+	 * Connection that is kept in the pool while it is not used.
+	 */
+	private static class IdleConnection
+	{
+		private final SocketHandler socketHandler;
+		private final long idleSince;
+
+		private IdleConnection(SocketHandler socketHandler)
+		{
+			this.socketHandler = socketHandler;
+			this.idleSince = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param host
+	 *            Host name of the application server.
+	 * 
+	 * @param port
+	 *            Port number of the application server.
+	 * 
+	 * @param maximumSize
+	 *            Maximum number of connections, borrowed and idle.
+	 * 
+	 * @param maximumIdleTimeInMilliseconds
+	 *            Time after that an idle connection is closed.
+	 * 
+	 * @param borrowTimeoutInMilliseconds
+	 *            Maximum time to wait for a connection if all connections are
+	 *            borrowed.
+	 */
+	public ConnectionPool(String host, int port, int maximumSize,
+			int maximumIdleTimeInMilliseconds, int borrowTimeoutInMilliseconds)
+	{
+		this.host = host;
+		this.port = port;
+		this.maximumSize = maximumSize;
+		this.maximumIdleTimeInMilliseconds = maximumIdleTimeInMilliseconds;
+		this.borrowTimeoutInMilliseconds = borrowTimeoutInMilliseconds;
+		this.permits = new Semaphore(maximumSize, true);
+	}
+
+	/**
+	 * Borrow a socket connection from the pool.
+	 * <p>
+	 * An idle connection is reused if it is still alive, otherwise a new
+	 * connection is opened. Each borrowed connection has to be given back by
+	 * <TT>returnSocketHandler()</TT>.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param socketTimeoutInMilliseconds
+	 *            Time out time for reading and writing in milliseconds.
+	 * 
+	 * @return Returns the borrowed connection, or <TT>null</TT> if no
+	 *         connection was available within the borrow timeout or if the
+	 *         connection couldn't be opened.
+	 */
+	public SocketHandler borrowSocketHandler(Context context, int socketTimeoutInMilliseconds)
+	{
+		return this.borrowSocketHandler(context, socketTimeoutInMilliseconds, true);
+	}
+
+	/**
+	 * Borrow a socket connection from the pool.
+	 * <p>
+	 * Each borrowed connection has to be given back by
+	 * <TT>returnSocketHandler()</TT>.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param socketTimeoutInMilliseconds
+	 *            Time out time for reading and writing in milliseconds.
+	 * 
+	 * @param reuseIdleConnection
+	 *            Set to <TT>true</TT> if an idle connection may be reused, or
+	 *            <TT>false</TT> if a new connection is to be opened in any
+	 *            case.
+	 * 
+	 * @return Returns the borrowed connection, or <TT>null</TT> if no
+	 *         connection was available within the borrow timeout or if the
+	 *         connection couldn't be opened.
+	 */
+	public SocketHandler borrowSocketHandler(Context context, int socketTimeoutInMilliseconds, boolean reuseIdleConnection)
+	{
+		// Wait for a free connection
+		try
+		{
+			if (this.permits.tryAcquire(this.borrowTimeoutInMilliseconds, TimeUnit.MILLISECONDS) == false)
+			{
+				String errorString = "--> No connection available within the borrow timeout";
+				errorString += "\n--> Host '" + this.host + "', Port '" + String.valueOf(this.port) + "'";
+				errorString += "\n--> " + this.toString();
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, null);
+				return null;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			return null;
+		}
+
+		// Reuse an idle connection
+		SocketHandler socketHandler = null;
+
+		try
+		{
+			while (reuseIdleConnection == true && (socketHandler = this.pollIdleConnection()) != null)
+			{
+				if (socketHandler.isAlive() == true && socketHandler.setTimeoutTimeInMilliseconds(socketTimeoutInMilliseconds) == true)
+				{
+					socketHandler.setReused(true);
+					return socketHandler;
+				}
+
+				// Health check failed
+				socketHandler.closeSocket();
+				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "Idle connection closed by server was removed from connection pool: " + this.toString());
+			}
+
+			// Open a new connection
+			socketHandler = new SocketHandler(context, this.host, this.port, socketTimeoutInMilliseconds);
+			if (socketHandler.openSocket() == true) return socketHandler;
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> Error on borrowing a connection from connection pool";
+			errorString += "\n--> Host '" + this.host + "', Port '" + String.valueOf(this.port) + "'";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, e);
+		}
+
+		// Opening failed
+		this.permits.release();
+		return null;
+	}
+
+	/**
+	 * Give back a borrowed socket connection to the pool.
+	 * 
+	 * @param socketHandler
+	 *            The connection to give back.
+	 * 
+	 * @param reusable
+	 *            Set to <TT>true</TT> if the connection can be used for
+	 *            further requests, or <TT>false</TT> if it has to be closed.
+	 */
+	public void returnSocketHandler(SocketHandler socketHandler, boolean reusable)
+	{
+		if (socketHandler == null) return;
+
+		try
+		{
+			if (reusable == true && socketHandler.isConnected() == true)
+			{
+				synchronized (this.idleConnections)
+				{
+					this.idleConnections.addFirst(new IdleConnection(socketHandler));
+				}
+			}
+			else
+			{
+				socketHandler.closeSocket();
+			}
+		}
+		finally
+		{
+			this.permits.release();
+		}
+
+		// Close connections that are idle for too long
+		this.evictIdleConnections();
+	}
+
+	/**
+	 * Close all idle connections of the pool. Borrowed connections are closed
+	 * when they are given back.
+	 */
+	public void close()
+	{
+		SocketHandler socketHandler = null;
+
+		while ((socketHandler = this.pollIdleConnection()) != null)
+		{
+			socketHandler.closeSocket();
+		}
+	}
+
+	/**
+	 * Remove the most recently used idle connection from the pool.
+	 * 
+	 * @return Returns the idle connection, or <TT>null</TT> if there is no
+	 *         one.
+	 */
+	private SocketHandler pollIdleConnection()
+	{
+		// Close connections that are idle for too long
+		this.evictIdleConnections();
+
+		synchronized (this.idleConnections)
+		{
+			IdleConnection idleConnection = this.idleConnections.pollFirst();
+			if (idleConnection == null) return null;
+			return idleConnection.socketHandler;
+		}
+	}
+
+	/**
+	 * Close all connections that are idle longer than the maximum idle time.
+	 * The oldest connections are at the end of the list.
+	 */
+	private void evictIdleConnections()
+	{
+		long expirationTime = System.currentTimeMillis() - this.maximumIdleTimeInMilliseconds;
+		LinkedList<SocketHandler> expiredConnections = new LinkedList<SocketHandler>();
+
+		synchronized (this.idleConnections)
+		{
+			while (this.idleConnections.size() > 0 && this.idleConnections.peekLast().idleSince < expirationTime)
+			{
+				expiredConnections.add(this.idleConnections.pollLast().socketHandler);
+			}
+		}
+
+		// Close the connections outside of the lock
+		for (SocketHandler socketHandler : expiredConnections)
+		{
+			socketHandler.closeSocket();
+		}
+	}
+
+	/**
+	 * Get the number of idle connections.
+	 * 
+	 * @return Returns the number of idle connections.
+	 */
+	public int getIdleCount()
+	{
+		synchronized (this.idleConnections)
+		{
+			return this.idleConnections.size();
+		}
+	}
+
+	/**
+	 * Get the number of borrowed connections.
+	 * 
+	 * @return Returns the number of borrowed connections.
+	 */
+	public int getBorrowedCount()
+	{
+		return this.maximumSize - this.permits.availablePermits();
+	}
+
+	@Override
+	public String toString()
+	{
+		String outputString = "Connection pool:";
+		outputString += " borrowed '" + String.valueOf(this.getBorrowedCount()) + "'";
+		outputString += ", idle '" + String.valueOf(this.getIdleCount()) + "'";
+		outputString += ", maximum '" + String.valueOf(this.maximumSize) + "'";
+		return outputString;
+	}
+}
@@ -2,6 +2,11 @@ package fmagic.basic.command;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -10,6 +15,10 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -19,6 +28,11 @@ import javax.crypto.Cipher;
 import org.apache.commons.codec.binary.Base64;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import fmagic.basic.context.Context;
 import fmagic.basic.notification.NotificationManager;
@@ -46,7 +60,28 @@ import fmagic.basic.resource.ResourceManager;
  * <LI>1 = JSON format</LI>
  * <LI>2 = ZIPPED string</LI>
  * <LI>3 = ENCRYPTED string</LI>
+ * <LI>4 = ENCRYPTED string, using the session key</LI>
  * </UL>
+ * <p>
+ * RSA is far too slow for encrypting each command, so it is used only on the
+ * command 'CreateSession' to send a random session key to the client. All
+ * further commands of the session are encrypted with this key (see
+ * <TT>SessionCipher</TT>). A command encrypted with the session key is
+ * prefixed by the session identifier, so the server can find the session key
+ * before decrypting. If the client resumes the session with a resumption
+ * ticket, the ticket follows the session identifier, so the server can restore
+ * the session key from the ticket (see <TT>SessionTicketHandler</TT>).
+ * <p>
+ * If binary framing is used, the ZIPPED BASE64 string is replaced by a
+ * compression codec that is negotiated with the server by the command
+ * 'Handshake' and applied as a stream to the payload of the frames (see
+ * <TT>CompressionCodec</TT> and <TT>SocketHandler</TT>).
+ * <p>
+ * All containers are converted by one shared Gson instance, using type
+ * adapters that write and read the containers as a stream. The JSON code is
+ * written directly into the buffer that is sent, and responses can be parsed
+ * directly from the socket data, without creating a string of the whole
+ * JSON code first.
  * 
  * <p>
  * 
@@ -63,10 +98,104 @@ public class EncodingHandler
 	final private String ENCODING_CODE_PLAIN_JSON_ONLY = "1";
 	final private String ENCODING_CODE_ZIPPED = "2";
 	final private String ENCODING_CODE_CRYPTED = "3";
+	final private static String ENCODING_CODE_SESSION_CRYPTED = "4";
+
+	// Separator between session identifier and data encrypted with the session
+	// key
+	final private static char SESSION_IDENTIFIER_SEPARATOR = ':';
+
+	// Separator between session identifier and resumption ticket, if the
+	// client sends a ticket in order to resume the session
+	final private static char RESUMPTION_TICKET_SEPARATOR = '!';
+
+	// Algorithm for exchanging the session key
+	final private static String SESSION_KEY_EXCHANGE_ALGORITHM = "RSA/ECB/OAEPWithSHA-1AndMGF1Padding";
 
 	// CommandManager strings were only be ZIPPED if they are longer than this value.
 	final private int ZIPPING_MINIMUM_LENGTH_OF_STRING = 600;
 
+	// Shared JSON converter, Gson instances are thread-safe
+	private static final Gson GSON = new GsonBuilder().registerTypeAdapter(RequestContainer.class, new RequestContainerTypeAdapter()).registerTypeAdapter(ResponseContainer.class, new ResponseContainerTypeAdapter()).disableHtmlEscaping().create();
+
+	// Types of container lists, for converting batch commands
+	private static final Type REQUEST_CONTAINER_LIST_TYPE = new TypeToken<List<RequestContainer>>()
+	{
+	}.getType();
+	private static final Type RESPONSE_CONTAINER_LIST_TYPE = new TypeToken<List<ResponseContainer>>()
+	{
+	}.getType();
+
+	// Parsed RSA keys, by their BASE64 string, because parsing a key is
+	// expensive. Public keys are sent by the clients, so the caches are
+	// limited, and the keys used least recently are removed.
+	private static final int MAXIMUM_NUMBER_OF_CACHED_KEYS = 1024;
+	private static final KeyCache<PublicKey> publicKeys = new KeyCache<PublicKey>(MAXIMUM_NUMBER_OF_CACHED_KEYS);
+	private static final KeyCache<PrivateKey> privateKeys = new KeyCache<PrivateKey>(MAXIMUM_NUMBER_OF_CACHED_KEYS);
+
+	/**
+	 * Cache of parsed keys with a maximum size, removing the keys used least
+	 * recently.
+	 */
+	private static class KeyCache<T>
+	{
+		private final LinkedHashMap<String, T> keys;
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/**
+		 * Constructor
+		 */
+		private KeyCache(final int maximumSize)
+		{
+			this.keys = new LinkedHashMap<String, T>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, T> eldest)
+				{
+					return this.size() > maximumSize;
+				}
+			};
+		}
+
+		/**
+		 * Get a key, or <TT>null</TT> if it is not cached.
+		 */
+		private T get(String keyBase64String)
+		{
+			this.lock.lock();
+
+			try
+			{
+				return this.keys.get(keyBase64String);
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Put a key into the cache.
+		 */
+		private void put(String keyBase64String, T key)
+		{
+			this.lock.lock();
+
+			try
+			{
+				this.keys.put(keyBase64String, key);
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+		}
+	}
+
+	// Compression codecs supported, in order of preference
+	private static final String[] SUPPORTED_COMPRESSION_CODECS = { CompressionCodecLz.NAME, CompressionCodecDeflate.NAME };
+
 	/**
 	 * Constructor
 	 */
@@ -74,6 +203,113 @@ public class EncodingHandler
 	{
 	}
 
+	/**
+	 * Get a compression codec by its name, in order to compress data.
+	 * 
+	 * @param context
+	 *            Application context, used for reading the compression level.
+	 * 
+	 * @param name
+	 *            The name of the codec.
+	 * 
+	 * @return Returns the compression codec, or <TT>null</TT> if the codec is
+	 *         not supported.
+	 */
+	public static CompressionCodec getCompressionCodec(Context context, String name)
+	{
+		if (name == null) return null;
+
+		// Fast LZ codec
+		if (name.trim().equalsIgnoreCase(CompressionCodecLz.NAME)) return new CompressionCodecLz();
+
+		// Raw DEFLATE at the configured level
+		if (name.trim().equalsIgnoreCase(CompressionCodecDeflate.NAME))
+		{
+			Integer level = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "CompressionLevel"), false);
+			if (level == null) level = 6;
+			return new CompressionCodecDeflate(level);
+		}
+
+		// Codec not supported
+		return null;
+	}
+
+	/**
+	 * Get a compression codec by its identifier, in order to decompress data.
+	 * The compression level doesn't matter for decompressing.
+	 * 
+	 * @param identifier
+	 *            The identifier of the codec, as set in the frame flags.
+	 * 
+	 * @return Returns the compression codec, or <TT>null</TT> if the codec is
+	 *         not supported.
+	 */
+	public static CompressionCodec getCompressionCodec(byte identifier)
+	{
+		if (identifier == CompressionCodecLz.IDENTIFIER) return new CompressionCodecLz();
+		if (identifier == CompressionCodecDeflate.IDENTIFIER) return new CompressionCodecDeflate(6);
+		return null;
+	}
+
+	/**
+	 * Get the compression codecs enabled by configuration and supported by
+	 * this application, in order of preference.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @return Returns a comma separated list of codec names, or an empty
+	 *         string if compression is disabled.
+	 */
+	public static String getEnabledCompressionCodecs(Context context)
+	{
+		String configuredCodecs = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Application", "CompressionCodecs"), false);
+		if (configuredCodecs == null) return "";
+
+		String enabledCodecs = "";
+
+		for (String codec : configuredCodecs.split(","))
+		{
+			for (String supportedCodec : SUPPORTED_COMPRESSION_CODECS)
+			{
+				if (!codec.trim().equalsIgnoreCase(supportedCodec)) continue;
+				if (enabledCodecs.length() > 0) enabledCodecs += ",";
+				enabledCodecs += supportedCodec;
+			}
+		}
+
+		return enabledCodecs;
+	}
+
+	/**
+	 * Choose the compression codec to use, from a list of codecs offered by
+	 * the client. The first codec of the list that is enabled on this
+	 * application is chosen.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param offeredCodecs
+	 *            The comma separated list of codec names offered by the
+	 *            client, in order of preference.
+	 * 
+	 * @return Returns the name of the codec chosen, or an empty string if
+	 *         none of the codecs is enabled.
+	 */
+	public static String negotiateCompressionCodec(Context context, String offeredCodecs)
+	{
+		if (offeredCodecs == null || offeredCodecs.length() == 0) return "";
+
+		String enabledCodecs = "," + EncodingHandler.getEnabledCompressionCodecs(context) + ",";
+
+		for (String codec : offeredCodecs.split(","))
+		{
+			if (codec.trim().length() > 0 && enabledCodecs.contains("," + codec.trim().toLowerCase() + ",")) return codec.trim().toLowerCase();
+		}
+
+		return "";
+	}
+
 	/**
 	 * Convert a client request container (class <TT>RequestContainer</TT>) to
 	 * JSON.
@@ -88,21 +324,28 @@ public class EncodingHandler
 	 *         if an error occurred.
 	 * 
 	 */
-	private String convertRequestContainerToJson(Context context, RequestContainer container)
+	private StringBuffer convertRequestContainerToJson(Context context, RequestContainer container)
 	{
-		String commandJson = null;
-		Gson gson = new Gson();
+		StringBuffer commandJson = null;
 
 		try
 		{
-			commandJson = gson.toJson(container);
-			commandJson = ENCODING_CODE_PLAIN_JSON_ONLY + commandJson;
+			// Write JSON code as a stream into the buffer to send
+			StringWriter commandWriter = new StringWriter(1024);
+			commandWriter.write(ENCODING_CODE_PLAIN_JSON_ONLY);
+
+			JsonWriter jsonWriter = new JsonWriter(commandWriter);
+			GSON.toJson(container, RequestContainer.class, jsonWriter);
+			jsonWriter.flush();
+
+			commandJson = commandWriter.getBuffer();
 			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "JSON command STRING (" + commandJson.length() + ")\n[\n" + commandJson.substring(0, Math.min(commandJson.length() - 1, 1000)) + "\n]");
 		}
 		catch (Exception e)
 		{
 			String errorString = "--> on converting to JSON";
 			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, e);
+			commandJson = null;
 		}
 
 		return commandJson;
@@ -122,22 +365,28 @@ public class EncodingHandler
 	 *         if an error occurred.
 	 * 
 	 */
-	private String convertResponseContainerToJson(Context context, ResponseContainer container)
+	private StringBuffer convertResponseContainerToJson(Context context, ResponseContainer container)
 	{
-		String commandJson = null;
-		Gson gson = new Gson();
+		StringBuffer commandJson = null;
 
 		try
 		{
-			commandJson = gson.toJson(container);
-			commandJson = ENCODING_CODE_PLAIN_JSON_ONLY + commandJson;
+			// Write JSON code as a stream into the buffer to send
+			StringWriter commandWriter = new StringWriter(1024);
+			commandWriter.write(ENCODING_CODE_PLAIN_JSON_ONLY);
 
+			JsonWriter jsonWriter = new JsonWriter(commandWriter);
+			GSON.toJson(container, ResponseContainer.class, jsonWriter);
+			jsonWriter.flush();
+
+			commandJson = commandWriter.getBuffer();
 			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "JSON command STRING (" + commandJson.length() + ")\n[\n" + commandJson.substring(0, Math.min(commandJson.length() - 1, 1000)) + "\n]");
 		}
 		catch (Exception e)
 		{
 			String errorString = "--> on converting to JSON";
 			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, e);
+			commandJson = null;
 		}
 
 		return commandJson;
@@ -257,10 +506,7 @@ public class EncodingHandler
 		try
 		{
 			// Prepare public key
-			byte[] publicKeyByte = Base64.decodeBase64(publicKeyBase64String);
-			X509EncodedKeySpec keySpecification = new X509EncodedKeySpec(publicKeyByte);
-			KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-			PublicKey publicKey = keyFactory.generatePublic(keySpecification);
+			PublicKey publicKey = EncodingHandler.getPublicKey(publicKeyBase64String);
 
 			// Encrypt command
 			Cipher cipher = Cipher.getInstance("RSA");
@@ -319,18 +565,15 @@ public class EncodingHandler
 				String commandToDecrypt = commandToDecryptParameter.substring(1);
 
 				// Prepare private key
-				byte[] privateKeyByte = Base64.decodeBase64(privateKeyBase64String);
-				PKCS8EncodedKeySpec keySpecification = new PKCS8EncodedKeySpec(privateKeyByte);
-				KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-				PrivateKey privateKey = keyFactory.generatePrivate(keySpecification);
+				PrivateKey privateKey = EncodingHandler.getPrivateKey(privateKeyBase64String);
 
 				// Decrypt command
 				Cipher cipher = Cipher.getInstance("RSA");
 				cipher.init(Cipher.DECRYPT_MODE, privateKey);
-				byte[] commandToDecryptByteArray = cipher.doFinal(commandToDecrypt.getBytes());
+				byte[] commandToDecryptByteArray = cipher.doFinal(Base64.decodeBase64(commandToDecrypt));
 
 				// Set result string
-				commandDecrypted = Base64.encodeBase64String(commandToDecryptByteArray);
+				commandDecrypted = new String(commandToDecryptByteArray);
 
 				// Logging
 				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "DECRYPTED BASE64 command (" + commandDecrypted.length() + ")\n[\n" + commandDecrypted.substring(0, Math.min(commandDecrypted.length() - 1, 20)) + "\n]");
@@ -350,6 +593,318 @@ public class EncodingHandler
 		return commandDecrypted;
 	}
 
+	/**
+	 * ENCRYPTING a command string with the session key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandToEncrypt
+	 *            The string to ENCRYPT.
+	 * 
+	 * @param sessionIdentifier
+	 *            The identifier of the client session, set as prefix.
+	 * 
+	 * @param resumptionTicket
+	 *            The resumption ticket to be set after the session identifier,
+	 *            or <TT>null</TT> if no ticket is to be sent.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session.
+	 * 
+	 * @return Returns the ENCRYPTED code of the command string, or
+	 *         <TT>null</TT> if an error occurred.
+	 */
+	private String convertSessionEncrypt(Context context, CharSequence commandToEncrypt, String sessionIdentifier, String resumptionTicket, SessionCipher sessionCipher)
+	{
+		String commandEncrypted = null;
+
+		try
+		{
+			// Encrypt command
+			String sessionIdentifierNormalized = sessionIdentifier == null ? "" : sessionIdentifier.trim();
+			if (resumptionTicket != null && resumptionTicket.length() > 0) sessionIdentifierNormalized += RESUMPTION_TICKET_SEPARATOR + resumptionTicket;
+			commandEncrypted = ENCODING_CODE_SESSION_CRYPTED + sessionIdentifierNormalized + SESSION_IDENTIFIER_SEPARATOR + sessionCipher.encrypt(commandToEncrypt);
+
+			// Logging
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "SESSION ENCRYPTED command BASE64 (" + commandEncrypted.length() + ")\n[\n" + commandEncrypted.substring(0, Math.min(commandEncrypted.length() - 1, 20)) + "\n]");
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> on ENCRYPTING the container with the session key";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, e);
+			commandEncrypted = null;
+		}
+
+		return commandEncrypted;
+	}
+
+	/**
+	 * DECRYPTING a command string with the session key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandToDecryptParameter
+	 *            The string to DECRYPT.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session, or <TT>null</TT> if no
+	 *            session key is known.
+	 * 
+	 * @return Returns the DECRYPTED code of the command string, or the
+	 *         original string if it is not encrypted with the session key, or
+	 *         <TT>null</TT> if an error occurred.
+	 */
+	private String convertSessionDecrypt(Context context, String commandToDecryptParameter, SessionCipher sessionCipher)
+	{
+		// Validate parameter
+		if (commandToDecryptParameter == null) return null;
+
+		// Copy the command string only, because it is NOT encrypted with the
+		// session key
+		if (!commandToDecryptParameter.startsWith(ENCODING_CODE_SESSION_CRYPTED)) return commandToDecryptParameter;
+
+		// DECRYPT command
+		String commandDecrypted = null;
+
+		try
+		{
+			// Session key is not known
+			if (sessionCipher == null)
+			{
+				String errorString = "--> on DECRYPTING the container with the session key";
+				errorString += "\n--> Session key is not known";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, null);
+				return null;
+			}
+
+			// Cut session identifier
+			int separatorPosition = commandToDecryptParameter.indexOf(SESSION_IDENTIFIER_SEPARATOR);
+			if (separatorPosition < 0) throw new GeneralSecurityException("Missing session identifier");
+
+			// Decrypt command
+			commandDecrypted = sessionCipher.decrypt(commandToDecryptParameter.substring(separatorPosition + 1));
+
+			// Logging
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "SESSION DECRYPTED command (" + commandDecrypted.length() + ")\n[\n" + commandDecrypted.substring(0, Math.min(commandDecrypted.length() - 1, 20)) + "\n]");
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> on DECRYPTING the container with the session key";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, e);
+			commandDecrypted = null;
+		}
+
+		return commandDecrypted;
+	}
+
+	/**
+	 * Get the identifier of the client session a command string is encrypted
+	 * for, in order to find the session key.
+	 * 
+	 * @param commandToDecrypt
+	 *            The command string to check.
+	 * 
+	 * @return Returns the session identifier, or <TT>null</TT> if the command
+	 *         string is not encrypted with a session key.
+	 */
+	public static String getSessionIdentifier(String commandToDecrypt)
+	{
+		if (commandToDecrypt == null || !commandToDecrypt.startsWith(ENCODING_CODE_SESSION_CRYPTED)) return null;
+
+		int separatorPosition = commandToDecrypt.indexOf(SESSION_IDENTIFIER_SEPARATOR);
+		if (separatorPosition < 0) return null;
+
+		// Cut resumption ticket
+		int ticketPosition = commandToDecrypt.indexOf(RESUMPTION_TICKET_SEPARATOR);
+		if (ticketPosition >= 0 && ticketPosition < separatorPosition) separatorPosition = ticketPosition;
+
+		return commandToDecrypt.substring(ENCODING_CODE_SESSION_CRYPTED.length(), separatorPosition);
+	}
+
+	/**
+	 * Get the resumption ticket a client sent along with a command string
+	 * encrypted with a session key, in order to resume its session.
+	 * 
+	 * @param commandToDecrypt
+	 *            The command string to check.
+	 * 
+	 * @return Returns the resumption ticket, or <TT>null</TT> if the command
+	 *         string is not encrypted with a session key or contains no
+	 *         ticket.
+	 */
+	public static String getResumptionTicket(String commandToDecrypt)
+	{
+		if (commandToDecrypt == null || !commandToDecrypt.startsWith(ENCODING_CODE_SESSION_CRYPTED)) return null;
+
+		int separatorPosition = commandToDecrypt.indexOf(SESSION_IDENTIFIER_SEPARATOR);
+		if (separatorPosition < 0) return null;
+
+		int ticketPosition = commandToDecrypt.indexOf(RESUMPTION_TICKET_SEPARATOR);
+		if (ticketPosition < 0 || ticketPosition > separatorPosition) return null;
+
+		return commandToDecrypt.substring(ticketPosition + 1, separatorPosition);
+	}
+
+	/**
+	 * Encrypt a new session key with the public key of the client, in order to
+	 * send it to the client.
+	 * 
+	 * @param sessionKey
+	 *            The session key to send.
+	 * 
+	 * @param publicKeyBase64String
+	 *            The public key of the client, as BASE64 string.
+	 * 
+	 * @return Returns the encrypted session key as BASE64 string.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If an error occurred on encrypting.
+	 */
+	public static String encryptSessionKey(byte[] sessionKey, String publicKeyBase64String) throws GeneralSecurityException
+	{
+		Cipher cipher = Cipher.getInstance(SESSION_KEY_EXCHANGE_ALGORITHM);
+		cipher.init(Cipher.ENCRYPT_MODE, EncodingHandler.getPublicKey(publicKeyBase64String));
+		return Base64.encodeBase64String(cipher.doFinal(sessionKey));
+	}
+
+	/**
+	 * Decrypt a session key sent by the server, using the private key of the
+	 * client.
+	 * 
+	 * @param sessionKeyEncrypted
+	 *            The encrypted session key, as BASE64 string.
+	 * 
+	 * @param privateKeyBase64String
+	 *            The private key of the client, as BASE64 string.
+	 * 
+	 * @return Returns the session key.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If an error occurred on decrypting.
+	 */
+	public static byte[] decryptSessionKey(String sessionKeyEncrypted, String privateKeyBase64String) throws GeneralSecurityException
+	{
+		Cipher cipher = Cipher.getInstance(SESSION_KEY_EXCHANGE_ALGORITHM);
+		cipher.init(Cipher.DECRYPT_MODE, EncodingHandler.getPrivateKey(privateKeyBase64String));
+		return cipher.doFinal(Base64.decodeBase64(sessionKeyEncrypted));
+	}
+
+	/**
+	 * Convert a list of request containers to a JSON string, e. g. in order to
+	 * send them as parameter of a batch command.
+	 * 
+	 * @param containers
+	 *            The request containers to convert.
+	 * 
+	 * @return Returns the JSON string.
+	 */
+	public static String convertRequestContainerListToJson(List<RequestContainer> containers)
+	{
+		return GSON.toJson(containers, REQUEST_CONTAINER_LIST_TYPE);
+	}
+
+	/**
+	 * Convert a JSON string to a list of request containers.
+	 * 
+	 * @param json
+	 *            The JSON string to convert.
+	 * 
+	 * @return Returns the list of request containers, or <TT>null</TT> if the
+	 *         JSON string is empty.
+	 * 
+	 * @throws JsonParseException
+	 *             If the JSON string is invalid.
+	 */
+	public static List<RequestContainer> convertJsonToRequestContainerList(String json)
+	{
+		return GSON.fromJson(json, REQUEST_CONTAINER_LIST_TYPE);
+	}
+
+	/**
+	 * Convert a list of response containers to a JSON string, e. g. in order
+	 * to send them as result of a batch command.
+	 * 
+	 * @param containers
+	 *            The response containers to convert.
+	 * 
+	 * @return Returns the JSON string.
+	 */
+	public static String convertResponseContainerListToJson(List<ResponseContainer> containers)
+	{
+		return GSON.toJson(containers, RESPONSE_CONTAINER_LIST_TYPE);
+	}
+
+	/**
+	 * Convert a JSON string to a list of response containers.
+	 * 
+	 * @param json
+	 *            The JSON string to convert.
+	 * 
+	 * @return Returns the list of response containers, or <TT>null</TT> if the
+	 *         JSON string is empty.
+	 * 
+	 * @throws JsonParseException
+	 *             If the JSON string is invalid.
+	 */
+	public static List<ResponseContainer> convertJsonToResponseContainerList(String json)
+	{
+		return GSON.fromJson(json, RESPONSE_CONTAINER_LIST_TYPE);
+	}
+
+	/**
+	 * Get a public key object from its BASE64 string. Keys are parsed only
+	 * once and then taken from the cache.
+	 * 
+	 * @param publicKeyBase64String
+	 *            The public key as BASE64 string.
+	 * 
+	 * @return Returns the public key object.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If the key is invalid.
+	 */
+	private static PublicKey getPublicKey(String publicKeyBase64String) throws GeneralSecurityException
+	{
+		if (publicKeyBase64String == null) throw new GeneralSecurityException("Public key is not set");
+
+		PublicKey publicKey = publicKeys.get(publicKeyBase64String);
+		if (publicKey != null) return publicKey;
+
+		X509EncodedKeySpec keySpecification = new X509EncodedKeySpec(Base64.decodeBase64(publicKeyBase64String));
+		publicKey = KeyFactory.getInstance("RSA").generatePublic(keySpecification);
+		publicKeys.put(publicKeyBase64String, publicKey);
+
+		return publicKey;
+	}
+
+	/**
+	 * Get a private key object from its BASE64 string. Keys are parsed only
+	 * once and then taken from the cache.
+	 * 
+	 * @param privateKeyBase64String
+	 *            The private key as BASE64 string.
+	 * 
+	 * @return Returns the private key object.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If the key is invalid.
+	 */
+	private static PrivateKey getPrivateKey(String privateKeyBase64String) throws GeneralSecurityException
+	{
+		if (privateKeyBase64String == null) throw new GeneralSecurityException("Private key is not set");
+
+		PrivateKey privateKey = privateKeys.get(privateKeyBase64String);
+		if (privateKey != null) return privateKey;
+
+		PKCS8EncodedKeySpec keySpecification = new PKCS8EncodedKeySpec(Base64.decodeBase64(privateKeyBase64String));
+		privateKey = KeyFactory.getInstance("RSA").generatePrivate(keySpecification);
+		privateKeys.put(privateKeyBase64String, privateKey);
+
+		return privateKey;
+	}
+
 	/**
 	 * UNZIPPING a command string.
 	 * 
@@ -445,14 +1000,15 @@ public class EncodingHandler
 	private RequestContainer convertJsonToRequestContainer(Context context, String commandJson)
 	{
 		RequestContainer container = null;
-		Gson gson = new Gson();
 
 		try
 		{
 			// CONVERT the command string
 			if (commandJson.startsWith(ENCODING_CODE_PLAIN_JSON_ONLY))
 			{
-				container = gson.fromJson(commandJson.substring(1), RequestContainer.class);
+				Reader commandReader = new StringReader(commandJson);
+				commandReader.skip(1);
+				container = GSON.fromJson(new JsonReader(commandReader), RequestContainer.class);
 
 				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "JSON command STRING (" + commandJson.length() + ")\n[\n" + commandJson.substring(0, Math.min(commandJson.length() - 1, 1000)) + "\n]");
 			}
@@ -489,14 +1045,15 @@ public class EncodingHandler
 	private ResponseContainer convertJsonToResponseContainer(Context context, String commandJson)
 	{
 		ResponseContainer container = null;
-		Gson gson = new Gson();
 
 		try
 		{
 			// CONVERT the command string
 			if (commandJson.startsWith(ENCODING_CODE_PLAIN_JSON_ONLY))
 			{
-				container = gson.fromJson(commandJson.substring(1), ResponseContainer.class);
+				Reader commandReader = new StringReader(commandJson);
+				commandReader.skip(1);
+				container = GSON.fromJson(new JsonReader(commandReader), ResponseContainer.class);
 
 				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "JSON command STRING (" + commandJson.length() + ")\n[\n" + commandJson.substring(0, Math.min(commandJson.length() - 1, 1000)) + "\n]");
 			}
@@ -538,11 +1095,14 @@ public class EncodingHandler
 	public StringBuffer encodeRequestContainer(Context context, RequestContainer container, boolean doZipping, boolean doEncrypting, String serverPublicKey)
 	{
 		// Convert to JSON
-		String commandJson = this.convertRequestContainerToJson(context, container);
+		StringBuffer commandJson = this.convertRequestContainerToJson(context, container);
 		if (commandJson == null) return null;
 
+		// Send the JSON buffer as it is, if there is nothing else to do
+		if (doZipping == false && doEncrypting == false) return commandJson;
+
 		// ZIP command
-		String commandZipped = this.convertZip(context, commandJson, doZipping);
+		String commandZipped = this.convertZip(context, commandJson.toString(), doZipping);
 		if (commandZipped == null) return null;
 
 		// ENCRYPT command
@@ -568,7 +1128,33 @@ public class EncodingHandler
 	 */
 	public ResponseContainer decodeResponseContainer(Context context, String commandToDecrypt, String clientPrivateKey)
 	{
-		String commandDecrypted = this.convertDecrypt(context, commandToDecrypt, clientPrivateKey);
+		return this.decodeResponseContainer(context, commandToDecrypt, clientPrivateKey, null);
+	}
+
+	/**
+	 * Decode a server response container (class <TT>ResponseContainer</TT>)
+	 * that might be encrypted with the session key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandToDecrypt
+	 *            The string to be converted to a response container.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session, or <TT>null</TT> if no
+	 *            session key is known.
+	 * 
+	 * @return Returns the resulting <TT>ResponseContainer</TT> object, or
+	 *         <TT>null</TT> if an error occurred.
+	 * 
+	 */
+	public ResponseContainer decodeResponseContainer(Context context, String commandToDecrypt, String clientPrivateKey, SessionCipher sessionCipher)
+	{
+		String commandSessionDecrypted = this.convertSessionDecrypt(context, commandToDecrypt, sessionCipher);
+		if (commandSessionDecrypted == null) return null;
+
+		String commandDecrypted = this.convertDecrypt(context, commandSessionDecrypted, clientPrivateKey);
 		if (commandDecrypted == null) return null;
 
 		String commandUnzipped = this.convertUnzip(context, commandDecrypted);
@@ -580,6 +1166,89 @@ public class EncodingHandler
 		return responseContainer;
 	}
 
+	/**
+	 * Decode a server response container (class <TT>ResponseContainer</TT>)
+	 * from a stream of characters.
+	 * <p>
+	 * Plain JSON code is parsed incrementally while it is read, so no string
+	 * of the whole JSON code is created. ZIPPED or ENCRYPTED data are read
+	 * completely and decoded as a string.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandReader
+	 *            The reader that provides the encoded response container.
+	 * 
+	 * @return Returns the resulting <TT>ResponseContainer</TT> object, or
+	 *         <TT>null</TT> if an error occurred.
+	 * 
+	 */
+	public ResponseContainer decodeResponseContainer(Context context, Reader commandReader, String clientPrivateKey)
+	{
+		return this.decodeResponseContainer(context, commandReader, clientPrivateKey, null);
+	}
+
+	/**
+	 * Decode a server response container (class <TT>ResponseContainer</TT>)
+	 * from a stream of characters, that might be encrypted with the session
+	 * key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandReader
+	 *            The reader that provides the encoded response container.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session, or <TT>null</TT> if no
+	 *            session key is known.
+	 * 
+	 * @return Returns the resulting <TT>ResponseContainer</TT> object, or
+	 *         <TT>null</TT> if an error occurred.
+	 * 
+	 */
+	public ResponseContainer decodeResponseContainer(Context context, Reader commandReader, String clientPrivateKey, SessionCipher sessionCipher)
+	{
+		if (commandReader == null) return null;
+
+		try
+		{
+			// Read encoding code
+			int encodingCode = commandReader.read();
+			if (encodingCode == -1) return null;
+
+			// Parse plain JSON code incrementally
+			if (ENCODING_CODE_PLAIN_JSON_ONLY.charAt(0) == (char) encodingCode)
+			{
+				ResponseContainer container = GSON.fromJson(new JsonReader(commandReader), ResponseContainer.class);
+				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.CODE, "JSON command STREAM parsed");
+				return container;
+			}
+
+			// Read ZIPPED or ENCRYPTED string completely, including strings
+			// encrypted with the session key
+			StringBuilder commandToDecrypt = new StringBuilder();
+			commandToDecrypt.append((char) encodingCode);
+
+			char[] characters = new char[8192];
+			int characterCount = 0;
+
+			while ((characterCount = commandReader.read(characters)) != -1)
+			{
+				commandToDecrypt.append(characters, 0, characterCount);
+			}
+
+			return this.decodeResponseContainer(context, commandToDecrypt.toString(), clientPrivateKey, sessionCipher);
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> on converting from JSON";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, e);
+			return null;
+		}
+	}
+
 	/**
 	 * Decode a client request container (class <TT>RequestContainer</TT>) .
 	 * 
@@ -595,7 +1264,37 @@ public class EncodingHandler
 	 */
 	public RequestContainer decodeRequestContainer(Context context, String commandToDecrypt, String serverPrivateKey)
 	{
-		String commandDecrypted = this.convertDecrypt(context, commandToDecrypt, serverPrivateKey);
+		return this.decodeRequestContainer(context, commandToDecrypt, serverPrivateKey, null);
+	}
+
+	/**
+	 * Decode a client request container (class <TT>RequestContainer</TT>) that
+	 * might be encrypted with the session key.
+	 * <p>
+	 * If the request was encrypted with the session key, the cipher is set to
+	 * the request container, in order to encrypt the response the same way.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandToDecrypt
+	 *            The string to be converted to a request container.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session named by the command string
+	 *            (see <TT>getSessionIdentifier()</TT>), or <TT>null</TT> if no
+	 *            session key is known.
+	 * 
+	 * @return Returns the resulting <TT>RequestContainer</TT> object, or
+	 *         <TT>null</TT> if an error occurred.
+	 * 
+	 */
+	public RequestContainer decodeRequestContainer(Context context, String commandToDecrypt, String serverPrivateKey, SessionCipher sessionCipher)
+	{
+		String commandSessionDecrypted = this.convertSessionDecrypt(context, commandToDecrypt, sessionCipher);
+		if (commandSessionDecrypted == null) return null;
+
+		String commandDecrypted = this.convertDecrypt(context, commandSessionDecrypted, serverPrivateKey);
 		if (commandDecrypted == null) return null;
 
 		String commandUnzipped = this.convertUnzip(context, commandDecrypted);
@@ -604,6 +1303,22 @@ public class EncodingHandler
 		RequestContainer requestContainer = this.convertJsonToRequestContainer(context, commandUnzipped);
 		if (requestContainer == null) return null;
 
+		// The session key must belong to the session of the request
+		String sessionIdentifier = EncodingHandler.getSessionIdentifier(commandToDecrypt);
+
+		if (sessionIdentifier != null)
+		{
+			if (requestContainer.getClientSessionIdentifier() == null || !requestContainer.getClientSessionIdentifier().trim().equals(sessionIdentifier))
+			{
+				String errorString = "--> on DECRYPTING the container with the session key";
+				errorString += "\n--> Session identifier of the request '" + requestContainer.getClientSessionIdentifier() + "' differs from '" + sessionIdentifier + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Encoding", "ErrorOnEncodingCommandContainer"), errorString, null);
+				return null;
+			}
+
+			requestContainer.setSessionCipher(sessionCipher);
+		}
+
 		return requestContainer;
 	}
 
@@ -628,10 +1343,12 @@ public class EncodingHandler
 	 */
 	public StringBuffer encodeResponseContainer(Context context, ResponseContainer container, boolean doZipping, boolean doEncrypting, String clientPublicKey)
 	{
-		String commandJson = this.convertResponseContainerToJson(context, container);
+		StringBuffer commandJson = this.convertResponseContainerToJson(context, container);
 		if (commandJson == null) return null;
 
-		String commandZipped = this.convertZip(context, commandJson, doZipping);
+		if (doZipping == false && doEncrypting == false) return commandJson;
+
+		String commandZipped = this.convertZip(context, commandJson.toString(), doZipping);
 		if (commandZipped == null) return null;
 
 		String commandEncrypted = this.convertEncrypt(context, commandZipped, doEncrypting, clientPublicKey);
@@ -676,6 +1393,68 @@ public class EncodingHandler
 		return encodeRequestContainer(context, container, false, false, serverPublicKey);
 	}
 
+	/**
+	 * Encode a client request container (class <TT>RequestContainer</TT>) and
+	 * encrypt it with the session key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param container
+	 *            The request container to encode.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session, or <TT>null</TT> if the
+	 *            command is not to be encrypted.
+	 * 
+	 * @return Returns the encrypted string, or <TT>null</TT> if an error
+	 *         occurred.
+	 * 
+	 */
+	public StringBuffer encodeRequestContainer(Context context, RequestContainer container, SessionCipher sessionCipher)
+	{
+		StringBuffer commandJson = this.convertRequestContainerToJson(context, container);
+		if (commandJson == null) return null;
+
+		if (sessionCipher == null) return commandJson;
+
+		String commandEncrypted = this.convertSessionEncrypt(context, commandJson, container.getClientSessionIdentifier(), container.getResumptionTicket(), sessionCipher);
+		if (commandEncrypted == null) return null;
+
+		return new StringBuffer(commandEncrypted);
+	}
+
+	/**
+	 * Encode a server response container (class <TT>ResponseContainer</TT>)
+	 * and encrypt it with the session key.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param container
+	 *            The response container to encode.
+	 * 
+	 * @param sessionCipher
+	 *            The cipher of the client session, or <TT>null</TT> if the
+	 *            command is not to be encrypted.
+	 * 
+	 * @return Returns the encrypted string, or <TT>null</TT> if an error
+	 *         occurred.
+	 * 
+	 */
+	public StringBuffer encodeResponseContainer(Context context, ResponseContainer container, SessionCipher sessionCipher)
+	{
+		StringBuffer commandJson = this.convertResponseContainerToJson(context, container);
+		if (commandJson == null) return null;
+
+		if (sessionCipher == null) return commandJson;
+
+		String commandEncrypted = this.convertSessionEncrypt(context, commandJson, container.getClientSessionIdentifier(), null, sessionCipher);
+		if (commandEncrypted == null) return null;
+
+		return new StringBuffer(commandEncrypted);
+	}
+
 	/**
 	 * Create a key pair of private and public key.
 	 * 
@@ -0,0 +1,313 @@
+package fmagic.basic.command;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class implements a socket connection to an application server that is
+ * shared by several commands at the same time (multiplexing).
+ * <p>
+ * Each request carries a correlation identifier. The requests are sent without
+ * waiting for the responses of previous requests. The server processes them
+ * in parallel and answers in the order they complete. A reader thread reads
+ * all responses of the connection and hands them over to the waiting commands
+ * by their correlation identifier.
+ * <p>
+ * Multiplexing is used only if keep-alive connections are enabled (see
+ * configuration properties <TT>Application/EnableKeepAlive</TT> and
+ * <TT>Application/EnableMultiplexing</TT>), and binary framing was negotiated
+ * with the server. Text messages are delimited by the end of data mark, that
+ * is checked at the end of each read only, so pipelined messages arriving
+ * within one read would be merged.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 14.07.2013 - Created
+ */
+public class MultiplexedConnection implements Runnable
+{
+	// Context the connection was opened with
+	private final Context context;
+
+	// Connection data
+	private final SocketHandler socketHandler;
+	private final String keyApplicationPrivateKey;
+	private final ConnectionContainer connectionContainer;
+
+	// Requests waiting for their responses, by correlation identifier
+	private final ConcurrentHashMap<String, PendingResponse> pendingResponses = new ConcurrentHashMap<String, PendingResponse>();
+
+	// Counter for creating correlation identifiers
+	private final AtomicLong correlationCounter = new AtomicLong(0);
+
+	// Time the connection was used last
+	private volatile long lastUsedTime = System.currentTimeMillis();
+
+	// Status
+	private volatile boolean closed = false;
+
+	// Error response the server sent without correlation identifier, e. g.
+	// if it rejected a request before decoding it
+	private volatile ResponseContainer connectionErrorResponse = null;
+
+	/**
+	 * Request waiting for its response.
+	 */
+	private static class PendingResponse
+	{
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile ResponseContainer responseContainer = null;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use for the reader thread.
+	 * 
+	 * @param socketHandler
+	 *            The open socket connection to share.
+	 * 
+	 * @param connectionContainer
+	 *            The connection container that describes the server, in order
+	 *            to decode the responses with its keys.
+	 */
+	private MultiplexedConnection(Context context, SocketHandler socketHandler,
+			ConnectionContainer connectionContainer)
+	{
+		this.context = context;
+		this.socketHandler = socketHandler;
+		this.keyApplicationPrivateKey = connectionContainer.getKeyApplicationPrivateKey();
+		this.connectionContainer = connectionContainer;
+	}
+
+	/**
+	 * Open a new multiplexed connection to the server and start its reader
+	 * thread.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param connectionContainer
+	 *            The connection container that describes the server.
+	 * 
+	 * @return Returns the connection, or <TT>null</TT> if the socket couldn't
+	 *         be opened.
+	 */
+	public static MultiplexedConnection open(Context context, ConnectionContainer connectionContainer)
+	{
+		// Binary framing is required
+		if (connectionContainer.getFramingVersion() <= 0) return null;
+
+		// Open socket, the reader thread waits for responses without timeout
+		SocketHandler socketHandler = new SocketHandler(context, connectionContainer.getHost(), connectionContainer.getPort(), 0);
+		if (socketHandler.openSocket() == false) return null;
+
+		// Use binary framing, and compression if it was negotiated with the
+		// server
+		socketHandler.setFramingEnabled(true);
+		socketHandler.setCompressionCodec(EncodingHandler.getCompressionCodec(context, connectionContainer.getCompressionCodec()));
+
+		// Start reader thread
+		MultiplexedConnection connection = new MultiplexedConnection(context, socketHandler, connectionContainer);
+
+		Thread readerThread = new Thread(connection, "MultiplexedConnection-" + connectionContainer.getHost() + ":" + String.valueOf(connectionContainer.getPort()));
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		// Return
+		return connection;
+	}
+
+	/**
+	 * Create a new correlation identifier for a request.
+	 * 
+	 * @return Returns the correlation identifier.
+	 */
+	public String createCorrelationIdentifier()
+	{
+		return String.valueOf(this.correlationCounter.incrementAndGet());
+	}
+
+	/**
+	 * Send a request to the server and wait for its response. Other requests
+	 * can be sent by other threads at the same time.
+	 * 
+	 * @param correlationIdentifier
+	 *            The correlation identifier set in the request container.
+	 * 
+	 * @param requestData
+	 *            The encoded request container.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the media content embedded into the
+	 *            request, or <TT>null</TT> (see <TT>CompressionPolicy</TT>).
+	 * 
+	 * @param timeoutInMilliseconds
+	 *            Maximum time to wait for the response.
+	 * 
+	 * @return Returns the response container, or <TT>null</TT> if the request
+	 *         couldn't be sent, or the response didn't arrive in time.
+	 */
+	public ResponseContainer execute(String correlationIdentifier, StringBuffer requestData, String mediaCategory, int timeoutInMilliseconds)
+	{
+		// Check parameters
+		if (correlationIdentifier == null) return null;
+		if (requestData == null) return null;
+		if (this.closed == true) return null;
+
+		// Register request
+		PendingResponse pendingResponse = new PendingResponse();
+		this.pendingResponses.put(correlationIdentifier, pendingResponse);
+		this.lastUsedTime = System.currentTimeMillis();
+
+		try
+		{
+			// Connection was closed meanwhile
+			if (this.closed == true) return null;
+
+			// Send request
+			if (this.socketHandler.writeData(requestData, mediaCategory) == false)
+			{
+				this.close();
+				return null;
+			}
+
+			// Wait for the response
+			if (pendingResponse.latch.await(timeoutInMilliseconds, TimeUnit.MILLISECONDS) == false)
+			{
+				String errorString = "--> Timeout on waiting for the response of a multiplexed request";
+				errorString += "\n--> Correlation identifier: '" + correlationIdentifier + "'";
+				errorString += "\n--> Timeout value: '" + String.valueOf(timeoutInMilliseconds) + "' Milliseconds";
+				this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Socket", "ErrorOnSocketConnection"), errorString, null);
+				return null;
+			}
+
+			// Return
+			return pendingResponse.responseContainer;
+		}
+		catch (InterruptedException e)
+		{
+			return null;
+		}
+		finally
+		{
+			this.pendingResponses.remove(correlationIdentifier);
+			this.lastUsedTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Reader thread: Read all responses of the connection and hand them over
+	 * to the waiting requests.
+	 */
+	@Override
+	public void run()
+	{
+		EncodingHandler encodingUitility = new EncodingHandler();
+
+		while (this.closed == false)
+		{
+			// Read next response, ends if the connection was closed
+			String responseData = this.socketHandler.readDataAfterIdleTime(Integer.MAX_VALUE);
+			if (responseData == null || responseData.length() == 0) break;
+
+			// Decode response and hand it over to the waiting request
+			try
+			{
+				ResponseContainer responseContainer = encodingUitility.decodeResponseContainer(this.context, responseData, this.keyApplicationPrivateKey, this.connectionContainer.getSessionCipher());
+				if (responseContainer == null) continue;
+
+				// An error response without correlation identifier is handed
+				// over to the requests not answered when the server closes the
+				// connection
+				if (responseContainer.getCorrelationIdentifier() == null)
+				{
+					if (responseContainer.getErrorCode() != null) this.connectionErrorResponse = responseContainer;
+					continue;
+				}
+
+				PendingResponse pendingResponse = this.pendingResponses.get(responseContainer.getCorrelationIdentifier());
+
+				if (pendingResponse == null)
+				{
+					this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Response of a multiplexed request arrived after timeout: " + responseContainer.getCorrelationIdentifier());
+					continue;
+				}
+
+				pendingResponse.responseContainer = responseContainer;
+				pendingResponse.latch.countDown();
+			}
+			catch (Exception e)
+			{
+				String errorString = "--> Error on decoding the response of a multiplexed request";
+				this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnProcessingRequestToServer"), errorString, e);
+			}
+		}
+
+		// Connection was closed
+		this.close();
+	}
+
+	/**
+	 * Close the connection. All requests still waiting for their responses
+	 * are released without response, or with the error response the server
+	 * sent without correlation identifier.
+	 */
+	public synchronized void close()
+	{
+		if (this.closed == true) return;
+		this.closed = true;
+
+		// Close socket
+		this.socketHandler.closeSocket();
+
+		// Release waiting requests
+		for (PendingResponse pendingResponse : this.pendingResponses.values())
+		{
+			if (pendingResponse.responseContainer == null) pendingResponse.responseContainer = this.connectionErrorResponse;
+			pendingResponse.latch.countDown();
+		}
+	}
+
+	/**
+	 * Check if the connection can be used for further requests.
+	 * 
+	 * @param maximumIdleTimeInMilliseconds
+	 *            Time after that an idle connection is not used anymore,
+	 *            because it could be closed by the server meanwhile.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection can be used, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean isUsable(int maximumIdleTimeInMilliseconds)
+	{
+		if (this.closed == true) return false;
+		if (this.pendingResponses.size() > 0) return true;
+		return System.currentTimeMillis() - this.lastUsedTime < maximumIdleTimeInMilliseconds;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * Get the number of requests waiting for their responses.
+	 * 
+	 * @return Returns the number of pending requests.
+	 */
+	public int getPendingCount()
+	{
+		return this.pendingResponses.size();
+	}
+}
@@ -23,6 +23,43 @@ public class RequestContainer
 	final private String clientCodeName;
 	private String clientSessionIdentifier = "";
 
+	// Connection data: Flag if the client wants to keep the connection open
+	// for further requests
+	private boolean keepAlive = false;
+
+	// Connection data: Identifier of the request if several requests are sent
+	// over the same connection without waiting for each response
+	// (multiplexing), otherwise null
+	private String correlationIdentifier = null;
+
+	// Connection data: Flag if raw content frames follow the request, e. g.
+	// the content of a media file to upload
+	private boolean contentFollows = false;
+
+	// Connection data: Flag if the client accepts raw content frames following
+	// the response, e. g. the content of a media file to download
+	private boolean contentAccepted = false;
+
+	// Connection data: Cipher the request was decrypted with, in order to
+	// encrypt the response the same way. It is set on server side only and
+	// never sent.
+	private transient SessionCipher sessionCipher = null;
+
+	// Connection data: Ticket the server issued on creating the session, sent
+	// by the client in order to resume the session if it is unknown on the
+	// server, otherwise null
+	private String resumptionTicket = null;
+
+	// Connection data: Time in milliseconds the client waits for the
+	// response, or 0 if it waits without limit. The server derives the
+	// deadline of the request from it.
+	private int timeoutInMilliseconds = 0;
+
+	// Connection data: Point of time (see System.currentTimeMillis()) the
+	// client stops waiting for the response, or 0 if there is no deadline. It
+	// is set on server side only and never sent.
+	private transient long deadline = 0;
+
 	// CommandManager data
 	final private String commandIdentifier;
 	final private HashMap<String, String> properties;
@@ -160,6 +197,147 @@ public class RequestContainer
 		return clientCodeName;
 	}
 
+	/**
+	 * Getter
+	 */
+	public boolean isKeepAlive()
+	{
+		return keepAlive;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setKeepAlive(boolean keepAlive)
+	{
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getCorrelationIdentifier()
+	{
+		return correlationIdentifier;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setCorrelationIdentifier(String correlationIdentifier)
+	{
+		this.correlationIdentifier = correlationIdentifier;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isContentFollows()
+	{
+		return contentFollows;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setContentFollows(boolean contentFollows)
+	{
+		this.contentFollows = contentFollows;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isContentAccepted()
+	{
+		return contentAccepted;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setContentAccepted(boolean contentAccepted)
+	{
+		this.contentAccepted = contentAccepted;
+	}
+
+	/**
+	 * Getter
+	 */
+	public SessionCipher getSessionCipher()
+	{
+		return sessionCipher;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setSessionCipher(SessionCipher sessionCipher)
+	{
+		this.sessionCipher = sessionCipher;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getResumptionTicket()
+	{
+		return resumptionTicket;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setResumptionTicket(String resumptionTicket)
+	{
+		this.resumptionTicket = resumptionTicket;
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getTimeoutInMilliseconds()
+	{
+		return timeoutInMilliseconds;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setTimeoutInMilliseconds(int timeoutInMilliseconds)
+	{
+		this.timeoutInMilliseconds = Math.max(0, timeoutInMilliseconds);
+	}
+
+	/**
+	 * Start the deadline of the request, derived from the time the client
+	 * waits for the response.
+	 * 
+	 * @param startTime
+	 *            Point of time (see <TT>System.currentTimeMillis()</TT>) the
+	 *            client started waiting, that is the time the request or its
+	 *            content was received completely.
+	 */
+	public void startDeadline(long startTime)
+	{
+		if (this.timeoutInMilliseconds > 0)
+		{
+			this.deadline = startTime + this.timeoutInMilliseconds;
+		}
+		else
+		{
+			this.deadline = 0;
+		}
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -174,6 +352,11 @@ public class RequestContainer
 		outputString += "Client version: " + String.valueOf(clientVersion) + "\n";
 		outputString += "Client code name: " + this.clientCodeName + "\n";
 		outputString += "Client session: " + String.valueOf(clientSessionIdentifier) + "\n";
+		outputString += "Keep alive: " + String.valueOf(keepAlive) + "\n";
+		if (this.correlationIdentifier != null) outputString += "Correlation identifier: " + this.correlationIdentifier + "\n";
+		if (this.contentFollows == true) outputString += "Content follows: " + String.valueOf(this.contentFollows) + "\n";
+		if (this.contentAccepted == true) outputString += "Content accepted: " + String.valueOf(this.contentAccepted) + "\n";
+		if (this.timeoutInMilliseconds > 0) outputString += "Timeout in milliseconds: " + String.valueOf(this.timeoutInMilliseconds) + "\n";
 
 		outputString += "----------" + "\n";
 		outputString += "CommandManager identifier: " + commandIdentifier + "\n";
@@ -0,0 +1,188 @@
+package fmagic.basic.command;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class writes and reads a client request container (class
+ * <TT>RequestContainer</TT>) as JSON, field by field as a stream, without
+ * reflection.
+ * <p>
+ * The JSON format is the same Gson creates by reflection, so both sides of a
+ * connection can use any of them. Fields that are <TT>null</TT> are omitted,
+ * and unknown fields are skipped on reading.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 13.08.2013 - Created
+ */
+public class RequestContainerTypeAdapter extends TypeAdapter<RequestContainer>
+{
+	@Override
+	public void write(JsonWriter writer, RequestContainer container) throws IOException
+	{
+		if (container == null)
+		{
+			writer.nullValue();
+			return;
+		}
+
+		writer.beginObject();
+
+		// Common data
+		RequestContainerTypeAdapter.writeString(writer, "clientApplicationIdentifier", container.getClientApplicationIdentifier());
+		writer.name("clientVersion").value(container.getClientVersion());
+		RequestContainerTypeAdapter.writeString(writer, "clientCodeName", container.getClientCodeName());
+		RequestContainerTypeAdapter.writeString(writer, "clientSessionIdentifier", container.getClientSessionIdentifier());
+
+		// Connection data
+		writer.name("keepAlive").value(container.isKeepAlive());
+		RequestContainerTypeAdapter.writeString(writer, "correlationIdentifier", container.getCorrelationIdentifier());
+		writer.name("contentFollows").value(container.isContentFollows());
+		writer.name("contentAccepted").value(container.isContentAccepted());
+		writer.name("timeoutInMilliseconds").value(container.getTimeoutInMilliseconds());
+		RequestContainerTypeAdapter.writeString(writer, "resumptionTicket", container.getResumptionTicket());
+
+		// Command data
+		RequestContainerTypeAdapter.writeString(writer, "commandIdentifier", container.getCommandIdentifier());
+		RequestContainerTypeAdapter.writeProperties(writer, "properties", container.getProperties());
+
+		writer.endObject();
+	}
+
+	@Override
+	public RequestContainer read(JsonReader reader) throws IOException
+	{
+		if (reader.peek() == JsonToken.NULL)
+		{
+			reader.nextNull();
+			return null;
+		}
+
+		// Read fields
+		String clientApplicationIdentifier = null;
+		int clientVersion = 0;
+		String clientCodeName = null;
+		String clientSessionIdentifier = null;
+		boolean keepAlive = false;
+		String correlationIdentifier = null;
+		boolean contentFollows = false;
+		boolean contentAccepted = false;
+		int timeoutInMilliseconds = 0;
+		String resumptionTicket = null;
+		String commandIdentifier = null;
+		Map<String, String> properties = null;
+
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+
+			if (name.equals("clientApplicationIdentifier")) clientApplicationIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("clientVersion")) clientVersion = reader.nextInt();
+			else if (name.equals("clientCodeName")) clientCodeName = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("clientSessionIdentifier")) clientSessionIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("keepAlive")) keepAlive = reader.nextBoolean();
+			else if (name.equals("correlationIdentifier")) correlationIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("contentFollows")) contentFollows = reader.nextBoolean();
+			else if (name.equals("contentAccepted")) contentAccepted = reader.nextBoolean();
+			else if (name.equals("timeoutInMilliseconds")) timeoutInMilliseconds = reader.nextInt();
+			else if (name.equals("resumptionTicket")) resumptionTicket = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("commandIdentifier")) commandIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("properties")) properties = RequestContainerTypeAdapter.readProperties(reader);
+			else reader.skipValue();
+		}
+
+		reader.endObject();
+
+		// Create container
+		RequestContainer container = new RequestContainer(clientApplicationIdentifier, clientVersion, clientCodeName, commandIdentifier);
+		container.setClientSessionIdentifier(clientSessionIdentifier);
+		container.setKeepAlive(keepAlive);
+		container.setCorrelationIdentifier(correlationIdentifier);
+		container.setContentFollows(contentFollows);
+		container.setContentAccepted(contentAccepted);
+		container.setTimeoutInMilliseconds(timeoutInMilliseconds);
+		container.setResumptionTicket(resumptionTicket);
+		if (properties != null) container.getProperties().putAll(properties);
+
+		// Return
+		return container;
+	}
+
+	/**
+	 * Write a string field, if its value is not <TT>null</TT>.
+	 */
+	static void writeString(JsonWriter writer, String name, String value) throws IOException
+	{
+		if (value == null) return;
+		writer.name(name).value(value);
+	}
+
+	/**
+	 * Read a string value, that might be <TT>null</TT>.
+	 */
+	static String readString(JsonReader reader) throws IOException
+	{
+		if (reader.peek() == JsonToken.NULL)
+		{
+			reader.nextNull();
+			return null;
+		}
+
+		return reader.nextString();
+	}
+
+	/**
+	 * Write a map of properties as JSON object. Properties whose value is
+	 * <TT>null</TT> are omitted.
+	 */
+	static void writeProperties(JsonWriter writer, String name, Map<String, String> properties) throws IOException
+	{
+		if (properties == null) return;
+
+		writer.name(name).beginObject();
+
+		for (Map.Entry<String, String> property : properties.entrySet())
+		{
+			if (property.getKey() == null || property.getValue() == null) continue;
+			writer.name(property.getKey()).value(property.getValue());
+		}
+
+		writer.endObject();
+	}
+
+	/**
+	 * Read a map of properties from a JSON object.
+	 */
+	static Map<String, String> readProperties(JsonReader reader) throws IOException
+	{
+		if (reader.peek() == JsonToken.NULL)
+		{
+			reader.nextNull();
+			return null;
+		}
+
+		Map<String, String> properties = new HashMap<String, String>();
+
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			String value = RequestContainerTypeAdapter.readString(reader);
+			if (value != null) properties.put(name, value);
+		}
+
+		reader.endObject();
+
+		return properties;
+	}
+}
@@ -29,6 +29,18 @@ public class ResponseContainer
 	private String clientSessionIdentifier;
 	private String clientCodeName;
 
+	// Connection data: Flag if the server keeps the connection open for
+	// further requests
+	private boolean keepAlive = false;
+
+	// Connection data: Identifier of the request this response belongs to
+	// (multiplexing), otherwise null
+	private String correlationIdentifier = null;
+
+	// Connection data: Flag if raw content frames follow the response, e. g.
+	// the content of a media file to download
+	private boolean contentFollows = false;
+
 	// CommandManager data
 	final private String commandIdentifier;
 	final private HashMap<String, String> properties;
@@ -212,6 +224,22 @@ public class ResponseContainer
 		this.errorDump = context.getNotificationManager().getDump(context);
 	}
 
+	/**
+	 * Setter, used for decoding the container
+	 */
+	void setErrorDump(String errorDump)
+	{
+		this.errorDump = errorDump;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getErrorDump()
+	{
+		return errorDump;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -238,6 +266,9 @@ public class ResponseContainer
 		if (this.clientSessionIdentifier != null) outputString += "\n" + "Session: " + this.clientSessionIdentifier;
 		if (this.clientCodeName != null) outputString += "\n" + "Client code name (Caller): " + this.clientCodeName;
 		if (this.serverCodeName != null) outputString += "\n" + "Server code name (Remote): " + this.serverCodeName;
+		if (this.keepAlive == true) outputString += "\n" + "Keep alive: " + String.valueOf(this.keepAlive);
+		if (this.correlationIdentifier != null) outputString += "\n" + "Correlation identifier: " + this.correlationIdentifier;
+		if (this.contentFollows == true) outputString += "\n" + "Content follows: " + String.valueOf(this.contentFollows);
 		if (this.commandIdentifier != null) outputString += "\n" + "Command identifier: " + this.commandIdentifier;
 
 		// Properties
@@ -309,6 +340,14 @@ public class ResponseContainer
 		return serverApplicationIdentifier;
 	}
 
+	/**
+	 * Getter
+	 */
+	public String getClientCodeName()
+	{
+		return clientCodeName;
+	}
+
 	/**
 	 * Setter
 	 */
@@ -324,6 +363,54 @@ public class ResponseContainer
 		this.serverCodeName = serverCodeName;
 	}
 
+	/**
+	 * Getter
+	 */
+	public boolean isKeepAlive()
+	{
+		return keepAlive;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setKeepAlive(boolean keepAlive)
+	{
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getCorrelationIdentifier()
+	{
+		return correlationIdentifier;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setCorrelationIdentifier(String correlationIdentifier)
+	{
+		this.correlationIdentifier = correlationIdentifier;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isContentFollows()
+	{
+		return contentFollows;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setContentFollows(boolean contentFollows)
+	{
+		this.contentFollows = contentFollows;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -0,0 +1,121 @@
+package fmagic.basic.command;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class writes and reads a server response container (class
+ * <TT>ResponseContainer</TT>) as JSON, field by field as a stream, without
+ * reflection.
+ * <p>
+ * The JSON format is the same Gson creates by reflection, so both sides of a
+ * connection can use any of them. Fields that are <TT>null</TT> are omitted,
+ * and unknown fields are skipped on reading.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 13.08.2013 - Created
+ */
+public class ResponseContainerTypeAdapter extends TypeAdapter<ResponseContainer>
+{
+	@Override
+	public void write(JsonWriter writer, ResponseContainer container) throws IOException
+	{
+		if (container == null)
+		{
+			writer.nullValue();
+			return;
+		}
+
+		writer.beginObject();
+
+		// Common data
+		RequestContainerTypeAdapter.writeString(writer, "serverApplicationIdentifier", container.getServerApplicationIdentifier());
+		writer.name("serverVersion").value(container.getServerVersion());
+		RequestContainerTypeAdapter.writeString(writer, "serverCodeName", container.getServerCodeName());
+		RequestContainerTypeAdapter.writeString(writer, "clientSessionIdentifier", container.getClientSessionIdentifier());
+		RequestContainerTypeAdapter.writeString(writer, "clientCodeName", container.getClientCodeName());
+
+		// Connection data
+		writer.name("keepAlive").value(container.isKeepAlive());
+		RequestContainerTypeAdapter.writeString(writer, "correlationIdentifier", container.getCorrelationIdentifier());
+		writer.name("contentFollows").value(container.isContentFollows());
+
+		// Command data
+		RequestContainerTypeAdapter.writeString(writer, "commandIdentifier", container.getCommandIdentifier());
+		RequestContainerTypeAdapter.writeProperties(writer, "properties", container.getProperties());
+
+		// Error code and description
+		RequestContainerTypeAdapter.writeString(writer, "errorCode", container.getErrorCode());
+		RequestContainerTypeAdapter.writeString(writer, "errorDump", container.getErrorDump());
+
+		writer.endObject();
+	}
+
+	@Override
+	public ResponseContainer read(JsonReader reader) throws IOException
+	{
+		if (reader.peek() == JsonToken.NULL)
+		{
+			reader.nextNull();
+			return null;
+		}
+
+		// Read fields
+		String serverApplicationIdentifier = null;
+		int serverVersion = 0;
+		String serverCodeName = null;
+		String clientSessionIdentifier = null;
+		String clientCodeName = null;
+		boolean keepAlive = false;
+		String correlationIdentifier = null;
+		boolean contentFollows = false;
+		String commandIdentifier = null;
+		Map<String, String> properties = null;
+		String errorCode = null;
+		String errorDump = null;
+
+		reader.beginObject();
+
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+
+			if (name.equals("serverApplicationIdentifier")) serverApplicationIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("serverVersion")) serverVersion = reader.nextInt();
+			else if (name.equals("serverCodeName")) serverCodeName = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("clientSessionIdentifier")) clientSessionIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("clientCodeName")) clientCodeName = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("keepAlive")) keepAlive = reader.nextBoolean();
+			else if (name.equals("correlationIdentifier")) correlationIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("contentFollows")) contentFollows = reader.nextBoolean();
+			else if (name.equals("commandIdentifier")) commandIdentifier = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("properties")) properties = RequestContainerTypeAdapter.readProperties(reader);
+			else if (name.equals("errorCode")) errorCode = RequestContainerTypeAdapter.readString(reader);
+			else if (name.equals("errorDump")) errorDump = RequestContainerTypeAdapter.readString(reader);
+			else reader.skipValue();
+		}
+
+		reader.endObject();
+
+		// Create container
+		ResponseContainer container = new ResponseContainer(serverApplicationIdentifier, serverVersion, commandIdentifier);
+		container.setServerCodeName(serverCodeName);
+		container.setSession(clientSessionIdentifier);
+		container.setClientCodeName(clientCodeName);
+		container.setKeepAlive(keepAlive);
+		container.setCorrelationIdentifier(correlationIdentifier);
+		container.setContentFollows(contentFollows);
+		if (properties != null) container.getProperties().putAll(properties);
+		container.setErrorCode(errorCode);
+		container.setErrorDump(errorDump);
+
+		// Return
+		return container;
+	}
+}
@@ -0,0 +1,214 @@
+package fmagic.basic.command;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * This class encrypts and decrypts the commands of a client session with a
+ * symmetric session key.
+ * <p>
+ * The session key is a random secret, created by the server on the command
+ * 'CreateSession' and sent to the client encrypted with the public key of the
+ * client. RSA is used only for this exchange, all further commands are
+ * encrypted with AES and authenticated with HMAC:
+ * <OL>
+ * <LI>An AES key and a HMAC key are derived from the session key.</LI>
+ * <LI>Each command is encrypted with AES in CBC mode, using a random
+ * initialization vector.</LI>
+ * <LI>The HMAC of the initialization vector and the encrypted data is appended,
+ * so any modification is detected before decrypting.</LI>
+ * </OL>
+ * The derived keys and the cipher instances are kept for the whole session.
+ * Cipher instances are not thread-safe, so encrypting and decrypting is
+ * synchronized per session.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 14.08.2013 - Created
+ */
+public class SessionCipher
+{
+	// Length of the session key exchanged, in bytes
+	public static final int SESSION_KEY_LENGTH = 32;
+
+	// Algorithms
+	private static final String CIPHER_ALGORITHM = "AES/CBC/PKCS5Padding";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	// Lengths of derived data, in bytes
+	private static final int ENCRYPTION_KEY_LENGTH = 16;
+	private static final int IV_LENGTH = 16;
+	private static final int MAC_LENGTH = 32;
+
+	// Random generator for session keys and initialization vectors
+	private static final SecureRandom secureRandom = new SecureRandom();
+
+	// Derived keys
+	private final SecretKeySpec encryptionKey;
+	private final SecretKeySpec authenticationKey;
+
+	// Cached cipher instances
+	private final Cipher encryptCipher;
+	private final Cipher decryptCipher;
+	private final Mac mac;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param sessionKey
+	 *            The session key exchanged between client and server.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If the algorithms are not available or the session key is
+	 *             invalid.
+	 */
+	public SessionCipher(byte[] sessionKey) throws GeneralSecurityException
+	{
+		// Validate parameter
+		if (sessionKey == null || sessionKey.length != SESSION_KEY_LENGTH) throw new GeneralSecurityException("Invalid session key length");
+
+		// Derive keys
+		byte[] encryptionKeyBytes = new byte[ENCRYPTION_KEY_LENGTH];
+		System.arraycopy(SessionCipher.deriveKey(sessionKey, "encryption"), 0, encryptionKeyBytes, 0, ENCRYPTION_KEY_LENGTH);
+		this.encryptionKey = new SecretKeySpec(encryptionKeyBytes, "AES");
+		this.authenticationKey = new SecretKeySpec(SessionCipher.deriveKey(sessionKey, "authentication"), MAC_ALGORITHM);
+
+		// Create cipher instances
+		this.encryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
+		this.decryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
+		this.mac = Mac.getInstance(MAC_ALGORITHM);
+		this.mac.init(this.authenticationKey);
+	}
+
+	/**
+	 * Create a new random session key.
+	 * 
+	 * @return Returns the session key.
+	 */
+	public static byte[] createSessionKey()
+	{
+		byte[] sessionKey = new byte[SESSION_KEY_LENGTH];
+		secureRandom.nextBytes(sessionKey);
+		return sessionKey;
+	}
+
+	/**
+	 * Derive a key for a specific purpose from the session key.
+	 */
+	private static byte[] deriveKey(byte[] sessionKey, String label) throws GeneralSecurityException
+	{
+		Mac derivingMac = Mac.getInstance(MAC_ALGORITHM);
+		derivingMac.init(new SecretKeySpec(sessionKey, MAC_ALGORITHM));
+
+		try
+		{
+			return derivingMac.doFinal(label.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new GeneralSecurityException(e);
+		}
+	}
+
+	/**
+	 * Encrypt a command string.
+	 * 
+	 * @param plainText
+	 *            The string to encrypt.
+	 * 
+	 * @return Returns the BASE64 string of initialization vector, encrypted
+	 *         data and HMAC.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If an error occurred on encrypting.
+	 */
+	public synchronized String encrypt(CharSequence plainText) throws GeneralSecurityException
+	{
+		try
+		{
+			// Create initialization vector
+			byte[] iv = new byte[IV_LENGTH];
+			secureRandom.nextBytes(iv);
+
+			// Encrypt
+			this.encryptCipher.init(Cipher.ENCRYPT_MODE, this.encryptionKey, new IvParameterSpec(iv));
+			byte[] plainBytes = plainText.toString().getBytes("UTF-8");
+			byte[] encrypted = new byte[IV_LENGTH + this.encryptCipher.getOutputSize(plainBytes.length) + MAC_LENGTH];
+			System.arraycopy(iv, 0, encrypted, 0, IV_LENGTH);
+			int encryptedLength = this.encryptCipher.doFinal(plainBytes, 0, plainBytes.length, encrypted, IV_LENGTH);
+
+			// Authenticate initialization vector and encrypted data
+			this.mac.update(encrypted, 0, IV_LENGTH + encryptedLength);
+			this.mac.doFinal(encrypted, IV_LENGTH + encryptedLength);
+
+			// Return
+			int totalLength = IV_LENGTH + encryptedLength + MAC_LENGTH;
+			if (totalLength == encrypted.length) return Base64.encodeBase64String(encrypted);
+
+			byte[] result = new byte[totalLength];
+			System.arraycopy(encrypted, 0, result, 0, totalLength);
+			return Base64.encodeBase64String(result);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new GeneralSecurityException(e);
+		}
+	}
+
+	/**
+	 * Decrypt a command string.
+	 * 
+	 * @param encryptedText
+	 *            The BASE64 string of initialization vector, encrypted data
+	 *            and HMAC.
+	 * 
+	 * @return Returns the decrypted string.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If the data were modified or an error occurred on
+	 *             decrypting.
+	 */
+	public synchronized String decrypt(String encryptedText) throws GeneralSecurityException
+	{
+		try
+		{
+			// Validate length
+			byte[] encrypted = Base64.decodeBase64(encryptedText);
+			if (encrypted == null || encrypted.length < IV_LENGTH + MAC_LENGTH) throw new GeneralSecurityException("Encrypted data too short");
+
+			int encryptedLength = encrypted.length - IV_LENGTH - MAC_LENGTH;
+
+			// Check HMAC before decrypting
+			this.mac.update(encrypted, 0, IV_LENGTH + encryptedLength);
+			byte[] expectedMac = this.mac.doFinal();
+
+			int difference = 0;
+
+			for (int i = 0; i < MAC_LENGTH; i++)
+			{
+				difference |= expectedMac[i] ^ encrypted[IV_LENGTH + encryptedLength + i];
+			}
+
+			if (difference != 0) throw new GeneralSecurityException("Authentication of encrypted data failed");
+
+			// Decrypt
+			this.decryptCipher.init(Cipher.DECRYPT_MODE, this.encryptionKey, new IvParameterSpec(encrypted, 0, IV_LENGTH));
+			byte[] plainBytes = this.decryptCipher.doFinal(encrypted, IV_LENGTH, encryptedLength);
+
+			// Return
+			return new String(plainBytes, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new GeneralSecurityException(e);
+		}
+	}
+}
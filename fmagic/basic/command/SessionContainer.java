@@ -27,9 +27,14 @@ public class SessionContainer
 	// License key of the current user
 	private String userLicenseKey = null;
 
-	// Date of creation and modification
+	// Cipher for the commands of the session, created by the command
+	// 'CreateSession', or null if commands are not encrypted
+	private volatile SessionCipher sessionCipher = null;
+
+	// Date of creation, and time of the last access (see
+	// System.currentTimeMillis()), updated on each request of the session
 	final private Date creationDate;
-	private Date lastModificationDate;
+	private volatile long lastModificationTime;
 
 	/**
 	 * Constructor
@@ -45,7 +50,31 @@ public class SessionContainer
 		this.clientSessionIdentifier = clientSessionIdentifier;
 		this.keyApplicationPublicKey = clientPublicKey;
 		this.creationDate = new Date();
-		this.lastModificationDate = new Date();
+		this.lastModificationTime = this.creationDate.getTime();
+	}
+
+	/**
+	 * Constructor for restoring a session, e. g. from a snapshot written on
+	 * the last run of the server.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            Session identifier of the client application.
+	 * 
+	 * @param keyApplicationPublicKey
+	 *            Public key of the client application.
+	 * 
+	 * @param creationTime
+	 *            Time of creation (see System.currentTimeMillis()).
+	 * 
+	 * @param lastModificationTime
+	 *            Time of the last access (see System.currentTimeMillis()).
+	 */
+	public SessionContainer(String clientSessionIdentifier, String clientPublicKey, long creationTime, long lastModificationTime)
+	{
+		this.clientSessionIdentifier = clientSessionIdentifier;
+		this.keyApplicationPublicKey = clientPublicKey;
+		this.creationDate = new Date(creationTime);
+		this.lastModificationTime = lastModificationTime;
 	}
 
 	/**
@@ -53,7 +82,7 @@ public class SessionContainer
 	 */
 	public Date getLastModificationDate()
 	{
-		return lastModificationDate;
+		return new Date(this.lastModificationTime);
 	}
 
 	/**
@@ -61,7 +90,23 @@ public class SessionContainer
 	 */
 	public void setLastModificationDate(Date lastModificationDate)
 	{
-		this.lastModificationDate = lastModificationDate;
+		this.lastModificationTime = lastModificationDate.getTime();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getLastModificationTime()
+	{
+		return lastModificationTime;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setLastModificationTime(long lastModificationTime)
+	{
+		this.lastModificationTime = lastModificationTime;
 	}
 
 	/**
@@ -118,5 +163,21 @@ public class SessionContainer
 	public void setUserLicenseKey(String userLicenseKey)
 	{
 		this.userLicenseKey = userLicenseKey;
-	}	
+	}
+
+	/**
+	 * Getter
+	 */
+	public SessionCipher getSessionCipher()
+	{
+		return sessionCipher;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setSessionCipher(SessionCipher sessionCipher)
+	{
+		this.sessionCipher = sessionCipher;
+	}
 }
@@ -1,11 +1,28 @@
 package fmagic.basic.command;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.Writer;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.ReentrantLock;
 
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceManager;
@@ -24,6 +41,27 @@ public class SocketHandler
 	// code instead of <TT>null</TT>.
 	final public String SOCKET_HANDLER_ERROR_CODE_TIMEOUT = "{TIMEOUT}";
 
+	// Binary framing: Each frame starts with a header of 8 bytes, containing
+	// the magic byte, the framing version, flags (2 bytes) and the length of
+	// the payload (4 bytes), followed by the payload coded as "UTF-8". The
+	// magic byte never is the first byte of a text message that ends with the
+	// end of data mark, so both formats can be distinguished.
+	public static final byte FRAME_MAGIC_BYTE = (byte) 0xFB;
+	public static final byte FRAME_VERSION = 1;
+	public static final int FRAME_HEADER_SIZE = 8;
+	public static final Charset FRAME_CHARSET = Charset.forName("UTF-8");
+
+	// Binary framing: Flag of frames that contain raw content following a
+	// request, e. g. the content of a media file to upload. The content ends
+	// with an empty content frame.
+	public static final short FRAME_FLAG_CONTENT = 0x0001;
+
+	// Binary framing: Flag of frames whose payload is compressed. The
+	// identifier of the compression codec is set in the upper byte of the
+	// flags.
+	public static final short FRAME_FLAG_COMPRESSED = 0x0002;
+	public static final int FRAME_FLAG_CODEC_SHIFT = 8;
+
 	// Sets context of server
 	private final Context context;
 
@@ -33,8 +71,37 @@ public class SocketHandler
 
 	// Connection data
 	private Socket clientSocket = null;
-	private BufferedReader bufferedReader = null;
-	private BufferedWriter bufferedWriter = null;
+	private BufferedInputStream inputStream = null;
+	private BufferedOutputStream outputStream = null;
+
+	// Use binary framing for writing data, otherwise the end of data mark
+	private boolean framingEnabled = false;
+
+	// Lock for writing, so data written by several threads at the same time
+	// (multiplexing) are not mixed up
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	// Raw content frames following the request that are not read yet
+	private boolean contentPending = false;
+
+	// Flag if the connection was used for a previous request already, and
+	// was kept open in a connection pool since then
+	private boolean reused = false;
+
+	// Compression codec applied to the payload of frames, or null if frames
+	// are not compressed
+	private CompressionCodec compressionCodec = null;
+	private Integer compressionMinimumSizeInBytes = null;
+
+	// Maximum size of a frame, and of its payload after decompressing, read
+	// from the configuration once. Larger frames are rejected before any
+	// buffer is allocated, because the length is sent by the remote peer.
+	private Integer maximumFrameSizeInBytes = null;
+	private Integer maximumDecompressedSizeInBytes = null;
+
+	// Buffers, reused for all data read from the socket
+	private byte[] readBuffer = null;
+	private ByteBuffer frameBuffer = null;
 
 	// Connection status. First setting must be null in order to register the
 	// starting of the system.
@@ -43,6 +110,10 @@ public class SocketHandler
 	// Socket TIMEOUT time
 	private int timeoutTimeInMilliseconds = 100000;
 
+	// Request data that was already read from the socket by a non-blocking
+	// acceptor, before the socket was adopted
+	private String prefetchedData = null;
+
 	/**
 	 * Constructor using connection parameters.
 	 * 
@@ -157,8 +228,8 @@ public class SocketHandler
 		// Open output stream
 		try
 		{
-			if (this.bufferedWriter != null) this.bufferedWriter.close();
-			this.bufferedWriter = new BufferedWriter(new OutputStreamWriter(this.clientSocket.getOutputStream()));
+			if (this.outputStream != null) this.outputStream.close();
+			this.outputStream = new BufferedOutputStream(this.clientSocket.getOutputStream(), this.clientSocket.getSendBufferSize());
 		}
 		catch (Exception e)
 		{
@@ -171,8 +242,8 @@ public class SocketHandler
 		// Open input stream
 		try
 		{
-			if (this.bufferedReader != null) this.bufferedReader.close();
-			this.bufferedReader = new BufferedReader(new InputStreamReader(this.clientSocket.getInputStream()));
+			if (this.inputStream != null) this.inputStream.close();
+			this.inputStream = new BufferedInputStream(this.clientSocket.getInputStream(), this.clientSocket.getReceiveBufferSize());
 		}
 		catch (Exception e)
 		{
@@ -197,7 +268,7 @@ public class SocketHandler
 		// Close input stream (response)
 		try
 		{
-			if (this.bufferedReader != null) this.bufferedReader.close();
+			if (this.inputStream != null) this.inputStream.close();
 		}
 		catch (Exception e)
 		{
@@ -207,13 +278,13 @@ public class SocketHandler
 		}
 		finally
 		{
-			this.bufferedReader = null;
+			this.inputStream = null;
 		}
 
 		// Close output stream (command)
 		try
 		{
-			if (this.bufferedWriter != null) this.bufferedWriter.close();
+			if (this.outputStream != null) this.outputStream.close();
 		}
 		catch (Exception e)
 		{
@@ -223,7 +294,7 @@ public class SocketHandler
 		}
 		finally
 		{
-			this.bufferedWriter = null;
+			this.outputStream = null;
 		}
 
 		// Close socket connection
@@ -245,6 +316,9 @@ public class SocketHandler
 
 	/**
 	 * Writes data to the socket.
+	 * <p>
+	 * If binary framing is enabled the data are sent as one frame, otherwise
+	 * the end of data mark is appended.
 	 * 
 	 * @param data
 	 *            String that contains the data.
@@ -253,44 +327,74 @@ public class SocketHandler
 	 *         successfully, otherwise <TT>false</TT>.
 	 */
 	public boolean writeData(StringBuffer data)
+	{
+		return this.writeData(data, null);
+	}
+
+	/**
+	 * Writes data carrying media content to the socket. The data are
+	 * compressed only if the compression policy recommends it for the media
+	 * category (see <TT>CompressionPolicy</TT>).
+	 * 
+	 * @param data
+	 *            String that contains the data.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the media content, or <TT>null</TT>
+	 *            if the data carry no media content.
+	 * 
+	 * @return Returns <TT>true</TT> if the function could be executed
+	 *         successfully, otherwise <TT>false</TT>.
+	 */
+	public boolean writeData(StringBuffer data, String mediaCategory)
 	{
 		// Check parameters
 		if (!this.isConnected()) return false;
 		if (data == null) return false;
 
 		// Write data
+		this.writeLock.lock();
+
 		try
 		{
-			// Add NEWLINE as mark for End of Data package
-			data.append("\n\n");
-
-			// Write data
-//			this.bufferedWriter.append(data);
-//			this.bufferedWriter.flush();
-			
-			int bufferSize = this.getClientSocket().getSendBufferSize();
-			int cycle = 0;
-			int length = data.length();
-			
-			while (true)
+			if (this.framingEnabled == true && this.isCompressionRequired(data, mediaCategory) == true)
 			{
-				// Set buffer range
-				int begin = cycle * bufferSize;
-				int end = begin + bufferSize;
-				if (end > length) end = length;
-				
-				cycle++;
-				
-				// Transform data to string
-				String stringToSend = data.substring(begin, end);
-				
-				// Write to socket
-				this.bufferedWriter.append(stringToSend);
-				this.bufferedWriter.flush();
-				
-				// End of transfer
-				if (end >= length) break;
+				// Compress payload as a stream, then write frame header and
+				// compressed payload
+				ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length() / 4 + 64);
+				Writer compressingWriter = new OutputStreamWriter(this.compressionCodec.openCompressingStream(payload), FRAME_CHARSET);
+				SocketHandler.writeCharacters(data, compressingWriter);
+				compressingWriter.close();
+
+				short flags = (short) (FRAME_FLAG_COMPRESSED | (this.compressionCodec.getIdentifier() << FRAME_FLAG_CODEC_SHIFT));
+				this.outputStream.write(SocketHandler.createFrameHeader(payload.size(), flags));
+				payload.writeTo(this.outputStream);
+
+				// Record compression ratio of the media category
+				CompressionPolicy.recordCompressionRatio(mediaCategory, data.length(), payload.size());
+			}
+			else if (this.framingEnabled == true)
+			{
+				// Encode payload without copying the data into a string, then
+				// write frame header and payload
+				ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length() + 64);
+				Writer payloadWriter = new OutputStreamWriter(payload, FRAME_CHARSET);
+				SocketHandler.writeCharacters(data, payloadWriter);
+				payloadWriter.close();
+
+				this.outputStream.write(SocketHandler.createFrameHeader(payload.size()));
+				payload.writeTo(this.outputStream);
+			}
+			else
+			{
+				// Write data and NEWLINE as mark for End of Data package
+				this.outputStream.write(data.toString().getBytes(Charset.defaultCharset()));
+				this.outputStream.write('\n');
+				this.outputStream.write('\n');
 			}
+
+			// Send data
+			this.outputStream.flush();
 		}
 		catch (Exception e)
 		{
@@ -299,13 +403,77 @@ public class SocketHandler
 			this.context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, e);
 			return false;
 		}
+		finally
+		{
+			this.writeLock.unlock();
+		}
 
 		// Return
 		return true;
 	}
 
+	/**
+	 * Write the characters of a buffer to a writer in chunks, without copying
+	 * the whole buffer into a string.
+	 * 
+	 * @param data
+	 *            The buffer to write.
+	 * 
+	 * @param writer
+	 *            The writer to write to.
+	 */
+	private static void writeCharacters(StringBuffer data, Writer writer) throws java.io.IOException
+	{
+		char[] characters = new char[8192];
+
+		for (int position = 0; position < data.length(); position += characters.length)
+		{
+			int characterCount = Math.min(characters.length, data.length() - position);
+			data.getChars(position, position + characterCount, characters, 0);
+			writer.write(characters, 0, characterCount);
+		}
+	}
+
+	/**
+	 * Check if data to write are to be compressed. Data are compressed only if
+	 * a compression codec is set, if they are long enough (see configuration
+	 * property <TT>Application/CompressionMinimumSizeInBytes</TT>), and if the
+	 * compression policy recommends it for the media category.
+	 * 
+	 * @param data
+	 *            The data to write.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the data, or <TT>null</TT>.
+	 * 
+	 * @return Returns <TT>true</TT> if the data are to be compressed,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private boolean isCompressionRequired(StringBuffer data, String mediaCategory)
+	{
+		if (this.compressionCodec == null) return false;
+
+		// Read minimum size once
+		if (this.compressionMinimumSizeInBytes == null)
+		{
+			Integer minimumSize = this.context.getConfigurationManager().getPropertyAsIntegerValue(this.context, ResourceManager.configuration(this.context, "Application", "CompressionMinimumSizeInBytes"), false);
+			if (minimumSize == null) minimumSize = 600;
+			this.compressionMinimumSizeInBytes = minimumSize;
+		}
+
+		if (data.length() < this.compressionMinimumSizeInBytes) return false;
+
+		// Return
+		return CompressionPolicy.isCompressionRecommended(this.context, mediaCategory);
+	}
+
 	/**
 	 * Read data from socket.
+	 * <p>
+	 * The format of the data, binary frame or text with end of data mark, is
+	 * recognized by the first byte. Binary framing is enabled for writing if
+	 * the data read was a frame, so a response is always sent in the format of
+	 * the request.
 	 * 
 	 * @return Returns the data read.
 	 */
@@ -314,35 +482,103 @@ public class SocketHandler
 		// Check parameters
 		if (!this.isConnected()) return null;
 
+		// Return data already read by a non-blocking acceptor
+		if (this.prefetchedData != null)
+		{
+			String data = this.prefetchedData;
+			this.prefetchedData = null;
+			return data;
+		}
+
+		// Skip content of the previous request that wasn't read
+		if (this.contentPending == true && this.skipContent() == false) return null;
+
 		// Read data
 		try
 		{
-			// Read data stream
-			int bufferSize = this.getClientSocket().getReceiveBufferSize();
-			char[] responseBuffer = new char[bufferSize];
-			int charCount = 0;
-			StringBuffer responseString = new StringBuffer();
+			// Check format by the first byte
+			this.inputStream.mark(1);
+			int firstByte = this.inputStream.read();
+			if (firstByte == -1) return null;
+			this.inputStream.reset();
 
-			while (true)
+			// Read binary frame
+			if ((byte) firstByte == FRAME_MAGIC_BYTE)
 			{
-				charCount = this.bufferedReader.read(responseBuffer, 0, bufferSize);
+				this.framingEnabled = true;
+				return this.readFrame();
+			}
+
+			// Read text with end of data mark
+			this.framingEnabled = false;
+			return this.readDataUntilEndOfData();
+		}
+		catch (SocketTimeoutException socketTimeoutException)
+		{
+			String errorString = "--> Socket timeout";
+			errorString += "\n--> Host '" + this.host + "', Port '" + String.valueOf(this.port) + "'";
+			this.context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, socketTimeoutException);
+			throw socketTimeoutException;
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> Error on reading data from socket";
+			errorString += "\n--> Host '" + this.host + "', Port '" + String.valueOf(this.port) + "'";
+			this.context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, e);
+			return null;
+		}
+	}
 
-				// No data read
-				if (charCount == -1) break;
+	/**
+	 * Read data from socket as a stream of characters, in order to parse them
+	 * incrementally.
+	 * <p>
+	 * The payload of a binary frame is decoded, and decompressed, while it is
+	 * read from the reader, without creating a string of the whole data. The
+	 * reader works on the buffer of the connection, so it must be consumed
+	 * before reading the next data.
+	 * 
+	 * @return Returns a reader of the data read, or <TT>null</TT> if an error
+	 *         occurred.
+	 */
+	public Reader readDataReader() throws SocketTimeoutException
+	{
+		// Check parameters
+		if (!this.isConnected()) return null;
 
-				// Transform data to string
-				responseString.append(new String(responseBuffer, 0, charCount));
+		// Return data already read by a non-blocking acceptor
+		if (this.prefetchedData != null)
+		{
+			Reader data = new StringReader(this.prefetchedData);
+			this.prefetchedData = null;
+			return data;
+		}
 
-				// EOD
-				if (charCount < bufferSize) break;
-			}
+		// Skip content of the previous request that wasn't read
+		if (this.contentPending == true && this.skipContent() == false) return null;
 
-			// Check for NEWLINE as EOD
-			String eos = responseString.substring(responseString.length() - 2); 
-			if (!eos.equals("\n\n")) return null;
+		// Read data
+		try
+		{
+			// Check format by the first byte
+			this.inputStream.mark(1);
+			int firstByte = this.inputStream.read();
+			if (firstByte == -1) return null;
+			this.inputStream.reset();
 
-			// Return
-			return responseString.substring(0, responseString.length() - 2);
+			// Read binary frame
+			if ((byte) firstByte == FRAME_MAGIC_BYTE)
+			{
+				this.framingEnabled = true;
+				short flags = this.readFramePayload();
+				return SocketHandler.openFramePayloadReader(this.frameBuffer.array(), 0, this.frameBuffer.limit(), flags, this.getMaximumDecompressedSizeInBytes());
+			}
+
+			// Read text with end of data mark
+			this.framingEnabled = false;
+			String data = this.readDataUntilEndOfData();
+			if (data == null) return null;
+			return new StringReader(data);
 		}
 		catch (SocketTimeoutException socketTimeoutException)
 		{
@@ -361,81 +597,1213 @@ public class SocketHandler
 	}
 
 	/**
-	 * Getter
+	 * Read a binary frame from socket. The payload is read directly into a
+	 * buffer that is reused for all frames of the connection.
+	 * 
+	 * @return Returns the payload of the frame.
 	 */
-	public boolean isConnected()
+	private String readFrame() throws Exception
 	{
-		return connectionStatus;
+		short flags = this.readFramePayload();
+		return SocketHandler.decodeFramePayload(this.frameBuffer.array(), 0, this.frameBuffer.limit(), flags, this.getMaximumDecompressedSizeInBytes());
 	}
 
 	/**
-	 * Setter
+	 * Read a binary frame from socket into the frame buffer of the
+	 * connection. The limit of the frame buffer is set to the length of the
+	 * payload.
+	 * 
+	 * @return Returns the flags of the frame.
 	 */
-	public void setConnectionStatus(boolean connectionStatus)
+	private short readFramePayload() throws Exception
 	{
-		this.connectionStatus = connectionStatus;
+		// Read header
+		byte[] header = new byte[FRAME_HEADER_SIZE];
+		this.readFully(header, 0, FRAME_HEADER_SIZE);
+
+		int length = SocketHandler.getFrameLength(header);
+		short flags = SocketHandler.getFrameFlags(header);
+
+		if (length < 0 || (flags & FRAME_FLAG_CONTENT) != 0)
+		{
+			String errorString = "--> Invalid frame header";
+			errorString += "\n--> Version: '" + String.valueOf(header[1]) + "', Length: '" + String.valueOf(length) + "'";
+			throw new IllegalStateException(errorString);
+		}
+
+		// Reject frames exceeding the maximum frame size, the connection
+		// can't be used anymore, because the payload is not read
+		if (length > this.getMaximumFrameSizeInBytes())
+		{
+			this.closeSocket();
+
+			String errorString = "--> Frame exceeds the maximum frame size";
+			errorString += "\n--> Length: '" + String.valueOf(length) + "', Maximum: '" + String.valueOf(this.getMaximumFrameSizeInBytes()) + "'";
+			throw new IllegalStateException(errorString);
+		}
+
+		// Provide buffer
+		if (this.frameBuffer == null || this.frameBuffer.capacity() < length)
+		{
+			int capacity = Math.max(length, this.clientSocket.getReceiveBufferSize());
+			if (this.frameBuffer != null) capacity = Math.max(capacity, this.frameBuffer.capacity() * 2);
+			this.frameBuffer = ByteBuffer.allocate(capacity);
+		}
+
+		// Read payload
+		this.frameBuffer.clear();
+		this.readFully(this.frameBuffer.array(), 0, length);
+		this.frameBuffer.limit(length);
+
+		// Respond compressed with the codec of the request
+		this.adoptCompressionCodec(flags);
+
+		// Return
+		return flags;
 	}
 
 	/**
-	 * Getter
+	 * Decode the payload of a binary frame, decompressing it if the frame is
+	 * compressed.
+	 * 
+	 * @param buffer
+	 *            The buffer containing the payload.
+	 * 
+	 * @param offset
+	 *            The position of the payload in the buffer.
+	 * 
+	 * @param length
+	 *            The length of the payload.
+	 * 
+	 * @param flags
+	 *            The flags of the frame.
+	 * 
+	 * @param maximumDecompressedSizeInBytes
+	 *            The maximum size of the payload after decompressing.
+	 * 
+	 * @return Returns the payload as string.
 	 */
-	public BufferedWriter getBufferedWriter()
+	public static String decodeFramePayload(byte[] buffer, int offset, int length, short flags, int maximumDecompressedSizeInBytes) throws Exception
 	{
-		return bufferedWriter;
+		// Uncompressed payload
+		if ((flags & FRAME_FLAG_COMPRESSED) == 0) return new String(buffer, offset, length, FRAME_CHARSET);
+
+		// Decompress payload as a stream
+		Reader decompressingReader = SocketHandler.openFramePayloadReader(buffer, offset, length, flags, maximumDecompressedSizeInBytes);
+		StringBuilder payload = new StringBuilder((int) Math.min(length * 4L, Math.min(maximumDecompressedSizeInBytes, 1048576)));
+		char[] characters = new char[8192];
+		int characterCount = 0;
+
+		try
+		{
+			while ((characterCount = decompressingReader.read(characters)) != -1)
+			{
+				payload.append(characters, 0, characterCount);
+			}
+		}
+		finally
+		{
+			decompressingReader.close();
+		}
+
+		// Return
+		return payload.toString();
 	}
 
 	/**
-	 * Getter
+	 * Open a reader that decodes the payload of a binary frame, decompressing
+	 * it if the frame is compressed.
+	 * 
+	 * @param buffer
+	 *            The buffer containing the payload.
+	 * 
+	 * @param offset
+	 *            The position of the payload in the buffer.
+	 * 
+	 * @param length
+	 *            The length of the payload.
+	 * 
+	 * @param flags
+	 *            The flags of the frame.
+	 * 
+	 * @param maximumDecompressedSizeInBytes
+	 *            The maximum size of the payload after decompressing. Reading
+	 *            beyond it fails with an <TT>IOException</TT>.
+	 * 
+	 * @return Returns the reader.
 	 */
-	public BufferedReader getBufferedReader()
+	public static Reader openFramePayloadReader(byte[] buffer, int offset, int length, short flags, int maximumDecompressedSizeInBytes) throws Exception
 	{
-		return bufferedReader;
+		// Uncompressed payload
+		if ((flags & FRAME_FLAG_COMPRESSED) == 0) return new InputStreamReader(new ByteArrayInputStream(buffer, offset, length), FRAME_CHARSET);
+
+		// Get compression codec
+		byte codecIdentifier = (byte) ((flags & 0xFFFF) >>> FRAME_FLAG_CODEC_SHIFT);
+		CompressionCodec codec = EncodingHandler.getCompressionCodec(codecIdentifier);
+		if (codec == null) throw new IllegalStateException("--> Compression codec not supported: '" + String.valueOf(codecIdentifier) + "'");
+
+		// Return
+		return new InputStreamReader(new LimitedInputStream(codec.openDecompressingStream(new ByteArrayInputStream(buffer, offset, length)), maximumDecompressedSizeInBytes), FRAME_CHARSET);
 	}
 
 	/**
-	 * Getter
+	 * Use the compression codec of a frame read for all further frames
+	 * written, so a response is compressed in the same way as the request.
+	 * Frames that are not compressed don't change the codec, because short
+	 * frames are never compressed.
+	 * 
+	 * @param flags
+	 *            The flags of the frame read.
 	 */
-	public int getTimeoutTimeInMilliseconds()
+	public void adoptCompressionCodec(short flags)
 	{
-		return timeoutTimeInMilliseconds;
+		if ((flags & FRAME_FLAG_COMPRESSED) == 0) return;
+
+		byte codecIdentifier = (byte) ((flags & 0xFFFF) >>> FRAME_FLAG_CODEC_SHIFT);
+		if (this.compressionCodec != null && this.compressionCodec.getIdentifier() == codecIdentifier) return;
+
+		CompressionCodec codec = EncodingHandler.getCompressionCodec(codecIdentifier);
+		if (codec != null) this.compressionCodec = EncodingHandler.getCompressionCodec(this.context, codec.getName());
 	}
 
 	/**
-	 * Adopt an open socket, e. g. opened by a server socket <TT>accept()</TT>,
-	 * to integrate it in this connector object.
+	 * Read data from socket until the end of data mark was received.
 	 * 
-	 * @param socketToAdopt
-	 *            The socket connection to adopt.
+	 * @return Returns the data read without the end of data mark, or
+	 *         <TT>null</TT> if the end of data mark is missing.
+	 */
+	private String readDataUntilEndOfData() throws Exception
+	{
+		// Provide buffer
+		int bufferSize = this.getClientSocket().getReceiveBufferSize();
+		if (this.readBuffer == null || this.readBuffer.length < bufferSize) this.readBuffer = new byte[bufferSize];
+
+		// Read data stream
+		ByteArrayOutputStream data = new ByteArrayOutputStream(bufferSize);
+		int byteCount = 0;
+		byte secondLastByte = 0;
+		byte lastByte = 0;
+
+		while (true)
+		{
+			byteCount = this.inputStream.read(this.readBuffer, 0, this.readBuffer.length);
+
+			// No data read
+			if (byteCount == -1) break;
+			if (byteCount == 0) continue;
+
+			// Collect data
+			data.write(this.readBuffer, 0, byteCount);
+
+			if (data.size() > this.getMaximumFrameSizeInBytes())
+			{
+				this.closeSocket();
+				throw new IllegalStateException("--> Data exceed the maximum frame size of '" + String.valueOf(this.getMaximumFrameSizeInBytes()) + "' bytes");
+			}
+
+			secondLastByte = byteCount > 1 ? this.readBuffer[byteCount - 2] : lastByte;
+			lastByte = this.readBuffer[byteCount - 1];
+
+			// EOD, but only if the end of data mark was received. On a
+			// keep-alive connection the socket is not closed by the sender,
+			// so a partial read must not end the reading.
+			if (this.isEndOfData(data.size(), secondLastByte, lastByte)) break;
+		}
+
+		// Check for NEWLINE as EOD
+		if (!this.isEndOfData(data.size(), secondLastByte, lastByte)) return null;
+
+		// Return
+		byte[] bytes = data.toByteArray();
+		return new String(bytes, 0, bytes.length - 2, Charset.defaultCharset());
+	}
+
+	/**
+	 * Read an exact number of bytes from socket.
 	 * 
-	 * @return Returns <TT>true</TT> if the action was successful, otherwise
-	 *         <TT>false</TT>.
+	 * @param buffer
+	 *            The buffer to fill.
+	 * 
+	 * @param offset
+	 *            The first position in the buffer to fill.
+	 * 
+	 * @param length
+	 *            The number of bytes to read.
 	 */
-	public boolean adoptSocket(Socket socketToAdopt, int timeoutTimeInMilliseconds)
+	private void readFully(byte[] buffer, int offset, int length) throws Exception
 	{
-		// Set connection status
-		this.setConnectionStatus(false);
+		int position = 0;
 
-		// No socket set
-		if (socketToAdopt == null) return false;
+		while (position < length)
+		{
+			int byteCount = this.inputStream.read(buffer, offset + position, length - position);
+			if (byteCount == -1) throw new EOFException("Connection closed after " + String.valueOf(position) + " of " + String.valueOf(length) + " bytes");
+			position += byteCount;
+		}
+	}
 
-		// Closes an active socket to ensure an initialized state
-		this.closeSocket();
+	/**
+	 * Create the header of a binary frame.
+	 * 
+	 * @param payloadLength
+	 *            The length of the payload in bytes.
+	 * 
+	 * @return Returns the header.
+	 */
+	public static byte[] createFrameHeader(int payloadLength)
+	{
+		return SocketHandler.createFrameHeader(payloadLength, (short) 0);
+	}
 
-		// Adopts the socket
-		this.clientSocket = socketToAdopt;
-		this.host = socketToAdopt.getLocalAddress().toString();
-		this.port = socketToAdopt.getLocalPort();
-		this.timeoutTimeInMilliseconds = timeoutTimeInMilliseconds;
-		this.setSocketTimeout();
+	/**
+	 * Create the header of a binary frame.
+	 * 
+	 * @param payloadLength
+	 *            The length of the payload in bytes.
+	 * 
+	 * @param flags
+	 *            The flags of the frame.
+	 * 
+	 * @return Returns the header.
+	 */
+	public static byte[] createFrameHeader(int payloadLength, short flags)
+	{
+		ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+		header.put(FRAME_MAGIC_BYTE);
+		header.put(FRAME_VERSION);
+		header.putShort(flags);
+		header.putInt(payloadLength);
+		return header.array();
+	}
 
-		// Opens streams
-		if (this.openStreams() == false) return false;
+	/**
+	 * Get the flags from the header of a binary frame.
+	 * 
+	 * @param header
+	 *            The data beginning with the header.
+	 * 
+	 * @return Returns the flags.
+	 */
+	public static short getFrameFlags(byte[] header)
+	{
+		return ByteBuffer.wrap(header, 2, 2).getShort();
+	}
 
-		// Set timeout time
-		if (this.setSocketTimeout() == false) return false;
+	/**
+	 * Get the length of the payload from the header of a binary frame.
+	 * 
+	 * @param header
+	 *            The data beginning with the header.
+	 * 
+	 * @return Returns the length of the payload, or <TT>-1</TT> if the header
+	 *         is invalid or its version is not supported.
+	 */
+	public static int getFrameLength(byte[] header)
+	{
+		if (header == null || header.length < FRAME_HEADER_SIZE) return -1;
+		if (header[0] != FRAME_MAGIC_BYTE) return -1;
+		if (header[1] < 1 || header[1] > FRAME_VERSION) return -1;
 
-		// Set connection status
-		this.setConnectionStatus(true);
+		int length = ByteBuffer.wrap(header, 4, 4).getInt();
+		if (length < 0) return -1;
+		return length;
+	}
+
+	/**
+	 * Write raw content to the socket, following a request or response that
+	 * was written before. The content is sent as a sequence of content frames,
+	 * ended by an empty content frame. Binary framing must be enabled.
+	 * <p>
+	 * The content of a file stream is transferred from the file channel
+	 * directly to the socket (zero copy), without reading it into the memory
+	 * of the application.
+	 * 
+	 * @param content
+	 *            The stream to read the content from.
+	 * 
+	 * @param chunkSizeInBytes
+	 *            The maximum size of a content frame.
+	 * 
+	 * @return Returns <TT>true</TT> if the function could be executed
+	 *         successfully, otherwise <TT>false</TT>.
+	 */
+	public boolean writeContent(InputStream content, int chunkSizeInBytes)
+	{
+		return this.writeContent(content, -1, chunkSizeInBytes);
+	}
+
+	/**
+	 * Write a part of raw content to the socket, beginning at the current
+	 * position of the content stream.
+	 * 
+	 * @param content
+	 *            The stream to read the content from.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to write, or <TT>-1</TT> to write
+	 *            up to the end of the stream.
+	 * 
+	 * @param chunkSizeInBytes
+	 *            The maximum size of a content frame.
+	 * 
+	 * @return Returns <TT>true</TT> if the function could be executed
+	 *         successfully, otherwise <TT>false</TT>.
+	 */
+	public boolean writeContent(InputStream content, long length, int chunkSizeInBytes)
+	{
+		return this.writeContent(content, length, chunkSizeInBytes, null);
+	}
+
+	/**
+	 * Write a part of raw media content to the socket, beginning at the
+	 * current position of the content stream.
+	 * <p>
+	 * If the compression policy recommends it for the media category (see
+	 * <TT>CompressionPolicy</TT>), each content frame is compressed on its
+	 * own, instead of transferring the file content directly. Content frames
+	 * that don't shrink are sent uncompressed, and the policy is asked again
+	 * for each frame, so compression stops as soon as the content turns out
+	 * to be incompressible.
+	 * 
+	 * @param content
+	 *            The stream to read the content from.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to write, or <TT>-1</TT> to write
+	 *            up to the end of the stream.
+	 * 
+	 * @param chunkSizeInBytes
+	 *            The maximum size of a content frame.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the content, or <TT>null</TT> if the
+	 *            content is never to be compressed.
+	 * 
+	 * @return Returns <TT>true</TT> if the function could be executed
+	 *         successfully, otherwise <TT>false</TT>.
+	 */
+	public boolean writeContent(InputStream content, long length, int chunkSizeInBytes, String mediaCategory)
+	{
+		// Check parameters
+		if (!this.isConnected()) return false;
+		if (content == null) return false;
+		if (this.framingEnabled == false) return false;
+		if (chunkSizeInBytes <= 0) return false;
+
+		// Write content
+		this.writeLock.lock();
+
+		try
+		{
+			// Decide about compression
+			boolean compressing = this.isContentCompressionRequired(mediaCategory);
+
+			// Transfer file content directly
+			if (compressing == false && content instanceof FileInputStream)
+			{
+				this.transferContent(((FileInputStream) content).getChannel(), length);
+				return true;
+			}
+
+			// Copy content chunk by chunk, each chunk fits into a frame
+			chunkSizeInBytes = Math.min(chunkSizeInBytes, this.getMaximumFrameSizeInBytes());
+			byte[] chunk = new byte[chunkSizeInBytes];
+			int byteCount = 0;
+			long remainingBytes = length < 0 ? Long.MAX_VALUE : length;
+
+			while (remainingBytes > 0 && (byteCount = content.read(chunk, 0, (int) Math.min(chunkSizeInBytes, remainingBytes))) != -1)
+			{
+				if (byteCount == 0) continue;
+				remainingBytes -= byteCount;
+
+				// Write compressed content frame
+				if (compressing == true && this.writeCompressedContentFrame(chunk, byteCount, mediaCategory) == true)
+				{
+					compressing = this.isContentCompressionRequired(mediaCategory);
+					continue;
+				}
+
+				// Write raw content frame
+				this.outputStream.write(SocketHandler.createFrameHeader(byteCount, FRAME_FLAG_CONTENT));
+				this.outputStream.write(chunk, 0, byteCount);
+				if (compressing == true) compressing = this.isContentCompressionRequired(mediaCategory);
+			}
+
+			// Write end of content
+			this.outputStream.write(SocketHandler.createFrameHeader(0, FRAME_FLAG_CONTENT));
+			this.outputStream.flush();
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> Error on writing content to socket";
+			errorString += "\n--> Host '" + this.host + "', Port '" + String.valueOf(this.port) + "'";
+			this.context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Socket", "ErrorOnSocketConnection"), errorString, e);
+			return false;
+		}
+		finally
+		{
+			this.writeLock.unlock();
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Check if raw content of a media category is to be compressed.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the content, or <TT>null</TT>.
+	 * 
+	 * @return Returns <TT>true</TT> if the content is to be compressed,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private boolean isContentCompressionRequired(String mediaCategory)
+	{
+		if (this.compressionCodec == null) return false;
+		if (mediaCategory == null) return false;
+
+		return CompressionPolicy.isCompressionRecommended(this.context, mediaCategory);
+	}
+
+	/**
+	 * Compress a chunk of raw content and write it as a content frame, if it
+	 * shrinks. The compression ratio is recorded for the media category in any
+	 * case.
+	 * 
+	 * @param chunk
+	 *            The buffer containing the chunk.
+	 * 
+	 * @param length
+	 *            The number of bytes of the chunk.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the content.
+	 * 
+	 * @return Returns <TT>true</TT> if the compressed content frame was
+	 *         written, or <TT>false</TT> if the chunk didn't shrink and is to
+	 *         be written uncompressed.
+	 */
+	private boolean writeCompressedContentFrame(byte[] chunk, int length, String mediaCategory) throws Exception
+	{
+		// Compress chunk
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(length / 2 + 64);
+		OutputStream compressingStream = this.compressionCodec.openCompressingStream(payload);
+		compressingStream.write(chunk, 0, length);
+		compressingStream.close();
+
+		// Record compression ratio of the media category
+		CompressionPolicy.recordCompressionRatio(mediaCategory, length, payload.size());
+
+		// Chunk didn't shrink
+		if (payload.size() >= length) return false;
+
+		// Write frame header and compressed payload
+		short flags = (short) (FRAME_FLAG_CONTENT | FRAME_FLAG_COMPRESSED | (this.compressionCodec.getIdentifier() << FRAME_FLAG_CODEC_SHIFT));
+		this.outputStream.write(SocketHandler.createFrameHeader(payload.size(), flags));
+		payload.writeTo(this.outputStream);
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Transfer the content of a file channel directly to the socket, from the
+	 * current position of the channel up to its end. The content is sent in
+	 * content frames of the maximum frame size (see configuration property
+	 * <TT>Application/MaximumFrameSizeInBytes</TT>), so the receiver accepts
+	 * them.
+	 * 
+	 * @param fileChannel
+	 *            The file channel to transfer.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to transfer, or <TT>-1</TT> to
+	 *            transfer up to the end of the file.
+	 */
+	private void transferContent(FileChannel fileChannel, long length) throws Exception
+	{
+		// Write to the socket channel if the socket was accepted by a channel,
+		// otherwise via the socket stream
+		WritableByteChannel socketChannel = this.clientSocket.getChannel();
+		if (socketChannel == null) socketChannel = Channels.newChannel(this.outputStream);
+
+		long position = fileChannel.position();
+		long size = fileChannel.size();
+		if (length >= 0) size = Math.min(size, position + length);
+
+		while (position < size)
+		{
+			// Write frame header
+			int frameLength = (int) Math.min(size - position, this.getMaximumFrameSizeInBytes());
+			this.outputStream.write(SocketHandler.createFrameHeader(frameLength, FRAME_FLAG_CONTENT));
+			this.outputStream.flush();
+
+			// Transfer frame payload
+			long frameEnd = position + frameLength;
+
+			while (position < frameEnd)
+			{
+				long byteCount = fileChannel.transferTo(position, frameEnd - position, socketChannel);
+				if (byteCount <= 0) throw new EOFException("File channel ended after " + String.valueOf(position) + " of " + String.valueOf(size) + " bytes");
+				position += byteCount;
+			}
+		}
+
+		// Write end of content
+		this.outputStream.write(SocketHandler.createFrameHeader(0, FRAME_FLAG_CONTENT));
+		this.outputStream.flush();
+	}
+
+	/**
+	 * Get a stream to read the raw content following the request or response
+	 * that was read last. The stream reads the content frames directly from
+	 * the socket and ends with the empty content frame.
+	 * 
+	 * @return Returns the content stream, or <TT>null</TT> if no content is
+	 *         pending.
+	 */
+	public InputStream getContentInputStream()
+	{
+		if (this.contentPending == false) return null;
+		return new ContentInputStream();
+	}
+
+	/**
+	 * Skip the raw content following the request or response that was read
+	 * last, if it was not read completely, in order to read the next data on
+	 * the same connection.
+	 * 
+	 * @return Returns <TT>true</TT> if the content was skipped, or no content
+	 *         was pending, otherwise <TT>false</TT>.
+	 */
+	public boolean skipContent()
+	{
+		if (this.contentPending == false) return true;
+
+		try
+		{
+			InputStream content = new ContentInputStream();
+			byte[] buffer = new byte[8192];
+			while (content.read(buffer, 0, buffer.length) != -1)
+			{
+				// Discard
+			}
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.contentPending = false;
+			return false;
+		}
+	}
+
+	/**
+	 * Stream that reads the raw content frames following a request.
+	 * Compressed content frames are decompressed while reading.
+	 */
+	private class ContentInputStream extends InputStream
+	{
+		// Number of bytes of the current content frame not read yet
+		private int remainingBytes = 0;
+
+		// Decompressing stream of the current compressed content frame, or
+		// null if the current frame is not compressed
+		private InputStream decompressingStream = null;
+
+		@Override
+		public int read() throws java.io.IOException
+		{
+			byte[] singleByte = new byte[1];
+			int byteCount = this.read(singleByte, 0, 1);
+			if (byteCount == -1) return -1;
+			return singleByte[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws java.io.IOException
+		{
+			if (length == 0) return 0;
+
+			// Read header of the next content frame
+			while (this.remainingBytes == 0)
+			{
+				// Read from the current compressed content frame
+				if (this.decompressingStream != null)
+				{
+					int byteCount = this.decompressingStream.read(buffer, offset, length);
+					if (byteCount > 0) return byteCount;
+
+					this.decompressingStream.close();
+					this.decompressingStream = null;
+				}
+
+				if (SocketHandler.this.contentPending == false) return -1;
+
+				byte[] header = new byte[FRAME_HEADER_SIZE];
+
+				try
+				{
+					SocketHandler.this.readFully(header, 0, FRAME_HEADER_SIZE);
+				}
+				catch (java.io.IOException e)
+				{
+					SocketHandler.this.contentPending = false;
+					throw e;
+				}
+				catch (Exception e)
+				{
+					SocketHandler.this.contentPending = false;
+					throw new java.io.IOException(e);
+				}
+
+				int frameLength = SocketHandler.getFrameLength(header);
+				short flags = SocketHandler.getFrameFlags(header);
+
+				if (frameLength < 0 || (flags & FRAME_FLAG_CONTENT) == 0 || (flags & ~(FRAME_FLAG_CONTENT | FRAME_FLAG_COMPRESSED | (0xFF << FRAME_FLAG_CODEC_SHIFT))) != 0)
+				{
+					SocketHandler.this.contentPending = false;
+					throw new java.io.IOException("Invalid content frame header");
+				}
+
+				// Reject content frames exceeding the maximum frame size
+				if (frameLength > SocketHandler.this.getMaximumFrameSizeInBytes())
+				{
+					SocketHandler.this.contentPending = false;
+					SocketHandler.this.closeSocket();
+					throw new java.io.IOException("Content frame exceeds the maximum frame size: Length: '" + String.valueOf(frameLength) + "', Maximum: '" + String.valueOf(SocketHandler.this.getMaximumFrameSizeInBytes()) + "'");
+				}
+
+				// End of content
+				if (frameLength == 0)
+				{
+					SocketHandler.this.contentPending = false;
+					return -1;
+				}
+
+				// Compressed content frame
+				if ((flags & FRAME_FLAG_COMPRESSED) != 0)
+				{
+					this.decompressingStream = this.openDecompressingStream(frameLength, flags);
+					continue;
+				}
+
+				this.remainingBytes = frameLength;
+			}
+
+			// Read payload of the current content frame
+			int byteCount = SocketHandler.this.inputStream.read(buffer, offset, Math.min(length, this.remainingBytes));
+
+			if (byteCount == -1)
+			{
+				SocketHandler.this.contentPending = false;
+				throw new EOFException("Connection closed within content frame");
+			}
+
+			this.remainingBytes -= byteCount;
+			return byteCount;
+		}
+
+		/**
+		 * Read the payload of a compressed content frame completely and open
+		 * a stream that decompresses it. The frame length is checked against
+		 * the maximum frame size before, and the decompressed data are
+		 * limited to the maximum decompressed size.
+		 * 
+		 * @param frameLength
+		 *            The length of the payload.
+		 * 
+		 * @param flags
+		 *            The flags of the frame, containing the codec identifier.
+		 * 
+		 * @return Returns the decompressing stream.
+		 */
+		private InputStream openDecompressingStream(int frameLength, short flags) throws java.io.IOException
+		{
+			// Get compression codec
+			byte codecIdentifier = (byte) ((flags & 0xFFFF) >>> FRAME_FLAG_CODEC_SHIFT);
+			CompressionCodec codec = EncodingHandler.getCompressionCodec(codecIdentifier);
+
+			if (codec == null)
+			{
+				SocketHandler.this.contentPending = false;
+				throw new java.io.IOException("Compression codec of content frame not supported: '" + String.valueOf(codecIdentifier) + "'");
+			}
+
+			// Read payload
+			byte[] payload = new byte[frameLength];
+
+			try
+			{
+				SocketHandler.this.readFully(payload, 0, frameLength);
+			}
+			catch (java.io.IOException e)
+			{
+				SocketHandler.this.contentPending = false;
+				throw e;
+			}
+			catch (Exception e)
+			{
+				SocketHandler.this.contentPending = false;
+				throw new java.io.IOException(e);
+			}
+
+			// Return
+			return new LimitedInputStream(codec.openDecompressingStream(new ByteArrayInputStream(payload)), SocketHandler.this.getMaximumDecompressedSizeInBytes());
+		}
+	}
+
+	/**
+	 * This class limits the number of bytes that can be read from a
+	 * decompressing stream, so a small compressed frame can't expand without
+	 * bound.
+	 */
+	private static class LimitedInputStream extends FilterInputStream
+	{
+		private final long maximumSizeInBytes;
+		private long byteCount = 0;
+
+		/**
+		 * Constructor
+		 */
+		private LimitedInputStream(InputStream inputStream, long maximumSizeInBytes)
+		{
+			super(inputStream);
+			this.maximumSizeInBytes = maximumSizeInBytes;
+		}
+
+		@Override
+		public int read() throws java.io.IOException
+		{
+			int value = super.read();
+			if (value != -1) this.countBytes(1);
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws java.io.IOException
+		{
+			int count = super.read(buffer, offset, length);
+			if (count > 0) this.countBytes(count);
+			return count;
+		}
+
+		/**
+		 * Count bytes read, and fail if the maximum size is exceeded.
+		 */
+		private void countBytes(int count) throws java.io.IOException
+		{
+			this.byteCount += count;
+			if (this.byteCount > this.maximumSizeInBytes) throw new java.io.IOException("Decompressed data exceed the maximum size of '" + String.valueOf(this.maximumSizeInBytes) + "' bytes");
+		}
+	}
+
+	/**
+	 * Get the maximum size of a frame in bytes (see configuration property
+	 * <TT>Application/MaximumFrameSizeInBytes</TT>).
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @return Returns the maximum size.
+	 */
+	public static int getMaximumFrameSizeInBytes(Context context)
+	{
+		Integer maximumSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "MaximumFrameSizeInBytes"), false);
+		if (maximumSize == null) maximumSize = 67108864;
+		return maximumSize;
+	}
+
+	/**
+	 * Get the maximum size of the payload of a frame after decompressing in
+	 * bytes (see configuration property
+	 * <TT>Application/MaximumDecompressedSizeInBytes</TT>).
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @return Returns the maximum size.
+	 */
+	public static int getMaximumDecompressedSizeInBytes(Context context)
+	{
+		Integer maximumSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "MaximumDecompressedSizeInBytes"), false);
+		if (maximumSize == null) maximumSize = 268435456;
+		return maximumSize;
+	}
+
+	/**
+	 * Get the maximum size of a frame, read from the configuration once.
+	 */
+	private int getMaximumFrameSizeInBytes()
+	{
+		if (this.maximumFrameSizeInBytes == null) this.maximumFrameSizeInBytes = SocketHandler.getMaximumFrameSizeInBytes(this.context);
+		return this.maximumFrameSizeInBytes;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setMaximumFrameSizeInBytes(int maximumFrameSizeInBytes)
+	{
+		this.maximumFrameSizeInBytes = maximumFrameSizeInBytes;
+	}
+
+	/**
+	 * Get the maximum size of a decompressed payload, read from the
+	 * configuration once.
+	 */
+	private int getMaximumDecompressedSizeInBytes()
+	{
+		if (this.maximumDecompressedSizeInBytes == null) this.maximumDecompressedSizeInBytes = SocketHandler.getMaximumDecompressedSizeInBytes(this.context);
+		return this.maximumDecompressedSizeInBytes;
+	}
+
+	/**
+	 * Put back data that were read from the socket before, but belong to the
+	 * next data to read, e. g. content frames read ahead by a non-blocking
+	 * acceptor.
+	 * 
+	 * @param data
+	 *            The buffer containing the data.
+	 * 
+	 * @param offset
+	 *            The first position of the data in the buffer.
+	 * 
+	 * @param length
+	 *            The number of bytes to put back.
+	 */
+	public void unreadData(byte[] data, int offset, int length)
+	{
+		if (data == null || length <= 0 || this.inputStream == null) return;
+
+		ByteArrayInputStream unreadStream = new ByteArrayInputStream(data, offset, length);
+		this.inputStream = new BufferedInputStream(new SequenceInputStream(unreadStream, this.inputStream));
+	}
+
+	/**
+	 * Check if data read end with the end of data mark.
+	 * 
+	 * @param length
+	 *            The number of bytes read.
+	 * 
+	 * @param secondLastByte
+	 *            The second last byte read.
+	 * 
+	 * @param lastByte
+	 *            The last byte read.
+	 * 
+	 * @return Returns <TT>true</TT> if the data end with the end of data mark,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private boolean isEndOfData(int length, byte secondLastByte, byte lastByte)
+	{
+		if (length < 2) return false;
+		return secondLastByte == '\n' && lastByte == '\n';
+	}
+
+	/**
+	 * Wait for the next data on an idle connection and read it.
+	 * <p>
+	 * This method is used on keep-alive connections, in order to wait for the
+	 * next request of the client. If no data arrive within the idle timeout,
+	 * or if the connection was closed by the other side, the method returns
+	 * silently, because this is not an error.
+	 * 
+	 * @param idleTimeoutInMilliseconds
+	 *            Maximum time to wait for the next data in milliseconds.
+	 * 
+	 * @return Returns the data read, or <TT>null</TT> if no data arrived
+	 *         within the idle timeout, or if the connection was closed.
+	 */
+	public String readDataAfterIdleTime(int idleTimeoutInMilliseconds)
+	{
+		// Wait for the first character
+		if (this.waitForData(idleTimeoutInMilliseconds) == false) return null;
+
+		// Read data
+		try
+		{
+			return this.readData();
+		}
+		catch (SocketTimeoutException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Check if an idle connection is still usable, that means it was not
+	 * closed by the other side and no unexpected data are pending.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection can be used for the next
+	 *         request, otherwise <TT>false</TT>.
+	 */
+	public boolean isAlive()
+	{
+		// Check parameters
+		if (!this.isConnected()) return false;
+		if (this.prefetchedData != null) return false;
+
+		// Any data or end of stream on an idle connection means that the
+		// connection can't be used anymore
+		try
+		{
+			this.clientSocket.setSoTimeout(1);
+			this.inputStream.read();
+			return false;
+		}
+		catch (SocketTimeoutException e)
+		{
+			return true;
+		}
+		catch (Exception e)
+		{
+			return false;
+		}
+		finally
+		{
+			this.restoreSocketTimeout();
+		}
+	}
+
+	/**
+	 * Wait for data on the socket without consuming them.
+	 * 
+	 * @param waitingTimeInMilliseconds
+	 *            Maximum time to wait in milliseconds.
+	 * 
+	 * @return Returns <TT>true</TT> if data are available, or <TT>false</TT>
+	 *         if no data arrived within the waiting time, or if the
+	 *         connection was closed.
+	 */
+	public boolean waitForData(int waitingTimeInMilliseconds)
+	{
+		// Check parameters
+		if (!this.isConnected()) return false;
+		if (this.prefetchedData != null) return true;
+
+		// Wait for the first character and push it back
+		try
+		{
+			this.clientSocket.setSoTimeout(waitingTimeInMilliseconds);
+			this.inputStream.mark(1);
+			if (this.inputStream.read() == -1) return false;
+			this.inputStream.reset();
+			return true;
+		}
+		catch (Exception e)
+		{
+			return false;
+		}
+		finally
+		{
+			this.restoreSocketTimeout();
+		}
+	}
+
+	/**
+	 * Set the regular timeout time of the socket again, without notifying
+	 * errors.
+	 */
+	private void restoreSocketTimeout()
+	{
+		try
+		{
+			if (this.clientSocket != null) this.clientSocket.setSoTimeout(this.getTimeoutTimeInMilliseconds());
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isConnected()
+	{
+		return connectionStatus;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setConnectionStatus(boolean connectionStatus)
+	{
+		this.connectionStatus = connectionStatus;
+	}
+
+	/**
+	 * Getter
+	 */
+	public BufferedOutputStream getOutputStream()
+	{
+		return outputStream;
+	}
+
+	/**
+	 * Getter
+	 */
+	public BufferedInputStream getInputStream()
+	{
+		return inputStream;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isContentPending()
+	{
+		return contentPending;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setContentPending(boolean contentPending)
+	{
+		this.contentPending = contentPending;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isReused()
+	{
+		return reused;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setReused(boolean reused)
+	{
+		this.reused = reused;
+	}
+
+	/**
+	 * Getter
+	 */
+	public CompressionCodec getCompressionCodec()
+	{
+		return compressionCodec;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setCompressionCodec(CompressionCodec compressionCodec)
+	{
+		this.compressionCodec = compressionCodec;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isFramingEnabled()
+	{
+		return framingEnabled;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setFramingEnabled(boolean framingEnabled)
+	{
+		this.framingEnabled = framingEnabled;
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getTimeoutTimeInMilliseconds()
+	{
+		return timeoutTimeInMilliseconds;
+	}
+
+	/**
+	 * Set the timeout time for reading and writing of an open socket, e. g.
+	 * if a keep-alive connection is used by another command.
+	 * 
+	 * @param timeoutTimeInMilliseconds
+	 *            Time out time for reading and writing in milliseconds.
+	 * 
+	 * @return Returns <TT>true</TT> if the action was successful, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean setTimeoutTimeInMilliseconds(int timeoutTimeInMilliseconds)
+	{
+		this.timeoutTimeInMilliseconds = timeoutTimeInMilliseconds;
+		if (this.clientSocket == null) return true;
+		return this.setSocketTimeout();
+	}
+
+	/**
+	 * Adopt an open socket, e. g. opened by a server socket <TT>accept()</TT>,
+	 * to integrate it in this connector object.
+	 * 
+	 * @param socketToAdopt
+	 *            The socket connection to adopt.
+	 * 
+	 * @return Returns <TT>true</TT> if the action was successful, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean adoptSocket(Socket socketToAdopt, int timeoutTimeInMilliseconds)
+	{
+		// Set connection status
+		this.setConnectionStatus(false);
+
+		// No socket set
+		if (socketToAdopt == null) return false;
+
+		// Closes an active socket to ensure an initialized state
+		this.closeSocket();
+
+		// Adopts the socket
+		this.clientSocket = socketToAdopt;
+		this.framingEnabled = false;
+		this.host = socketToAdopt.getLocalAddress().toString();
+		this.port = socketToAdopt.getLocalPort();
+		this.timeoutTimeInMilliseconds = timeoutTimeInMilliseconds;
+		this.setSocketTimeout();
+
+		// Opens streams
+		if (this.openStreams() == false) return false;
+
+		// Set timeout time
+		if (this.setSocketTimeout() == false) return false;
+
+		// Set connection status
+		this.setConnectionStatus(true);
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Adopt an open socket, whose request data was already read completely by
+	 * a non-blocking acceptor. The next call of <TT>readData()</TT> returns the
+	 * prefetched data instead of reading from the socket.
+	 * 
+	 * @param socketToAdopt
+	 *            The socket connection to adopt.
+	 * 
+	 * @param timeoutTimeInMilliseconds
+	 *            Time out time for reading and writing in milliseconds.
+	 * 
+	 * @param prefetchedData
+	 *            The request data already read, without the end of data mark.
+	 * 
+	 * @return Returns <TT>true</TT> if the action was successful, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean adoptSocket(Socket socketToAdopt, int timeoutTimeInMilliseconds, String prefetchedData)
+	{
+		// Adopts the socket
+		if (this.adoptSocket(socketToAdopt, timeoutTimeInMilliseconds) == false) return false;
+
+		// Set prefetched data
+		this.prefetchedData = prefetchedData;
 
 		// Return
 		return true;
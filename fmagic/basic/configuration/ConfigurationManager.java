@@ -169,27 +169,15 @@ public class ConfigurationManager implements ManagerInterface
 		// Lock the message handling
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				Boolean isActive = this.processingActive.get(threadIdentifier);
-
-				if (isActive != null && isActive == true)
-				{
-					this.messageLostCounter++;
-					System.out.println("\n*** " + messageType + " message lost (" + String.valueOf(this.messageLostCounter) + ")");
-					if (enumIdentifier != null) System.out.println("*** " + enumIdentifier);
-					return true;
-				}
-
-				isActive = true;
-				this.processingActive.put(threadIdentifier, isActive);
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			Boolean isActive = this.processingActive.putIfAbsent(threadIdentifier, true);
 
-				// System.out.println("----------");
-				// for (String value : this.processingActive.keySet())
-				// {
-				// System.out.println("--> " + value);
-				// }
+			if (isActive != null && isActive == true)
+			{
+				this.messageLostCounter++;
+				System.out.println("\n*** " + messageType + " message lost (" + String.valueOf(this.messageLostCounter) + ")");
+				if (enumIdentifier != null) System.out.println("*** " + enumIdentifier);
+				return true;
 			}
 		}
 		catch (Exception e)
@@ -200,13 +188,10 @@ public class ConfigurationManager implements ManagerInterface
 		// Clear the Map if it has become too big. The should never happen.
 		try
 		{
-			synchronized (this.processingActive)
+			if (this.processingActive.size() > 100000)
 			{
-				if (this.processingActive.size() > 10000)
-				{
-					System.out.println("\n*** Processing active MESSAGE map has more than 10000 items and was cleared.");
-					this.processingActive.clear();
-				}
+				System.out.println("\n*** Processing active MESSAGE map has more than 100000 items and was cleared.");
+				this.processingActive.clear();
 			}
 		}
 		catch (Exception e)
@@ -234,11 +219,8 @@ public class ConfigurationManager implements ManagerInterface
 	{
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				this.processingActive.remove(threadIdentifier);
-			}
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			this.processingActive.remove(threadIdentifier);
 		}
 		catch (Exception e)
 		{
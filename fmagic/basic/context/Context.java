@@ -107,6 +107,15 @@ public abstract class Context implements Cloneable, ManagerInterface
 	// Session data, containing relevant user data
 	private SessionContainer sessionContainer = null;
 
+	// Deadline of the client request processed, that is the point of time
+	// (see System.currentTimeMillis()) the client stops waiting for the
+	// response, or 0 if there is no deadline
+	private long deadline = 0;
+
+	// Trace identifier of the client request processed, or null if there is
+	// no one
+	private String traceIdentifier = null;
+
 	// Context type
 	public static enum ContextTypeEnum
 	{
@@ -971,6 +980,64 @@ public abstract class Context implements Cloneable, ManagerInterface
 		this.sessionContainer = sessionContainer;
 	}
 
+	/**
+	 * Getter
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setDeadline(long deadline)
+	{
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Check if the deadline of the client request processed is exceeded, so
+	 * the client doesn't wait for the response anymore and any further work
+	 * on the request can be abandoned.
+	 * 
+	 * @return Returns <TT>true</TT> if the deadline is exceeded, or
+	 *         <TT>false</TT> if it isn't or if there is no deadline.
+	 */
+	public boolean isDeadlineExceeded()
+	{
+		return this.deadline > 0 && System.currentTimeMillis() >= this.deadline;
+	}
+
+	/**
+	 * Get the time remaining until the deadline of the client request
+	 * processed is exceeded.
+	 * 
+	 * @return Returns the remaining time in milliseconds, 0 if the deadline is
+	 *         exceeded, or -1 if there is no deadline.
+	 */
+	public long getRemainingTimeInMilliseconds()
+	{
+		if (this.deadline <= 0) return -1;
+		return Math.max(0, this.deadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getTraceIdentifier()
+	{
+		return traceIdentifier;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setTraceIdentifier(String traceIdentifier)
+	{
+		this.traceIdentifier = traceIdentifier;
+	}
+
 	/**
 	 * Check if there is an error message in the dump list.
 	 * 
@@ -35,6 +35,7 @@ public class FileLocationFunctions
 
 	private static final String localdataSubPath = "configuration/fmagic.localdata";
 	private static final String localdataFileName = "fmagic.${codename}.localdata.properties";
+	private static final String localdataSessionSnapshotFileName = "fmagic.${codename}.sessions.snapshot";
 
 	private static final String logSubPath = "configuration/fmagic.logging";
 
@@ -49,6 +50,14 @@ public class FileLocationFunctions
 	private static final String logFlatSubPath = "configuration/fmagic.logging/fmagic.logging.flat";
 	private static final String logFlatFileName = "fmagic-flat-${ndate}.log";
 
+	private static final String logMetricsSubPath = "configuration/fmagic.logging/fmagic.logging.metrics";
+	private static final String logMetricsSubSubPath = "${codename}";
+	private static final String logMetricsFileName = "fmagic-metrics-${codename}-${ndate}.log";
+
+	private static final String logSlowRequestSubPath = "configuration/fmagic.logging/fmagic.logging.slowrequests";
+	private static final String logSlowRequestSubSubPath = "${codename}";
+	private static final String logSlowRequestFileName = "fmagic-slowrequests-${codename}-${ndate}.log";
+
 	private static final String logTicketSubPath = "configuration/fmagic.logging/fmagic.logging.tickets";
 	private static final String logTicketSubSubPath = "${sdate}";
 	private static final String logTicketComposer = "fmagic-${codename}-${context}-${timestamp}-[${thread}]";
@@ -64,6 +73,7 @@ public class FileLocationFunctions
 	private static final String mediaFileName = "${application}-${alias}-${identifier}-${encodingkey}-${hashvalue}.${filetype}";
 	private static final String mediaPendingFileName = "${timestamp}-${application}-${codename}-[${thread}].${filetype}";
 	private static final String mediaPendingSubPath = "pending";
+	private static final String mediaUploadFileName = "upload-${application}-${alias}-${identifier}-${hashvalue}.${filetype}";
 	private static final String mediaDeletedFileName = "${originalname}-${timestamp}-[${thread}].${filetype}";
 	private static final String mediaDeletedSubPath = "deleted";
 	private static final String mediaTestDirectoryLiteral = "$media$";
@@ -301,6 +311,54 @@ public class FileLocationFunctions
 		return logFlatSubPath;
 	}
 
+	/**
+	 * Getter
+	 */
+	public static String getLogMetricsSubPath()
+	{
+		return logMetricsSubPath;
+	}
+
+	/**
+	 * Getter
+	 */
+	public static String getLogMetricsSubSubPath()
+	{
+		return logMetricsSubSubPath;
+	}
+
+	/**
+	 * Getter
+	 */
+	public static String getLogMetricsFileName()
+	{
+		return logMetricsFileName;
+	}
+
+	/**
+	 * Getter
+	 */
+	public static String getLogSlowRequestSubPath()
+	{
+		return logSlowRequestSubPath;
+	}
+
+	/**
+	 * Getter
+	 */
+	public static String getLogSlowRequestSubSubPath()
+	{
+		return logSlowRequestSubSubPath;
+	}
+
+	/**
+	 * Getter
+	 */
+	public static String getLogSlowRequestFileName()
+	{
+		return logSlowRequestFileName;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -317,6 +375,14 @@ public class FileLocationFunctions
 		return localdataFileName;
 	}
 
+	/**
+	 * Getter
+	 */
+	public static String getLocaldataSessionSnapshotFileName()
+	{
+		return localdataSessionSnapshotFileName;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -549,6 +615,14 @@ public class FileLocationFunctions
 		return mediaPendingFileName;
 	}
 
+	/**
+	 * Getter
+	 */
+	public static String getMediaUploadFileName()
+	{
+		return mediaUploadFileName;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -3,6 +3,7 @@ package fmagic.basic.file;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -1079,6 +1080,66 @@ public class FileUtilFunctions
 		}
 	}
 
+	/**
+	 * Read a range of the file content and return it as a string, coded the
+	 * same way as by <TT>fileReadToString()</TT>.
+	 * 
+	 * @param filePath
+	 *            The path of the file to be read.
+	 * 
+	 * @param offset
+	 *            The position of the first byte to read.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to read, or <TT>-1</TT> to read
+	 *            up to the end of the file.
+	 * 
+	 * @return Returns the content of the range, or <TT>null</TT> if an error
+	 *         occurred, or the file doesn't exist. A range beyond the end of
+	 *         the file returns an empty string.
+	 */
+	public static String fileReadRangeToString(String filePath, long offset, long length)
+	{
+		// Check parameters
+		if (filePath == null || filePath.length() == 0) return null;
+		if (offset < 0) return null;
+		if (FileUtilFunctions.fileExists(filePath) == false) return null;
+
+		// Read file content
+		RandomAccessFile file = null;
+
+		try
+		{
+			file = new RandomAccessFile(filePath, "r");
+
+			// Compute range
+			long end = file.length();
+			if (length >= 0 && length < end - offset) end = offset + length;
+			if (offset >= end) return "";
+
+			// Get result
+			byte[] content = new byte[(int) (end - offset)];
+			file.seek(offset);
+			file.readFully(content);
+			return Base64.encodeBase64URLSafeString(content);
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+		finally
+		{
+			try
+			{
+				if (file != null) file.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+	}
+
 	/**
 	 * Write a string, coded as "UTF-8", to a file as byte code.
 	 * <p>
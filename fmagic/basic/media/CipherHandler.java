@@ -13,6 +13,7 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.DESKeySpec;
 
 import fmagic.basic.context.Context;
+import fmagic.basic.notification.NotificationManager;
 import fmagic.basic.resource.ResourceManager;
 
 /**
@@ -27,6 +28,9 @@ import fmagic.basic.resource.ResourceManager;
  */
 public class CipherHandler
 {
+	// Number of blocks copied between two checks of the deadline
+	private static final int DEADLINE_CHECK_INTERVAL_IN_BLOCKS = 1024;
+
 	private final Context context;
 
 	/**
@@ -77,6 +81,59 @@ public class CipherHandler
 		return this.encryptOrDecrypt(keyValue, Cipher.DECRYPT_MODE, sourceFilePath, destinationFilePath);
 	}
 
+	/**
+	 * Open a stream that decrypts a file while reading it, so the decrypted
+	 * content is never stored as a whole, neither in a file nor in memory.
+	 * 
+	 * @param keyValue
+	 *            The key (password) to use.
+	 * 
+	 * @param sourceFilePath
+	 *            The file path of the file to be decrypted.
+	 * 
+	 * @return Returns the decrypting stream, or <TT>null</TT> if an error
+	 *         occurred. It's your concern to close the stream.
+	 */
+	public InputStream openDecryptingInputStream(String keyValue, String sourceFilePath)
+	{
+		// Check parameters
+		if (sourceFilePath == null || sourceFilePath.length() == 0) return null;
+
+		// Open stream
+		FileInputStream fileInputStream = null;
+
+		try
+		{
+			fileInputStream = new FileInputStream(sourceFilePath);
+
+			DESKeySpec dks = new DESKeySpec(keyValue.getBytes());
+			SecretKeyFactory skf = SecretKeyFactory.getInstance("DES");
+			SecretKey desKey = skf.generateSecret(dks);
+			Cipher cipher = Cipher.getInstance("DES");
+			cipher.init(Cipher.DECRYPT_MODE, desKey);
+
+			return new CipherInputStream(fileInputStream, cipher);
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> Error on opening a decrypting stream.";
+			errorString += "\n--> Source file: '" + sourceFilePath + "'";
+
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Cipher", "ErrorOnCiphering"), errorString, e);
+
+			try
+			{
+				if (fileInputStream != null) fileInputStream.close();
+			}
+			catch (Exception e2)
+			{
+				// Be silent
+			}
+
+			return null;
+		}
+	}
+
 	/**
 	 * Process ciphering, encrypting or decrypting.
 	 * 
@@ -116,13 +173,13 @@ public class CipherHandler
 			{
 				cipher.init(Cipher.ENCRYPT_MODE, desKey);
 				CipherInputStream cipherInputStream = new CipherInputStream(fileInputStream, cipher);
-				this.doCopy(cipherInputStream, fileOutputStream);
+				if (this.doCopy(cipherInputStream, fileOutputStream) == false) return false;
 			}
 			else if (mode == Cipher.DECRYPT_MODE)
 			{
 				cipher.init(Cipher.DECRYPT_MODE, desKey);
 				CipherOutputStream cipherOutputStream = new CipherOutputStream(fileOutputStream, cipher);
-				this.doCopy(fileInputStream, cipherOutputStream);
+				if (this.doCopy(fileInputStream, cipherOutputStream) == false) return false;
 			}
 		}
 		catch (Exception e)
@@ -140,7 +197,8 @@ public class CipherHandler
 	}
 
 	/**
-	 * Copy file streams.
+	 * Copy file streams. The copying is abandoned if the deadline of the
+	 * client request processed is exceeded.
 	 * 
 	 * @param inputStream
 	 *            The file input stream.
@@ -155,12 +213,22 @@ public class CipherHandler
 	{
 		byte[] bytes = new byte[64];
 		int numBytes;
+		int numBlocks = 0;
 
 		try
 		{
 			while ((numBytes = inputStream.read(bytes)) != -1)
 			{
 				outputStream.write(bytes, 0, numBytes);
+
+				// Abandon copying if the client doesn't wait anymore
+				if (++numBlocks % DEADLINE_CHECK_INTERVAL_IN_BLOCKS == 0 && this.getContext().isDeadlineExceeded() == true)
+				{
+					this.getContext().getNotificationManager().notifyLogMessage(this.getContext(), NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> Deadline of the request exceeded, encrypting or decrypting abandoned.");
+					outputStream.close();
+					inputStream.close();
+					return false;
+				}
 			}
 
 			outputStream.flush();
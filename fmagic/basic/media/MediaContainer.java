@@ -135,6 +135,37 @@ public class MediaContainer
 		return FileUtilFunctions.fileReadToString(this.workingMediaFilePath);
 	}
 
+	/**
+	 * Read a range of the media data and returns it as an UTF8 string,
+	 * suitable to be used for server/client communication.
+	 * <p>
+	 * Please notice: There is a workflow to consider regarding the media
+	 * container. First you have to bind a media, using <TT>bindMedia()</TT>,
+	 * then you can read media content, then you should release all resources,
+	 * using <TT>releaseMedia()</TT>.
+	 * 
+	 * @param offset
+	 *            The position of the first byte to read.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to read, or <TT>-1</TT> to read
+	 *            up to the end of the media.
+	 * 
+	 * @return Returns the content of the range, or <TT>null</TT> if an error
+	 *         occurred.
+	 */
+	public String readMediaContentAsString(long offset, long length)
+	{
+		// Check if media is already bound
+		if (this.boundMark == false) return null;
+
+		// Check if working file is available
+		if (this.workingMediaFilePath == null || this.workingMediaFilePath.length() == 0) return null;
+
+		// Read working file
+		return FileUtilFunctions.fileReadRangeToString(this.workingMediaFilePath, offset, length);
+	}
+
 	/**
 	 * Release a media file of the media container. That means, all resources
 	 * were deallocated.
@@ -1,11 +1,24 @@
 package fmagic.basic.media;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import fmagic.basic.application.ManagerInterface;
 import fmagic.basic.command.ConnectionContainer;
@@ -13,6 +26,7 @@ import fmagic.basic.command.ResponseContainer;
 import fmagic.basic.context.Context;
 import fmagic.basic.file.FileLocationFunctions;
 import fmagic.basic.file.FileUtilFunctions;
+import fmagic.basic.notification.FlightRecorderEvent;
 import fmagic.basic.notification.NotificationManager;
 import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
@@ -53,6 +67,12 @@ public abstract class MediaManager implements ManagerInterface
 {
 	// Settings for Server Encoding
 	protected final HashMap<Integer, String> encodingKeyList = new HashMap<Integer, String>();
+
+	// Locks of upload sessions, by file name. A lock is held in the map only
+	// while a part of the upload session is written, so the map doesn't grow
+	// with completed or abandoned upload sessions.
+	private final HashMap<String, UploadSessionLock> uploadSessionLocks = new HashMap<String, UploadSessionLock>();
+	private final ReentrantLock uploadSessionLocksLock = new ReentrantLock();
 	protected int encodingKeyNumber = 0;
 	protected boolean encodingEnabled = false;
 
@@ -387,6 +407,13 @@ public abstract class MediaManager implements ManagerInterface
 		 * Copy media file to pending directory
 		 */
 
+		// Abandon processing if the client doesn't wait anymore
+		if (context.isDeadlineExceeded() == true)
+		{
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> DECRYPT: Deadline of the request exceeded, copying media file abandoned: '" + sourceFilePath + "'");
+			return null;
+		}
+
 		// Get file path of pending media file
 		String pendingFilePath = FileLocationFunctions.compileFilePath(mediaResourceContainer.mediaFileGetPendingFilePath(context), mediaResourceContainer.mediaFileGetPendingFileName(context, fileType));
 
@@ -418,6 +445,14 @@ public abstract class MediaManager implements ManagerInterface
 		 * Decrypt media file
 		 */
 
+		// Abandon processing if the client doesn't wait anymore
+		if (context.isDeadlineExceeded() == true)
+		{
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> DECRYPT: Deadline of the request exceeded, decrypting media file abandoned: '" + sourceFilePath + "'");
+			FileUtilFunctions.fileDelete(pendingFilePath);
+			return null;
+		}
+
 		// Get key value (password)
 		String keyValue = this.encodingKeyList.get(keyNumber);
 
@@ -456,9 +491,21 @@ public abstract class MediaManager implements ManagerInterface
 
 		// Decrypt media file
 		CipherHandler cipherHandler = new CipherHandler(context);
+		FlightRecorderEvent decryptEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_DECRYPT);
+		boolean isDecrypted = cipherHandler.decrypt(keyValue, pendingFilePath, destinationFilePath);
+		if (decryptEvent != null) decryptEvent.commit(mediaResourceContainer.getRecourceIdentifier(), mediaResourceContainer.mediaFileGetFileNamePartDataIdentifier(context, sourceFilePath), new File(pendingFilePath).length(), isDecrypted);
 
-		if (cipherHandler.decrypt(keyValue, pendingFilePath, destinationFilePath) == false)
+		if (isDecrypted == false)
 		{
+			// Decrypting was abandoned, because the client doesn't wait
+			// anymore
+			if (context.isDeadlineExceeded() == true)
+			{
+				FileUtilFunctions.fileDelete(pendingFilePath);
+				FileUtilFunctions.fileDelete(destinationFilePath);
+				return null;
+			}
+
 			String errorString = "--> DECRYPT: Error on decrypting media file.";
 			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
 			errorString += "\n--> File name of original media file: '" + sourceFilePath + "'";
@@ -533,6 +580,160 @@ public abstract class MediaManager implements ManagerInterface
 		return destinationFilePath;
 	}
 
+	/**
+	 * Open a media file for streaming its content. An unencrypted media file
+	 * is opened directly, so its content can be transferred from the file
+	 * channel to a socket without copying. An encrypted media file is
+	 * decrypted on the fly while reading.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param sourceFilePath
+	 *            The full path of the media file to be read.
+	 * 
+	 * @return Returns the content stream, or <TT>null</TT> if an error
+	 *         occurred. It's your concern to close the stream.
+	 */
+	public InputStream localOpenMediaContentStream(Context context, ResourceContainerMedia mediaResourceContainer, String sourceFilePath)
+	{
+		return this.localOpenMediaContentStream(context, mediaResourceContainer, sourceFilePath, 0);
+	}
+
+	/**
+	 * Open a media file for streaming its content, beginning at a given
+	 * position of the (decrypted) content.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param sourceFilePath
+	 *            The full path of the media file to be read.
+	 * 
+	 * @param offset
+	 *            The position of the first byte to read.
+	 * 
+	 * @return Returns the content stream, or <TT>null</TT> if an error
+	 *         occurred. It's your concern to close the stream.
+	 */
+	public InputStream localOpenMediaContentStream(Context context, ResourceContainerMedia mediaResourceContainer, String sourceFilePath, long offset)
+	{
+		/*
+		 * Validate parameter
+		 */
+		if (mediaResourceContainer == null) return null;
+		if (sourceFilePath == null || sourceFilePath.length() == 0) return null;
+		if (offset < 0) return null;
+
+		InputStream mediaContentStream = null;
+
+		// Begin recording for the Java Flight Recorder, the reading ends on
+		// closing the stream
+		FlightRecorderEvent readEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_READ);
+		final MediaReadEventRecorder readEventRecorder = readEvent != null ? new MediaReadEventRecorder(readEvent, mediaResourceContainer.getRecourceIdentifier(), mediaResourceContainer.mediaFileGetFileNamePartDataIdentifier(context, sourceFilePath), new File(sourceFilePath).length() - offset) : null;
+
+		try
+		{
+			/*
+			 * Open unencrypted media file, and position the file channel
+			 */
+			int keyNumber = mediaResourceContainer.mediaFileGetEncodingKeyOfRealFileName(context, sourceFilePath);
+
+			if (keyNumber == 0)
+			{
+				// The stream must remain a FileInputStream for zero-copy
+				// streaming, so it is subclassed instead of wrapped
+				FileInputStream fileInputStream = readEventRecorder == null ? new FileInputStream(sourceFilePath) : new FileInputStream(sourceFilePath)
+				{
+					@Override
+					public void close() throws IOException
+					{
+						super.close();
+						readEventRecorder.commit(true);
+					}
+				};
+
+				mediaContentStream = fileInputStream;
+				fileInputStream.getChannel().position(offset);
+				return fileInputStream;
+			}
+
+			/*
+			 * Open encrypted media file
+			 */
+			String keyValue = this.encodingKeyList.get(keyNumber);
+
+			if (keyValue == null || keyValue.length() == 0)
+			{
+				String errorString = "--> STREAM: Missing key value (password) for server encoding key '" + String.valueOf(keyNumber) + "'.";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> File name of media file: '" + sourceFilePath + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnProcessingFile"), errorString, null);
+				if (readEventRecorder != null) readEventRecorder.commit(false);
+				return null;
+			}
+
+			CipherHandler cipherHandler = new CipherHandler(context);
+			mediaContentStream = cipherHandler.openDecryptingInputStream(keyValue, sourceFilePath);
+
+			if (mediaContentStream == null)
+			{
+				if (readEventRecorder != null) readEventRecorder.commit(false);
+				return null;
+			}
+
+			/*
+			 * Skip decrypted content up to the offset
+			 */
+			byte[] buffer = new byte[8192];
+			long remainingBytes = offset;
+
+			while (remainingBytes > 0)
+			{
+				int byteCount = mediaContentStream.read(buffer, 0, (int) Math.min(buffer.length, remainingBytes));
+				if (byteCount == -1) break;
+				remainingBytes -= byteCount;
+			}
+
+			if (readEventRecorder == null) return mediaContentStream;
+
+			return new FilterInputStream(mediaContentStream)
+			{
+				@Override
+				public void close() throws IOException
+				{
+					super.close();
+					readEventRecorder.commit(true);
+				}
+			};
+		}
+		catch (Exception e)
+		{
+			try
+			{
+				if (mediaContentStream != null) mediaContentStream.close();
+			}
+			catch (Exception e2)
+			{
+				// Be silent
+			}
+
+			if (readEventRecorder != null) readEventRecorder.commit(false);
+
+			String errorString = "--> STREAM: Error on opening media file.";
+			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+			errorString += "\n--> File name of media file: '" + sourceFilePath + "'";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnProcessingFile"), errorString, e);
+			return null;
+		}
+	}
+
 	/**
 	 * Upload a media file to the system.
 	 * 
@@ -553,6 +754,54 @@ public abstract class MediaManager implements ManagerInterface
 	 *         <TT>false</TT>.
 	 */
 	protected boolean localStoreMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String uploadFileNamePath, String dataIdentifier)
+	{
+		return this.localStoreMediaFile(context, mediaResourceContainer, uploadFileNamePath, dataIdentifier, null);
+	}
+
+	/**
+	 * Upload a media file to the system, whose hash value is already known,
+	 * e. g. because it was computed while the file was received.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param uploadFileNamePath
+	 *            The full path of the file to be uploaded.
+	 * 
+	 * @param dataIdentifier
+	 *            The identifier of the concrete media item to use for the
+	 *            destination file.
+	 * 
+	 * @param knownHashValue
+	 *            The hash value of the file to be uploaded, or <TT>null</TT>
+	 *            if it has to be computed.
+	 * 
+	 * @return Returns <TT>true</TT> if the file could be stored, otherwise
+	 *         <TT>false</TT>.
+	 */
+	protected boolean localStoreMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String uploadFileNamePath, String dataIdentifier, String knownHashValue)
+	{
+		// Begin recording for the Java Flight Recorder
+		FlightRecorderEvent storeEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_STORE);
+		long fileSize = storeEvent != null && uploadFileNamePath != null ? new File(uploadFileNamePath).length() : 0;
+
+		// Store media file
+		boolean isStored = this.doStoreMediaFile(context, mediaResourceContainer, uploadFileNamePath, dataIdentifier, knownHashValue);
+
+		// Record storing for the Java Flight Recorder
+		if (storeEvent != null) storeEvent.commit(mediaResourceContainer != null ? mediaResourceContainer.getRecourceIdentifier() : null, dataIdentifier, fileSize, isStored);
+
+		// Return
+		return isStored;
+	}
+
+	/**
+	 * Upload a media file to the system (see <TT>localStoreMediaFile()</TT>).
+	 */
+	private boolean doStoreMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String uploadFileNamePath, String dataIdentifier, String knownHashValue)
 	{
 		/*
 		 * Check variables and conditions
@@ -720,7 +969,8 @@ public abstract class MediaManager implements ManagerInterface
 		/*
 		 * Get hash value of the original file
 		 */
-		String hashValue = FileUtilFunctions.fileGetHashValue(pendingFilePath);
+		String hashValue = knownHashValue;
+		if (hashValue == null) hashValue = FileUtilFunctions.fileGetHashValue(pendingFilePath);
 
 		if (hashValue == null)
 		{
@@ -742,7 +992,9 @@ public abstract class MediaManager implements ManagerInterface
 		{
 			String encryptedPendingFileName = FileLocationFunctions.compileFilePath(mediaResourceContainer.mediaFileGetPendingFilePath(context), mediaResourceContainer.mediaFileGetPendingFileName(context, fileType));
 
+			FlightRecorderEvent encryptEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_ENCRYPT);
 			encryptedPendingFileName = this.localEncryptMediaFile(context, mediaResourceContainer, pendingFilePath, encryptedPendingFileName);
+			if (encryptEvent != null) encryptEvent.commit(mediaResourceContainer.getRecourceIdentifier(), dataIdentifier, new File(pendingFilePath).length(), encryptedPendingFileName != null);
 
 			if (encryptedPendingFileName == null)
 			{
@@ -1048,33 +1300,42 @@ public abstract class MediaManager implements ManagerInterface
 			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> UPLOAD FROM CLIENT TO SERVERL: Media file hash value [" + hashValue + "] computed for: '" + pendingFileName + "'");
 
 			/*
-			 * COMMAND Media File Upload
+			 * COMMAND Media File Upload, in parts if the media file is large
 			 */
+			Integer resumableChunkSizeInBytes = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandMediaFileUpload", "ResumableChunkSizeInBytes"), false);
+			long fileSize = new File(pendingFileName).length();
 
-			// Execute command
-			ClientCommand command = new ClientCommandMediaFileUpload(context, context.getApplicationManager(), connectionContainer, pendingFileName, mediaResourceContainer.getRecourceIdentifier(), fileType, dataIdentifier, hashValue);
-			ResponseContainer responseContainer = command.execute();
-
-			if (responseContainer == null)
+			if (resumableChunkSizeInBytes != null && resumableChunkSizeInBytes > 0 && fileSize > resumableChunkSizeInBytes)
 			{
-				String errorString = "--> UPLOAD FROM CLIENT TO SERVER: Error on executing command 'ClientCommandMediaFileUpload' on server.";
-				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
-				errorString += "\n--> File name of file to be uploaded: '" + uploadFileNamePath + "'";
-				errorString += "\n--> Data identifier of media: '" + dataIdentifier + "'";
-				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnUploadingFile"), errorString, null);
-				return false;
+				if (this.commandUploadPartsToServer(context, connectionContainer, mediaResourceContainer, pendingFileName, fileType, dataIdentifier, hashValue, fileSize, resumableChunkSizeInBytes) == false) return false;
 			}
-
-			if (responseContainer.isError())
+			else
 			{
-				String errorString = "--> UPLOAD FROM CLIENT TO SERVER: Error on executing command 'ClientCommandMediaFileUpload' on server.";
-				errorString += "\n--> Application server replied an error code: '" + responseContainer.getErrorCode() + "'";
-				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
-				errorString += "\n--> File name of file to be uploaded: '" + uploadFileNamePath + "'";
-				errorString += "\n--> Data identifier of media: '" + dataIdentifier + "'";
-				errorString += responseContainer.toString();
-				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnUploadingFile"), errorString, null);
-				return false;
+				// Execute command
+				ClientCommand command = new ClientCommandMediaFileUpload(context, context.getApplicationManager(), connectionContainer, pendingFileName, mediaResourceContainer.getRecourceIdentifier(), fileType, dataIdentifier, hashValue);
+				ResponseContainer responseContainer = command.execute();
+
+				if (responseContainer == null)
+				{
+					String errorString = "--> UPLOAD FROM CLIENT TO SERVER: Error on executing command 'ClientCommandMediaFileUpload' on server.";
+					errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+					errorString += "\n--> File name of file to be uploaded: '" + uploadFileNamePath + "'";
+					errorString += "\n--> Data identifier of media: '" + dataIdentifier + "'";
+					context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnUploadingFile"), errorString, null);
+					return false;
+				}
+
+				if (responseContainer.isError())
+				{
+					String errorString = "--> UPLOAD FROM CLIENT TO SERVER: Error on executing command 'ClientCommandMediaFileUpload' on server.";
+					errorString += "\n--> Application server replied an error code: '" + responseContainer.getErrorCode() + "'";
+					errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+					errorString += "\n--> File name of file to be uploaded: '" + uploadFileNamePath + "'";
+					errorString += "\n--> Data identifier of media: '" + dataIdentifier + "'";
+					errorString += responseContainer.toString();
+					context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnUploadingFile"), errorString, null);
+					return false;
+				}
 			}
 
 			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> UPLOAD FROM CLIENT TO SERVER: Media file uploaded on server: '" + pendingFileName + "'");
@@ -1098,6 +1359,112 @@ public abstract class MediaManager implements ManagerInterface
 		return true;
 	}
 
+	/**
+	 * Executes the Client/Server COMMAND <TT>CommandMediaFileUpload</TT> part
+	 * by part (resumable upload).
+	 * <p>
+	 * Each part begins at the length of the media file received by the server
+	 * so far. If the upload of a part fails, the client asks the server for
+	 * this length and continues from there, instead of starting the whole
+	 * media file again. The number of repetitions is limited by the
+	 * configuration property <TT>CommandMediaFileUpload/ResumableRetries</TT>.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param connectionContainer
+	 *            The connection container to use for the connection.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param uploadFileNamePath
+	 *            The full path of the file to be uploaded.
+	 * 
+	 * @param fileType
+	 *            The file type of the media file.
+	 * 
+	 * @param dataIdentifier
+	 *            The identifier of the concrete media item.
+	 * 
+	 * @param hashValue
+	 *            The hash value of the media file.
+	 * 
+	 * @param fileSize
+	 *            The size of the media file in bytes.
+	 * 
+	 * @param partSize
+	 *            The maximum size of a part in bytes.
+	 * 
+	 * @return Returns <TT>true</TT> if the media file was uploaded or already
+	 *         exists on server, otherwise <TT>false</TT>.
+	 */
+	private boolean commandUploadPartsToServer(Context context, ConnectionContainer connectionContainer, ResourceContainerMedia mediaResourceContainer, String uploadFileNamePath, String fileType, String dataIdentifier, String hashValue, long fileSize, long partSize)
+	{
+		// Get number of repetitions
+		Integer resumableRetries = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandMediaFileUpload", "ResumableRetries"), false);
+		if (resumableRetries == null) resumableRetries = 3;
+
+		long offset = 0;
+		int failures = 0;
+
+		while (true)
+		{
+			/*
+			 * Upload next part
+			 */
+			long length = Math.min(partSize, fileSize - offset);
+			ClientCommandMediaFileUpload command = new ClientCommandMediaFileUpload(context, context.getApplicationManager(), connectionContainer, uploadFileNamePath, mediaResourceContainer.getRecourceIdentifier(), fileType, dataIdentifier, hashValue, offset, length);
+			ResponseContainer responseContainer = command.execute();
+
+			if (responseContainer != null && responseContainer.isError() == false && command.getUploadedLength() != null)
+			{
+				// Media file complete or already existing on server
+				if (command.isExisting() == true || command.isUploaded() == true) return true;
+
+				// Continue at the length received by the server
+				if (command.getUploadedLength() > offset && command.getUploadedLength() < fileSize)
+				{
+					offset = command.getUploadedLength();
+					failures = 0;
+					continue;
+				}
+			}
+
+			/*
+			 * Part failed, check number of repetitions
+			 */
+			failures++;
+
+			if (failures > resumableRetries)
+			{
+				String errorString = "--> UPLOAD FROM CLIENT TO SERVER: Error on uploading media file part by part, number of repetitions exceeded.";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> File name of file to be uploaded: '" + uploadFileNamePath + "'";
+				errorString += "\n--> Data identifier of media: '" + dataIdentifier + "'";
+				errorString += "\n--> Offset of the failed part: '" + String.valueOf(offset) + "' of '" + String.valueOf(fileSize) + "' Byte";
+				if (responseContainer != null) errorString += responseContainer.toString();
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnUploadingFile"), errorString, null);
+				return false;
+			}
+
+			/*
+			 * Ask the server for the length received so far, by uploading an
+			 * empty part at the end of the media file
+			 */
+			ClientCommandMediaFileUpload resumeCommand = new ClientCommandMediaFileUpload(context, context.getApplicationManager(), connectionContainer, uploadFileNamePath, mediaResourceContainer.getRecourceIdentifier(), fileType, dataIdentifier, hashValue, fileSize, 0);
+			ResponseContainer resumeResponseContainer = resumeCommand.execute();
+
+			if (resumeResponseContainer != null && resumeResponseContainer.isError() == false && resumeCommand.getUploadedLength() != null)
+			{
+				if (resumeCommand.isExisting() == true || resumeCommand.isUploaded() == true) return true;
+				offset = Math.min(resumeCommand.getUploadedLength(), fileSize);
+			}
+
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> UPLOAD FROM CLIENT TO SERVER: Upload of a part failed, continuing at offset '" + String.valueOf(offset) + "' of '" + String.valueOf(fileSize) + "' Byte: '" + uploadFileNamePath + "'");
+		}
+	}
+
 	/**
 	 * Executes the Client/Server COMMAND <TT>CommandMediaFileCheck</TT>.
 	 * <p>
@@ -1312,6 +1679,60 @@ public abstract class MediaManager implements ManagerInterface
 		return command;
 	}
 
+	/**
+	 * Executes the Client/Server COMMAND <TT>CommandMediaFileInfo</TT>
+	 * asynchronously, using the executor of the application for client
+	 * commands.
+	 * <p>
+	 * This way many servers can be asked at once. The command is executed
+	 * with its own context, because the context of the caller must not be
+	 * used by many threads at the same time.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param connectionContainer
+	 *            The connection container to use for the connection.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param dataIdentifier
+	 *            The identifier of the concrete media item to consider.
+	 * 
+	 * @return Returns the future of the command container, see
+	 *         <TT>commandInfoOnServer()</TT>.
+	 */
+	protected Future<ClientCommandMediaFileInfo> commandInfoOnServerAsync(Context context, final ConnectionContainer connectionContainer, final ResourceContainerMedia mediaResourceContainer, final String dataIdentifier)
+	{
+		// Create a SILENT dump context for the command
+		final Context commandContext = context.createSilentDumpContext(ResourceManager.context(context, "Processing", "ClientRequestToServer"));
+
+		// Create task
+		FutureTask<ClientCommandMediaFileInfo> task = new FutureTask<ClientCommandMediaFileInfo>(new Callable<ClientCommandMediaFileInfo>()
+		{
+			@Override
+			public ClientCommandMediaFileInfo call()
+			{
+				return MediaManager.this.commandInfoOnServer(commandContext, connectionContainer, mediaResourceContainer, dataIdentifier);
+			}
+		});
+
+		// Submit task, or execute it on the calling thread if the executor is
+		// already shut down
+		try
+		{
+			context.getApplicationManager().getClientCommandExecutor().execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			task.run();
+		}
+
+		// Return
+		return task;
+	}
+
 	/**
 	 * Executes the Client/Server COMMAND <TT>CommandMediaFileRead</TT>.
 	 * <p>
@@ -1366,10 +1787,17 @@ public abstract class MediaManager implements ManagerInterface
 		 * COMMAND Media File Read
 		 */
 
+		// Provide a temporary file for receiving the media content as
+		// stream, because the file type is not known yet
+		String contentFileName = FileLocationFunctions.compileFilePath(mediaResourceContainer.mediaFileGetPendingFilePath(context), mediaResourceContainer.mediaFileGetPendingFileName(context, "download"));
+		new File(mediaResourceContainer.mediaFileGetPendingFilePath(context)).mkdirs();
+
 		// Execute command
-		ClientCommandMediaFileRead command = new ClientCommandMediaFileRead(context, context.getApplicationManager(), connectionContainer, mediaResourceContainer.getRecourceIdentifier(), dataIdentifier);
+		ClientCommandMediaFileRead command = new ClientCommandMediaFileRead(context, context.getApplicationManager(), connectionContainer, mediaResourceContainer.getRecourceIdentifier(), dataIdentifier, contentFileName);
 		ResponseContainer responseContainer = command.execute();
 
+		if (command.isContentReceived() == false && FileUtilFunctions.fileExists(contentFileName) == true) FileUtilFunctions.fileDelete(contentFileName);
+
 		if (responseContainer == null)
 		{
 			String errorString = "--> READ FROM SERVER: Error on executing command 'ClientCommandMediaFileRead' on server.";
@@ -1409,6 +1837,7 @@ public abstract class MediaManager implements ManagerInterface
 			String errorString = "--> READ FROM SERVER: Missing file type of media file read";
 			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
 			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Command", "ErrorOnProcessingCommand"), errorString, null);
+			if (command.isContentReceived() == true) FileUtilFunctions.fileDelete(contentFileName);
 			return null;
 		}
 
@@ -1422,8 +1851,24 @@ public abstract class MediaManager implements ManagerInterface
 		logText += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
 		context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
 
+		// Move the media content streamed into the temporary file to the
+		// pending file
+		if (command.isContentReceived() == true)
+		{
+			if (FileUtilFunctions.fileMove(contentFileName, pendingFileName) == false)
+			{
+				String errorString = "--> READ FROM SERVER: Error on moving streamed media content into the pending file";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> Temporary file name: '" + contentFileName + "'";
+				errorString += "\n--> Pending file name: '" + pendingFileName + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Command", "ErrorOnProcessingCommand"), errorString, null);
+				FileUtilFunctions.fileDelete(contentFileName);
+				return null;
+			}
+		}
+
 		// Store file content into the pending file
-		if (FileUtilFunctions.fileWriteFromString(pendingFileName, command.getMediaContent()) == false)
+		else if (FileUtilFunctions.fileWriteFromString(pendingFileName, command.getMediaContent()) == false)
 		{
 			String errorString = "--> READ FROM SERVER: Error on writing media content into the pending file";
 			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
@@ -2467,6 +2912,418 @@ public abstract class MediaManager implements ManagerInterface
 		}
 	}
 
+	/**
+	 * Push a media file into the system, whose content is read from a stream,
+	 * e. g. the content frames of an upload sent directly after the request.
+	 * The content is written into a pending file chunk by chunk, and the hash
+	 * value is computed on the fly.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param dataIdentifier
+	 *            The data identifier of the media.
+	 * 
+	 * @param fileType
+	 *            The file type to consider.
+	 * 
+	 * @param hashValue
+	 *            The expected hash value of the media content.
+	 * 
+	 * @param mediaContentStream
+	 *            The stream to read the media content from.
+	 * 
+	 * @return Returns <TT>true</TT> if the media file could be pushed,
+	 *         otherwise <TT>false</TT>.
+	 * 
+	 */
+	public boolean localWriteMediaContentStreamToMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String dataIdentifier, String fileType, String hashValue, InputStream mediaContentStream)
+	{
+		String pendingFileName = null;
+
+		try
+		{
+			/*
+			 * Stream media content into a pending file
+			 */
+			pendingFileName = FileLocationFunctions.compileFilePath(mediaResourceContainer.mediaFileGetPendingFilePath(context), mediaResourceContainer.mediaFileGetPendingFileName(context, fileType));
+
+			String logText = "\n--> PUSH MEDIA STREAM: Pending file name created";
+			logText += "\n--> Pending file name: '" + pendingFileName + "'";
+			logText += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+			new File(mediaResourceContainer.mediaFileGetPendingFilePath(context)).mkdirs();
+
+			MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+			OutputStream pendingFile = new FileOutputStream(pendingFileName);
+			long numberOfBytes = 0;
+
+			try
+			{
+				byte[] buffer = new byte[65536];
+				int byteCount = 0;
+
+				while ((byteCount = mediaContentStream.read(buffer)) != -1)
+				{
+					pendingFile.write(buffer, 0, byteCount);
+					messageDigest.update(buffer, 0, byteCount);
+					numberOfBytes += byteCount;
+				}
+			}
+			finally
+			{
+				pendingFile.close();
+			}
+
+			String streamHashValue = org.apache.commons.codec.binary.Hex.encodeHexString(messageDigest.digest());
+
+			logText = "\n--> PUSH MEDIA STREAM: Media content stored into pending file";
+			logText += "\n--> Pending file name: '" + pendingFileName + "'";
+			logText += "\n--> Number of bytes: '" + String.valueOf(numberOfBytes) + "'";
+			logText += "\n--> Hash value: '" + streamHashValue + "'";
+			context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+			/*
+			 * Compare hash value
+			 */
+			if (hashValue != null && !hashValue.equals(streamHashValue))
+			{
+				String errorString = "--> PUSH MEDIA STREAM: Hash value of the media content received doesn't match";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> Expected hash value: '" + hashValue + "'";
+				errorString += "\n--> Received hash value: '" + streamHashValue + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, null);
+				return false;
+			}
+
+			/*
+			 * Upload pending file into the system as a regular media file
+			 */
+			if (context.getMediaManager().localStoreMediaFile(context, mediaResourceContainer, pendingFileName, dataIdentifier, streamHashValue) == false)
+			{
+				String errorString = "--> PUSH MEDIA STREAM: Error on storing pending file as regular media file";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> Pending file to be stored: '" + pendingFileName + "'";
+				errorString += "\n--> Data identifier: '" + dataIdentifier + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, null);
+				return false;
+			}
+
+			/*
+			 * Return
+			 */
+			return true;
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> PUSH MEDIA STREAM: Error on receiving media content";
+			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+			if (pendingFileName != null) errorString += "\n--> Pending file name: '" + pendingFileName + "'";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, e);
+			return false;
+		}
+		finally
+		{
+			/*
+			 * Delete pending file
+			 */
+			if (pendingFileName != null && FileUtilFunctions.fileExists(pendingFileName) == true) FileUtilFunctions.fileDelete(pendingFileName);
+		}
+	}
+
+	/**
+	 * Write a part of a media file into an upload session, and push the media
+	 * file into the system as soon as it is complete (resumable upload).
+	 * <p>
+	 * The parts are collected in a file of the 'pending' directory, whose name
+	 * depends on data identifier, hash value and file type (see
+	 * <TT>ResourceContainerMedia.mediaFileGetUploadFilePath()</TT>). A part is
+	 * written at its offset, so a part that was transferred before is simply
+	 * overwritten. A part beyond the end of the data received so far is
+	 * rejected, so the client can continue with the length returned. Upload
+	 * sessions that are never completed are removed by cleaning up the
+	 * 'pending' directory.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param dataIdentifier
+	 *            The data identifier of the media.
+	 * 
+	 * @param fileType
+	 *            The file type to consider.
+	 * 
+	 * @param hashValue
+	 *            The hash value of the complete media file.
+	 * 
+	 * @param offset
+	 *            The position of the part in the media file.
+	 * 
+	 * @param fileSize
+	 *            The size of the complete media file.
+	 * 
+	 * @param mediaContentStream
+	 *            The stream to read the part from.
+	 * 
+	 * @return Returns the number of bytes of the media file received so far,
+	 *         that is <TT>fileSize</TT> if the media file was pushed, or
+	 *         <TT>null</TT> if an error occurred.
+	 * 
+	 */
+	public Long localWriteMediaContentToUploadSession(Context context, ResourceContainerMedia mediaResourceContainer, String dataIdentifier, String fileType, String hashValue, long offset, long fileSize, InputStream mediaContentStream)
+	{
+		String uploadFileName = null;
+
+		try
+		{
+			/*
+			 * Check the file size announced by the client, before anything is
+			 * written into the upload session
+			 */
+			if (fileSize < 0 || this.isAnnouncedFileSizeExceeded(context, mediaResourceContainer, fileSize) == true)
+			{
+				String errorString = "--> UPLOAD SESSION: Maximum allowed media file size exceeded.";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> Announced file size: '" + String.valueOf(fileSize) + "' Byte";
+
+				Integer maximumFileSize = mediaResourceContainer.attributeGetMaximumMediaSize(context);
+				if (maximumFileSize != null) errorString += "\n--> Maximum allowed file size of media resource item: '" + String.valueOf(maximumFileSize * 1024L) + "' Byte = '" + String.valueOf(maximumFileSize) + "' Kilobyte";
+
+				maximumFileSize = this.getMaximumMediaSize();
+				if (maximumFileSize != null) errorString += "\n--> Maximum allowed file size set by the media configuration: '" + String.valueOf(maximumFileSize * 1024L) + "' Byte = '" + String.valueOf(maximumFileSize) + "' Kilobyte";
+
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "MaximumMediaSizeExceeded"), errorString, null);
+				return null;
+			}
+
+			/*
+			 * Get upload session
+			 */
+			uploadFileName = mediaResourceContainer.mediaFileGetUploadFilePath(context, dataIdentifier, hashValue, fileType);
+			new File(mediaResourceContainer.mediaFileGetPendingFilePath(context)).mkdirs();
+
+			long uploadedLength = 0;
+
+			UploadSessionLock uploadSessionLock = this.acquireUploadSessionLock(uploadFileName);
+
+			try
+			{
+				RandomAccessFile uploadFile = new RandomAccessFile(uploadFileName, "rw");
+
+				try
+				{
+					// Reject parts beyond the end of the data received so far
+					uploadedLength = uploadFile.length();
+
+					if (offset > uploadedLength)
+					{
+						String logText = "\n--> UPLOAD SESSION: Part rejected, because it doesn't follow the data received so far";
+						logText += "\n--> Upload file name: '" + uploadFileName + "'";
+						logText += "\n--> Offset: '" + String.valueOf(offset) + "', Length received: '" + String.valueOf(uploadedLength) + "'";
+						context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+						return uploadedLength;
+					}
+
+					// Write part at its offset
+					uploadFile.setLength(offset);
+					uploadFile.seek(offset);
+
+					byte[] buffer = new byte[65536];
+					int byteCount = 0;
+					long maximumLength = Math.max(fileSize, 0);
+
+					while ((byteCount = mediaContentStream.read(buffer)) != -1)
+					{
+						if (uploadFile.getFilePointer() + byteCount > maximumLength) throw new IllegalStateException("Upload part exceeds the announced file size '" + String.valueOf(fileSize) + "'");
+						uploadFile.write(buffer, 0, byteCount);
+					}
+
+					uploadedLength = uploadFile.length();
+				}
+				finally
+				{
+					uploadFile.close();
+				}
+
+				String logText = "\n--> UPLOAD SESSION: Part stored into upload file";
+				logText += "\n--> Upload file name: '" + uploadFileName + "'";
+				logText += "\n--> Offset: '" + String.valueOf(offset) + "', Length received: '" + String.valueOf(uploadedLength) + "' of '" + String.valueOf(fileSize) + "'";
+				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+				/*
+				 * Upload session not complete yet
+				 */
+				if (uploadedLength < fileSize) return uploadedLength;
+
+				/*
+				 * Compare hash value of the complete media file
+				 */
+				String uploadHashValue = FileUtilFunctions.fileGetHashValue(uploadFileName);
+
+				if (uploadHashValue == null || !uploadHashValue.equals(hashValue))
+				{
+					String errorString = "--> UPLOAD SESSION: Hash value of the media file received doesn't match";
+					errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+					errorString += "\n--> Expected hash value: '" + hashValue + "'";
+					errorString += "\n--> Received hash value: '" + uploadHashValue + "'";
+					context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, null);
+					FileUtilFunctions.fileDelete(uploadFileName);
+					return null;
+				}
+
+				/*
+				 * Upload file into the system as a regular media file
+				 */
+				boolean isStored = context.getMediaManager().localStoreMediaFile(context, mediaResourceContainer, uploadFileName, dataIdentifier, uploadHashValue);
+				FileUtilFunctions.fileDelete(uploadFileName);
+
+				if (isStored == false)
+				{
+					String errorString = "--> UPLOAD SESSION: Error on storing upload file as regular media file";
+					errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+					errorString += "\n--> Upload file to be stored: '" + uploadFileName + "'";
+					errorString += "\n--> Data identifier: '" + dataIdentifier + "'";
+					context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, null);
+					return null;
+				}
+			}
+			finally
+			{
+				this.releaseUploadSessionLock(uploadFileName, uploadSessionLock);
+			}
+
+			/*
+			 * Return
+			 */
+			return uploadedLength;
+		}
+		catch (Exception e)
+		{
+			String errorString = "--> UPLOAD SESSION: Error on receiving part of media content";
+			errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+			if (uploadFileName != null) errorString += "\n--> Upload file name: '" + uploadFileName + "'";
+			errorString += "\n--> Offset: '" + String.valueOf(offset) + "'";
+			context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Media", "ErrorOnStoringFileLocally"), errorString, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Lock of an upload session, with the number of threads using it.
+	 */
+	private static class UploadSessionLock
+	{
+		private final ReentrantLock lock = new ReentrantLock();
+		private int numberOfUsers = 0;
+	}
+
+	/**
+	 * Acquire the lock of an upload session, in order to serialize parts of
+	 * the same media file that arrive at the same time.
+	 * <p>
+	 * A <TT>ReentrantLock</TT> is used instead of a <TT>synchronized</TT>
+	 * block, because the file is written while the lock is held, and a
+	 * virtual thread would be pinned to its carrier thread otherwise.
+	 * 
+	 * @param uploadFileName
+	 *            The file name of the upload session.
+	 * 
+	 * @return Returns the lock acquired, to be released by
+	 *         <TT>releaseUploadSessionLock()</TT>.
+	 */
+	private UploadSessionLock acquireUploadSessionLock(String uploadFileName)
+	{
+		UploadSessionLock uploadSessionLock = null;
+
+		// Register as user of the lock
+		this.uploadSessionLocksLock.lock();
+
+		try
+		{
+			uploadSessionLock = this.uploadSessionLocks.get(uploadFileName);
+
+			if (uploadSessionLock == null)
+			{
+				uploadSessionLock = new UploadSessionLock();
+				this.uploadSessionLocks.put(uploadFileName, uploadSessionLock);
+			}
+
+			uploadSessionLock.numberOfUsers++;
+		}
+		finally
+		{
+			this.uploadSessionLocksLock.unlock();
+		}
+
+		// Acquire lock
+		uploadSessionLock.lock.lock();
+
+		// Return
+		return uploadSessionLock;
+	}
+
+	/**
+	 * Release the lock of an upload session, and remove it if no other thread
+	 * is waiting for it.
+	 * 
+	 * @param uploadFileName
+	 *            The file name of the upload session.
+	 * 
+	 * @param uploadSessionLock
+	 *            The lock to release.
+	 */
+	private void releaseUploadSessionLock(String uploadFileName, UploadSessionLock uploadSessionLock)
+	{
+		uploadSessionLock.lock.unlock();
+
+		this.uploadSessionLocksLock.lock();
+
+		try
+		{
+			uploadSessionLock.numberOfUsers--;
+			if (uploadSessionLock.numberOfUsers == 0) this.uploadSessionLocks.remove(uploadFileName);
+		}
+		finally
+		{
+			this.uploadSessionLocksLock.unlock();
+		}
+	}
+
+	/**
+	 * Check if the file size announced for an upload session exceeds the
+	 * maximum media size of the media resource, or of the media
+	 * configuration.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param fileSize
+	 *            The file size announced by the client, in bytes.
+	 * 
+	 * @return Returns <TT>true</TT> if the maximum size is exceeded, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean isAnnouncedFileSizeExceeded(Context context, ResourceContainerMedia mediaResourceContainer, long fileSize)
+	{
+		Integer maximumMediaSizeInKilobyte = mediaResourceContainer.attributeGetMaximumMediaSize(context);
+		if (maximumMediaSizeInKilobyte != null && fileSize > maximumMediaSizeInKilobyte * 1024L) return true;
+
+		maximumMediaSizeInKilobyte = this.getMaximumMediaSize();
+		if (maximumMediaSizeInKilobyte != null && fileSize > maximumMediaSizeInKilobyte * 1024L) return true;
+
+		return false;
+	}
+
 	/**
 	 * Check if the maximum size of the media file is exceeded (related to the
 	 * general configuration parameter)
@@ -2526,4 +3383,39 @@ public abstract class MediaManager implements ManagerInterface
 	{
 		return this.cleanObsoleteDaysToKeep;
 	}
+
+	/**
+	 * Event of reading a media file for the Java Flight Recorder, committed
+	 * once on closing the content stream.
+	 */
+	private static class MediaReadEventRecorder
+	{
+		private final FlightRecorderEvent event;
+		private final String resourceIdentifier;
+		private final String dataIdentifier;
+		private final long sizeInBytes;
+		private boolean committed = false;
+
+		/**
+		 * Constructor
+		 */
+		private MediaReadEventRecorder(FlightRecorderEvent event, String resourceIdentifier, String dataIdentifier, long sizeInBytes)
+		{
+			this.event = event;
+			this.resourceIdentifier = resourceIdentifier;
+			this.dataIdentifier = dataIdentifier;
+			this.sizeInBytes = sizeInBytes;
+		}
+
+		/**
+		 * Commit the event, once.
+		 */
+		private synchronized void commit(boolean successful)
+		{
+			if (this.committed == true) return;
+			this.committed = true;
+
+			this.event.commit(this.resourceIdentifier, this.dataIdentifier, Math.max(0, this.sizeInBytes), successful);
+		}
+	}
 }
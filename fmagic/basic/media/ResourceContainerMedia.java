@@ -520,6 +520,45 @@ public class ResourceContainerMedia extends ResourceContainer
 		return mediaTempFileName;
 	}
 
+	/**
+	 * Get the full path of the file that collects the parts of a resumable
+	 * upload (upload session). The file is located in the 'pending'
+	 * directory, and its name depends only on the data identifier, the hash
+	 * value and the file type of the media file to upload, so an interrupted
+	 * upload can be continued by a later request.
+	 * <p>
+	 * Example:
+	 * <TT>upload-seniorcitizen-room-00001234-24df3a.jpg</TT>
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param dataIdentifier
+	 *            The data identifier of the media.
+	 * 
+	 * @param hashValue
+	 *            The hash value of the complete media file.
+	 * 
+	 * @param fileType
+	 *            The file type to set.
+	 * 
+	 * @return Returns the file path created.
+	 * 
+	 */
+	public String mediaFileGetUploadFilePath(Context context, String dataIdentifier, String hashValue, String fileType)
+	{
+		String mediaUploadFileName = FileLocationFunctions.getMediaUploadFileName();
+
+		mediaUploadFileName = FileLocationFunctions.replacePlacholder(context, mediaUploadFileName);
+
+		if (this.getAliasName() != null) mediaUploadFileName = mediaUploadFileName.replace("${alias}", FileUtilFunctions.generalFitToFileNameCompatibility(this.getAliasName()));
+		mediaUploadFileName = mediaUploadFileName.replace("${identifier}", this.serviceFitIdentifierToFileName(dataIdentifier));
+		if (hashValue != null) mediaUploadFileName = mediaUploadFileName.replace("${hashvalue}", FileUtilFunctions.generalFitToFileNameCompatibility(hashValue.trim()));
+		if (fileType != null) mediaUploadFileName = mediaUploadFileName.replace("${filetype}", fileType);
+
+		return FileLocationFunctions.compileFilePath(this.mediaFileGetPendingFilePath(context), mediaUploadFileName);
+	}
+
 	/**
 	 * Create a name for a 'deleted' file to be used to save obsolete files, and
 	 * returns the name.
@@ -0,0 +1,215 @@
+package fmagic.basic.notification;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class emits custom events to the Java Flight Recorder (JFR), in order to
+ * correlate garbage collection and I/O stalls of a recording with the commands
+ * and media files processed at that time.
+ * <p>
+ * The Java Flight Recorder is supported by the Java runtime since version 11
+ * only. Therefore the event types are defined at runtime via reflection (see
+ * <TT>jdk.jfr.EventFactory</TT>). If the runtime doesn't support the Java
+ * Flight Recorder, or no recording is running, <TT>begin()</TT> returns
+ * <TT>null</TT> and no event is created at all.
+ * <p>
+ * An event is started by <TT>begin()</TT> and committed with its field values
+ * by <TT>commit()</TT>, the duration of the event is the time between both:
+ * 
+ * <pre>
+ * FlightRecorderEvent event = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_STORE);
+ * ...
+ * if (event != null) event.commit(resourceIdentifier, dataIdentifier, size, isSuccessful);
+ * </pre>
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 22.08.2013 - Created
+ */
+public class FlightRecorderEvent
+{
+	// Event types, with the names and types of their fields. Fields named
+	// '...Bytes' are shown as data amount by the recording tools.
+	public static enum EventTypeEnum
+	{
+		COMMAND_RECEIVED("CommandReceived", "Command Received", "Command", new String[] { "commandIdentifier", "sessionIdentifier", "traceIdentifier", "requestBytes" }, new Class<?>[] { String.class, String.class, String.class, long.class }),
+		COMMAND_EXECUTED("CommandExecuted", "Command Executed", "Command", new String[] { "commandIdentifier", "sessionIdentifier", "traceIdentifier", "responseBytes", "errorCode" }, new Class<?>[] { String.class, String.class, String.class, long.class, String.class }),
+		MEDIA_STORE("MediaStore", "Media Store", "Media", new String[] { "resourceIdentifier", "dataIdentifier", "sizeInBytes", "successful" }, new Class<?>[] { String.class, String.class, long.class, boolean.class }),
+		MEDIA_READ("MediaRead", "Media Read", "Media", new String[] { "resourceIdentifier", "dataIdentifier", "sizeInBytes", "successful" }, new Class<?>[] { String.class, String.class, long.class, boolean.class }),
+		MEDIA_ENCRYPT("MediaEncrypt", "Media Encrypt", "Media", new String[] { "resourceIdentifier", "dataIdentifier", "sizeInBytes", "successful" }, new Class<?>[] { String.class, String.class, long.class, boolean.class }),
+		MEDIA_DECRYPT("MediaDecrypt", "Media Decrypt", "Media", new String[] { "resourceIdentifier", "dataIdentifier", "sizeInBytes", "successful" }, new Class<?>[] { String.class, String.class, long.class, boolean.class }),
+		MEDIA_POOL_QUEUE("MediaPoolQueue", "Media Pool Queue", "Media Pool", new String[] { "queueName", "resourceIdentifier", "dataIdentifier", "queueSize" }, new Class<?>[] { String.class, String.class, String.class, int.class }),
+		MEDIA_POOL_QUEUE_REJECTED("MediaPoolQueueRejected", "Media Pool Queue Rejected", "Media Pool", new String[] { "queueName", "resourceIdentifier", "dataIdentifier", "queueSize" }, new Class<?>[] { String.class, String.class, String.class, int.class });
+
+		private final String name;
+		private final String label;
+		private final String category;
+		private final String[] fieldNames;
+		private final Class<?>[] fieldTypes;
+
+		// Event factory and event type of the Java Flight Recorder, or null
+		// if not supported
+		private Object eventFactory = null;
+		private Object eventType = null;
+
+		private EventTypeEnum(String name, String label, String category, String[] fieldNames, Class<?>[] fieldTypes)
+		{
+			this.name = name;
+			this.label = label;
+			this.category = category;
+			this.fieldNames = fieldNames;
+			this.fieldTypes = fieldTypes;
+		}
+	}
+
+	// Methods of the Java Flight Recorder, or null if not supported
+	private static Method newEventMethod = null;
+	private static Method isEnabledMethod = null;
+	private static Method beginMethod = null;
+	private static Method setMethod = null;
+	private static Method commitMethod = null;
+
+	// Flag if the Java Flight Recorder is supported by the Java runtime
+	private static final boolean supported = FlightRecorderEvent.registerEventTypes();
+
+	// The event of the Java Flight Recorder
+	private final Object event;
+
+	/**
+	 * Constructor
+	 */
+	private FlightRecorderEvent(Object event)
+	{
+		this.event = event;
+	}
+
+	/**
+	 * Register all event types at the Java Flight Recorder.
+	 * 
+	 * @return Returns <TT>true</TT> if the event types could be registered, or
+	 *         <TT>false</TT> if the Java Flight Recorder is not supported.
+	 */
+	private static boolean registerEventTypes()
+	{
+		try
+		{
+			// Get classes and methods
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+
+			Constructor<?> annotationElementConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+			Constructor<?> valueDescriptorConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+			Method createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+			Method getEventTypeMethod = eventFactoryClass.getMethod("getEventType");
+
+			Class<?> nameAnnotation = Class.forName("jdk.jfr.Name");
+			Class<?> labelAnnotation = Class.forName("jdk.jfr.Label");
+			Class<?> categoryAnnotation = Class.forName("jdk.jfr.Category");
+			Class<?> dataAmountAnnotation = Class.forName("jdk.jfr.DataAmount");
+
+			// Create event types
+			for (EventTypeEnum type : EventTypeEnum.values())
+			{
+				List<Object> annotations = new ArrayList<Object>();
+				annotations.add(annotationElementConstructor.newInstance(nameAnnotation, "fmagic." + type.name));
+				annotations.add(annotationElementConstructor.newInstance(labelAnnotation, type.label));
+				annotations.add(annotationElementConstructor.newInstance(categoryAnnotation, new String[] { "fmagic", type.category }));
+
+				List<Object> fields = new ArrayList<Object>();
+
+				for (int i = 0; i < type.fieldNames.length; i++)
+				{
+					List<Object> fieldAnnotations = new ArrayList<Object>();
+					if (type.fieldNames[i].endsWith("Bytes")) fieldAnnotations.add(annotationElementConstructor.newInstance(dataAmountAnnotation, "BYTES"));
+					fields.add(valueDescriptorConstructor.newInstance(type.fieldTypes[i], type.fieldNames[i], fieldAnnotations));
+				}
+
+				type.eventFactory = createMethod.invoke(null, annotations, fields);
+				type.eventType = getEventTypeMethod.invoke(type.eventFactory);
+			}
+
+			// Get methods of events
+			newEventMethod = eventFactoryClass.getMethod("newEvent");
+			isEnabledMethod = eventTypeClass.getMethod("isEnabled");
+			beginMethod = eventClass.getMethod("begin");
+			setMethod = eventClass.getMethod("set", int.class, Object.class);
+			commitMethod = eventClass.getMethod("commit");
+
+			// Return
+			return true;
+		}
+		catch (Throwable e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Begin an event, if the Java Flight Recorder is recording events of this
+	 * type.
+	 * 
+	 * @param type
+	 *            The type of the event.
+	 * 
+	 * @return Returns the event started, or <TT>null</TT> if no event is to be
+	 *         recorded.
+	 */
+	public static FlightRecorderEvent begin(EventTypeEnum type)
+	{
+		if (supported == false) return null;
+
+		try
+		{
+			if (((Boolean) isEnabledMethod.invoke(type.eventType)) == false) return null;
+
+			Object event = newEventMethod.invoke(type.eventFactory);
+			beginMethod.invoke(event);
+			return new FlightRecorderEvent(event);
+		}
+		catch (Throwable e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Commit the event with its field values, in the order the fields are
+	 * defined by the event type.
+	 * 
+	 * @param values
+	 *            The field values of the event.
+	 */
+	public void commit(Object... values)
+	{
+		try
+		{
+			for (int i = 0; i < values.length; i++)
+			{
+				if (values[i] != null) setMethod.invoke(this.event, i, values[i]);
+			}
+
+			commitMethod.invoke(this.event);
+		}
+		catch (Throwable e)
+		{
+			// Be silent
+		}
+	}
+
+	/**
+	 * Check if the Java Flight Recorder is supported by the Java runtime.
+	 * 
+	 * @return Returns <TT>true</TT> if it is supported, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public static boolean isSupported()
+	{
+		return supported;
+	}
+}
@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import fmagic.basic.application.ManagerInterface;
 import fmagic.basic.context.Context;
@@ -91,6 +92,11 @@ public class NotificationManager implements ManagerInterface
 	private ConcurrentHashMap<String, Boolean> processingActive = new ConcurrentHashMap<String, Boolean>();
 	private int messageLostCounter = 0;
 
+	// Lock for appending to log files. A lock is used instead of a
+	// synchronized method, because virtual threads must not be pinned to
+	// their carrier thread while writing to a file.
+	private final ReentrantLock logFileLock = new ReentrantLock();
+
 	// Configuration parameter
 	private int cleanDaysToKeep = 0;
 
@@ -399,27 +405,15 @@ public class NotificationManager implements ManagerInterface
 		// Lock the message handling
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				Boolean isActive = this.processingActive.get(threadIdentifier);
-
-				if (isActive != null && isActive == true)
-				{
-					this.messageLostCounter++;
-					System.out.println("\n*** " + messageType + " message lost (" + String.valueOf(this.messageLostCounter) + ")");
-					if (enumIdentifier != null) System.out.println("*** " + enumIdentifier);
-					return true;
-				}
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			Boolean isActive = this.processingActive.putIfAbsent(threadIdentifier, true);
 
-				isActive = true;
-				this.processingActive.put(threadIdentifier, isActive);
-
-				// System.out.println("----------");
-				// for (String value : this.processingActive.keySet())
-				// {
-				// System.out.println("--> " + value);
-				// }
+			if (isActive != null && isActive == true)
+			{
+				this.messageLostCounter++;
+				System.out.println("\n*** " + messageType + " message lost (" + String.valueOf(this.messageLostCounter) + ")");
+				if (enumIdentifier != null) System.out.println("*** " + enumIdentifier);
+				return true;
 			}
 		}
 		catch (Exception e)
@@ -430,13 +424,10 @@ public class NotificationManager implements ManagerInterface
 		// Clear the Map if it has become too big. The should never happen.
 		try
 		{
-			synchronized (this.processingActive)
+			if (this.processingActive.size() > 100000)
 			{
-				if (this.processingActive.size() > 10000)
-				{
-					System.out.println("\n*** Processing active MESSAGE map has more than 10000 items and was cleared.");
-					this.processingActive.clear();
-				}
+				System.out.println("\n*** Processing active MESSAGE map has more than 100000 items and was cleared.");
+				this.processingActive.clear();
 			}
 		}
 		catch (Exception e)
@@ -464,11 +455,8 @@ public class NotificationManager implements ManagerInterface
 	{
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				this.processingActive.remove(threadIdentifier);
-			}
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			this.processingActive.remove(threadIdentifier);
 		}
 		catch (Exception e)
 		{
@@ -1047,8 +1035,8 @@ public class NotificationManager implements ManagerInterface
 	 * Append a single text block to a log file.
 	 * <p>
 	 * Please note: The appending to the log file is done with the help of the
-	 * synchronized method appendStringToLogFile(), in order to ensure that a
-	 * message block is written coherently.
+	 * locked method appendStringToLogFile(), in order to ensure that a message
+	 * block is written coherently.
 	 * 
 	 * @param context
 	 *            Application context of the message.
@@ -1056,7 +1044,7 @@ public class NotificationManager implements ManagerInterface
 	 * @param logText
 	 *            Text of the message to be logged.
 	 */
-	private synchronized void appendStringToLogFile(PrintWriter output, String logText)
+	private void appendStringToLogFile(PrintWriter output, String logText)
 	{
 		// Check variables
 		if (output == null) return;
@@ -1064,8 +1052,17 @@ public class NotificationManager implements ManagerInterface
 		if (logText.length() == 0) return;
 
 		// Write to log file
-		output.append(logText);
-		output.flush();
+		this.logFileLock.lock();
+
+		try
+		{
+			output.append(logText);
+			output.flush();
+		}
+		finally
+		{
+			this.logFileLock.unlock();
+		}
 	}
 
 	/**
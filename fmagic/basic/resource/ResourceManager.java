@@ -1395,27 +1395,15 @@ public class ResourceManager implements ManagerInterface
 		// Lock the message handling
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				Boolean isActive = this.processingActive.get(threadIdentifier);
-
-				if (isActive != null && isActive == true)
-				{
-					this.messageLostCounter++;
-					System.out.println("\n*** " + messageType + " resource lost (" + String.valueOf(this.messageLostCounter) + ")");
-					if (resourceIdentifier != null) System.out.println("*** " + resourceIdentifier);
-					return true;
-				}
-
-				isActive = true;
-				this.processingActive.put(threadIdentifier, isActive);
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			Boolean isActive = this.processingActive.putIfAbsent(threadIdentifier, true);
 
-				// System.out.println("----------");
-				// for (String value : this.processingActive.keySet())
-				// {
-				// System.out.println("--> " + value);
-				// }
+			if (isActive != null && isActive == true)
+			{
+				this.messageLostCounter++;
+				System.out.println("\n*** " + messageType + " resource lost (" + String.valueOf(this.messageLostCounter) + ")");
+				if (resourceIdentifier != null) System.out.println("*** " + resourceIdentifier);
+				return true;
 			}
 		}
 		catch (Exception e)
@@ -1426,13 +1414,10 @@ public class ResourceManager implements ManagerInterface
 		// Clear the Map if it has become too big. The should never happen.
 		try
 		{
-			synchronized (this.processingActive)
+			if (this.processingActive.size() > 100000)
 			{
-				if (this.processingActive.size() > 10000)
-				{
-					System.out.println("\n*** Processing active resource map has more than 10000 items and was cleared.");
-					this.processingActive.clear();
-				}
+				System.out.println("\n*** Processing active resource map has more than 100000 items and was cleared.");
+				this.processingActive.clear();
 			}
 		}
 		catch (Exception e)
@@ -1460,11 +1445,8 @@ public class ResourceManager implements ManagerInterface
 	{
 		try
 		{
-			synchronized (this.processingActive)
-			{
-				String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
-				this.processingActive.remove(threadIdentifier);
-			}
+			String threadIdentifier = String.valueOf(Thread.currentThread().getId()) + "#" + messageType;
+			this.processingActive.remove(threadIdentifier);
 		}
 		catch (Exception e)
 		{
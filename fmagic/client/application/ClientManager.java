@@ -113,6 +113,11 @@ public abstract class ClientManager extends ApplicationManager
 	@Override
 	protected void releaseResources()
 	{
+		// Close the live connection to the application server
+		if (this.connectionContainer != null) this.connectionContainer.closeConnection();
+
+		// Shut down the executor of asynchronous client commands
+		this.releaseClientCommandExecutor();
 	}
 
 	/**
@@ -182,6 +187,9 @@ public abstract class ClientManager extends ApplicationManager
 			int port = this.getContext().getLocaldataManager().readPropertyAsIntegerValue(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "Port"), 0);
 			String serverPublicKey = this.getContext().getLocaldataManager().readProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ServerPublicKey"), "");
 			String clientSessionIdentifier = this.getContext().getLocaldataManager().readProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ClientSessionIdentifier"), "");
+			String resumptionTicket = this.getContext().getLocaldataManager().readProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ResumptionTicket"), "");
+			int framingVersion = this.getContext().getLocaldataManager().readPropertyAsIntegerValue(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "FramingVersion"), 0);
+			String compressionCodec = this.getContext().getLocaldataManager().readProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "CompressionCodec"), "");
 
 			// Create a new client session identifier if not available yet
 			if (clientSessionIdentifier == null || clientSessionIdentifier.length() == 0) clientSessionIdentifier = ConnectionContainer.createClientSessionIdentifier();
@@ -189,6 +197,15 @@ public abstract class ClientManager extends ApplicationManager
 			// Create a new connection container with the read data
 			this.connectionContainer = new ConnectionContainer(0, host, port, this.getKeyApplicationPrivateKey(), serverPublicKey);
 			this.connectionContainer.setSessionIdentifier(clientSessionIdentifier);
+
+			// Resume the last session with the resumption ticket, if available,
+			// using the framing negotiated on the last handshake
+			if (resumptionTicket != null && resumptionTicket.length() > 0)
+			{
+				this.connectionContainer.setResumptionTicket(resumptionTicket);
+				this.connectionContainer.setFramingVersion(framingVersion);
+				if (compressionCodec != null && compressionCodec.length() > 0) this.connectionContainer.setCompressionCodec(compressionCodec);
+			}
 			
 			// Try to establish the connection automatically, if all settings are available
 			while(true)
@@ -223,6 +240,9 @@ public abstract class ClientManager extends ApplicationManager
 			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "Port"), String.valueOf(this.connectionContainer.getPort()));
 			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ServerPublicKey"), this.connectionContainer.getKeyRemotePublicKey());
 			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ClientSessionIdentifier"), this.connectionContainer.getSessionIdentifier());
+			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ResumptionTicket"), this.connectionContainer.getResumptionTicket() != null ? this.connectionContainer.getResumptionTicket() : "");
+			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "FramingVersion"), String.valueOf(this.connectionContainer.getFramingVersion()));
+			this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "CompressionCodec"), this.connectionContainer.getCompressionCodec() != null ? this.connectionContainer.getCompressionCodec() : "");
 		}
 		catch (Exception e)
 		{
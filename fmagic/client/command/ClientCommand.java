@@ -1,5 +1,10 @@
 package fmagic.client.command;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
 import fmagic.basic.application.ApplicationManager;
 import fmagic.basic.command.Command;
 import fmagic.basic.command.CommandHandler;
@@ -24,6 +29,10 @@ public abstract class ClientCommand extends Command
 	final protected ConnectionContainer connectionContainer;
 	final protected int socketTimeoutInMilliseconds;
 
+	// Media category of the media content sent, or null if the command
+	// carries no media content (see CompressionPolicy)
+	protected String mediaCategory = null;
+
 	/**
 	 * Constructor
 	 */
@@ -114,38 +123,192 @@ public abstract class ClientCommand extends Command
 				return this.responseContainer;
 			}
 
-			// Check if there is an error code on the response container
-			if (this.responseContainer.getErrorCode() != null)
-			{
-				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
-				return this.responseContainer;
-			}
+			// Evaluate and process the response of the server
+			return this.processResponseContainer();
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+		}
+
+		// Return
+		return this.responseContainer;
+	}
 
-			if (this.evaluateResults() == false)
+	/**
+	 * Execute the command asynchronously, using the executor of the
+	 * application (see <TT>ApplicationManager.getClientCommandExecutor()</TT>).
+	 * <p>
+	 * This way a caller can send commands to many servers at once, and wait
+	 * for the results afterwards, instead of waiting for each server in turn.
+	 * 
+	 * @return Returns the future of the response container, that is the
+	 *         result of <TT>execute()</TT>.
+	 */
+	public Future<ResponseContainer> executeAsync()
+	{
+		return this.executeAsync(null);
+	}
+
+	/**
+	 * Execute the command asynchronously, using the executor of the
+	 * application, and notify a listener on completion.
+	 * <p>
+	 * If the executor is already shut down, the command is executed on the
+	 * calling thread.
+	 * 
+	 * @param listener
+	 *            The listener to notify when the command is completed, or
+	 *            <TT>null</TT> if there is no one.
+	 * 
+	 * @return Returns the future of the response container, that is the
+	 *         result of <TT>execute()</TT>.
+	 */
+	public Future<ResponseContainer> executeAsync(final ClientCommandListener listener)
+	{
+		// Create task
+		FutureTask<ResponseContainer> task = new FutureTask<ResponseContainer>(new Callable<ResponseContainer>()
+		{
+			@Override
+			public ResponseContainer call()
 			{
-				this.notifyError("Application", "ErrorOnEvaluatingCommandOnClient", null, null);
-				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
-				this.context.getNotificationManager().flushDump(this.context);
-				return this.responseContainer;
+				// Execute command
+				ResponseContainer result = ClientCommand.this.execute();
+
+				// Notify listener
+				if (listener != null)
+				{
+					try
+					{
+						listener.commandCompleted(ClientCommand.this, result);
+					}
+					catch (Exception e)
+					{
+						ClientCommand.this.context.getNotificationManager().notifyError(ClientCommand.this.context, ResourceManager.notification(ClientCommand.this.context, "Command", "ErrorOnProcessingCommand"), "--> Error on notifying the listener of an asynchronous command", e);
+					}
+				}
+
+				// Return
+				return result;
 			}
+		});
+
+		// Submit task
+		try
+		{
+			this.application.getClientCommandExecutor().execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			task.run();
+		}
 
-			// Process the results of the command call on client side.
-			if (this.responseContainer.getErrorCode() != null)
+		// Return
+		return task;
+	}
+
+	/**
+	 * Evaluate and process the response container of the server on the
+	 * client.
+	 * 
+	 * @return Returns the response container.
+	 */
+	private ResponseContainer processResponseContainer()
+	{
+		// Check if there is an error code on the response container
+		if (this.responseContainer.getErrorCode() != null)
+		{
+			this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
+			return this.responseContainer;
+		}
+
+		if (this.evaluateResults() == false)
+		{
+			this.notifyError("Application", "ErrorOnEvaluatingCommandOnClient", null, null);
+			this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
+			this.context.getNotificationManager().flushDump(this.context);
+			return this.responseContainer;
+		}
+
+		// Process the results of the command call on client side.
+		if (this.responseContainer.getErrorCode() != null)
+		{
+			this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
+			this.context.getNotificationManager().flushDump(this.context);
+			return this.responseContainer;
+		}
+
+		if (this.processResults() == false)
+		{
+			this.notifyError("Application", "ErrorOnProcessingCommandOnClient", null, null);
+			this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
+			this.context.getNotificationManager().flushDump(this.context);
+			return this.responseContainer;
+		}
+
+		// Return
+		return this.responseContainer;
+	}
+
+	/**
+	 * Prepare the request container of the command in order to be executed as
+	 * part of a batch command (see <TT>ClientCommandBatch</TT>), instead of
+	 * being sent on its own.
+	 * 
+	 * @return Returns the validated request container, or <TT>null</TT> if an
+	 *         error occurred. In this case the error code is set on the
+	 *         response container of the command.
+	 */
+	RequestContainer prepareBatchRequestContainer()
+	{
+		try
+		{
+			// Prepare request container
+			if (this.prepareRequestContainer() == false)
 			{
+				this.notifyError("Application", "ErrorOnPreparingCommandOnClient", null, null);
 				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
 				this.context.getNotificationManager().flushDump(this.context);
-				return this.responseContainer;
+				return null;
 			}
 
-			if (this.processResults() == false)
+			// Validate all parameters of the command
+			if (this.validateCommandParameters() == false)
 			{
-				this.notifyError("Application", "ErrorOnProcessingCommandOnClient", null, null);
-				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
 				this.context.getNotificationManager().flushDump(this.context);
-				return this.responseContainer;
+				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, this.responseContainer.toString());
+				return null;
 			}
 		}
 		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return null;
+		}
+
+		// Return
+		return this.requestContainer;
+	}
+
+	/**
+	 * Evaluate and process the response of the server on a command that was
+	 * executed as part of a batch command (see <TT>ClientCommandBatch</TT>).
+	 * 
+	 * @param serverResponse
+	 *            The response container of the command, as returned by the
+	 *            server within the batch command.
+	 * 
+	 * @return Returns the response container.
+	 */
+	ResponseContainer processBatchResponseContainer(ResponseContainer serverResponse)
+	{
+		this.responseContainer = serverResponse;
+
+		try
+		{
+			return this.processResponseContainer();
+		}
+		catch (Exception e)
 		{
 			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
 		}
@@ -162,9 +325,45 @@ public abstract class ClientCommand extends Command
 	 */
 	protected boolean processOnServer()
 	{
+		// Don't send the command if it's executed on behalf of a client
+		// request whose deadline is exceeded, e. g. on a media pool
+		if (this.context.isDeadlineExceeded() == true)
+		{
+			String errorText = "--> Command not sent, because the deadline of the request processed is exceeded";
+			errorText += "\n--> Command identifier: '" + this.commandIdentifier + "'";
+			this.notifyError("Application", "DeadlineExceeded", errorText, null);
+			return false;
+		}
+
+		// Tell the server how long to wait for the response, limited by the
+		// time remaining of the request processed
+		int timeoutInMilliseconds = this.socketTimeoutInMilliseconds;
+		long remainingTime = this.context.getRemainingTimeInMilliseconds();
+		if (remainingTime > 0 && (timeoutInMilliseconds <= 0 || remainingTime < timeoutInMilliseconds)) timeoutInMilliseconds = (int) remainingTime;
+		this.requestContainer.setTimeoutInMilliseconds(timeoutInMilliseconds);
+
 		// Execute command on server
-		CommandHandler commandHandler = new CommandHandler(connectionContainer, this.socketTimeoutInMilliseconds);
-		ResponseContainer serverResponse = commandHandler.execute(this.context, this.requestContainer);
+		ResponseContainer serverResponse = this.sendRequestContainer(timeoutInMilliseconds);
+
+		// The session is unknown on the server, e. g. after a restart of the
+		// server: Resume the session with the resumption ticket, or create a
+		// new session if the ticket was rejected, and send the command once
+		// more. The server refuses the command before executing it, but
+		// commands with raw content are not sent twice.
+		if (this.isClientSessionUnknown(serverResponse) == true && this.isSessionCommand() == false && this.requestContainer.isContentFollows() == false)
+		{
+			if (this.requestContainer.getResumptionTicket() == null && this.connectionContainer.getResumptionTicket() != null)
+			{
+				this.connectionContainer.setResumptionPending(true);
+				serverResponse = this.sendRequestContainer(timeoutInMilliseconds);
+			}
+
+			if (this.isClientSessionUnknown(serverResponse) == true && this.requestContainer.getResumptionTicket() != null)
+			{
+				this.connectionContainer.rejectResumptionTicket();
+				if (this.connectionContainer.establishConnection(this.context) == true) serverResponse = this.sendRequestContainer(timeoutInMilliseconds);
+			}
+		}
 
 		if (serverResponse != null)
 		{
@@ -176,6 +375,57 @@ public abstract class ClientCommand extends Command
 		return false;
 	}
 
+	/**
+	 * Send the request container to the server, and wait for the response.
+	 * <p>
+	 * If the session is to be resumed, the resumption ticket is sent along.
+	 * 
+	 * @param timeoutInMilliseconds
+	 *            Time to wait for the response in milliseconds.
+	 * 
+	 * @return Returns the response container of the server, or <TT>null</TT>
+	 *         if an error occurred.
+	 */
+	private ResponseContainer sendRequestContainer(int timeoutInMilliseconds)
+	{
+		// Set session identifier and resumption ticket, both can be changed
+		// on establishing the connection again
+		this.requestContainer.setClientSessionIdentifier(this.connectionContainer.getSessionIdentifier());
+		this.requestContainer.setResumptionTicket(this.connectionContainer.isResumptionPending() == true ? this.connectionContainer.getResumptionTicket() : null);
+
+		// Execute command on server
+		CommandHandler commandHandler = new CommandHandler(connectionContainer, timeoutInMilliseconds);
+		commandHandler.setMediaCategory(this.mediaCategory);
+		ResponseContainer serverResponse = commandHandler.execute(this.context, this.requestContainer);
+
+		// The session was resumed, so the ticket needs not to be sent anymore
+		if (serverResponse != null && this.requestContainer.getResumptionTicket() != null && this.isClientSessionUnknown(serverResponse) == false) this.connectionContainer.setResumptionPending(false);
+
+		// Return
+		return serverResponse;
+	}
+
+	/**
+	 * Check if the server refused a command because the client session is
+	 * unknown on the server.
+	 */
+	private boolean isClientSessionUnknown(ResponseContainer serverResponse)
+	{
+		if (serverResponse == null || serverResponse.getErrorCode() == null) return false;
+		return serverResponse.getErrorCode().equals(ResourceManager.notification(this.context, "Application", "ClientSessionDoesNotExistOnServer").getRecourceIdentifier());
+	}
+
+	/**
+	 * Check if the command is one of the commands that establish a
+	 * connection, that are 'Handshake' and 'CreateSession'.
+	 */
+	private boolean isSessionCommand()
+	{
+		if (this.commandIdentifier.equals(ResourceManager.command(this.context, "Handshake").getRecourceIdentifier())) return true;
+		if (this.commandIdentifier.equals(ResourceManager.command(this.context, "CreateSession").getRecourceIdentifier())) return true;
+		return false;
+	}
+
 	/**
 	 * Prepare all parameters and resources of the command
 	 * 
@@ -0,0 +1,209 @@
+package fmagic.client.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fmagic.basic.application.ApplicationManager;
+import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.RequestContainer;
+import fmagic.basic.command.ResponseContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * COMMAND: Execute a list of client commands on a remote server in one single
+ * round trip.
+ * <p>
+ * Each client command of the list is prepared and validated as usual, but
+ * instead of being sent on its own, its request container is added to the
+ * batch. After the batch was executed on server, the response container of
+ * each command is evaluated and processed by the command itself, so the result
+ * values and error codes can be read from the single commands afterwards, as
+ * if they were executed one by one.
+ * <p>
+ * Commands with raw content, as well as the commands 'Handshake',
+ * 'CreateSession' and 'Batch', can't be part of a batch.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 16.08.2013 - Created
+ */
+public class ClientCommandBatch extends ClientCommand
+{
+	private final List<? extends ClientCommand> commands;
+	private final boolean parallel;
+
+	// Commands sent to the server, in the order of the requests
+	private final List<ClientCommand> commandsSent = new ArrayList<ClientCommand>();
+
+	private List<ResponseContainer> responses = null;
+	private boolean responsesProcessed = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            Current context.
+	 * 
+	 * @param application
+	 *            Application client.
+	 * 
+	 * @param connectionContainer
+	 *            The connection to the server.
+	 * 
+	 * @param commands
+	 *            The client commands to execute, created for the same
+	 *            connection.
+	 * 
+	 * @param parallel
+	 *            Set to <TT>true</TT> if the commands are independent of each
+	 *            other and may be executed in parallel on server.
+	 */
+	public ClientCommandBatch(Context context, ApplicationManager application, ConnectionContainer connectionContainer, List<? extends ClientCommand> commands, boolean parallel)
+	{
+		super(context, application, ResourceManager.command(context, "Batch").getRecourceIdentifier(), connectionContainer, context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandBatch", "SocketTimeoutInMilliseconds"), false));
+
+		this.commands = commands;
+		this.parallel = parallel;
+	}
+
+	@Override
+	public ResponseContainer execute()
+	{
+		// Execute batch
+		ResponseContainer batchResponseContainer = super.execute();
+
+		// Commands not answered by the server get the error code of the batch
+		if (this.responsesProcessed == false)
+		{
+			String errorCode = batchResponseContainer.getErrorCode();
+			if (errorCode == null) errorCode = ResourceManager.notification(this.context, "Application", "ErrorOnProcessingRequestOnServer").getRecourceIdentifier();
+
+			for (ClientCommand command : this.commandsSent)
+			{
+				if (command.getResponseContainer().getErrorCode() == null) command.getResponseContainer().setErrorCode(errorCode);
+			}
+		}
+
+		// Return
+		return batchResponseContainer;
+	}
+
+	@Override
+	protected boolean prepareRequestContainer()
+	{
+		try
+		{
+			// Prepare request containers of all commands
+			List<RequestContainer> requests = new ArrayList<RequestContainer>();
+			this.commandsSent.clear();
+
+			for (ClientCommand command : this.commands)
+			{
+				// Errors are set on the response container of the command
+				RequestContainer request = command.prepareBatchRequestContainer();
+				if (request == null) continue;
+
+				// Raw content can't be sent within a batch
+				if (request.isContentFollows() == true || request.isContentAccepted() == true || command instanceof ClientCommandBatch)
+				{
+					String errorText = "--> Command can't be executed within a batch";
+					errorText += "\n--> Command identifier: '" + request.getCommandIdentifier() + "'";
+					command.getResponseContainer().notifyError(command.getContext(), "Command", "IntegrityError", errorText, null);
+					continue;
+				}
+
+				requests.add(request);
+				this.commandsSent.add(command);
+			}
+
+			// Set parameter: Requests
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Requests").getAliasName(), EncodingHandler.convertRequestContainerListToJson(requests));
+
+			// Set parameter: Parallel
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Parallel").getAliasName(), String.valueOf(this.parallel));
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	@Override
+	protected boolean evaluateResults()
+	{
+		try
+		{
+			// Get result: Responses
+			String result = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Responses").getAliasName(), null);
+			if (result != null) this.responses = EncodingHandler.convertJsonToResponseContainerList(result);
+
+			// Each command sent must be answered
+			if (this.responses == null || this.responses.size() != this.commandsSent.size())
+			{
+				String errorText = "--> Number of responses doesn't match the number of commands sent within the batch";
+				errorText += "\n--> Number of commands: '" + String.valueOf(this.commandsSent.size()) + "'";
+				errorText += "\n--> Number of responses: '" + (this.responses == null ? "null" : String.valueOf(this.responses.size())) + "'";
+				ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "IntegrityError");
+				this.context.getNotificationManager().notifyError(this.context, errorCode, errorText, null);
+				this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+				return false;
+			}
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	@Override
+	protected boolean processResults()
+	{
+		try
+		{
+			// Evaluate and process the response of each command by the command
+			// itself
+			for (int i = 0; i < this.commandsSent.size(); i++)
+			{
+				this.commandsSent.get(i).processBatchResponseContainer(this.responses.get(i));
+			}
+
+			this.responsesProcessed = true;
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Get the number of commands sent to the server within the batch. Commands
+	 * that couldn't be prepared are not sent.
+	 * 
+	 * @return Returns the number of commands.
+	 */
+	public int getNumberOfCommandsSent()
+	{
+		return this.commandsSent.size();
+	}
+}
@@ -2,6 +2,8 @@ package fmagic.client.command;
 
 import fmagic.basic.application.ApplicationManager;
 import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.SessionCipher;
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
@@ -16,15 +18,28 @@ import fmagic.basic.resource.ResourceManager;
  * You can find a difference on server side only: If the server finds this
  * COMMAND to execute, the test regarding the client session is switched off
  * automatically.
+ * <p>
+ * If session encryption is enabled (see configuration property
+ * <TT>Application/EnableSessionEncryption</TT>), the client asks the server
+ * for a session key by <TT>ClientSessionEncryption</TT>, and gets it back by
+ * <TT>SessionKey</TT>, encrypted with its public key. The session key is set
+ * to the connection container and used for all further commands.
+ * <p>
+ * If the server issues resumption tickets, the ticket is set to the connection
+ * container as well, in order to resume the session later on.
  * 
  * @author frank.wuensche (FW)
  * 
  * @changed FW 23.12.2012 - Created
+ * @changed FW 14.08.2013 - Exchange session key
+ * @changed FW 25.08.2013 - Keep resumption ticket
  */
 public class ClientCommandCreateSession extends ClientCommand
 {
 	private String keyRemotePublicKey = null;
 	private Boolean isSuccessful = null;
+	private SessionCipher sessionCipher = null;
+	private String resumptionTicket = null;
 
 	/**
 	 * Constructor
@@ -59,6 +74,11 @@ public class ClientCommandCreateSession extends ClientCommand
 				this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
 				return false;
 			}
+
+			// Set parameter: ClientSessionEncryption
+			Boolean enableSessionEncryption = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "Application", "EnableSessionEncryption"), false);
+			boolean sessionEncryption = enableSessionEncryption != null && enableSessionEncryption == true;
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "ClientSessionEncryption").getAliasName(), String.valueOf(sessionEncryption));
 		}
 		catch (Exception e)
 		{
@@ -99,6 +119,31 @@ public class ClientCommandCreateSession extends ClientCommand
 					this.getContext().getLocaldataManager().writeProperty(this.getContext(), ResourceManager.localdata(this.getContext(), "LastValidServerConnection", "ServerPublicKey"), this.keyRemotePublicKey);
 				}
 			}
+
+			// Get result: SessionKey, empty if the session is not encrypted
+			String sessionKeyEncrypted = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "SessionKey").getAliasName(), null);
+
+			if (sessionKeyEncrypted != null && sessionKeyEncrypted.length() > 0)
+			{
+				try
+				{
+					this.sessionCipher = new SessionCipher(EncodingHandler.decryptSessionKey(sessionKeyEncrypted, this.connectionContainer.getKeyApplicationPrivateKey()));
+				}
+				catch (Exception e)
+				{
+					// The session is kept unencrypted, because the server
+					// accepts unencrypted commands anyway
+					String errorText = "--> Error on decrypting the session key";
+					errorText += "\n--> The session is kept unencrypted";
+					this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand"), errorText, e);
+					this.sessionCipher = null;
+				}
+			}
+
+			// Get result: ResumptionTicket, empty if the server doesn't issue
+			// resumption tickets
+			this.resumptionTicket = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "ResumptionTicket").getAliasName(), null);
+			if (this.resumptionTicket != null && this.resumptionTicket.length() == 0) this.resumptionTicket = null;
 		}
 		catch (Exception e)
 		{
@@ -117,6 +162,11 @@ public class ClientCommandCreateSession extends ClientCommand
 	{
 		try
 		{
+			// Set session key for all further commands
+			this.connectionContainer.setSessionCipher(this.sessionCipher);
+
+			// Keep resumption ticket in order to resume the session later on
+			this.connectionContainer.setResumptionTicket(this.resumptionTicket);
 		}
 		catch (Exception e)
 		{
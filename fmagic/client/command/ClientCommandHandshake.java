@@ -2,6 +2,8 @@ package fmagic.client.command;
 
 import fmagic.basic.application.ApplicationManager;
 import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.SocketHandler;
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
@@ -16,6 +18,16 @@ import fmagic.basic.resource.ResourceManager;
  * known on the server. Please use the COMMAND
  * <TT>ClientCommandCreateSession</TT> first to create a client session on the
  * server.
+ * <p>
+ * If binary framing is enabled (see configuration property
+ * <TT>Application/EnableBinaryFraming</TT>), the client offers its framing
+ * version <TT>ClientFramingVersion</TT> and gets back the framing version
+ * <TT>ServerFramingVersion</TT> to use for all further commands.
+ * <p>
+ * With binary framing the client also offers the compression codecs it
+ * supports <TT>ClientCompressionCodecs</TT> and gets back the codec
+ * <TT>ServerCompressionCodec</TT> to compress the payload of all further
+ * frames with.
  * 
  * @author frank.wuensche (FW)
  * 
@@ -25,6 +37,8 @@ public class ClientCommandHandshake extends ClientCommand
 {
 	private String keyRemotePublicKey = null;
 	private Boolean isSuccessful = null;
+	private Integer framingVersion = null;
+	private String compressionCodec = null;
 
 	/**
 	 * Constructor
@@ -59,6 +73,18 @@ public class ClientCommandHandshake extends ClientCommand
 				this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
 				return false;
 			}
+
+			// Set parameter: ClientFramingVersion, '0' if binary framing is
+			// disabled
+			Boolean enableBinaryFraming = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "Application", "EnableBinaryFraming"), false);
+			boolean framing = enableBinaryFraming != null && enableBinaryFraming == true;
+
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ClientFramingVersion").getAliasName(), framing == true ? String.valueOf(SocketHandler.FRAME_VERSION) : "0");
+
+			// Set parameter: ClientCompressionCodecs, empty if compression is
+			// disabled
+			String compressionCodecs = framing == true ? EncodingHandler.getEnabledCompressionCodecs(this.context) : "";
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ClientCompressionCodecs").getAliasName(), compressionCodecs);
 		}
 		catch (Exception e)
 		{
@@ -100,6 +126,14 @@ public class ClientCommandHandshake extends ClientCommand
 				}
 			}
 
+			// Get result: ServerFramingVersion, older servers don't send it
+			String framingVersion = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ServerFramingVersion").getAliasName(), "0");
+			this.framingVersion = Math.min(Integer.parseInt(framingVersion.trim()), SocketHandler.FRAME_VERSION);
+
+			// Get result: ServerCompressionCodec, older servers don't send it
+			this.compressionCodec = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ServerCompressionCodec").getAliasName(), null);
+			if (this.compressionCodec != null && this.compressionCodec.trim().length() == 0) this.compressionCodec = null;
+
 		}
 		catch (Exception e)
 		{
@@ -118,6 +152,11 @@ public class ClientCommandHandshake extends ClientCommand
 	{
 		try
 		{
+			// Use the negotiated binary framing for all further commands
+			if (this.framingVersion != null && this.framingVersion > 0) this.connectionContainer.setFramingVersion(this.framingVersion);
+
+			// Compress all further frames with the negotiated codec
+			if (this.framingVersion != null && this.framingVersion > 0 && EncodingHandler.getCompressionCodec(this.context, this.compressionCodec) != null) this.connectionContainer.setCompressionCodec(this.compressionCodec);
 		}
 		catch (Exception e)
 		{
@@ -153,4 +192,30 @@ public class ClientCommandHandshake extends ClientCommand
 	{
 		return this.keyRemotePublicKey;
 	}
+
+	/**
+	 * Get the result value of the command: The version of the binary framing
+	 * to be used for all commands sent to the server.
+	 * 
+	 * @return Returns <TT>null</TT> if the command wasn't processed yet or an
+	 *         error occurred, otherwise the framing version, or <TT>0</TT> if
+	 *         the end of data mark is to be used.
+	 */
+	public Integer getFramingVersion()
+	{
+		return this.framingVersion;
+	}
+
+	/**
+	 * Get the result value of the command: The compression codec to be used
+	 * for the payload of all frames sent to the server.
+	 * 
+	 * @return Returns <TT>null</TT> if the command wasn't processed yet, or
+	 *         if no compression codec was negotiated, otherwise the name of
+	 *         the codec.
+	 */
+	public String getCompressionCodec()
+	{
+		return this.compressionCodec;
+	}
 }
@@ -0,0 +1,30 @@
+package fmagic.client.command;
+
+import fmagic.basic.command.ResponseContainer;
+
+/**
+ * This interface is to be implemented by classes that want to be notified when
+ * a client command executed asynchronously is completed (see
+ * <TT>ClientCommand.executeAsync()</TT>).
+ * <p>
+ * The listener is called on the thread that executed the command, so it
+ * should not block for a longer time.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 17.08.2013 - Created
+ */
+public interface ClientCommandListener
+{
+	/**
+	 * Notify the completion of a client command.
+	 * 
+	 * @param command
+	 *            The client command that was executed.
+	 * 
+	 * @param responseContainer
+	 *            The response container of the command, holding the error code
+	 *            if an error occurred.
+	 */
+	public void commandCompleted(ClientCommand command, ResponseContainer responseContainer);
+}
@@ -1,7 +1,9 @@
 package fmagic.client.command;
 
 import fmagic.basic.application.ApplicationManager;
+import fmagic.basic.command.CommandHandler;
 import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.command.ResponseContainer;
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
@@ -17,14 +19,23 @@ public class ClientCommandMediaFileRead extends ClientCommand
 {
 	private final String mediaResourceIdentifier;
 	private final String dataIdentifier;
+	private final String contentFilePath;
+	private final long offset;
+	private final long length;
 
 	private String fileType = null;
 	private Boolean isExisting = null;
 	private Boolean isRead = null;
 	private String mediaContent = null;
 
+	// Flag if the media content is accepted as stream following the response
+	private boolean streaming = false;
+
+	// Flag if the media content was received as stream
+	private boolean contentReceived = false;
+
 	/**
-	 * Constructor
+	 * Constructor 1
 	 * 
 	 * @param context
 	 *            Current context.
@@ -35,11 +46,63 @@ public class ClientCommandMediaFileRead extends ClientCommand
 	public ClientCommandMediaFileRead(Context context,
 			ApplicationManager application, ConnectionContainer connectionContainer, String mediaResourceIdentifier,
 			String dataIdentifier)
+	{
+		this(context, application, connectionContainer, mediaResourceIdentifier, dataIdentifier, null);
+	}
+
+	/**
+	 * Constructor 2
+	 * 
+	 * @param context
+	 *            Current context.
+	 * 
+	 * @param application
+	 *            Application client.
+	 * 
+	 * @param contentFilePath
+	 *            File to write the media content into if the server streams
+	 *            it following the response, or <TT>null</TT> if the media
+	 *            content is to be embedded into the response.
+	 */
+	public ClientCommandMediaFileRead(Context context,
+			ApplicationManager application, ConnectionContainer connectionContainer, String mediaResourceIdentifier,
+			String dataIdentifier, String contentFilePath)
+	{
+		this(context, application, connectionContainer, mediaResourceIdentifier, dataIdentifier, contentFilePath, 0, -1);
+	}
+
+	/**
+	 * Constructor 3
+	 * 
+	 * @param context
+	 *            Current context.
+	 * 
+	 * @param application
+	 *            Application client.
+	 * 
+	 * @param contentFilePath
+	 *            File to write the media content into if the server streams
+	 *            it following the response, or <TT>null</TT> if the media
+	 *            content is to be embedded into the response.
+	 * 
+	 * @param offset
+	 *            The position of the first byte of the media file to read.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to read, or <TT>-1</TT> to read
+	 *            up to the end of the media file.
+	 */
+	public ClientCommandMediaFileRead(Context context,
+			ApplicationManager application, ConnectionContainer connectionContainer, String mediaResourceIdentifier,
+			String dataIdentifier, String contentFilePath, long offset, long length)
 	{
 		super(context, application, ResourceManager.command(context, "MediaFileRead").getRecourceIdentifier(), connectionContainer, context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandMediaFileRead", "SocketTimeoutInMilliseconds"), false));
 
 		this.mediaResourceIdentifier = mediaResourceIdentifier;
 		this.dataIdentifier = dataIdentifier;
+		this.contentFilePath = contentFilePath;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	@Override
@@ -52,6 +115,18 @@ public class ClientCommandMediaFileRead extends ClientCommand
 
 			// Set parameter: DataIdentifier
 			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "DataIdentifier").getAliasName(), this.dataIdentifier);
+
+			// Set parameter: Offset
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "Offset").getAliasName(), String.valueOf(this.offset));
+
+			// Set parameter: Length
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "Length").getAliasName(), String.valueOf(this.length));
+
+			// Accept the media content as stream following the response, if
+			// binary framing was negotiated with the server
+			Boolean enableStreaming = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "CommandMediaFileRead", "EnableStreaming"), false);
+			this.streaming = this.contentFilePath != null && this.connectionContainer.getFramingVersion() > 0 && enableStreaming != null && enableStreaming == true;
+			this.requestContainer.setContentAccepted(this.streaming);
 		}
 		catch (Exception e)
 		{
@@ -65,6 +140,26 @@ public class ClientCommandMediaFileRead extends ClientCommand
 		return true;
 	}
 
+	@Override
+	protected boolean processOnServer()
+	{
+		// Embedded media content
+		if (this.streaming == false) return super.processOnServer();
+
+		// Execute command on server, the media content follows the response
+		CommandHandler commandHandler = new CommandHandler(this.connectionContainer, this.socketTimeoutInMilliseconds);
+		ResponseContainer serverResponse = commandHandler.execute(this.context, this.requestContainer, null, this.contentFilePath);
+
+		if (serverResponse != null)
+		{
+			this.responseContainer = serverResponse;
+			return true;
+		}
+
+		// An error occurred
+		return false;
+	}
+
 	@Override
 	protected boolean evaluateResults()
 	{
@@ -98,7 +193,13 @@ public class ClientCommandMediaFileRead extends ClientCommand
 			// Get result: MediaContent
 			this.mediaContent = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "MediaContent").getAliasName(), null); 
 			
-			if (this.isRead == true && (this.mediaContent == null || this.mediaContent.length() == 0))
+			// Media content was streamed following the response
+			this.contentReceived = this.isRead == true && this.responseContainer.isContentFollows() == true;
+
+			// A ranged read beyond the end of the media file returns no content
+			boolean isRanged = this.offset > 0 || this.length >= 0;
+
+			if (this.isRead == true && this.contentReceived == false && (this.mediaContent == null || (isRanged == false && this.mediaContent.length() == 0)))
 			{
 				errorText += "\n--> Missing value 'MediaContent'";
 				isError = true;
@@ -178,6 +279,18 @@ public class ClientCommandMediaFileRead extends ClientCommand
 		return this.mediaContent;
 	}
 
+	/**
+	 * Get the result value of the command: Information if the media content
+	 * was streamed into the content file, instead of being embedded into the
+	 * response.
+	 * 
+	 * @return Returns <TT>true</TT> or <TT>false</TT>.
+	 */
+	public boolean isContentReceived()
+	{
+		return this.contentReceived;
+	}
+
 	/**
 	 * Get the result value of the command: The file type of the media file read on server.
 	 * 
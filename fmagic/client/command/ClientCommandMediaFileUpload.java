@@ -1,9 +1,15 @@
 package fmagic.client.command;
 
+import java.io.File;
+
 import fmagic.basic.application.ApplicationManager;
+import fmagic.basic.command.CommandHandler;
+import fmagic.basic.command.CompressionPolicy;
 import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.command.ResponseContainer;
 import fmagic.basic.context.Context;
 import fmagic.basic.file.FileUtilFunctions;
+import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
 
 /**
@@ -20,12 +26,18 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 	private final String dataIdentifier;
 	private final String hashValue;
 	private final String fileToBeUploaded;
+	private final long offset;
+	private final long length;
 
 	private Boolean isUploaded = null;
 	private Boolean isExisting = null;
+	private Long uploadedLength = null;
+
+	// Flag if the media content is streamed after the request
+	private boolean streaming = false;
 
 	/**
-	 * Constructor
+	 * Constructor 1
 	 * 
 	 * @param context
 	 *            Current context.
@@ -38,6 +50,31 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 			ConnectionContainer connectionContainer, String fileToBeUploaded,
 			String mediaResourceIdentifier, String fileType,
 			String dataIdentifier, String hashValue)
+	{
+		this(context, application, connectionContainer, fileToBeUploaded, mediaResourceIdentifier, fileType, dataIdentifier, hashValue, -1, -1);
+	}
+
+	/**
+	 * Constructor 2: Upload a part of a media file (resumable upload).
+	 * 
+	 * @param context
+	 *            Current context.
+	 * 
+	 * @param application
+	 *            Application client.
+	 * 
+	 * @param offset
+	 *            The position of the part in the media file, or <TT>-1</TT>
+	 *            to upload the whole media file at once.
+	 * 
+	 * @param length
+	 *            The number of bytes of the part.
+	 */
+	public ClientCommandMediaFileUpload(Context context,
+			ApplicationManager application,
+			ConnectionContainer connectionContainer, String fileToBeUploaded,
+			String mediaResourceIdentifier, String fileType,
+			String dataIdentifier, String hashValue, long offset, long length)
 	{
 		super(context, application, ResourceManager.command(context, "MediaFileUpload").getRecourceIdentifier(), connectionContainer, context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandMediaFileUpload", "SocketTimeoutInMilliseconds"), false));
 
@@ -46,6 +83,8 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 		this.dataIdentifier = dataIdentifier;
 		this.hashValue = hashValue;
 		this.fileToBeUploaded = fileToBeUploaded;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	@Override
@@ -73,7 +112,49 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 				return false;
 			}
 
-			String mediaContent = FileUtilFunctions.fileReadToString(this.fileToBeUploaded);
+			// Set parameter: Offset
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "Offset").getAliasName(), String.valueOf(this.offset));
+
+			// Set parameter: FileSize
+			long fileSize = -1;
+			if (this.offset >= 0) fileSize = new File(this.fileToBeUploaded).length();
+			this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "FileSize").getAliasName(), String.valueOf(fileSize));
+
+			// Get media category, in order to compress only media content that
+			// shrinks
+			ResourceContainer resourceContainer = this.context.getResourceManager().getResourceContainer(this.context, this.mediaResourceIdentifier);
+			if (resourceContainer != null) this.mediaCategory = CompressionPolicy.getMediaCategory(this.context, ResourceManager.media(this.context, resourceContainer.getGroup(), resourceContainer.getName()), this.fileType);
+
+			// Stream the media content directly after the request, if binary
+			// framing was negotiated with the server
+			Boolean enableStreaming = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "CommandMediaFileUpload", "EnableStreaming"), false);
+			this.streaming = this.connectionContainer.getFramingVersion() > 0 && enableStreaming != null && enableStreaming == true;
+
+			if (this.streaming == true)
+			{
+				if (FileUtilFunctions.fileExists(this.fileToBeUploaded) == false)
+				{
+					String additionalText = "--> Media file to be uploaded doesn't exist '" + this.fileToBeUploaded + "'";
+					this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand"), additionalText, null);
+					return false;
+				}
+
+				this.requestContainer.setContentFollows(true);
+				this.requestContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFile", "MediaContent").getAliasName(), "");
+				return true;
+			}
+
+			// Embed the media content into the request, or the part to upload
+			String mediaContent = null;
+
+			if (this.offset < 0)
+			{
+				mediaContent = FileUtilFunctions.fileReadToString(this.fileToBeUploaded);
+			}
+			else
+			{
+				mediaContent = FileUtilFunctions.fileReadRangeToString(this.fileToBeUploaded, this.offset, this.length);
+			}
 
 			if (mediaContent == null)
 			{
@@ -94,6 +175,28 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 		return true;
 	}
 
+	@Override
+	protected boolean processOnServer()
+	{
+		// Embedded media content
+		if (this.streaming == false) return super.processOnServer();
+
+		// Execute command on server, followed by the media content
+		CommandHandler commandHandler = new CommandHandler(this.connectionContainer, this.socketTimeoutInMilliseconds);
+		if (this.offset >= 0) commandHandler.setContentRange(this.offset, this.length);
+		commandHandler.setMediaCategory(this.mediaCategory);
+		ResponseContainer serverResponse = commandHandler.execute(this.context, this.requestContainer, this.fileToBeUploaded);
+
+		if (serverResponse != null)
+		{
+			this.responseContainer = serverResponse;
+			return true;
+		}
+
+		// An error occurred
+		return false;
+	}
+
 	@Override
 	protected boolean evaluateResults()
 	{
@@ -107,6 +210,18 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 		if (result != null && result.equalsIgnoreCase("true")) this.isUploaded = true;
 		if (result != null && result.equalsIgnoreCase("false")) this.isUploaded = false;
 
+		// Get result: UploadedLength
+		result = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "UploadedLength").getAliasName(), null);
+
+		try
+		{
+			if (result != null && result.length() > 0) this.uploadedLength = Long.parseLong(result);
+		}
+		catch (NumberFormatException e)
+		{
+			this.uploadedLength = null;
+		}
+
 		// Return
 		return true;
 	}
@@ -150,4 +265,16 @@ public class ClientCommandMediaFileUpload extends ClientCommand
 		if (this.isUploaded == null) return false;
 		return this.isUploaded;
 	}
+
+	/**
+	 * Get the result value of the command: The number of bytes of the media
+	 * file received by the server so far, on resumable uploads.
+	 * 
+	 * @return Returns the length, or <TT>null</TT> if the server didn't
+	 *         return it.
+	 */
+	public Long getUploadedLength()
+	{
+		return this.uploadedLength;
+	}
 }
@@ -0,0 +1,116 @@
+package fmagic.client.command;
+
+import fmagic.basic.application.ApplicationManager;
+import fmagic.basic.command.ConnectionContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * COMMAND: Get the statistics of a remote server, that are the command
+ * metrics, the state of the admission control and the compression ratios.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 20.08.2013 - Created
+ */
+public class ClientCommandStatistics extends ClientCommand
+{
+	private String statistics = null;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            Current context.
+	 * 
+	 * @param application
+	 *            Application client.
+	 * 
+	 * @param connectionContainer
+	 *            The connection to the server.
+	 */
+	public ClientCommandStatistics(Context context,
+			ApplicationManager application,
+			ConnectionContainer connectionContainer)
+	{
+		super(context, application, ResourceManager.command(context, "Statistics").getRecourceIdentifier(), connectionContainer, context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "CommandStatistics", "SocketTimeoutInMilliseconds"), false));
+	}
+
+	@Override
+	protected boolean prepareRequestContainer()
+	{
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	@Override
+	protected boolean evaluateResults()
+	{
+		try
+		{
+			// Get result: Report
+			this.statistics = this.responseContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Statistics", "Report").getAliasName(), null);
+
+			// Fire error message
+			if (this.statistics == null)
+			{
+				ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+				this.context.getNotificationManager().notifyError(this.context, errorCode, "--> Error on validating command result values\n--> Missing value 'Report'", null);
+				this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+				return false;
+			}
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	@Override
+	protected boolean processResults()
+	{
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			ResourceContainer errorCode = ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand");
+			this.context.getNotificationManager().notifyError(this.context, errorCode, null, e);
+			this.responseContainer.setErrorCode(errorCode.getRecourceIdentifier());
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Get the result value of the command: The statistics of the server as
+	 * text.
+	 * 
+	 * @return Returns <TT>null</TT> if the command wasn't processed yet or an
+	 *         error occurred, otherwise the statistics.
+	 */
+	public String getStatistics()
+	{
+		return this.statistics;
+	}
+}
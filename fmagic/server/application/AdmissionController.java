@@ -0,0 +1,363 @@
+package fmagic.server.application;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class limits the number of commands executed concurrently on the
+ * application server (admission control).
+ * <p>
+ * Requests exceeding a limit are rejected with the error code
+ * <TT>Application/ServerOverloaded</TT>, before the server command is created
+ * and executed, so the client can back off or try another server. There are
+ * three kinds of limits:
+ * <UL>
+ * <LI>A limit on all commands executed concurrently (see configuration
+ * property <TT>Application/MaximumConcurrentCommands</TT>).</LI>
+ * <LI>A limit per command, e. g. to keep uploads from occupying all threads
+ * (see configuration property <TT>Application/CommandConcurrencyLimits</TT>).
+ * </LI>
+ * <LI>An adaptive limit on all commands, derived from the latency of the
+ * commands (see configuration property
+ * <TT>Application/EnableAdaptiveConcurrencyLimit</TT>). The limit is raised by
+ * one each time interval the average latency stays below the target latency,
+ * and reduced by ten percent if it exceeds the target latency.</LI>
+ * </UL>
+ * A worker can check if the server is overloaded before decoding a request
+ * (see <TT>isOverloaded()</TT>), in order not to spend CPU on decrypting and
+ * decoding a request that is rejected anyway.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 18.08.2013 - Created
+ */
+public class AdmissionController
+{
+	// Time interval for adjusting the adaptive limit
+	private static final long ADAPTIVE_INTERVAL_IN_NANOSECONDS = 100L * 1000L * 1000L;
+
+	// Lowest value of the adaptive limit
+	private static final int ADAPTIVE_MINIMUM_LIMIT = 1;
+
+	// Limit of all commands, or 0 if there is no one
+	private final int maximumConcurrentCommands;
+
+	// Limits per command name
+	private final Map<String, Integer> commandLimits;
+
+	// Adaptive limit
+	private final boolean adaptiveLimitEnabled;
+	private final long latencyTargetInNanoseconds;
+	private volatile int adaptiveLimit;
+	private final int adaptiveMaximumLimit;
+
+	// Data of the current interval of the adaptive limit
+	private long intervalStartTime = System.nanoTime();
+	private long intervalLatencySum = 0;
+	private int intervalNumberOfCommands = 0;
+
+	// Commands executed currently
+	private final AtomicInteger executingCommands = new AtomicInteger(0);
+	private final ConcurrentHashMap<String, AtomicInteger> executingCommandsByName = new ConcurrentHashMap<String, AtomicInteger>();
+
+	// Statistics
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maximumConcurrentCommands
+	 *            Maximum number of commands executed concurrently, or 0 if
+	 *            there is no limit.
+	 * 
+	 * @param commandLimits
+	 *            Maximum number of commands executed concurrently per command
+	 *            name, or <TT>null</TT> if there are no limits.
+	 * 
+	 * @param adaptiveLimitEnabled
+	 *            Set to <TT>true</TT> in order to adapt the limit of all
+	 *            commands to the latency of the commands.
+	 * 
+	 * @param latencyTargetInMilliseconds
+	 *            Average latency of commands the adaptive limit aims for.
+	 * 
+	 * @param adaptiveMaximumLimit
+	 *            Highest value of the adaptive limit.
+	 */
+	public AdmissionController(int maximumConcurrentCommands, Map<String, Integer> commandLimits, boolean adaptiveLimitEnabled, int latencyTargetInMilliseconds, int adaptiveMaximumLimit)
+	{
+		this.maximumConcurrentCommands = Math.max(0, maximumConcurrentCommands);
+		this.commandLimits = commandLimits != null ? new HashMap<String, Integer>(commandLimits) : new HashMap<String, Integer>();
+		this.adaptiveLimitEnabled = adaptiveLimitEnabled;
+		this.latencyTargetInNanoseconds = Math.max(1, latencyTargetInMilliseconds) * 1000L * 1000L;
+		this.adaptiveMaximumLimit = Math.max(ADAPTIVE_MINIMUM_LIMIT, adaptiveMaximumLimit);
+		this.adaptiveLimit = this.adaptiveMaximumLimit;
+	}
+
+	/**
+	 * Parse the per command limits of the configuration, that is a comma
+	 * separated list of items, each of them set by the two values 'Command
+	 * name' and 'Limit' separated by a colon character ':'.
+	 * <p>
+	 * For example: 'MediaFileUpload:4 , MediaFileRead:16'
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param commandLimitsString
+	 *            The configuration value, or <TT>null</TT>.
+	 * 
+	 * @return Returns the limits by command name.
+	 */
+	public static Map<String, Integer> parseCommandLimits(Context context, String commandLimitsString)
+	{
+		Map<String, Integer> commandLimits = new HashMap<String, Integer>();
+		if (commandLimitsString == null || commandLimitsString.trim().length() == 0) return commandLimits;
+
+		for (String item : commandLimitsString.split(","))
+		{
+			if (item.trim().length() == 0) continue;
+
+			try
+			{
+				String[] itemParts = item.split(":");
+				if (itemParts.length != 2 || itemParts[0].trim().length() == 0) throw new IllegalArgumentException("Invalid format");
+
+				int limit = Integer.parseInt(itemParts[1].trim());
+				if (limit < 1) throw new IllegalArgumentException("Invalid limit");
+
+				commandLimits.put(itemParts[0].trim(), limit);
+			}
+			catch (Exception e)
+			{
+				String errorText = "--> Invalid item of the configuration property 'CommandConcurrencyLimits'";
+				errorText += "\n--> Item: '" + item.trim() + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Configuration", "IntegrityError"), errorText, e);
+			}
+		}
+
+		return commandLimits;
+	}
+
+	/**
+	 * Check if the server is overloaded, that is all commands that may be
+	 * executed concurrently are being executed. A request that arrives now is
+	 * rejected anyway, so it needn't be decoded.
+	 * 
+	 * @return Returns <TT>true</TT> if the server is overloaded, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean isOverloaded()
+	{
+		int limit = this.getCurrentLimit();
+		return limit > 0 && this.executingCommands.get() >= limit;
+	}
+
+	/**
+	 * Count a request that was rejected without calling <TT>tryAcquire()</TT>,
+	 * because the server was overloaded (see <TT>isOverloaded()</TT>).
+	 */
+	public void notifyRejected()
+	{
+		this.rejectedCount.incrementAndGet();
+	}
+
+	/**
+	 * Admit a command to be executed. If the command was admitted, it must be
+	 * released by <TT>release()</TT> after executing.
+	 * 
+	 * @param commandIdentifier
+	 *            The command identifier of the request.
+	 * 
+	 * @return Returns <TT>true</TT> if the command may be executed, or
+	 *         <TT>false</TT> if it is to be rejected.
+	 */
+	public boolean tryAcquire(String commandIdentifier)
+	{
+		// Check limit of all commands
+		int limit = this.getCurrentLimit();
+
+		if (this.executingCommands.incrementAndGet() > limit && limit > 0)
+		{
+			this.executingCommands.decrementAndGet();
+			this.rejectedCount.incrementAndGet();
+			return false;
+		}
+
+		// Check limit of the command
+		if (this.tryAcquireCommandLimit(commandIdentifier) == false)
+		{
+			this.executingCommands.decrementAndGet();
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Admit a command to be executed, checking the limit per command only. This
+	 * is used for commands executed by a thread that already holds a slot of
+	 * the limit of all commands, e. g. the commands of a batch executed by the
+	 * thread processing the batch request. If the command was admitted, it must
+	 * be released by <TT>releaseCommandLimit()</TT> after executing.
+	 * 
+	 * @param commandIdentifier
+	 *            The command identifier of the request.
+	 * 
+	 * @return Returns <TT>true</TT> if the command may be executed, or
+	 *         <TT>false</TT> if it is to be rejected.
+	 */
+	public boolean tryAcquireCommandLimit(String commandIdentifier)
+	{
+		String commandName = AdmissionController.getCommandName(commandIdentifier);
+		Integer commandLimit = commandName != null ? this.commandLimits.get(commandName) : null;
+		if (commandLimit == null) return true;
+
+		AtomicInteger counter = this.getCommandCounter(commandName);
+
+		if (counter.incrementAndGet() > commandLimit)
+		{
+			counter.decrementAndGet();
+			this.rejectedCount.incrementAndGet();
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Release a command admitted before, and adapt the adaptive limit to the
+	 * latency of the command.
+	 * 
+	 * @param commandIdentifier
+	 *            The command identifier of the request.
+	 * 
+	 * @param startTime
+	 *            Start time of the command, as got from
+	 *            <TT>System.nanoTime()</TT>.
+	 */
+	public void release(String commandIdentifier, long startTime)
+	{
+		// Release limit of the command
+		this.releaseCommandLimit(commandIdentifier);
+
+		// Release limit of all commands
+		this.executingCommands.decrementAndGet();
+
+		// Adapt limit
+		if (this.adaptiveLimitEnabled == true) this.adaptLimit(System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Release a command admitted before by <TT>tryAcquireCommandLimit()</TT>.
+	 * 
+	 * @param commandIdentifier
+	 *            The command identifier of the request.
+	 */
+	public void releaseCommandLimit(String commandIdentifier)
+	{
+		String commandName = AdmissionController.getCommandName(commandIdentifier);
+		if (commandName != null && this.commandLimits.containsKey(commandName)) this.getCommandCounter(commandName).decrementAndGet();
+	}
+
+	/**
+	 * Adapt the adaptive limit to the latency of a command. The limit is
+	 * changed at most once per time interval, based on the average latency of
+	 * the commands of the interval.
+	 */
+	private synchronized void adaptLimit(long latency)
+	{
+		// Collect latency
+		this.intervalLatencySum += latency;
+		this.intervalNumberOfCommands++;
+
+		long currentTime = System.nanoTime();
+		if (currentTime - this.intervalStartTime < ADAPTIVE_INTERVAL_IN_NANOSECONDS) return;
+
+		// Adapt limit: additive increase, multiplicative decrease
+		long averageLatency = this.intervalLatencySum / this.intervalNumberOfCommands;
+
+		if (averageLatency > this.latencyTargetInNanoseconds)
+		{
+			this.adaptiveLimit = Math.max(ADAPTIVE_MINIMUM_LIMIT, this.adaptiveLimit - Math.max(1, this.adaptiveLimit / 10));
+		}
+		else
+		{
+			this.adaptiveLimit = Math.min(this.adaptiveMaximumLimit, this.adaptiveLimit + 1);
+		}
+
+		// Start next interval
+		this.intervalStartTime = currentTime;
+		this.intervalLatencySum = 0;
+		this.intervalNumberOfCommands = 0;
+	}
+
+	/**
+	 * Get the limit of all commands currently valid.
+	 * 
+	 * @return Returns the limit, or 0 if there is no limit.
+	 */
+	public int getCurrentLimit()
+	{
+		int limit = this.maximumConcurrentCommands;
+		if (this.adaptiveLimitEnabled == true && (limit == 0 || this.adaptiveLimit < limit)) limit = this.adaptiveLimit;
+		return limit;
+	}
+
+	/**
+	 * Get the counter of commands executed currently for a command name.
+	 */
+	private AtomicInteger getCommandCounter(String commandName)
+	{
+		AtomicInteger counter = this.executingCommandsByName.get(commandName);
+		if (counter != null) return counter;
+
+		counter = new AtomicInteger(0);
+		AtomicInteger existingCounter = this.executingCommandsByName.putIfAbsent(commandName, counter);
+		return existingCounter != null ? existingCounter : counter;
+	}
+
+	/**
+	 * Get the command name of a command identifier, e. g. 'MediaFileUpload'.
+	 */
+	private static String getCommandName(String commandIdentifier)
+	{
+		if (commandIdentifier == null) return null;
+		return new ResourceContainer(commandIdentifier).getGroup();
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getExecutingCommands()
+	{
+		return this.executingCommands.get();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getRejectedCount()
+	{
+		return this.rejectedCount.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		String outputString = "Executing commands: " + String.valueOf(this.executingCommands.get());
+		outputString += ", Limit: " + (this.getCurrentLimit() > 0 ? String.valueOf(this.getCurrentLimit()) : "none");
+		outputString += ", Command limits: " + this.commandLimits.toString();
+		outputString += ", Rejected: " + String.valueOf(this.rejectedCount.get());
+		return outputString;
+	}
+}
@@ -133,8 +133,7 @@ public class ApplicationServer extends Thread
 		// Execute the command via the thread pool
 		try
 		{
-			this.getServerManager().threadPoolExecuteNewThread(commandObject);
-			return true;
+			return this.getServerManager().threadPoolExecute(commandObject);
 		}
 		catch (Exception e)
 		{
@@ -0,0 +1,453 @@
+package fmagic.server.application;
+
+import java.io.ByteArrayOutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import fmagic.basic.command.SocketHandler;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class implements a non-blocking variant of the application server,
+ * based on a <TT>Selector</TT> and a <TT>ServerSocketChannel</TT>.
+ * <p>
+ * Client connections are accepted and read without blocking. Only if a
+ * request was read completely, that means the end of data mark or the whole
+ * binary frame was received, the socket is switched back to blocking mode and
+ * handed over to a <TT>ServerWorkerThread</TT> together with the data already
+ * read.
+ * <p>
+ * The acceptor is activated by the configuration property
+ * <TT>Application/EnableNonBlockingSocketAcceptor</TT>.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 02.06.2013 - Created
+ * 
+ */
+public class ApplicationServerSelector extends ApplicationServer
+{
+	// Maximum time in milliseconds the selector waits for new events
+	private static final int SELECTOR_TIMEOUT_IN_MILLISECONDS = 1000;
+
+	// Size of the buffer used for reading from the client channels
+	private static final int READ_BUFFER_SIZE = 65536;
+
+	// Read buffer, shared by all connections of the selector thread
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+	// Maximum size of a request, and of its payload after decompressing
+	private int maximumFrameSizeInBytes = 0;
+	private int maximumDecompressedSizeInBytes = 0;
+
+	/**
+	 * Data of a client connection that is not read completely yet.
+	 */
+	private static class PendingRequest
+	{
+		private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		private long lastActivityTime = System.currentTimeMillis();
+		private byte secondLastByte = 0;
+		private byte lastByte = 0;
+		private boolean framed = false;
+		private int frameLength = -1;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param serverManager
+	 *            The server manager to use.
+	 */
+	public ApplicationServerSelector(Context context, ServerManager serverManager)
+	{
+		super(context, serverManager);
+	}
+
+	/**
+	 * Thread running method.
+	 */
+	@Override
+	public void run()
+	{
+		// Fire Event
+		this.getContext().getNotificationManager().notifyEvent(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ApplicationServerStarted"), null, null);
+
+		// Read limits of requests
+		this.maximumFrameSizeInBytes = SocketHandler.getMaximumFrameSizeInBytes(this.getContext());
+		this.maximumDecompressedSizeInBytes = SocketHandler.getMaximumDecompressedSizeInBytes(this.getContext());
+
+		// Open selector
+		Selector selector = null;
+		ServerSocketChannel serverSocketChannel = this.getServerManager().getServerSocketChannel();
+
+		try
+		{
+			selector = Selector.open();
+			serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (Exception e)
+		{
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnServerSocket"), "--> on opening selector of non-blocking socket acceptor", e);
+			this.closeSelector(selector);
+			return;
+		}
+
+		// Processing requests
+		List<SelectionKey> completedRequests = new ArrayList<SelectionKey>();
+
+		while (true)
+		{
+			// Check shutdown flag
+			if (this.getServerManager().isShutdown() == true)
+			{
+				break;
+			}
+
+			// Check stop running flag
+			if (this.getServerManager().isStopRunning())
+			{
+				break;
+			}
+
+			// Check interrupt flag
+			if (this.isInterrupted())
+			{
+				break;
+			}
+
+			try
+			{
+				// Waiting for next events
+				selector.select(SELECTOR_TIMEOUT_IN_MILLISECONDS);
+
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+				while (iterator.hasNext())
+				{
+					SelectionKey key = iterator.next();
+					iterator.remove();
+
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable())
+					{
+						this.acceptConnection(selector, serverSocketChannel);
+					}
+					else if (key.isReadable())
+					{
+						if (this.readConnection(key) == true) completedRequests.add(key);
+					}
+				}
+
+				// Hand over completed requests to the worker threads
+				if (completedRequests.size() > 0)
+				{
+					// Deregister cancelled keys before switching the
+					// channels back to blocking mode
+					selector.selectNow();
+
+					for (SelectionKey key : completedRequests)
+					{
+						this.dispatchRequest(key);
+					}
+
+					completedRequests.clear();
+				}
+
+				// Close connections that didn't send a complete request in
+				// time
+				this.closeExpiredConnections(selector);
+			}
+			catch (Exception e)
+			{
+				if (this.getServerManager().isStopRunning() == false) this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnAcceptingClientSocket"), null, e);
+			}
+		}
+
+		// Close selector and all pending client connections
+		this.closeSelector(selector);
+
+		// Fire Event
+		this.getContext().getNotificationManager().notifyEvent(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ApplicationServerStopped"), null, null);
+	}
+
+	/**
+	 * Accept a new client connection and register it for reading.
+	 * 
+	 * @param selector
+	 *            The selector to register the client connection at.
+	 * 
+	 * @param serverSocketChannel
+	 *            The server socket channel to accept from.
+	 */
+	private void acceptConnection(Selector selector, ServerSocketChannel serverSocketChannel)
+	{
+		SocketChannel clientChannel = null;
+
+		try
+		{
+			clientChannel = serverSocketChannel.accept();
+			if (clientChannel == null) return;
+
+			// Check stop accepting flag
+			if (this.getServerManager().isStopAcceptingSocketConnections() == true)
+			{
+				clientChannel.close();
+				return;
+			}
+
+			// Register client connection for reading
+			clientChannel.configureBlocking(false);
+			clientChannel.register(selector, SelectionKey.OP_READ, new PendingRequest());
+		}
+		catch (Exception e)
+		{
+			this.closeChannel(clientChannel);
+			if (this.getServerManager().isStopRunning() == false) this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnAcceptingClientSocket"), null, e);
+		}
+	}
+
+	/**
+	 * Read all available data of a client connection.
+	 * 
+	 * @param key
+	 *            The selection key of the client connection.
+	 * 
+	 * @return Returns <TT>true</TT> if the request was read completely and the
+	 *         key was cancelled, otherwise <TT>false</TT>.
+	 */
+	private boolean readConnection(SelectionKey key)
+	{
+		SocketChannel clientChannel = (SocketChannel) key.channel();
+		PendingRequest pendingRequest = (PendingRequest) key.attachment();
+
+		try
+		{
+			while (true)
+			{
+				this.readBuffer.clear();
+				int byteCount = clientChannel.read(this.readBuffer);
+
+				// Connection closed by client
+				if (byteCount == -1)
+				{
+					key.cancel();
+					this.closeChannel(clientChannel);
+					return false;
+				}
+
+				// No more data available
+				if (byteCount == 0) break;
+
+				// Transfer data to the pending request, the first byte shows
+				// if the request is sent as binary frame
+				byte[] bytes = this.readBuffer.array();
+				if (pendingRequest.data.size() == 0) pendingRequest.framed = bytes[0] == SocketHandler.FRAME_MAGIC_BYTE;
+				pendingRequest.data.write(bytes, 0, byteCount);
+				pendingRequest.lastActivityTime = System.currentTimeMillis();
+
+				// Remember the last two bytes for checking the end of data
+				pendingRequest.secondLastByte = byteCount > 1 ? bytes[byteCount - 2] : pendingRequest.lastByte;
+				pendingRequest.lastByte = bytes[byteCount - 1];
+
+				// Stop reading as soon as the request is complete, content
+				// frames following the request are read by the worker thread
+				if (this.isRequestComplete(pendingRequest) == true)
+				{
+					key.cancel();
+					return true;
+				}
+			}
+
+			// Request is not complete yet
+			return false;
+		}
+		catch (Exception e)
+		{
+			key.cancel();
+			this.closeChannel(clientChannel);
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Socket", "ErrorOnSocketConnection"), "--> Error on reading data from socket", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Check if a request was read completely, that means if it ends with the
+	 * end of data mark, or if the binary frame was read up to its length.
+	 * 
+	 * @param pendingRequest
+	 *            The pending request to check.
+	 * 
+	 * @return Returns <TT>true</TT> if the request is complete, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean isRequestComplete(PendingRequest pendingRequest)
+	{
+		// Binary frame
+		if (pendingRequest.framed == true)
+		{
+			if (pendingRequest.frameLength < 0 && pendingRequest.data.size() >= SocketHandler.FRAME_HEADER_SIZE)
+			{
+				pendingRequest.frameLength = SocketHandler.getFrameLength(pendingRequest.data.toByteArray());
+				if (pendingRequest.frameLength < 0) throw new IllegalStateException("--> Invalid frame header");
+
+				// Reject the request before buffering its payload
+				if (pendingRequest.frameLength > this.maximumFrameSizeInBytes) throw new IllegalStateException("--> Frame exceeds the maximum frame size\n--> Length: '" + String.valueOf(pendingRequest.frameLength) + "', Maximum: '" + String.valueOf(this.maximumFrameSizeInBytes) + "'");
+			}
+
+			if (pendingRequest.frameLength < 0) return false;
+			return pendingRequest.data.size() >= SocketHandler.FRAME_HEADER_SIZE + pendingRequest.frameLength;
+		}
+
+		// Text with end of data mark
+		if (pendingRequest.data.size() > this.maximumFrameSizeInBytes) throw new IllegalStateException("--> Data exceed the maximum frame size of '" + String.valueOf(this.maximumFrameSizeInBytes) + "' bytes");
+		if (pendingRequest.data.size() < 2) return false;
+		return pendingRequest.secondLastByte == '\n' && pendingRequest.lastByte == '\n';
+	}
+
+	/**
+	 * Hand over a completely read request to a worker thread.
+	 * 
+	 * @param key
+	 *            The (cancelled) selection key of the client connection.
+	 */
+	private void dispatchRequest(SelectionKey key)
+	{
+		SocketChannel clientChannel = (SocketChannel) key.channel();
+		PendingRequest pendingRequest = (PendingRequest) key.attachment();
+
+		try
+		{
+			// Switch back to blocking mode, in order to write the response
+			// via stream
+			clientChannel.configureBlocking(true);
+			Socket clientSocket = clientChannel.socket();
+
+			// Get request data without the frame header resp. the end of data
+			// mark
+			byte[] bytes = pendingRequest.data.toByteArray();
+			boolean framed = pendingRequest.framed;
+			String requestData = null;
+
+			if (framed == true)
+			{
+				requestData = SocketHandler.decodeFramePayload(bytes, SocketHandler.FRAME_HEADER_SIZE, pendingRequest.frameLength, SocketHandler.getFrameFlags(bytes), this.maximumDecompressedSizeInBytes);
+			}
+			else
+			{
+				requestData = new String(bytes, 0, bytes.length - 2, Charset.defaultCharset());
+			}
+
+			// Create a SILENT dump context regarding the executing of a
+			// command on server
+			Context newContext = this.getContext().createSilentDumpContext(ResourceManager.context(this.getContext(), "Processing", "ProcessingClientCommand"));
+
+			SocketHandler socketConnector = new SocketHandler(newContext);
+			socketConnector.adoptSocket(clientSocket, this.getServerManager().getSocketTimeoutInMilliseconds(), requestData);
+			socketConnector.setFramingEnabled(framed);
+
+			// Respond compressed with the codec of the request
+			if (framed == true) socketConnector.adoptCompressionCodec(SocketHandler.getFrameFlags(bytes));
+
+			// Hand back content frames already read behind the request
+			if (framed == true)
+			{
+				int requestSize = SocketHandler.FRAME_HEADER_SIZE + pendingRequest.frameLength;
+				socketConnector.unreadData(bytes, requestSize, bytes.length - requestSize);
+			}
+
+			ServerWorkerThread worker = new ServerWorkerThread(newContext, this.getServerManager(), socketConnector, this.getServerManager().getKeyApplicationPrivateKey());
+
+			// Execute inside the thread pool
+			this.execute(newContext, worker);
+		}
+		catch (Exception e)
+		{
+			this.closeChannel(clientChannel);
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnInvokingCommand"), null, e);
+		}
+	}
+
+	/**
+	 * Close all client connections that didn't send a complete request within
+	 * the socket timeout time.
+	 * 
+	 * @param selector
+	 *            The selector to check.
+	 */
+	private void closeExpiredConnections(Selector selector)
+	{
+		long expirationTime = System.currentTimeMillis() - this.getServerManager().getSocketTimeoutInMilliseconds();
+
+		for (SelectionKey key : selector.keys())
+		{
+			if (!(key.attachment() instanceof PendingRequest)) continue;
+
+			PendingRequest pendingRequest = (PendingRequest) key.attachment();
+			if (pendingRequest.lastActivityTime >= expirationTime) continue;
+
+			key.cancel();
+			this.closeChannel(key.channel());
+
+			String errorString = "--> Socket timeout on non-blocking socket acceptor";
+			errorString += "\n--> Number of bytes read: '" + String.valueOf(pendingRequest.data.size()) + "'";
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Socket", "ErrorOnSocketConnection"), errorString, null);
+		}
+	}
+
+	/**
+	 * Close the selector and all client connections still registered.
+	 * 
+	 * @param selector
+	 *            The selector to close.
+	 */
+	private void closeSelector(Selector selector)
+	{
+		if (selector == null) return;
+
+		try
+		{
+			for (SelectionKey key : selector.keys())
+			{
+				if (key.attachment() instanceof PendingRequest) this.closeChannel(key.channel());
+			}
+
+			selector.close();
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+	}
+
+	/**
+	 * Close a channel silently.
+	 * 
+	 * @param channel
+	 *            The channel to close.
+	 */
+	private void closeChannel(java.nio.channels.Channel channel)
+	{
+		try
+		{
+			if (channel != null) channel.close();
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package fmagic.server.application;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class records metrics of the commands executed on the application
+ * server, per command identifier: latency histograms, split by the worksteps
+ * of processing a request, sizes of requests and responses, and the number of
+ * errors.
+ * <p>
+ * A worker measures a request by a <TT>Measurement</TT> object, and hands it
+ * over to <TT>record()</TT> after the response was written. The metrics can be
+ * read by the command 'Statistics', and are written to a snapshot file
+ * periodically (see <TT>CommandMetricsWriter</TT>).
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 20.08.2013 - Created
+ */
+public class CommandMetrics
+{
+	// Worksteps of processing a request
+	public static enum WorkstepEnum
+	{
+		READ, DECODE, INSTANTIATE, EXECUTE, ENCODE, WRITE
+	}
+
+	// Command identifier used for requests that couldn't be decoded, or whose
+	// command is unknown to the server
+	private static final String UNKNOWN_COMMAND = "Unknown";
+
+	// Metrics per command identifier
+	private final ConcurrentHashMap<String, CommandMetricsItem> items = new ConcurrentHashMap<String, CommandMetricsItem>();
+
+	// Start of recording
+	private volatile Date startDate = new Date();
+
+	/**
+	 * Record the measurement of a request.
+	 * 
+	 * @param measurement
+	 *            The measurement of the request.
+	 */
+	public void record(Measurement measurement)
+	{
+		if (measurement == null) return;
+
+		String commandIdentifier = measurement.commandIdentifier != null ? measurement.commandIdentifier : UNKNOWN_COMMAND;
+		this.getItem(commandIdentifier).record(measurement);
+	}
+
+	/**
+	 * Get the metrics of a command identifier, created if not existing yet.
+	 */
+	private CommandMetricsItem getItem(String commandIdentifier)
+	{
+		CommandMetricsItem item = this.items.get(commandIdentifier);
+		if (item != null) return item;
+
+		item = new CommandMetricsItem();
+		CommandMetricsItem existingItem = this.items.putIfAbsent(commandIdentifier, item);
+		return existingItem != null ? existingItem : item;
+	}
+
+	/**
+	 * Reset all metrics recorded.
+	 */
+	public void reset()
+	{
+		this.items.clear();
+		this.startDate = new Date();
+	}
+
+	/**
+	 * Print the metrics of all commands, sorted by command identifier.
+	 * 
+	 * @return Returns the printed metrics.
+	 */
+	public String printMetrics()
+	{
+		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+
+		String outputString = "";
+		outputString += "Recorded since: " + simpleDateFormat.format(this.startDate) + "\n";
+		outputString += "Latencies in milliseconds, sizes in characters of the encoded containers\n";
+
+		// Sorting the keys alphabetically
+		List<String> commandIdentifiers = new ArrayList<String>(this.items.keySet());
+		Collections.sort(commandIdentifiers);
+
+		// List all items
+		for (String commandIdentifier : commandIdentifiers)
+		{
+			CommandMetricsItem item = this.items.get(commandIdentifier);
+			if (item == null) continue;
+
+			outputString += "\n" + commandIdentifier + "\n";
+			outputString += item.toString();
+		}
+
+		// Return
+		return outputString;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.printMetrics();
+	}
+
+	/**
+	 * Metrics of a single command identifier.
+	 */
+	private static class CommandMetricsItem
+	{
+		private final LatencyHistogram totalLatency = new LatencyHistogram();
+		private final LatencyHistogram[] workstepLatencies = new LatencyHistogram[WorkstepEnum.values().length];
+
+		private final AtomicLong errorCount = new AtomicLong(0);
+		private final AtomicLong requestSizeSum = new AtomicLong(0);
+		private final AtomicLong responseSizeSum = new AtomicLong(0);
+		private final AtomicLong requestSizeMaximum = new AtomicLong(0);
+		private final AtomicLong responseSizeMaximum = new AtomicLong(0);
+
+		/**
+		 * Constructor
+		 */
+		CommandMetricsItem()
+		{
+			for (int i = 0; i < this.workstepLatencies.length; i++)
+			{
+				this.workstepLatencies[i] = new LatencyHistogram();
+			}
+		}
+
+		/**
+		 * Record the measurement of a request.
+		 */
+		void record(Measurement measurement)
+		{
+			// Latencies
+			for (int i = 0; i < this.workstepLatencies.length; i++)
+			{
+				if (measurement.measured[i] == false) continue;
+				this.workstepLatencies[i].record(measurement.latencies[i]);
+			}
+
+			this.totalLatency.record(measurement.getTotalLatency());
+
+			// Sizes
+			this.requestSizeSum.addAndGet(measurement.requestSize);
+			this.responseSizeSum.addAndGet(measurement.responseSize);
+			CommandMetricsItem.setMaximum(this.requestSizeMaximum, measurement.requestSize);
+			CommandMetricsItem.setMaximum(this.responseSizeMaximum, measurement.responseSize);
+
+			// Errors
+			if (measurement.error == true) this.errorCount.incrementAndGet();
+		}
+
+		/**
+		 * Keep the maximum of a value.
+		 */
+		private static void setMaximum(AtomicLong maximum, long value)
+		{
+			long currentMaximum = maximum.get();
+
+			while (value > currentMaximum)
+			{
+				if (maximum.compareAndSet(currentMaximum, value)) break;
+				currentMaximum = maximum.get();
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			long count = this.totalLatency.getCount();
+
+			String outputString = "";
+			outputString += "  Requests: " + String.valueOf(count) + ", Errors: " + String.valueOf(this.errorCount.get()) + "\n";
+			outputString += "  Request size: avg=" + String.valueOf(count > 0 ? this.requestSizeSum.get() / count : 0) + " max=" + String.valueOf(this.requestSizeMaximum.get()) + "\n";
+			outputString += "  Response size: avg=" + String.valueOf(count > 0 ? this.responseSizeSum.get() / count : 0) + " max=" + String.valueOf(this.responseSizeMaximum.get()) + "\n";
+			outputString += "  TOTAL: " + this.totalLatency.toString() + "\n";
+
+			for (WorkstepEnum workstep : WorkstepEnum.values())
+			{
+				LatencyHistogram histogram = this.workstepLatencies[workstep.ordinal()];
+				if (histogram.getCount() == 0) continue;
+				outputString += "  " + workstep.toString() + ": " + histogram.toString() + "\n";
+			}
+
+			return outputString;
+		}
+	}
+
+	/**
+	 * Measurement of a single request, taken by one worker thread at a time.
+	 * <p>
+	 * Each call of <TT>measure()</TT> adds the time elapsed since the previous
+	 * call to a workstep, so the worksteps can be measured one after another
+	 * without nesting. Optionally the bytes allocated by the worker thread are
+	 * measured per workstep as well, if supported by the Java VM.
+	 * <p>
+	 * Each measurement gets a trace identifier that is unique on the server,
+	 * in order to find the log messages of a request that was slow.
+	 */
+	public static class Measurement
+	{
+		// Trace identifiers: prefix unique per server start, and counter
+		private static final String TRACE_IDENTIFIER_PREFIX = Long.toString(System.currentTimeMillis(), 36);
+		private static final AtomicLong traceIdentifierCounter = new AtomicLong(0);
+
+		// Thread management of the Java VM, or null if it can't measure
+		// allocated bytes
+		private static final com.sun.management.ThreadMXBean threadMXBean = Measurement.getAllocationThreadMXBean();
+
+		private final String traceIdentifier;
+		private final boolean traceAllocations;
+
+		private final long[] latencies = new long[WorkstepEnum.values().length];
+		private final long[] allocatedBytes = new long[WorkstepEnum.values().length];
+		private final boolean[] measured = new boolean[WorkstepEnum.values().length];
+		private long lastTime = System.nanoTime();
+		private long lastAllocatedBytes = 0;
+
+		private String commandIdentifier = null;
+		private long requestSize = 0;
+		private long responseSize = 0;
+		private boolean error = false;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param traceAllocations
+		 *            Set to <TT>true</TT> in order to measure the bytes
+		 *            allocated per workstep as well.
+		 */
+		public Measurement(boolean traceAllocations)
+		{
+			this.traceIdentifier = TRACE_IDENTIFIER_PREFIX + "-" + Long.toString(traceIdentifierCounter.incrementAndGet(), 36);
+			this.traceAllocations = traceAllocations == true && threadMXBean != null;
+			this.lastAllocatedBytes = this.getAllocatedBytes();
+		}
+
+		/**
+		 * Get the thread management of the Java VM, if it supports measuring
+		 * the bytes allocated by a thread.
+		 */
+		private static com.sun.management.ThreadMXBean getAllocationThreadMXBean()
+		{
+			try
+			{
+				ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+				if (bean instanceof com.sun.management.ThreadMXBean == false) return null;
+
+				com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+				if (allocationBean.isThreadAllocatedMemorySupported() == false) return null;
+				if (allocationBean.isThreadAllocatedMemoryEnabled() == false) allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+				return allocationBean;
+			}
+			catch (Throwable e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Get the bytes allocated by the current thread so far, or 0 if
+		 * allocations are not traced.
+		 */
+		private long getAllocatedBytes()
+		{
+			if (this.traceAllocations == false) return 0;
+			return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		/**
+		 * Start measuring the next workstep, without adding the time elapsed
+		 * to a workstep, e. g. after the request waited in a queue, or was
+		 * handed over to another thread.
+		 */
+		public void restart()
+		{
+			this.lastTime = System.nanoTime();
+			this.lastAllocatedBytes = this.getAllocatedBytes();
+		}
+
+		/**
+		 * Add the time elapsed since the previous call to a workstep.
+		 * 
+		 * @param workstep
+		 *            The workstep that was processed.
+		 */
+		public void measure(WorkstepEnum workstep)
+		{
+			long currentTime = System.nanoTime();
+			this.latencies[workstep.ordinal()] += currentTime - this.lastTime;
+			this.measured[workstep.ordinal()] = true;
+			this.lastTime = currentTime;
+
+			if (this.traceAllocations == true)
+			{
+				long currentAllocatedBytes = this.getAllocatedBytes();
+				this.allocatedBytes[workstep.ordinal()] += Math.max(0, currentAllocatedBytes - this.lastAllocatedBytes);
+				this.lastAllocatedBytes = currentAllocatedBytes;
+			}
+		}
+
+		/**
+		 * Get the sum of the latencies of all worksteps measured.
+		 * 
+		 * @return Returns the total latency in nanoseconds.
+		 */
+		public long getTotalLatency()
+		{
+			long totalLatency = 0;
+
+			for (int i = 0; i < this.latencies.length; i++)
+			{
+				totalLatency += this.latencies[i];
+			}
+
+			return totalLatency;
+		}
+
+		/**
+		 * Print the trace of the request, that are the latencies and the
+		 * allocated bytes of all worksteps measured.
+		 * 
+		 * @return Returns the printed trace.
+		 */
+		public String printTrace()
+		{
+			String outputString = "";
+			outputString += "Trace: " + this.traceIdentifier + "\n";
+			outputString += "Command: " + (this.commandIdentifier != null ? this.commandIdentifier : UNKNOWN_COMMAND) + "\n";
+			outputString += String.format("Total: %.3f ms", this.getTotalLatency() / 1000000.0) + ", Error: " + String.valueOf(this.error) + "\n";
+			outputString += "Request size: " + String.valueOf(this.requestSize) + ", Response size: " + String.valueOf(this.responseSize) + "\n";
+
+			for (WorkstepEnum workstep : WorkstepEnum.values())
+			{
+				if (this.measured[workstep.ordinal()] == false) continue;
+
+				outputString += "  " + workstep.toString() + String.format(": %.3f ms", this.latencies[workstep.ordinal()] / 1000000.0);
+				if (this.traceAllocations == true) outputString += ", " + String.valueOf(this.allocatedBytes[workstep.ordinal()]) + " bytes allocated";
+				outputString += "\n";
+			}
+
+			return outputString;
+		}
+
+		/**
+		 * Getter
+		 */
+		public String getTraceIdentifier()
+		{
+			return this.traceIdentifier;
+		}
+
+		/**
+		 * Setter
+		 */
+		public void setCommandIdentifier(String commandIdentifier)
+		{
+			this.commandIdentifier = commandIdentifier;
+		}
+
+		/**
+		 * Setter
+		 */
+		public void setRequestSize(long requestSize)
+		{
+			this.requestSize = requestSize;
+		}
+
+		/**
+		 * Setter
+		 */
+		public void setResponseSize(long responseSize)
+		{
+			this.responseSize = responseSize;
+		}
+
+		/**
+		 * Setter
+		 */
+		public void setError(boolean error)
+		{
+			this.error = error;
+		}
+	}
+}
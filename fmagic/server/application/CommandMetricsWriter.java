@@ -0,0 +1,188 @@
+package fmagic.server.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.file.FileLocationFunctions;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class implements a thread that writes a snapshot of the command metrics
+ * of the application server to a file periodically, and once more on stopping
+ * the server.
+ * <p>
+ * The snapshots are appended to a file per day in the logging directory (see
+ * <TT>FileLocationFunctions.getLogMetricsSubPath()</TT>).
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 20.08.2013 - Created
+ */
+public class CommandMetricsWriter extends Thread
+{
+	final private ServerManager serverManager;
+	final private Context context;
+	final private int snapshotIntervalInSeconds;
+
+	// Flag if processing is to be continued
+	private volatile boolean stopRunning = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param serverManager
+	 *            The server the metrics are recorded on.
+	 * 
+	 * @param snapshotIntervalInSeconds
+	 *            Time between two snapshots in seconds.
+	 */
+	public CommandMetricsWriter(Context context, ServerManager serverManager, int snapshotIntervalInSeconds)
+	{
+		this.context = context;
+		this.serverManager = serverManager;
+		this.snapshotIntervalInSeconds = Math.max(1, snapshotIntervalInSeconds);
+
+		this.setName("CommandMetricsWriter-" + context.getCodeName());
+		this.setDaemon(true);
+	}
+
+	/**
+	 * Thread running method.
+	 */
+	@Override
+	public void run()
+	{
+		while (this.stopRunning == false)
+		{
+			// Sleep x seconds
+			try
+			{
+				Thread.sleep(this.snapshotIntervalInSeconds * 1000L);
+			}
+			catch (InterruptedException e)
+			{
+				// Be silent
+			}
+
+			// Write snapshot
+			if (this.stopRunning == false) this.writeSnapshot();
+		}
+	}
+
+	/**
+	 * Start writing snapshots.
+	 * 
+	 * @return Returns <TT>true</TT> if the thread could be started, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean startServer()
+	{
+		// Logging
+		this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Starting command metrics writer [" + this.context.getCodeName() + "], snapshot interval: " + String.valueOf(this.snapshotIntervalInSeconds) + " seconds");
+
+		// Start thread
+		try
+		{
+			this.start();
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on starting command metrics writer";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnWritingMetrics"), errorText, e);
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Stop writing snapshots, and write a last snapshot.
+	 */
+	public void stopServer()
+	{
+		// Stop running thread
+		this.stopRunning = true;
+		this.interrupt();
+
+		try
+		{
+			this.join(10000);
+		}
+		catch (InterruptedException e)
+		{
+			// Be silent
+		}
+
+		// Write last snapshot
+		this.writeSnapshot();
+	}
+
+	/**
+	 * Append a snapshot of the command metrics to the snapshot file.
+	 * 
+	 * @return Returns <TT>true</TT> if the snapshot could be written,
+	 *         otherwise <TT>false</TT>.
+	 */
+	public boolean writeSnapshot()
+	{
+		CommandMetrics commandMetrics = this.serverManager.getCommandMetrics();
+		if (commandMetrics == null) return false;
+
+		String pathName = null;
+		String fileName = null;
+		PrintWriter output = null;
+
+		try
+		{
+			// Compose snapshot
+			SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+
+			String snapshotText = "";
+			snapshotText += "\n[\n+++ Command metrics [" + this.context.getCodeName() + "] at " + simpleDateFormat.format(new Date()) + "\n";
+			snapshotText += "----------\n";
+			snapshotText += commandMetrics.printMetrics();
+			if (this.serverManager.getAdmissionController() != null) snapshotText += "----------\nAdmission control: " + this.serverManager.getAdmissionController().toString() + "\n";
+			snapshotText += "----------\n" + this.serverManager.getSessionStore().toString() + "\n";
+			if (this.serverManager.getSessionTicketHandler() != null) snapshotText += this.serverManager.getSessionTicketHandler().toString() + "\n";
+			snapshotText += "]\n";
+
+			// Get file path
+			pathName = FileLocationFunctions.compileFilePath(FileLocationFunctions.getRootPath(), FileLocationFunctions.getLogMetricsSubPath(), FileLocationFunctions.getLogMetricsSubSubPath());
+			pathName = FileLocationFunctions.replacePlacholder(this.context, pathName);
+			fileName = FileLocationFunctions.replacePlacholder(this.context, FileLocationFunctions.getLogMetricsFileName());
+
+			// Append snapshot
+			File directory = new File(pathName);
+			directory.mkdirs();
+
+			output = new PrintWriter(new FileOutputStream(new File(pathName, fileName), true));
+			output.append(snapshotText);
+			output.flush();
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on writing snapshot of command metrics";
+			errorText += "\n--> Directory: '" + pathName + "'";
+			errorText += "\n--> File name: '" + fileName + "'";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnWritingMetrics"), errorText, e);
+			return false;
+		}
+		finally
+		{
+			if (output != null) output.close();
+		}
+
+		// Return
+		return true;
+	}
+}
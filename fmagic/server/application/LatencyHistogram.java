@@ -0,0 +1,144 @@
+package fmagic.server.application;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class records latencies in a histogram with exponential buckets, in
+ * order to derive percentiles without storing single values.
+ * <p>
+ * Bucket <TT>i</TT> counts the latencies from <TT>2^i</TT> up to
+ * <TT>2^(i+1)</TT> microseconds, so a percentile is known with an accuracy of
+ * factor two, whatever the latency is. Recording is lock-free and may be done
+ * by many threads concurrently.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 20.08.2013 - Created
+ */
+public class LatencyHistogram
+{
+	// Number of buckets, the last one covers all latencies above 2^31
+	// microseconds (about 36 minutes)
+	private static final int NUMBER_OF_BUCKETS = 32;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong sumInNanoseconds = new AtomicLong(0);
+	private final AtomicLong maximumInNanoseconds = new AtomicLong(0);
+
+	/**
+	 * Record a latency.
+	 * 
+	 * @param latencyInNanoseconds
+	 *            The latency in nanoseconds.
+	 */
+	public void record(long latencyInNanoseconds)
+	{
+		if (latencyInNanoseconds < 0) latencyInNanoseconds = 0;
+
+		// Count in bucket
+		this.buckets.incrementAndGet(LatencyHistogram.getBucketIndex(latencyInNanoseconds));
+		this.count.incrementAndGet();
+		this.sumInNanoseconds.addAndGet(latencyInNanoseconds);
+
+		// Keep maximum
+		long maximum = this.maximumInNanoseconds.get();
+
+		while (latencyInNanoseconds > maximum)
+		{
+			if (this.maximumInNanoseconds.compareAndSet(maximum, latencyInNanoseconds)) break;
+			maximum = this.maximumInNanoseconds.get();
+		}
+	}
+
+	/**
+	 * Get the index of the bucket for a latency.
+	 */
+	private static int getBucketIndex(long latencyInNanoseconds)
+	{
+		long latencyInMicroseconds = latencyInNanoseconds / 1000;
+		if (latencyInMicroseconds <= 1) return 0;
+
+		int index = 63 - Long.numberOfLeadingZeros(latencyInMicroseconds);
+		return Math.min(index, NUMBER_OF_BUCKETS - 1);
+	}
+
+	/**
+	 * Get a percentile of the latencies recorded, as the upper bound of the
+	 * bucket the percentile falls into.
+	 * 
+	 * @param percentile
+	 *            The percentile to get, e. g. 99.0 for the 99th percentile.
+	 * 
+	 * @return Returns the percentile in milliseconds, or 0 if no latency was
+	 *         recorded.
+	 */
+	public double getPercentileInMilliseconds(double percentile)
+	{
+		long totalCount = this.count.get();
+		if (totalCount == 0) return 0;
+
+		long rank = (long) Math.ceil(totalCount * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+		if (rank < 1) rank = 1;
+
+		long cumulatedCount = 0;
+
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+		{
+			cumulatedCount += this.buckets.get(i);
+
+			if (cumulatedCount >= rank)
+			{
+				// The maximum is a better upper bound than the bucket bound
+				double upperBoundInMilliseconds = (1L << (i + 1)) / 1000.0;
+				return Math.min(upperBoundInMilliseconds, this.getMaximumInMilliseconds());
+			}
+		}
+
+		return this.getMaximumInMilliseconds();
+	}
+
+	/**
+	 * Get the average of the latencies recorded.
+	 * 
+	 * @return Returns the average in milliseconds, or 0 if no latency was
+	 *         recorded.
+	 */
+	public double getAverageInMilliseconds()
+	{
+		long totalCount = this.count.get();
+		if (totalCount == 0) return 0;
+		return this.sumInNanoseconds.get() / (double) totalCount / 1000000.0;
+	}
+
+	/**
+	 * Get the maximum of the latencies recorded.
+	 * 
+	 * @return Returns the maximum in milliseconds.
+	 */
+	public double getMaximumInMilliseconds()
+	{
+		return this.maximumInNanoseconds.get() / 1000000.0;
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getCount()
+	{
+		return this.count.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		String outputString = "n=" + String.valueOf(this.getCount());
+		outputString += String.format(" avg=%.3f", this.getAverageInMilliseconds());
+		outputString += String.format(" p50=%.3f", this.getPercentileInMilliseconds(50.0));
+		outputString += String.format(" p90=%.3f", this.getPercentileInMilliseconds(90.0));
+		outputString += String.format(" p99=%.3f", this.getPercentileInMilliseconds(99.0));
+		outputString += String.format(" max=%.3f", this.getMaximumInMilliseconds());
+		return outputString;
+	}
+}
@@ -0,0 +1,223 @@
+package fmagic.server.application;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+import fmagic.server.command.ServerCommand;
+
+/**
+ * This class holds the server commands known on the application server, by the
+ * alias name of their command resource.
+ * <p>
+ * The registry is populated once on starting the server: All command resources
+ * are read, and the class named by the alias name is loaded and its
+ * constructor is resolved. Dispatching a request is a map lookup and a
+ * constructor call then, without loading classes.
+ * <p>
+ * Server commands are loaded from the class path of the application, or from
+ * plugin directories (see configuration property
+ * <TT>Application/CommandPluginDirectories</TT>). All plugin directories are
+ * covered by one single class loader, created on starting the server. A
+ * command that is not registered yet, e. g. because its resource was added
+ * later, is resolved on first use and registered as well.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 15.08.2013 - Created
+ */
+public class ServerCommandRegistry
+{
+	// Package of the server command classes
+	private static final String COMMAND_PACKAGE = "fmagic.server.command.";
+
+	// Class loader for server commands, covering the plugin directories
+	private final ClassLoader classLoader;
+
+	// Constructors of the server commands, by alias name
+	private final ConcurrentHashMap<String, Constructor<? extends ServerCommand>> constructors = new ConcurrentHashMap<String, Constructor<? extends ServerCommand>>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param pluginDirectories
+	 *            Comma separated list of directories to load server commands
+	 *            from, additionally to the class path, or <TT>null</TT> if
+	 *            there are none.
+	 */
+	public ServerCommandRegistry(Context context, String pluginDirectories)
+	{
+		this.classLoader = ServerCommandRegistry.createClassLoader(context, pluginDirectories);
+	}
+
+	/**
+	 * Create the class loader for server commands.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param pluginDirectories
+	 *            Comma separated list of plugin directories, or <TT>null</TT>.
+	 * 
+	 * @return Returns the class loader.
+	 */
+	private static ClassLoader createClassLoader(Context context, String pluginDirectories)
+	{
+		ClassLoader parentClassLoader = ServerCommand.class.getClassLoader();
+		if (pluginDirectories == null || pluginDirectories.trim().length() == 0) return parentClassLoader;
+
+		// Collect plugin directories
+		List<URL> urls = new ArrayList<URL>();
+
+		for (String pluginDirectory : pluginDirectories.split(","))
+		{
+			if (pluginDirectory.trim().length() == 0) continue;
+
+			try
+			{
+				File directory = new File(pluginDirectory.trim());
+
+				if (directory.isDirectory() == false)
+				{
+					String errorText = "--> Plugin directory of server commands not found";
+					errorText += "\n--> Directory: '" + pluginDirectory.trim() + "'";
+					context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Application", "ErrorOnInvokingCommand"), errorText, null);
+					continue;
+				}
+
+				urls.add(directory.toURI().toURL());
+			}
+			catch (Exception e)
+			{
+				String errorText = "--> Error on reading plugin directory of server commands";
+				errorText += "\n--> Directory: '" + pluginDirectory.trim() + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Application", "ErrorOnInvokingCommand"), errorText, e);
+			}
+		}
+
+		// Create class loader
+		if (urls.size() == 0) return parentClassLoader;
+		return new URLClassLoader(urls.toArray(new URL[urls.size()]), parentClassLoader);
+	}
+
+	/**
+	 * Register all server commands defined by command resources.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @return Returns the number of server commands registered.
+	 */
+	public int registerCommands(Context context)
+	{
+		// Get all command identifiers
+		List<String> identifiers = context.getResourceManager().getResourceIdentifierList(context, new String[] { "Command" }, null, null, new String[] { "Identifier" }, null);
+
+		// Register server commands
+		for (String identifier : identifiers)
+		{
+			ResourceContainer resourceContainer = context.getResourceManager().getResourceContainer(context, identifier);
+			if (resourceContainer == null || resourceContainer.getAliasName() == null) continue;
+
+			try
+			{
+				this.registerCommand(resourceContainer.getAliasName());
+			}
+			catch (Exception e)
+			{
+				// Server commands might be defined for other applications,
+				// so a missing class is logged only
+				String logText = "Server command class not found on registering commands";
+				logText += "\n--> Command class name: '" + ServerCommandRegistry.getCommandClassName(resourceContainer.getAliasName()) + "'";
+				context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+			}
+		}
+
+		// Logging
+		context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "Server commands registered: " + String.valueOf(this.constructors.size()));
+
+		// Return
+		return this.constructors.size();
+	}
+
+	/**
+	 * Load a server command class and register its constructor.
+	 * 
+	 * @param aliasName
+	 *            The alias name of the command resource, that is the name of
+	 *            the server command class.
+	 * 
+	 * @return Returns the constructor of the server command.
+	 * 
+	 * @throws Exception
+	 *             If the class can't be loaded or is not a server command.
+	 */
+	private Constructor<? extends ServerCommand> registerCommand(String aliasName) throws Exception
+	{
+		// Load class
+		Class<?> commandClass = Class.forName(ServerCommandRegistry.getCommandClassName(aliasName), true, this.classLoader);
+		Class<? extends ServerCommand> serverCommandClass = commandClass.asSubclass(ServerCommand.class);
+
+		// Resolve constructor
+		Constructor<? extends ServerCommand> constructor = serverCommandClass.getConstructor();
+		Constructor<? extends ServerCommand> existingConstructor = this.constructors.putIfAbsent(aliasName, constructor);
+
+		// Return
+		return existingConstructor != null ? existingConstructor : constructor;
+	}
+
+	/**
+	 * Create a new instance of a server command.
+	 * 
+	 * @param aliasName
+	 *            The alias name of the command resource, that is the name of
+	 *            the server command class.
+	 * 
+	 * @return Returns the new server command object.
+	 * 
+	 * @throws Exception
+	 *             If the server command is unknown or couldn't be created.
+	 */
+	public ServerCommand createServerCommand(String aliasName) throws Exception
+	{
+		// Get constructor, commands not registered yet are resolved on first
+		// use
+		Constructor<? extends ServerCommand> constructor = this.constructors.get(aliasName);
+		if (constructor == null) constructor = this.registerCommand(aliasName);
+
+		// Return
+		return constructor.newInstance();
+	}
+
+	/**
+	 * Get the full class name of a server command.
+	 * 
+	 * @param aliasName
+	 *            The alias name of the command resource.
+	 * 
+	 * @return Returns the class name.
+	 */
+	public static String getCommandClassName(String aliasName)
+	{
+		return COMMAND_PACKAGE + (aliasName == null ? "" : aliasName.trim());
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getNumberOfCommands()
+	{
+		return this.constructors.size();
+	}
+}
@@ -1,13 +1,18 @@
 package fmagic.server.application;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import fmagic.basic.application.ApplicationManager;
 import fmagic.basic.command.SessionContainer;
@@ -34,14 +39,71 @@ public abstract class ServerManager extends ApplicationManager
 	private final int serverSocketPort;
 	private ServerSocket serverSocket = null;
 	private int socketTimeoutInMilliseconds = 120000;
+	private ServerSocketChannel serverSocketChannel = null;
+	private boolean enableNonBlockingSocketAcceptor = false;
+	private boolean enableKeepAlive = false;
+	private int keepAliveIdleTimeoutInMilliseconds = 30000;
+	private int maximumIdleKeepAliveConnections = 8;
+	private final AtomicInteger idleKeepAliveConnections = new AtomicInteger(0);
+	private boolean enableMultiplexing = false;
 
 	// Thread pool
-	private final List<Thread> threadPool = new ArrayList<Thread>();
+	private ExecutorService threadPool = null;
+	private int threadPoolCoreSize = 16;
+	private int threadPoolMaximumSize = 200;
+	private int threadPoolQueueSize = 1000;
+	private int threadPoolShutdownTimeoutInMilliseconds = 60000;
+	private final AtomicLong threadPoolRejectedCount = new AtomicLong(0);
+
+	// Thread answering rejected requests, and the maximum number of rejected
+	// requests waiting for it
+	private ThreadPoolExecutor rejectionThreadPool = null;
+	private static final int REJECTION_QUEUE_SIZE = 100;
+
+	// Virtual thread mode
+	private boolean enableVirtualThreads = false;
+	private int virtualThreadMaximumSize = 10000;
+	private Semaphore virtualThreadPermits = null;
+	private final AtomicLong virtualThreadCompletedCount = new AtomicLong(0);
 
 	// Session settings
-	private final HashMap<String, SessionContainer> sessions = new HashMap<String, SessionContainer>();
 	private Integer maxNuOfActiveSessions = null;
-	private Integer percentageRateForCleaning = null;
+	private Integer idleTimeoutInMinutes = null;
+	private volatile SessionStore sessionStore = null;
+
+	// Snapshot of the client sessions, restored on starting the server
+	private SessionSnapshotWriter sessionSnapshotWriter = null;
+	private boolean enableSessionSnapshot = false;
+	private int sessionSnapshotIntervalInSeconds = 60;
+
+	// Resumption tickets of client sessions, or null if disabled
+	private SessionTicketHandler sessionTicketHandler = null;
+	private String resumptionTicketSecret = null;
+	private int resumptionTicketLifetimeInMinutes = 1440;
+
+	// Lock for creating the session store
+	private final ReentrantLock sessionLock = new ReentrantLock();
+
+	// Server commands known on the server, registered on starting the server
+	private volatile ServerCommandRegistry commandRegistry = null;
+	private String commandPluginDirectories = null;
+
+	// Admission control
+	private AdmissionController admissionController = null;
+	private int maximumConcurrentCommands = 0;
+	private String commandConcurrencyLimits = null;
+	private boolean enableAdaptiveConcurrencyLimit = false;
+	private int adaptiveLatencyTargetInMilliseconds = 500;
+
+	// Command metrics
+	private CommandMetrics commandMetrics = null;
+	private CommandMetricsWriter commandMetricsWriter = null;
+	private boolean enableCommandMetrics = true;
+	private int commandMetricsSnapshotIntervalInSeconds = 300;
+
+	// Slow request log
+	private SlowRequestLog slowRequestLog = null;
+	private int slowRequestThresholdInMilliseconds = 1000;
 
 	// Flag if accepting of socket connections has to be stopped
 	private boolean stopAcceptingSocketConnections = false;
@@ -182,12 +244,92 @@ public abstract class ServerManager extends ApplicationManager
 			// Read parameter: MaxNuOfActiveSessions
 			this.maxNuOfActiveSessions = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Session", "MaxNuOfActiveSessions"), false);
 
-			// Read parameter: PercentageRateForCleaning
-			this.percentageRateForCleaning = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Session", "PercentageRateForCleaning"), false);
+			// Read parameter: IdleTimeoutInMinutes
+			this.idleTimeoutInMinutes = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Session", "IdleTimeoutInMinutes"), false);
+
+			// Read parameter: EnableSessionSnapshot
+			Boolean enableSessionSnapshotValue = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Session", "EnableSessionSnapshot"), false);
+			if (enableSessionSnapshotValue != null) this.enableSessionSnapshot = enableSessionSnapshotValue;
+
+			// Read parameter: SessionSnapshotIntervalInSeconds
+			Integer sessionSnapshotIntervalValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Session", "SessionSnapshotIntervalInSeconds"), false);
+			if (sessionSnapshotIntervalValue != null) this.sessionSnapshotIntervalInSeconds = sessionSnapshotIntervalValue;
+
+			// Read parameter: ResumptionTicketSecret
+			this.resumptionTicketSecret = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Session", "ResumptionTicketSecret"), false);
+
+			// Read parameter: ResumptionTicketLifetimeInMinutes
+			Integer resumptionTicketLifetimeValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Session", "ResumptionTicketLifetimeInMinutes"), false);
+			if (resumptionTicketLifetimeValue != null) this.resumptionTicketLifetimeInMinutes = resumptionTicketLifetimeValue;
 
 			// Read parameter: SocketTimeoutInMilliseconds
 			this.socketTimeoutInMilliseconds = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "SocketTimeoutInMilliseconds"), false);
 
+			// Read parameter: EnableNonBlockingSocketAcceptor
+			this.enableNonBlockingSocketAcceptor = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableNonBlockingSocketAcceptor"), false);
+
+			// Read parameter: EnableKeepAlive
+			this.enableKeepAlive = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableKeepAlive"), false);
+
+			// Read parameter: KeepAliveIdleTimeoutInMilliseconds
+			this.keepAliveIdleTimeoutInMilliseconds = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "KeepAliveIdleTimeoutInMilliseconds"), false);
+
+			// Read parameter: MaximumIdleKeepAliveConnections
+			Integer maximumIdleKeepAliveConnectionsValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "MaximumIdleKeepAliveConnections"), false);
+			if (maximumIdleKeepAliveConnectionsValue != null) this.maximumIdleKeepAliveConnections = maximumIdleKeepAliveConnectionsValue;
+
+			// Read parameter: EnableMultiplexing
+			this.enableMultiplexing = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableMultiplexing"), false);
+
+			// Read parameter: ThreadPoolCoreSize
+			this.threadPoolCoreSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ThreadPoolCoreSize"), false);
+
+			// Read parameter: ThreadPoolMaximumSize
+			this.threadPoolMaximumSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ThreadPoolMaximumSize"), false);
+			if (this.threadPoolMaximumSize < this.threadPoolCoreSize) this.threadPoolMaximumSize = this.threadPoolCoreSize;
+
+			// Read parameter: ThreadPoolQueueSize
+			this.threadPoolQueueSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ThreadPoolQueueSize"), false);
+
+			// Read parameter: ThreadPoolShutdownTimeoutInMilliseconds
+			this.threadPoolShutdownTimeoutInMilliseconds = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "ThreadPoolShutdownTimeoutInMilliseconds"), false);
+
+			// Read parameter: EnableVirtualThreads
+			this.enableVirtualThreads = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableVirtualThreads"), false);
+
+			// Read parameter: VirtualThreadMaximumSize
+			this.virtualThreadMaximumSize = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "VirtualThreadMaximumSize"), false);
+
+			// Read parameter: CommandPluginDirectories
+			this.commandPluginDirectories = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Application", "CommandPluginDirectories"), false);
+
+			// Read parameter: MaximumConcurrentCommands
+			Integer maximumConcurrentCommandsValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "MaximumConcurrentCommands"), false);
+			if (maximumConcurrentCommandsValue != null) this.maximumConcurrentCommands = maximumConcurrentCommandsValue;
+
+			// Read parameter: CommandConcurrencyLimits
+			this.commandConcurrencyLimits = context.getConfigurationManager().getProperty(context, ResourceManager.configuration(context, "Application", "CommandConcurrencyLimits"), false);
+
+			// Read parameter: EnableAdaptiveConcurrencyLimit
+			Boolean enableAdaptiveConcurrencyLimitValue = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableAdaptiveConcurrencyLimit"), false);
+			if (enableAdaptiveConcurrencyLimitValue != null) this.enableAdaptiveConcurrencyLimit = enableAdaptiveConcurrencyLimitValue;
+
+			// Read parameter: AdaptiveLatencyTargetInMilliseconds
+			Integer adaptiveLatencyTargetValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "AdaptiveLatencyTargetInMilliseconds"), false);
+			if (adaptiveLatencyTargetValue != null) this.adaptiveLatencyTargetInMilliseconds = adaptiveLatencyTargetValue;
+
+			// Read parameter: EnableCommandMetrics
+			Boolean enableCommandMetricsValue = context.getConfigurationManager().getPropertyAsBooleanValue(context, ResourceManager.configuration(context, "Application", "EnableCommandMetrics"), false);
+			if (enableCommandMetricsValue != null) this.enableCommandMetrics = enableCommandMetricsValue;
+
+			// Read parameter: CommandMetricsSnapshotIntervalInSeconds
+			Integer commandMetricsSnapshotIntervalValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "CommandMetricsSnapshotIntervalInSeconds"), false);
+			if (commandMetricsSnapshotIntervalValue != null) this.commandMetricsSnapshotIntervalInSeconds = commandMetricsSnapshotIntervalValue;
+
+			// Read parameter: SlowRequestThresholdInMilliseconds
+			Integer slowRequestThresholdValue = context.getConfigurationManager().getPropertyAsIntegerValue(context, ResourceManager.configuration(context, "Application", "SlowRequestThresholdInMilliseconds"), false);
+			if (slowRequestThresholdValue != null) this.slowRequestThresholdInMilliseconds = slowRequestThresholdValue;
+
 			// Return
 			return false;
 		}
@@ -205,8 +347,18 @@ public abstract class ServerManager extends ApplicationManager
 		try
 		{
 			// Open server socket
-			this.serverSocket = new ServerSocket(this.getServerSocketPort());
-			this.serverSocket.setSoTimeout(10000);
+			if (this.isEnableNonBlockingSocketAcceptor() == true)
+			{
+				this.serverSocketChannel = ServerSocketChannel.open();
+				this.serverSocketChannel.configureBlocking(false);
+				this.serverSocketChannel.socket().bind(new InetSocketAddress(this.getServerSocketPort()));
+				this.serverSocket = this.serverSocketChannel.socket();
+			}
+			else
+			{
+				this.serverSocket = new ServerSocket(this.getServerSocketPort());
+				this.serverSocket.setSoTimeout(10000);
+			}
 		}
 		catch (Exception e)
 		{
@@ -214,6 +366,75 @@ public abstract class ServerManager extends ApplicationManager
 			return false;
 		}
 
+		// Create virtual thread executor
+		if (this.isEnableVirtualThreads() == true) this.threadPool = this.createVirtualThreadExecutor();
+
+		// Create thread pool
+		if (this.threadPool == null)
+		{
+			try
+			{
+				this.threadPool = new ThreadPoolExecutor(this.threadPoolCoreSize, this.threadPoolMaximumSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(this.threadPoolQueueSize), new ThreadPoolExecutor.AbortPolicy());
+			}
+			catch (Exception e)
+			{
+				String errorText = "--> on creating thread pool";
+				errorText += "\n--> Core size: '" + String.valueOf(this.threadPoolCoreSize) + "'";
+				errorText += "\n--> Maximum size: '" + String.valueOf(this.threadPoolMaximumSize) + "'";
+				errorText += "\n--> Queue size: '" + String.valueOf(this.threadPoolQueueSize) + "'";
+				this.getContext().getNotificationManager().notifyError(getContext(), ResourceManager.notification(getContext(), "Application", "ErrorOnServerSocket"), errorText, e);
+				return false;
+			}
+		}
+
+		// Create thread answering rejected requests
+		this.rejectionThreadPool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(REJECTION_QUEUE_SIZE), new ThreadPoolExecutor.AbortPolicy());
+		this.rejectionThreadPool.allowCoreThreadTimeOut(true);
+
+		// Create admission control, the adaptive limit doesn't exceed the
+		// number of threads
+		int adaptiveMaximumLimit = this.maximumConcurrentCommands;
+		if (adaptiveMaximumLimit <= 0) adaptiveMaximumLimit = this.virtualThreadPermits != null ? this.virtualThreadMaximumSize : this.threadPoolMaximumSize;
+		this.admissionController = new AdmissionController(this.maximumConcurrentCommands, AdmissionController.parseCommandLimits(this.getContext(), this.commandConcurrencyLimits), this.enableAdaptiveConcurrencyLimit, this.adaptiveLatencyTargetInMilliseconds, adaptiveMaximumLimit);
+
+		// Create command metrics, and start writing snapshots
+		if (this.enableCommandMetrics == true)
+		{
+			this.commandMetrics = new CommandMetrics();
+
+			if (this.commandMetricsSnapshotIntervalInSeconds > 0)
+			{
+				this.commandMetricsWriter = new CommandMetricsWriter(this.getContext(), this, this.commandMetricsSnapshotIntervalInSeconds);
+				if (this.commandMetricsWriter.startServer() == false) this.commandMetricsWriter = null;
+			}
+		}
+
+		// Create slow request log
+		if (this.slowRequestThresholdInMilliseconds > 0) this.slowRequestLog = new SlowRequestLog(this.getContext(), this.slowRequestThresholdInMilliseconds);
+
+		// Create handler of resumption tickets, if a secret is set
+		if (this.resumptionTicketSecret != null && this.resumptionTicketSecret.trim().length() > 0)
+		{
+			try
+			{
+				// Tickets don't outlive idle sessions
+				int lifetimeInMinutes = this.resumptionTicketLifetimeInMinutes;
+				if (this.idleTimeoutInMinutes != null && this.idleTimeoutInMinutes < lifetimeInMinutes) lifetimeInMinutes = this.idleTimeoutInMinutes;
+
+				this.sessionTicketHandler = new SessionTicketHandler(this.getContext(), this.resumptionTicketSecret.trim(), lifetimeInMinutes);
+			}
+			catch (Exception e)
+			{
+				String errorText = "--> Error on creating the key of resumption tickets";
+				errorText += "\n--> Sessions can't be resumed";
+				this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorText, e);
+				this.sessionTicketHandler = null;
+			}
+		}
+
+		// Register server commands
+		this.getCommandRegistry();
+
 		// Return
 		return true;
 	}
@@ -230,8 +451,24 @@ public abstract class ServerManager extends ApplicationManager
 		// Bind all resources
 		if (this.bindResources() == false) return false;
 
+		// Restore client sessions of the last run, and start writing snapshots
+		if (this.enableSessionSnapshot == true)
+		{
+			this.sessionSnapshotWriter = new SessionSnapshotWriter(this.getContext(), this, this.sessionSnapshotIntervalInSeconds);
+			this.sessionSnapshotWriter.readSnapshot();
+			if (this.sessionSnapshotWriter.startServer() == false) this.sessionSnapshotWriter = null;
+		}
+
 		// Instantiate Application server and start it
-		this.applicationServer = new ApplicationServer(this.getContext(), this);
+		if (this.isEnableNonBlockingSocketAcceptor() == true)
+		{
+			this.applicationServer = new ApplicationServerSelector(this.getContext(), this);
+		}
+		else
+		{
+			this.applicationServer = new ApplicationServer(this.getContext(), this);
+		}
+
 		this.applicationServer.startServer(this.getContext());
 
 		// Create event: ConfigurationSettingsNotification
@@ -331,6 +568,53 @@ public abstract class ServerManager extends ApplicationManager
 		return false;
 	}
 
+	/**
+	 * Get the store of client sessions, and create it on first use.
+	 * <p>
+	 * The max number of allowed sessions and the idle timeout are read from
+	 * the configuration file. If there is no value found the default values
+	 * will be set to 5000 sessions and 1440 minutes.
+	 * 
+	 * @return Returns the session store.
+	 */
+	public SessionStore getSessionStore()
+	{
+		SessionStore store = this.sessionStore;
+		if (store != null) return store;
+
+		this.sessionLock.lock();
+
+		try
+		{
+			if (this.sessionStore != null) return this.sessionStore;
+
+			// Validate parameter
+			if (this.maxNuOfActiveSessions == null)
+			{
+				String errorString = "--> Configuration parameter 'Session/MaxNuOfActiveSessions' is not defined";
+				this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorString, null);
+				this.maxNuOfActiveSessions = 5000;
+			}
+
+			if (this.idleTimeoutInMinutes == null)
+			{
+				String errorString = "--> Configuration parameter 'Session/IdleTimeoutInMinutes' is not defined";
+				this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorString, null);
+				this.idleTimeoutInMinutes = 1440;
+			}
+
+			// Create store
+			this.sessionStore = new SessionStore(this.getContext(), this.maxNuOfActiveSessions, this.idleTimeoutInMinutes);
+
+			// Return
+			return this.sessionStore;
+		}
+		finally
+		{
+			this.sessionLock.unlock();
+		}
+	}
+
 	/**
 	 * Check if a client session is already known on the server.
 	 * <p>
@@ -343,21 +627,9 @@ public abstract class ServerManager extends ApplicationManager
 	 * @return Returns <TT>true</TT> if the client session identifier exists,
 	 *         otherwise <TT>false</TT>.
 	 */
-	public synchronized boolean sessionCheckClientSession(String clientSessionIdentifier)
+	public boolean sessionCheckClientSession(String clientSessionIdentifier)
 	{
-		// Validate data
-		String clientSessionIdentifierNormalized = clientSessionIdentifier.trim();
-
-		// Check if session already exists on the server
-		SessionContainer session = this.sessions.get(clientSessionIdentifierNormalized);
-		if (session == null) return false;
-
-		// Update modification date of the session
-		session.setLastModificationDate(new Date());
-		this.sessions.put(clientSessionIdentifierNormalized, session);
-
-		// Return
-		return true;
+		return this.sessionGetClientSession(clientSessionIdentifier) != null;
 	}
 
 	/**
@@ -365,7 +637,8 @@ public abstract class ServerManager extends ApplicationManager
 	 * holds.
 	 * <p>
 	 * If the session exists the modification date will be updated to the
-	 * current date/time automatically.
+	 * current date/time automatically. Sessions that weren't used for the idle
+	 * timeout are not returned anymore.
 	 * 
 	 * @param clientSessionIdentifier
 	 *            The identifier of the client session.
@@ -373,149 +646,195 @@ public abstract class ServerManager extends ApplicationManager
 	 * @return Returns the requested session object, or <TT>null</TT> if the
 	 *         client session identifier was not found in the list.
 	 */
-	public synchronized SessionContainer sessionGetClientSession(String clientSessionIdentifier)
+	public SessionContainer sessionGetClientSession(String clientSessionIdentifier)
 	{
-		// Initialize data
-		SessionContainer session = null;
-
 		// Validate data
+		if (clientSessionIdentifier == null) return null;
 		String clientSessionIdentifierNormalized = clientSessionIdentifier.trim();
 
-		// Check if session already exists on the server
-		session = this.sessions.get(clientSessionIdentifierNormalized);
-		if (session == null) return null;
-
-		// Update modification date of the session
-		session.setLastModificationDate(new Date());
-		this.sessions.put(clientSessionIdentifierNormalized, session);
-
-		// Return
-		return session;
+		// Get session
+		return this.getSessionStore().get(clientSessionIdentifierNormalized);
 	}
 
 	/**
-	 * Clean an appointed percentage rate of older client sessions from the list
-	 * of sessions.
-	 * <p>
-	 * As basis of comparison the last modification date is taken.
+	 * Remove all client sessions from the list of sessions that weren't used
+	 * for the idle timeout.
 	 * <p>
-	 * The percentage rate is read from the configuration file. If there is no
-	 * value found the default value will be set to 10 percent.
+	 * Expired sessions are removed incrementally on accessing sessions anyway,
+	 * so this method needs not to be called regularly.
 	 * 
 	 * @return Returns <TT>true</TT> if at least one client session was deleted,
 	 *         otherwise <TT>false</TT>.
 	 */
-	public synchronized boolean sessionCleanClientSessionList()
+	public boolean sessionCleanClientSessionList()
 	{
-		// Validate parameter
-		if (this.percentageRateForCleaning == null)
-		{
-			String errorString = "--> Configuration parameter 'Session/PercentageRateForCleaning' is not defined";
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorString, null);
-			return false;
-		}
-
-		// Get percentage rate of sessions to clean
-		int numberOfSessions = this.sessions.size();
-		int numberOfSessionsToClean = 0;
-
-		try
-		{
-			numberOfSessionsToClean = (int) ((double) numberOfSessions * (double) this.percentageRateForCleaning / 100.0);
-		}
-		catch (Exception e)
-		{
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), null, e);
-			return false;
-		}
+		return this.getSessionStore().removeExpiredSessions(true) > 0;
+	}
 
-		// Validate parameter
-		if (numberOfSessionsToClean == 0) return false;
-		if (numberOfSessions == 0) return false;
-		if (numberOfSessionsToClean == 0) return false;
-		if (numberOfSessionsToClean > numberOfSessions) numberOfSessionsToClean = numberOfSessions;
+	/**
+	 * Add a client session to the server.
+	 * <p>
+	 * If the max number of allowed sessions is reached, the least recently
+	 * used session is removed.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the client session.
+	 * 
+	 * @param clientPublicKey
+	 *            The public key of the client.
+	 * 
+	 * @return Returns <TT>true</TT> if the client session could be added and
+	 *         did not exist before, otherwise <TT>false</TT>.
+	 */
+	public boolean sessionAddClientSession(String clientSessionIdentifier, String clientPublicKey)
+	{
+		// Validate data
+		String clientSessionIdentifierToAdd = clientSessionIdentifier.trim();
 
-		// Create a list of sorted sessions sorted by modification date/time
-		SortedMap<String, String> sortedSessions = new TreeMap<String, String>();
+		// Create and add a new session to the server
+		SessionContainer session = new SessionContainer(clientSessionIdentifierToAdd, clientPublicKey);
+		return this.getSessionStore().add(session);
+	}
 
-		for (SessionContainer session : this.sessions.values())
-		{
-			sortedSessions.put(String.valueOf(session.getLastModificationDate().getTime()), session.getClientSessionIdentifier());
-		}
+	/**
+	 * Issue a resumption ticket for a client session, if resumption tickets
+	 * are enabled (see configuration property
+	 * <TT>Session/ResumptionTicketSecret</TT>).
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the client session.
+	 * 
+	 * @param sessionKey
+	 *            The session key of the session, or <TT>null</TT> if the
+	 *            session is not encrypted.
+	 * 
+	 * @return Returns the ticket, or <TT>null</TT> if resumption tickets are
+	 *         disabled or an error occurred.
+	 */
+	public String sessionIssueResumptionTicket(String clientSessionIdentifier, byte[] sessionKey)
+	{
+		if (this.sessionTicketHandler == null) return null;
 
-		// Delete the first x sessions of the session list
 		try
 		{
-			Iterator<String> iterator = sortedSessions.keySet().iterator();
+			// Get session
+			SessionContainer session = this.sessionGetClientSession(clientSessionIdentifier);
+			if (session == null) return null;
 
-			for (int i = 0; i < numberOfSessionsToClean; i++)
-			{
-				String modificationDateTimeString = iterator.next();
-				String clientSessionIdentifier = sortedSessions.get(modificationDateTimeString);
-				this.sessions.remove(clientSessionIdentifier);
-			}
+			// Issue ticket
+			return this.sessionTicketHandler.issueTicket(session, sessionKey);
 		}
 		catch (Exception e)
 		{
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), null, e);
-			return false;
+			String errorText = "--> Error on issuing a resumption ticket";
+			errorText += "\n--> Client session identifier: '" + clientSessionIdentifier + "'";
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorText, e);
+			return null;
 		}
-
-		// Fire an event
-		this.getContext().getNotificationManager().notifyEvent(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "SessionCleaned"), "--> Number of deleted sessions: '" + String.valueOf(numberOfSessionsToClean) + "'\n--> Number of active sessions now: '" + this.sessions.size() + "'", null);
-
-		// Return
-		return true;
 	}
 
 	/**
-	 * Add a client session to the server.
+	 * Resume a client session that is unknown on the server, e. g. after a
+	 * restart of the server, with the resumption ticket the client sent along
+	 * with a plain command.
 	 * <p>
-	 * The max number of allowed sessions is read from the configuration file.
-	 * If there is no value found the default value will be set to 1000.
+	 * Tickets containing a session key are rejected here, because they are
+	 * accepted only for commands encrypted with this key (see
+	 * <TT>sessionOpenResumptionTicket()</TT>).
 	 * 
 	 * @param clientSessionIdentifier
 	 *            The identifier of the client session.
 	 * 
-	 * @param clientPublicKey
-	 *            The public key of the client.
+	 * @param resumptionTicket
+	 *            The resumption ticket sent by the client, or <TT>null</TT> if
+	 *            none was sent.
 	 * 
-	 * @return Returns <TT>true</TT> if the client session could be added and
-	 *         did not exist before, otherwise <TT>false</TT>.
+	 * @return Returns the session resumed, or <TT>null</TT> if the session
+	 *         couldn't be resumed.
 	 */
-	public synchronized boolean sessionAddClientSession(String clientSessionIdentifier, String clientPublicKey)
+	public SessionContainer sessionResumeClientSession(String clientSessionIdentifier, String resumptionTicket)
 	{
 		// Validate parameter
-		if (this.maxNuOfActiveSessions == null)
-		{
-			String errorString = "--> Configuration parameter 'Session/MaxNuOfActiveSessions' is not defined";
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnHandlingSessionList"), errorString, null);
-			this.maxNuOfActiveSessions = 5000;
-		}
+		if (this.sessionTicketHandler == null) return null;
+		if (clientSessionIdentifier == null || resumptionTicket == null || resumptionTicket.length() == 0) return null;
 
-		// Validate data
-		String clientSessionIdentifierToAdd = clientSessionIdentifier.trim();
+		String clientSessionIdentifierNormalized = clientSessionIdentifier.trim();
 
-		// Check if session already exists on the server
-		SessionContainer session = this.sessions.get(clientSessionIdentifierToAdd);
+		// The session may be resumed by a parallel request already
+		SessionContainer session = this.sessionGetClientSession(clientSessionIdentifierNormalized);
+		if (session != null) return session;
 
-		if (session != null) { return false; }
+		// Open ticket
+		session = this.sessionOpenResumptionTicket(clientSessionIdentifierNormalized, resumptionTicket, false);
+		if (session == null) return null;
 
-		if (this.sessions.size() >= this.maxNuOfActiveSessions)
-		{
-			// Fire an event
-			this.getContext().getNotificationManager().notifyEvent(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "MaximumNumberOfSessionsExceeded"), "--> Max nu of sessions: '" + String.valueOf(this.maxNuOfActiveSessions) + "'", null);
+		// Add session
+		return this.sessionAddResumedClientSession(session);
+	}
 
-			// Clear session list
-			this.sessionCleanClientSessionList();
-		}
+	/**
+	 * Open a resumption ticket, without adding the session to the session
+	 * store.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the client session.
+	 * 
+	 * @param resumptionTicket
+	 *            The resumption ticket sent by the client, or <TT>null</TT> if
+	 *            none was sent.
+	 * 
+	 * @param sessionKeyAccepted
+	 *            Set to <TT>true</TT> if the ticket was sent with a command
+	 *            encrypted with a session key. The session must be added by
+	 *            <TT>sessionAddResumedClientSession()</TT> only after the
+	 *            command was decrypted with the session key of the ticket.
+	 * 
+	 * @return Returns the session of the ticket, or <TT>null</TT> if the
+	 *         ticket was rejected.
+	 */
+	public SessionContainer sessionOpenResumptionTicket(String clientSessionIdentifier, String resumptionTicket, boolean sessionKeyAccepted)
+	{
+		// Validate parameter
+		if (this.sessionTicketHandler == null) return null;
+		if (clientSessionIdentifier == null || resumptionTicket == null || resumptionTicket.length() == 0) return null;
 
-		// Create and add a new session to the server
-		session = new SessionContainer(clientSessionIdentifierToAdd, clientPublicKey);
-		this.sessions.put(clientSessionIdentifierToAdd, session);
+		// Open ticket
+		SessionContainer session = this.sessionTicketHandler.openTicket(resumptionTicket, clientSessionIdentifier.trim(), sessionKeyAccepted);
+
+		if (session == null)
+		{
+			String logText = "Resumption ticket of client session rejected";
+			logText += "\n--> Requesting client session identifier: '" + clientSessionIdentifier.trim() + "'";
+			this.getContext().getNotificationManager().notifyLogMessage(this.getContext(), NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+			return null;
+		}
 
 		// Return
-		return true;
+		return session;
+	}
+
+	/**
+	 * Add a client session restored from a resumption ticket to the session
+	 * store.
+	 * 
+	 * @param session
+	 *            The session to add.
+	 * 
+	 * @return Returns the session stored, that is the session of a parallel
+	 *         request if it was resumed already.
+	 */
+	public SessionContainer sessionAddResumedClientSession(SessionContainer session)
+	{
+		if (this.getSessionStore().add(session) == false) return this.sessionGetClientSession(session.getClientSessionIdentifier());
+		return session;
+	}
+
+	/**
+	 * Getter
+	 */
+	public SessionTicketHandler getSessionTicketHandler()
+	{
+		return this.sessionTicketHandler;
 	}
 
 	@Override
@@ -525,6 +844,12 @@ public abstract class ServerManager extends ApplicationManager
 		// process command requests via socket
 		this.threadPoolShutDown();
 
+		// Stop writing snapshots of the client sessions, and write the last one
+		if (this.sessionSnapshotWriter != null) this.sessionSnapshotWriter.stopServer();
+
+		// Stop writing snapshots of the command metrics
+		if (this.commandMetricsWriter != null) this.commandMetricsWriter.stopServer();
+
 		// Stop media server
 		try
 		{
@@ -546,71 +871,312 @@ public abstract class ServerManager extends ApplicationManager
 		{
 			// Be silent
 		}
+
+		// Close idle connections to the media pool
+		try
+		{
+			this.getContext().getServerMediaManager().closeRemoteConnections(this.getContext());
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+
+		// Shut down the executor of asynchronous client commands
+		this.releaseClientCommandExecutor();
 	}
 
 	/**
-	 * Wait for the end of all threads of a thread pool.
+	 * Shut down the thread pool and wait for the end of all requests that are
+	 * already running or queued.
+	 * <p>
+	 * If the requests don't end within the shutdown timeout time (see
+	 * configuration property
+	 * <TT>Application/ThreadPoolShutdownTimeoutInMilliseconds</TT>) the
+	 * remaining threads are interrupted.
 	 */
 	public void threadPoolShutDown()
 	{
 		// Check parameter
 		if (this.threadPool == null) return;
-		if (this.threadPool.size() == 0) return;
 
-		for (Thread thread : this.threadPool)
+		// Drop rejected requests not answered yet
+		if (this.rejectionThreadPool != null)
+		{
+			for (Runnable runnable : this.rejectionThreadPool.shutdownNow())
+			{
+				if (runnable instanceof RejectionTask) ((RejectionTask) runnable).serverWorkerThread.abortRequest();
+			}
+		}
+
+		// No more new requests are accepted, but queued requests are processed
+		this.threadPool.shutdown();
+
+		// Wait for the end of all requests
+		try
+		{
+			if (this.threadPool.awaitTermination(this.threadPoolShutdownTimeoutInMilliseconds, TimeUnit.MILLISECONDS) == true) return;
+
+			String errorText = "--> Thread pool could not be drained within the shutdown timeout";
+			errorText += "\n--> Shutdown timeout: '" + String.valueOf(this.threadPoolShutdownTimeoutInMilliseconds) + "' milliseconds";
+			errorText += "\n--> " + this.threadPoolStatusToString();
+			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnShutdownThreadPool"), errorText, null);
+		}
+		catch (InterruptedException exception)
+		{
+			// Be silent
+		}
+
+		// Interrupt all remaining threads
+		this.threadPool.shutdownNow();
+	}
+
+	/**
+	 * Create an executor that starts a new virtual thread for each request.
+	 * <p>
+	 * Virtual threads are supported by the Java runtime since version 21 only.
+	 * Therefore the executor is created via reflection. If the runtime doesn't
+	 * support virtual threads the regular thread pool is used.
+	 * 
+	 * @return Returns the created executor, or <TT>null</TT> if virtual
+	 *         threads are not supported.
+	 */
+	private ExecutorService createVirtualThreadExecutor()
+	{
+		try
+		{
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			this.virtualThreadPermits = new Semaphore(this.virtualThreadMaximumSize);
+
+			// Logging
+			String logText = "Virtual thread mode activated";
+			logText += "\n--> Maximum number of concurrent requests: '" + String.valueOf(this.virtualThreadMaximumSize) + "'";
+			this.getContext().getNotificationManager().notifyLogMessage(this.getContext(), NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+			// Return
+			return executor;
+		}
+		catch (Exception e)
+		{
+			String logText = "Virtual threads are not supported by the Java runtime, the regular thread pool is used instead";
+			logText += "\n--> Java version: '" + System.getProperty("java.version") + "'";
+			this.getContext().getNotificationManager().notifyLogMessage(this.getContext(), NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+			return null;
+		}
+	}
+
+	/**
+	 * Wrapper of a request executed on a virtual thread, in order to release
+	 * the permit of the request after processing.
+	 */
+	private class VirtualThreadTask implements Runnable
+	{
+		private final Runnable runnable;
+
+		private VirtualThreadTask(Runnable runnable)
+		{
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run()
 		{
 			try
 			{
-				thread.join();
+				this.runnable.run();
 			}
-			catch (Exception exception)
+			finally
 			{
-				// Be silent
+				virtualThreadCompletedCount.incrementAndGet();
+				virtualThreadPermits.release();
 			}
 		}
 	}
 
 	/**
-	 * Create and start a new thread within the thread pool.
+	 * Task of answering a request rejected by the thread pool.
+	 */
+	private static class RejectionTask implements Runnable
+	{
+		private final ServerWorkerThread serverWorkerThread;
+
+		private RejectionTask(ServerWorkerThread serverWorkerThread)
+		{
+			this.serverWorkerThread = serverWorkerThread;
+		}
+
+		@Override
+		public void run()
+		{
+			this.serverWorkerThread.rejectRequest();
+		}
+	}
+
+	/**
+	 * Answer a request rejected by the thread pool with the error code
+	 * <TT>Application/ServerBusy</TT>.
+	 * <p>
+	 * A request of a new connection is rejected by the thread accepting
+	 * connections. Writing the response and draining the request may block,
+	 * so it is left to a thread of its own, in order to keep accepting
+	 * connections. If too many rejected requests are waiting for this thread,
+	 * the connection is closed without answering.
+	 * <p>
+	 * A request of a multiplexed connection is answered by the worker that
+	 * owns the connection, as it writes the responses of the connection
+	 * anyway.
 	 * 
-	 * @param runable
-	 *            The object to start within a new thread.
+	 * @param serverWorkerThread
+	 *            The rejected worker.
 	 */
-	public void threadPoolExecuteNewThread(Runnable runnable)
+	private void rejectRequest(ServerWorkerThread serverWorkerThread)
 	{
-		if (this.threadPool == null) return;
+		if (serverWorkerThread.isMultiplexedRequest() == true || this.rejectionThreadPool == null)
+		{
+			serverWorkerThread.rejectRequest();
+			return;
+		}
 
-		// Remove an expired thread from the list of threads
 		try
 		{
-			for (Thread thread : new ArrayList<Thread>(this.threadPool))
-			{
-				if (!thread.isAlive())
-				{
-					this.threadPool.remove(thread);
-				}
-			}
+			this.rejectionThreadPool.execute(new RejectionTask(serverWorkerThread));
 		}
-		catch (Exception exception)
+		catch (RejectedExecutionException exception)
 		{
-			String errorText = "--> Error on removing expired threads from thread pool";
-			errorText += "\n--> Actual number of threads in pool: '" + String.valueOf(this.threadPool.size()) + "'";
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnServerSocket"), errorText, exception);
+			serverWorkerThread.abortRequest();
 		}
+	}
 
-		// Start new thread
-		try
+	/**
+	 * Execute a runnable object within the thread pool.
+	 * <p>
+	 * If the thread pool is exhausted, that means all threads are busy and the
+	 * queue is full, the request is rejected. A rejected
+	 * <TT>ServerWorkerThread</TT> gets the chance to answer the client with the
+	 * error code <TT>Application/ServerBusy</TT>.
+	 * <p>
+	 * In virtual thread mode the request is rejected if the maximum number of
+	 * concurrent requests (see configuration property
+	 * <TT>Application/VirtualThreadMaximumSize</TT>) is reached.
+	 * 
+	 * @param runnable
+	 *            The object to execute.
+	 * 
+	 * @return Returns <TT>true</TT> if the object was accepted by the thread
+	 *         pool, otherwise <TT>false</TT>.
+	 */
+	public boolean threadPoolExecute(Runnable runnable)
+	{
+		if (this.threadPool == null) return false;
+		if (runnable == null) return false;
+
+		// Execute on a virtual thread
+		if (this.virtualThreadPermits != null)
 		{
-			Thread newTread = new Thread(runnable);
-			this.threadPool.add(newTread);
-			newTread.start();
+			if (this.virtualThreadPermits.tryAcquire() == true)
+			{
+				try
+				{
+					this.threadPool.execute(new VirtualThreadTask(runnable));
+					return true;
+				}
+				catch (RejectedExecutionException exception)
+				{
+					this.virtualThreadPermits.release();
+				}
+			}
+
+			this.threadPoolRejectedCount.incrementAndGet();
 		}
-		catch (Exception exception)
+		// Execute within the thread pool
+		else
 		{
-			String errorText = "--> Error on starting new thread within the thread pool";
-			errorText += "\n--> Actual number of threads in pool: '" + String.valueOf(this.threadPool.size()) + "'";
-			this.getContext().getNotificationManager().notifyError(this.getContext(), ResourceManager.notification(this.getContext(), "Application", "ErrorOnServerSocket"), errorText, exception);
+			try
+			{
+				this.threadPool.execute(runnable);
+				return true;
+			}
+			catch (RejectedExecutionException exception)
+			{
+				this.threadPoolRejectedCount.incrementAndGet();
+			}
 		}
+
+		// Logging
+		String logText = "Request rejected by thread pool";
+		logText += "\n--> " + this.threadPoolStatusToString();
+		this.getContext().getNotificationManager().notifyLogMessage(this.getContext(), NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+		// Answer the client
+		if (runnable instanceof ServerWorkerThread) this.rejectRequest((ServerWorkerThread) runnable);
+
+		// Return
+		return false;
+	}
+
+	/**
+	 * Get the number of threads of the thread pool that are actively executing
+	 * requests.
+	 * 
+	 * @return Returns the number of active threads.
+	 */
+	public int getThreadPoolActiveCount()
+	{
+		if (this.virtualThreadPermits != null) return this.virtualThreadMaximumSize - this.virtualThreadPermits.availablePermits();
+		if (this.threadPool instanceof ThreadPoolExecutor) return ((ThreadPoolExecutor) this.threadPool).getActiveCount();
+		return 0;
+	}
+
+	/**
+	 * Get the number of requests waiting in the queue of the thread pool.
+	 * 
+	 * @return Returns the number of queued requests.
+	 */
+	public int getThreadPoolQueuedCount()
+	{
+		if (this.threadPool instanceof ThreadPoolExecutor) return ((ThreadPoolExecutor) this.threadPool).getQueue().size();
+		return 0;
+	}
+
+	/**
+	 * Get the number of requests rejected by the thread pool since the start
+	 * of the server.
+	 * 
+	 * @return Returns the number of rejected requests.
+	 */
+	public long getThreadPoolRejectedCount()
+	{
+		return this.threadPoolRejectedCount.get();
+	}
+
+	/**
+	 * Get the number of requests completed by the thread pool since the start
+	 * of the server.
+	 * 
+	 * @return Returns the number of completed requests.
+	 */
+	public long getThreadPoolCompletedCount()
+	{
+		if (this.virtualThreadPermits != null) return this.virtualThreadCompletedCount.get();
+		if (this.threadPool instanceof ThreadPoolExecutor) return ((ThreadPoolExecutor) this.threadPool).getCompletedTaskCount();
+		return 0;
+	}
+
+	/**
+	 * Print the current status of the thread pool.
+	 * 
+	 * @return Returns the status of the thread pool as a single line.
+	 */
+	public String threadPoolStatusToString()
+	{
+		String statusText = "Thread pool:";
+		statusText += " active '" + String.valueOf(this.getThreadPoolActiveCount()) + "'";
+		statusText += ", queued '" + String.valueOf(this.getThreadPoolQueuedCount()) + "'";
+		statusText += ", rejected '" + String.valueOf(this.getThreadPoolRejectedCount()) + "'";
+		statusText += ", completed '" + String.valueOf(this.getThreadPoolCompletedCount()) + "'";
+		if (this.threadPool instanceof ThreadPoolExecutor) statusText += ", pool size '" + String.valueOf(((ThreadPoolExecutor) this.threadPool).getPoolSize()) + "'";
+		if (this.virtualThreadPermits != null) statusText += ", virtual threads";
+		return statusText;
 	}
 
 	/**
@@ -629,6 +1195,120 @@ public abstract class ServerManager extends ApplicationManager
 		return serverSocket;
 	}
 
+	/**
+	 * Getter
+	 */
+	public ServerSocketChannel getServerSocketChannel()
+	{
+		return serverSocketChannel;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isEnableNonBlockingSocketAcceptor()
+	{
+		return enableNonBlockingSocketAcceptor;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isEnableKeepAlive()
+	{
+		return enableKeepAlive;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isEnableMultiplexing()
+	{
+		return enableMultiplexing;
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getKeepAliveIdleTimeoutInMilliseconds()
+	{
+		return keepAliveIdleTimeoutInMilliseconds;
+	}
+
+	/**
+	 * Register a keep-alive connection before the client is told that the
+	 * connection is kept open. While waiting for the next request, the
+	 * connection holds a thread of the thread pool, so the number of these
+	 * connections is limited (see configuration property
+	 * <TT>Application/MaximumIdleKeepAliveConnections</TT>). If the
+	 * connection was registered, it must be unregistered by
+	 * <TT>releaseIdleKeepAliveConnection()</TT> after waiting.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection may be kept open, or
+	 *         <TT>false</TT> if it is to be closed after the response.
+	 */
+	public boolean tryAcquireIdleKeepAliveConnection()
+	{
+		if (this.idleKeepAliveConnections.incrementAndGet() > this.getMaximumIdleKeepAliveConnections())
+		{
+			this.idleKeepAliveConnections.decrementAndGet();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get the maximum number of keep-alive connections waiting for the next
+	 * request of the client at the same time.
+	 * <p>
+	 * Further threads of the thread pool are started only if its queue is
+	 * full, so idle connections are limited to half of the core size of the
+	 * thread pool. Otherwise they could hold all core threads, while new
+	 * requests wait in the queue. Virtual threads don't hold a thread of the
+	 * pool while waiting, so the configured value is used as it is.
+	 * 
+	 * @return Returns the maximum number of idle keep-alive connections.
+	 */
+	public int getMaximumIdleKeepAliveConnections()
+	{
+		if (this.threadPool instanceof ThreadPoolExecutor) return Math.min(this.maximumIdleKeepAliveConnections, this.threadPoolCoreSize / 2);
+		return this.maximumIdleKeepAliveConnections;
+	}
+
+	/**
+	 * Unregister a keep-alive connection that stopped waiting for the next
+	 * request of the client.
+	 */
+	public void releaseIdleKeepAliveConnection()
+	{
+		this.idleKeepAliveConnections.decrementAndGet();
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getIdleKeepAliveConnections()
+	{
+		return this.idleKeepAliveConnections.get();
+	}
+
+	/**
+	 * Getter
+	 */
+	public int getThreadPoolCoreSize()
+	{
+		return threadPoolCoreSize;
+	}
+
+	/**
+	 * Getter
+	 */
+	public boolean isEnableVirtualThreads()
+	{
+		return enableVirtualThreads;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -637,6 +1317,56 @@ public abstract class ServerManager extends ApplicationManager
 		return socketTimeoutInMilliseconds;
 	}
 
+	/**
+	 * Getter
+	 */
+	public AdmissionController getAdmissionController()
+	{
+		return this.admissionController;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return Returns the command metrics, or <TT>null</TT> if recording is
+	 *         disabled.
+	 */
+	public CommandMetrics getCommandMetrics()
+	{
+		return this.commandMetrics;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return Returns the slow request log, or <TT>null</TT> if logging slow
+	 *         requests is disabled.
+	 */
+	public SlowRequestLog getSlowRequestLog()
+	{
+		return this.slowRequestLog;
+	}
+
+	/**
+	 * Get the registry of server commands. The registry is created and
+	 * populated on first use, usually on starting the server.
+	 * 
+	 * @return Returns the command registry.
+	 */
+	public ServerCommandRegistry getCommandRegistry()
+	{
+		ServerCommandRegistry registry = this.commandRegistry;
+		if (registry != null) return registry;
+
+		// Create registry
+		registry = new ServerCommandRegistry(this.getContext(), this.commandPluginDirectories);
+		registry.registerCommands(this.getContext());
+		this.commandRegistry = registry;
+
+		// Return
+		return registry;
+	}
+
 	/**
 	 * Getter
 	 */
@@ -1,15 +1,23 @@
 package fmagic.server.application;
 
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import fmagic.basic.command.EncodingHandler;
 import fmagic.basic.command.RequestContainer;
 import fmagic.basic.command.ResponseContainer;
+import fmagic.basic.command.SessionCipher;
 import fmagic.basic.command.SessionContainer;
 import fmagic.basic.command.SocketHandler;
 import fmagic.basic.context.Context;
+import fmagic.basic.notification.FlightRecorderEvent;
 import fmagic.basic.notification.NotificationManager;
 import fmagic.basic.resource.ResourceManager;
 import fmagic.server.command.ServerCommand;
@@ -25,6 +33,13 @@ import fmagic.server.command.ServerCommand;
  */
 public class ServerWorkerThread implements Runnable
 {
+	// Rejected requests: Time to wait for the client to close the connection
+	private static final int REJECTION_DRAIN_TIMEOUT_IN_MILLISECONDS = 1000;
+
+	// Rejected requests: Maximum number of bytes read before closing the
+	// connection
+	private static final int REJECTION_DRAIN_MAXIMUM_BYTES = 1024 * 1024;
+
 	// Sets context of server
 	private final Context context;
 
@@ -37,8 +52,35 @@ public class ServerWorkerThread implements Runnable
 	// Private key of the server application
 	final private String serverPrivateKey;
 
+	// Multiplexing: Request to process by this worker, if it was read by the
+	// worker that owns the connection
+	final private RequestContainer multiplexedRequestContainer;
+
+	// Multiplexing: Number of requests of the connection that are processed
+	// by other workers
+	final private AtomicInteger pendingMultiplexedRequests;
+
+	// Multiplexing: Lock and condition to wait for the responses of requests
+	// processed by other workers
+	final private ReentrantLock multiplexedRequestsLock;
+	final private Condition multiplexedRequestsAnswered;
+
+	// Flag if the client sent correlation identifiers on this connection, so
+	// requests can't be rejected before decoding them
+	private boolean correlationIdentifiersUsed = false;
+
+	// Flag if a place for waiting for the next request of the client was
+	// reserved, before telling the client to keep the connection open
+	private boolean idleKeepAliveConnectionReserved = false;
+
+	// Metrics: Measurement of the request processed currently
+	private CommandMetrics.Measurement measurement = null;
+
+	// Java Flight Recorder: Event of receiving the request processed currently
+	private FlightRecorderEvent receivedEvent = null;
+
 	/**
-	 * Constructor
+	 * Constructor 1: Worker that owns the connection.
 	 * 
 	 * @param context
 	 *            The context to use.
@@ -53,44 +95,269 @@ public class ServerWorkerThread implements Runnable
 		this.serverManager = serverManager;
 		this.socketConnector = socketConnector;
 		this.serverPrivateKey = serverPrivateKey;
+		this.multiplexedRequestContainer = null;
+		this.pendingMultiplexedRequests = new AtomicInteger(0);
+		this.multiplexedRequestsLock = new ReentrantLock();
+		this.multiplexedRequestsAnswered = this.multiplexedRequestsLock.newCondition();
+	}
+
+	/**
+	 * Constructor 2: Worker that processes a single request, read by the worker
+	 * that owns the connection (multiplexing).
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param connectionWorker
+	 *            The worker that owns the connection.
+	 * 
+	 * @param requestContainer
+	 *            The request to process.
+	 */
+	private ServerWorkerThread(Context context, ServerWorkerThread connectionWorker,
+			RequestContainer requestContainer)
+	{
+		this.context = context;
+		this.serverManager = connectionWorker.serverManager;
+		this.socketConnector = connectionWorker.socketConnector;
+		this.serverPrivateKey = connectionWorker.serverPrivateKey;
+		this.multiplexedRequestContainer = requestContainer;
+		this.pendingMultiplexedRequests = connectionWorker.pendingMultiplexedRequests;
+		this.multiplexedRequestsLock = connectionWorker.multiplexedRequestsLock;
+		this.multiplexedRequestsAnswered = connectionWorker.multiplexedRequestsAnswered;
+		this.measurement = connectionWorker.measurement;
 	}
 
 	@Override
 	public void run()
 	{
-		// Logging on starting request
-		this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Server request started.");
+		// Process a single request of a multiplexed connection
+		if (this.multiplexedRequestContainer != null)
+		{
+			this.processMultiplexedRequest();
+			return;
+		}
 
 		// Create server response container as default response
 		ResponseContainer responseContainer = new ResponseContainer(serverManager.getApplicationIdentifier().toString(), serverManager.getApplicationVersion(), null);
 
 		// Read raw client data from the socket
+		this.startMeasurement();
 		String commandToDecrypt = this.workstepReadSocketData(responseContainer);
+		this.measure(CommandMetrics.WorkstepEnum.READ);
+
+		// Process the first request
+		boolean keepAlive = this.processRequest(commandToDecrypt, responseContainer);
+
+		// Process further requests on the same connection (keep-alive)
+		while (keepAlive == true)
+		{
+			// Wait for the next request of the client, the place for waiting
+			// was reserved when deciding to keep the connection open
+			boolean dataAvailable;
+
+			try
+			{
+				dataAvailable = this.socketConnector.waitForData(this.serverManager.getKeepAliveIdleTimeoutInMilliseconds());
+			}
+			finally
+			{
+				this.releaseIdleKeepAliveConnection();
+			}
+
+			if (dataAvailable == false) break;
+
+			// Read the request, the idle time is not measured
+			this.startMeasurement();
+			commandToDecrypt = this.socketConnector.readDataAfterIdleTime(this.serverManager.getKeepAliveIdleTimeoutInMilliseconds());
+			if (commandToDecrypt == null || commandToDecrypt.length() == 0) break;
+			this.measure(CommandMetrics.WorkstepEnum.READ);
+
+			// Process request
+			responseContainer = new ResponseContainer(serverManager.getApplicationIdentifier().toString(), serverManager.getApplicationVersion(), null);
+			keepAlive = this.processRequest(commandToDecrypt, responseContainer);
+		}
+
+		// Release the place for waiting, if the connection is closed after
+		// it was reserved
+		this.releaseIdleKeepAliveConnection();
+
+		// Wait for the responses of multiplexed requests still processed
+		this.waitForMultiplexedRequests();
+
+		// Close socket
+		socketConnector.closeSocket();
+
+		// End of processing
+		return;
+	}
+
+	/**
+	 * Decode a single request of the client and process it, or hand it over
+	 * to another worker if it is a multiplexed request.
+	 * 
+	 * @param commandToDecrypt
+	 *            The raw text data read from socket, or <TT>null</TT> if the
+	 *            reading failed.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open for further
+	 *         requests of the client, otherwise <TT>false</TT>.
+	 */
+	private boolean processRequest(String commandToDecrypt, ResponseContainer responseContainer)
+	{
+		// The client waits for the response from now on
+		long receiptTime = System.currentTimeMillis();
+
+		// Reject the request before decoding it if the server is overloaded.
+		// If the client uses correlation identifiers, the request is decoded
+		// nevertheless, in order to answer it with its correlation identifier.
+		AdmissionController admissionController = this.serverManager.getAdmissionController();
+
+		if (commandToDecrypt != null && this.correlationIdentifiersUsed == false && admissionController != null && admissionController.isOverloaded() == true)
+		{
+			admissionController.notifyRejected();
+			this.workstepRejectOverloadedRequest(null, responseContainer);
+			return false;
+		}
 
 		// Decode raw data onto a client request container
 		RequestContainer requestContainer = this.workstepConvertSocketDataToRequestContainer(commandToDecrypt, responseContainer);
+		this.measure(CommandMetrics.WorkstepEnum.DECODE);
+		if (this.measurement != null && commandToDecrypt != null) this.measurement.setRequestSize(commandToDecrypt.length());
+
+		// Record receiving the request for the Java Flight Recorder
+		if (this.receivedEvent != null) this.receivedEvent.commit(requestContainer != null ? requestContainer.getCommandIdentifier() : null, requestContainer != null ? requestContainer.getClientSessionIdentifier() : null, this.measurement != null ? this.measurement.getTraceIdentifier() : null, commandToDecrypt != null ? (long) commandToDecrypt.length() : 0L);
+		this.receivedEvent = null;
+		if (requestContainer != null && requestContainer.getCorrelationIdentifier() != null) this.correlationIdentifiersUsed = true;
+
+		// Start the deadline of the request
+		if (requestContainer != null) requestContainer.startDeadline(receiptTime);
+
+		// Hand over a multiplexed request to another worker, in order to read
+		// the next request without waiting for the response
+		if (this.workstepCheckMultiplexing(requestContainer) == true) return this.workstepDispatchMultiplexedRequest(requestContainer);
+
+		// Process request
+		return this.processRequestContainer(requestContainer, responseContainer);
+	}
+
+	/**
+	 * Process a single decoded request of the client and write the response
+	 * to the socket.
+	 * 
+	 * @param requestContainer
+	 *            The request container, or <TT>null</TT> if the decoding
+	 *            failed.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open for further
+	 *         requests of the client, otherwise <TT>false</TT>.
+	 */
+	private boolean processRequestContainer(RequestContainer requestContainer, ResponseContainer responseContainer)
+	{
+		// Admission control is not active, or the decoding failed
+		AdmissionController admissionController = this.serverManager.getAdmissionController();
+		if (requestContainer == null || admissionController == null) return this.executeRequestContainer(requestContainer, responseContainer);
+
+		// Reject the request if too many commands are executed
+		if (admissionController.tryAcquire(requestContainer.getCommandIdentifier()) == false) return this.workstepRejectOverloadedRequest(requestContainer, responseContainer);
+
+		// Process request
+		long startTime = System.nanoTime();
+
+		try
+		{
+			return this.executeRequestContainer(requestContainer, responseContainer);
+		}
+		finally
+		{
+			admissionController.release(requestContainer.getCommandIdentifier(), startTime);
+		}
+	}
+
+	/**
+	 * Execute a single decoded request of the client that was admitted by the
+	 * admission control, and write the response to the socket.
+	 * 
+	 * @param requestContainer
+	 *            The request container, or <TT>null</TT> if the decoding
+	 *            failed.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open for further
+	 *         requests of the client, otherwise <TT>false</TT>.
+	 */
+	private boolean executeRequestContainer(RequestContainer requestContainer, ResponseContainer responseContainer)
+	{
+		// Begin recording the execution for the Java Flight Recorder
+		FlightRecorderEvent executedEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.COMMAND_EXECUTED);
+
+		// Set the trace identifier of the request, in order to find the log
+		// messages of a slow request
+		this.context.setTraceIdentifier(this.measurement != null ? this.measurement.getTraceIdentifier() : null);
+
+		// Logging on starting request
+		this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Server request started." + (this.context.getTraceIdentifier() != null ? " Trace: " + this.context.getTraceIdentifier() : ""));
 		if (requestContainer != null) this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.CODE, requestContainer.toString());
 
+		// Set the deadline of the request, for the server command and all
+		// functions it calls
+		this.context.setDeadline(requestContainer != null ? requestContainer.getDeadline() : 0);
+
 		// Instantiate server command object
 		ServerCommand serverCommand = workstepGetServerCommandObjectInstance(requestContainer, responseContainer);
 
 		// Check if the server is responsible for the client
 		boolean checkValidation = this.workstepCheckResponsibilityAndPreconditions(requestContainer, responseContainer);
+		this.measure(CommandMetrics.WorkstepEnum.INSTANTIATE);
+
+		// Provide raw content following the request
+		boolean contentAvailable = this.workstepProvideContent(requestContainer, serverCommand);
 
 		// Execute server command object function on server
 		if (checkValidation == true) responseContainer = this.workstepExecuteServerCommand(serverCommand, responseContainer);
 
+		// Skip raw content the server command didn't read
+		boolean contentCompleted = true;
+		if (contentAvailable == true) contentCompleted = this.socketConnector.skipContent();
+		this.measure(CommandMetrics.WorkstepEnum.EXECUTE);
+
 		// Transfer some client request data to the server response data
 		this.workstepTransferContainerData(requestContainer, responseContainer);
 
-		// Encode server response container
-		StringBuffer commandEncoded = this.workstepConvertResponseContainerObjectToSocketData(responseContainer);
+		// Get raw content to send following the response
+		InputStream responseContent = this.workstepGetResponseContent(requestContainer, serverCommand, responseContainer);
+
+		// Decide if the connection is kept open
+		boolean keepAlive = this.workstepCheckKeepAlive(requestContainer, responseContainer);
+		if (contentCompleted == false) keepAlive = false;
+		if (contentCompleted == false) responseContainer.setKeepAlive(false);
+
+		// Encode server response container, encrypted the same way as the
+		// request
+		StringBuffer commandEncoded = this.workstepConvertResponseContainerObjectToSocketData(responseContainer, requestContainer != null ? requestContainer.getSessionCipher() : null);
+		this.measure(CommandMetrics.WorkstepEnum.ENCODE);
 
 		// Write response container to the socket
-		if (commandEncoded != null) socketConnector.writeData(commandEncoded);
+		String mediaCategory = serverCommand != null ? serverCommand.getResponseMediaCategory() : null;
+		if (commandEncoded == null || socketConnector.writeData(commandEncoded, mediaCategory) == false) keepAlive = false;
 
-		// Close socket
-		socketConnector.closeSocket();
+		// Write raw content following the response
+		if (responseContent != null && this.workstepWriteResponseContent(responseContent, serverCommand.getResponseContentLength(), mediaCategory, keepAlive) == false) keepAlive = false;
+		this.measure(CommandMetrics.WorkstepEnum.WRITE);
+
+		// Record metrics of the request
+		this.recordMeasurement(serverCommand, responseContainer, commandEncoded);
+
+		// Record the execution for the Java Flight Recorder
+		if (executedEvent != null) executedEvent.commit(requestContainer != null ? requestContainer.getCommandIdentifier() : null, requestContainer != null ? requestContainer.getClientSessionIdentifier() : null, this.context.getTraceIdentifier(), commandEncoded != null ? (long) commandEncoded.length() : 0L, responseContainer.getErrorCode());
 
 		// Logging on stopping request
 		this.context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "Server request ended.");
@@ -102,8 +369,600 @@ public class ServerWorkerThread implements Runnable
 		// Notify WATCHDOG
 		this.notifyWatchdog(this.context, requestContainer, responseContainer);
 
-		// End of processing
-		return;
+		// Return
+		return keepAlive;
+	}
+
+	/**
+	 * Start measuring a new request, before reading it from the socket.
+	 */
+	private void startMeasurement()
+	{
+		this.measurement = new CommandMetrics.Measurement(this.serverManager.getSlowRequestLog() != null);
+		this.receivedEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.COMMAND_RECEIVED);
+	}
+
+	/**
+	 * Add the time elapsed since the previous workstep to the measurement of
+	 * the current request.
+	 * 
+	 * @param workstep
+	 *            The workstep that was processed.
+	 */
+	private void measure(CommandMetrics.WorkstepEnum workstep)
+	{
+		if (this.measurement != null) this.measurement.measure(workstep);
+	}
+
+	/**
+	 * Record the measurement of the current request in the command metrics of
+	 * the server, and write its trace to the slow request log if it took
+	 * longer than the threshold.
+	 * <p>
+	 * The measurement is recorded under the identifier of the server command,
+	 * so command identifiers sent by the client that are unknown to the
+	 * server are recorded together as unknown command.
+	 * 
+	 * @param serverCommand
+	 *            The server command executed, or <TT>null</TT> if the request
+	 *            couldn't be decoded or its command is unknown.
+	 * 
+	 * @param responseContainer
+	 *            The response container that was sent.
+	 * 
+	 * @param commandEncoded
+	 *            The encoded response, or <TT>null</TT> if the encoding
+	 *            failed.
+	 */
+	private void recordMeasurement(ServerCommand serverCommand, ResponseContainer responseContainer, StringBuffer commandEncoded)
+	{
+		if (this.measurement == null) return;
+
+		try
+		{
+			this.measurement.setCommandIdentifier(serverCommand != null ? serverCommand.getCommandIdentifier() : null);
+			this.measurement.setResponseSize(commandEncoded != null ? commandEncoded.length() : 0);
+			this.measurement.setError(responseContainer.getErrorCode() != null);
+
+			// Record command metrics
+			CommandMetrics commandMetrics = this.serverManager.getCommandMetrics();
+			if (commandMetrics != null) commandMetrics.record(this.measurement);
+
+			// Log slow request
+			SlowRequestLog slowRequestLog = this.serverManager.getSlowRequestLog();
+			if (slowRequestLog != null) slowRequestLog.logIfSlow(this.measurement);
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+		finally
+		{
+			this.measurement = null;
+		}
+	}
+
+	/**
+	 * Provide the raw content frames following the request to the server
+	 * command, e. g. the content of a media file to upload. The content is
+	 * read directly from the socket while the command is executed.
+	 * 
+	 * @param requestContainer
+	 *            The request container to work with.
+	 * 
+	 * @param serverCommand
+	 *            The server command object to provide the content to.
+	 * 
+	 * @return Returns <TT>true</TT> if content follows the request, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean workstepProvideContent(RequestContainer requestContainer, ServerCommand serverCommand)
+	{
+		// Validate parameter
+		if (requestContainer == null) return false;
+
+		// Content is sent only via binary frames
+		if (this.socketConnector.isFramingEnabled() == false) requestContainer.setContentAccepted(false);
+		if (this.socketConnector.isFramingEnabled() == false) return false;
+		if (requestContainer.isContentFollows() == false) return false;
+
+		// Provide content stream. The client waits for the response not until
+		// the content was sent completely, so the deadline starts at the end
+		// of the content.
+		this.socketConnector.setContentPending(true);
+		this.context.setDeadline(0);
+		if (serverCommand != null) serverCommand.setContentInputStream(new DeadlineContentInputStream(this.socketConnector.getContentInputStream(), requestContainer));
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Get the raw content the server command wants to send following the
+	 * response, e. g. the content of a media file to download, and notify the
+	 * client about it via the response container.
+	 * 
+	 * @param requestContainer
+	 *            The request container to work with.
+	 * 
+	 * @param serverCommand
+	 *            The server command object that was executed.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns the content stream, or <TT>null</TT> if no content
+	 *         follows the response.
+	 */
+	private InputStream workstepGetResponseContent(RequestContainer requestContainer, ServerCommand serverCommand, ResponseContainer responseContainer)
+	{
+		// Validate parameter
+		if (serverCommand == null) return null;
+		if (serverCommand.getResponseContentInputStream() == null) return null;
+
+		// Content is sent only if the client accepts it and no error occurred
+		InputStream responseContent = serverCommand.getResponseContentInputStream();
+
+		if (requestContainer == null || requestContainer.isContentAccepted() == false || responseContainer.getErrorCode() != null)
+		{
+			this.closeResponseContent(responseContent);
+			return null;
+		}
+
+		// Notify client
+		responseContainer.setContentFollows(true);
+
+		// Return
+		return responseContent;
+	}
+
+	/**
+	 * Write the raw content following the response to the socket, and close
+	 * the content stream afterwards.
+	 * 
+	 * @param responseContent
+	 *            The content stream to write.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to write, or <TT>-1</TT> to write
+	 *            up to the end of the stream.
+	 * 
+	 * @param mediaCategory
+	 *            The media category of the content, in order to decide about
+	 *            its compression, or <TT>null</TT>.
+	 * 
+	 * @param responseWritten
+	 *            Set to <TT>true</TT> if the response was written
+	 *            successfully, otherwise the content is dropped.
+	 * 
+	 * @return Returns <TT>true</TT> if the content could be written,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private boolean workstepWriteResponseContent(InputStream responseContent, long length, String mediaCategory, boolean responseWritten)
+	{
+		try
+		{
+			if (responseWritten == false) return false;
+
+			// Get chunk size
+			Integer chunkSizeInBytes = this.context.getConfigurationManager().getPropertyAsIntegerValue(this.context, ResourceManager.configuration(this.context, "Application", "ContentChunkSizeInBytes"), false);
+			if (chunkSizeInBytes == null) chunkSizeInBytes = 65536;
+
+			// Write content
+			return this.socketConnector.writeContent(responseContent, length, chunkSizeInBytes, mediaCategory);
+		}
+		finally
+		{
+			this.closeResponseContent(responseContent);
+		}
+	}
+
+	/**
+	 * Close a content stream silently.
+	 * 
+	 * @param responseContent
+	 *            The content stream to close.
+	 */
+	private void closeResponseContent(InputStream responseContent)
+	{
+		try
+		{
+			responseContent.close();
+		}
+		catch (Exception e)
+		{
+			// Be silent
+		}
+	}
+
+	/**
+	 * Check if the connection to the client is kept open for further requests
+	 * and notify the client about it via the response container.
+	 * <p>
+	 * The connection is kept open only if the client asked for it, the server
+	 * is configured for keep-alive connections (see configuration property
+	 * <TT>Application/EnableKeepAlive</TT>), the server is not stopping, and
+	 * a place for waiting for the next request could be reserved (see
+	 * <TT>ServerManager.tryAcquireIdleKeepAliveConnection()</TT>). The place
+	 * is reserved before the client is notified, so the client is never told
+	 * to keep a connection open that the server closes afterwards.
+	 * 
+	 * @param requestContainer
+	 *            The request container to work with.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean workstepCheckKeepAlive(RequestContainer requestContainer, ResponseContainer responseContainer)
+	{
+		// Validate parameter
+		if (requestContainer == null) return false;
+
+		// Check conditions
+		boolean keepAlive = true;
+		if (requestContainer.isKeepAlive() == false) keepAlive = false;
+		if (this.serverManager.isEnableKeepAlive() == false) keepAlive = false;
+		if (this.serverManager.isStopAcceptingSocketConnections() == true) keepAlive = false;
+
+		// Reserve a place for waiting for the next request, unless too many
+		// connections are waiting already. The connection is owned by
+		// another worker if the request is multiplexed.
+		if (keepAlive == true && this.multiplexedRequestContainer == null && this.idleKeepAliveConnectionReserved == false)
+		{
+			if (this.serverManager.tryAcquireIdleKeepAliveConnection() == true)
+			{
+				this.idleKeepAliveConnectionReserved = true;
+			}
+			else
+			{
+				keepAlive = false;
+			}
+		}
+
+		// Notify client
+		if (responseContainer != null) responseContainer.setKeepAlive(keepAlive);
+
+		// Return
+		return keepAlive;
+	}
+
+	/**
+	 * Release the place for waiting for the next request of the client, if it
+	 * was reserved.
+	 */
+	private void releaseIdleKeepAliveConnection()
+	{
+		if (this.idleKeepAliveConnectionReserved == false) return;
+		this.idleKeepAliveConnectionReserved = false;
+		this.serverManager.releaseIdleKeepAliveConnection();
+	}
+
+	/**
+	 * Check if a request is to be processed in parallel to further requests
+	 * of the same connection (multiplexing).
+	 * <p>
+	 * This is the case if the client set a correlation identifier, the server
+	 * is configured for multiplexing (see configuration property
+	 * <TT>Application/EnableMultiplexing</TT>), the request was sent as binary
+	 * frame, and the connection is kept open. Otherwise the request is
+	 * processed in order, but the response carries the correlation identifier
+	 * nevertheless.
+	 * 
+	 * @param requestContainer
+	 *            The request container to check.
+	 * 
+	 * @return Returns <TT>true</TT> if the request is to be processed in
+	 *         parallel, otherwise <TT>false</TT>.
+	 */
+	private boolean workstepCheckMultiplexing(RequestContainer requestContainer)
+	{
+		// Validate parameter
+		if (requestContainer == null) return false;
+
+		// Check conditions
+		if (requestContainer.getCorrelationIdentifier() == null) return false;
+		if (requestContainer.isContentFollows() == true) return false;
+		if (requestContainer.isContentAccepted() == true) return false;
+		if (this.serverManager.isEnableMultiplexing() == false) return false;
+		if (this.socketConnector.isFramingEnabled() == false) return false;
+		if (this.workstepCheckKeepAlive(requestContainer, null) == false) return false;
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Hand over a multiplexed request to another worker of the thread pool.
+	 * The request is processed within its own context, because the requests
+	 * of the connection are processed at the same time.
+	 * 
+	 * @param requestContainer
+	 *            The request container to process.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open for further
+	 *         requests of the client, otherwise <TT>false</TT>.
+	 */
+	private boolean workstepDispatchMultiplexedRequest(RequestContainer requestContainer)
+	{
+		try
+		{
+			// Create a SILENT dump context regarding the executing of a
+			// command on server
+			Context newContext = this.context.createSilentDumpContext(ResourceManager.context(this.context, "Processing", "ProcessingClientCommand"));
+
+			// Execute inside the thread pool, a rejected request is answered
+			// by the worker itself
+			this.pendingMultiplexedRequests.incrementAndGet();
+			this.serverManager.threadPoolExecute(new ServerWorkerThread(newContext, this, requestContainer));
+		}
+		catch (Exception exception)
+		{
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnInvokingCommand"), null, exception);
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Process a single request of a multiplexed connection, read by the worker
+	 * that owns the connection. The connection is not closed afterwards.
+	 */
+	private void processMultiplexedRequest()
+	{
+		try
+		{
+			// Create server response container as default response
+			ResponseContainer responseContainer = new ResponseContainer(serverManager.getApplicationIdentifier().toString(), serverManager.getApplicationVersion(), null);
+
+			// Process request, the time waiting in the queue of the thread
+			// pool is not measured
+			if (this.measurement != null) this.measurement.restart();
+			this.processRequestContainer(this.multiplexedRequestContainer, responseContainer);
+		}
+		finally
+		{
+			this.releaseMultiplexedRequest();
+		}
+	}
+
+	/**
+	 * Notify the worker that owns the connection that a multiplexed request
+	 * was answered.
+	 */
+	private void releaseMultiplexedRequest()
+	{
+		this.multiplexedRequestsLock.lock();
+
+		try
+		{
+			this.pendingMultiplexedRequests.decrementAndGet();
+			this.multiplexedRequestsAnswered.signalAll();
+		}
+		finally
+		{
+			this.multiplexedRequestsLock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until all multiplexed requests of the connection were answered, but
+	 * not longer than the socket timeout time.
+	 */
+	private void waitForMultiplexedRequests()
+	{
+		long waitingTime = TimeUnit.MILLISECONDS.toNanos(this.serverManager.getSocketTimeoutInMilliseconds());
+
+		this.multiplexedRequestsLock.lock();
+
+		try
+		{
+			while (this.pendingMultiplexedRequests.get() > 0 && waitingTime > 0)
+			{
+				waitingTime = this.multiplexedRequestsAnswered.awaitNanos(waitingTime);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// Be silent
+		}
+		finally
+		{
+			this.multiplexedRequestsLock.unlock();
+		}
+	}
+
+	/**
+	 * Answer the client with the error code
+	 * <TT>Application/ServerOverloaded</TT> instead of processing the request,
+	 * because it was rejected by the admission control (see
+	 * <TT>AdmissionController</TT>).
+	 * <p>
+	 * A request that was not decoded can't be assigned to the client session,
+	 * so the connection is closed afterwards. Otherwise the connection is kept
+	 * open as requested by the client, unless content follows the request.
+	 * 
+	 * @param requestContainer
+	 *            The request container, or <TT>null</TT> if the request was
+	 *            rejected before decoding it.
+	 * 
+	 * @param responseContainer
+	 *            The response container to work with.
+	 * 
+	 * @return Returns <TT>true</TT> if the connection is kept open for further
+	 *         requests of the client, otherwise <TT>false</TT>.
+	 */
+	private boolean workstepRejectOverloadedRequest(RequestContainer requestContainer, ResponseContainer responseContainer)
+	{
+		try
+		{
+			// Set error code to the response container, but don't fire an
+			// error notification, because it is an overload situation only
+			responseContainer.setErrorCode(ResourceManager.notification(this.context, "Application", "ServerOverloaded").getRecourceIdentifier());
+			responseContainer.setServerCodeName(this.context.getCodeName());
+
+			// Transfer some client request data to the server response data
+			this.workstepTransferContainerData(requestContainer, responseContainer);
+
+			// Decide if the connection is kept open, content following the
+			// request is not read
+			boolean keepAlive = this.workstepCheckKeepAlive(requestContainer, responseContainer);
+
+			if (requestContainer != null && requestContainer.isContentFollows() == true)
+			{
+				keepAlive = false;
+				responseContainer.setKeepAlive(false);
+			}
+
+			// Logging
+			String logText = "Request rejected by admission control";
+			if (requestContainer != null) logText += "\n--> Command identifier: '" + requestContainer.getCommandIdentifier() + "'";
+			logText += "\n--> " + this.serverManager.getAdmissionController().toString();
+			this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+			// Write response container to the socket
+			StringBuffer commandEncoded = this.workstepConvertResponseContainerObjectToSocketData(responseContainer, requestContainer != null ? requestContainer.getSessionCipher() : null);
+			if (commandEncoded == null || socketConnector.writeData(commandEncoded) == false) keepAlive = false;
+
+			// Return
+			return keepAlive;
+		}
+		catch (Exception exception)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Answer the client with the error code <TT>Application/ServerBusy</TT>
+	 * instead of processing the request. This method is invoked by the thread
+	 * pool if the request was rejected, because all threads are busy and the
+	 * queue is full.
+	 * <p>
+	 * A rejected request of a multiplexed connection is answered with its
+	 * correlation identifier, and the connection is kept open. Otherwise the
+	 * connection is closed after answering, but not before the request of the
+	 * client was drained (see <TT>closeRejectedConnection()</TT>). This may
+	 * take a while, so the server manager doesn't invoke this method on the
+	 * thread accepting connections.
+	 */
+	public void rejectRequest()
+	{
+		try
+		{
+			// Create server response container
+			ResponseContainer responseContainer = new ResponseContainer(serverManager.getApplicationIdentifier().toString(), serverManager.getApplicationVersion(), null);
+			responseContainer.setServerCodeName(this.context.getCodeName());
+
+			if (this.multiplexedRequestContainer != null)
+			{
+				responseContainer.setCorrelationIdentifier(this.multiplexedRequestContainer.getCorrelationIdentifier());
+				responseContainer.setKeepAlive(true);
+			}
+
+			// Set error code to the response container, but don't fire an
+			// error notification, because it is an overload situation only
+			responseContainer.setErrorCode(ResourceManager.notification(this.context, "Application", "ServerBusy").getRecourceIdentifier());
+
+			// Write response container to the socket
+			StringBuffer commandEncoded = this.workstepConvertResponseContainerObjectToSocketData(responseContainer, this.multiplexedRequestContainer != null ? this.multiplexedRequestContainer.getSessionCipher() : null);
+			if (commandEncoded != null) socketConnector.writeData(commandEncoded);
+		}
+		catch (Exception exception)
+		{
+			// Be silent
+		}
+		finally
+		{
+			// Close socket, or release the multiplexed request
+			if (this.multiplexedRequestContainer == null)
+			{
+				this.closeRejectedConnection();
+			}
+			else
+			{
+				this.releaseMultiplexedRequest();
+			}
+		}
+	}
+
+	/**
+	 * Drop a request without answering the client, because it can't even be
+	 * rejected in time.
+	 */
+	public void abortRequest()
+	{
+		if (this.multiplexedRequestContainer == null)
+		{
+			socketConnector.closeSocket();
+		}
+		else
+		{
+			this.releaseMultiplexedRequest();
+		}
+	}
+
+	/**
+	 * Close the connection of a rejected request.
+	 * <p>
+	 * The request of the client was not read. Closing a socket with unread
+	 * data makes the operating system reset the connection, and the client may
+	 * lose the response before reading it. Therefore the sending direction is
+	 * shut down first, and the data of the client are read and dropped until
+	 * the client closes the connection, but not longer than
+	 * <TT>REJECTION_DRAIN_TIMEOUT_IN_MILLISECONDS</TT> and not more than
+	 * <TT>REJECTION_DRAIN_MAXIMUM_BYTES</TT>.
+	 */
+	private void closeRejectedConnection()
+	{
+		try
+		{
+			Socket socket = socketConnector.getClientSocket();
+			InputStream inputStream = socketConnector.getInputStream();
+
+			if (socket != null && socket.isClosed() == false && inputStream != null)
+			{
+				// Signal the end of the response
+				socket.shutdownOutput();
+				socket.setSoTimeout(REJECTION_DRAIN_TIMEOUT_IN_MILLISECONDS);
+
+				// Drain the request
+				long endTime = System.currentTimeMillis() + REJECTION_DRAIN_TIMEOUT_IN_MILLISECONDS;
+				byte[] buffer = new byte[8192];
+				int numberOfBytesRead = 0;
+
+				while (numberOfBytesRead < REJECTION_DRAIN_MAXIMUM_BYTES && System.currentTimeMillis() < endTime)
+				{
+					int length = inputStream.read(buffer);
+					if (length < 0) break;
+					numberOfBytesRead += length;
+				}
+			}
+		}
+		catch (Exception exception)
+		{
+			// Be silent
+		}
+		finally
+		{
+			socketConnector.closeSocket();
+		}
+	}
+
+	/**
+	 * Check if the worker processes a single request of a multiplexed
+	 * connection.
+	 * 
+	 * @return Returns <TT>true</TT> if the worker processes a multiplexed
+	 *         request, or <TT>false</TT> if it owns the connection.
+	 */
+	public boolean isMultiplexedRequest()
+	{
+		return this.multiplexedRequestContainer != null;
 	}
 
 	/**
@@ -221,7 +1080,54 @@ public class ServerWorkerThread implements Runnable
 
 		try
 		{
-			requestContainer = encodingUitility.decodeRequestContainer(this.context, commandToDecrypt, this.serverPrivateKey);
+			// Find the session key, if the data are encrypted with it
+			SessionCipher sessionCipher = null;
+			SessionContainer resumedSession = null;
+			String sessionIdentifier = EncodingHandler.getSessionIdentifier(commandToDecrypt);
+
+			if (sessionIdentifier != null)
+			{
+				SessionContainer session = this.serverManager.sessionGetClientSession(sessionIdentifier);
+
+				// Open the resumption ticket sent along. The session is added
+				// only if the command can be decrypted with the session key of
+				// the ticket, because the ticket is sent in plain text.
+				if (session == null)
+				{
+					resumedSession = this.serverManager.sessionOpenResumptionTicket(sessionIdentifier, EncodingHandler.getResumptionTicket(commandToDecrypt), true);
+					session = resumedSession;
+				}
+
+				if (session != null) sessionCipher = session.getSessionCipher();
+
+				// The session key is lost, e. g. because the session was
+				// cleaned, so the client has to create a new session
+				if (sessionCipher == null)
+				{
+					responseContainer.setErrorCode(ResourceManager.notification(context, "Application", "ClientSessionDoesNotExistOnServer").getRecourceIdentifier());
+
+					String logText = "Session key of the client session does not exist on server";
+					logText += "\n--> Requesting client session identifier: '" + sessionIdentifier + "'";
+					this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+					return null;
+				}
+			}
+
+			// Decode
+			requestContainer = encodingUitility.decodeRequestContainer(this.context, commandToDecrypt, this.serverPrivateKey, sessionCipher);
+
+			// The command was decrypted with the session key of the ticket
+			if (resumedSession != null && requestContainer != null && sessionIdentifier.trim().equals(requestContainer.getClientSessionIdentifier()) == true)
+			{
+				this.serverManager.sessionAddResumedClientSession(resumedSession);
+			}
+
+			// Resume the session with the resumption ticket sent along, if
+			// the session is unknown on this server
+			if (requestContainer != null && requestContainer.getResumptionTicket() != null && requestContainer.getClientSessionIdentifier() != null)
+			{
+				if (this.serverManager.sessionCheckClientSession(requestContainer.getClientSessionIdentifier()) == false) this.serverManager.sessionResumeClientSession(requestContainer.getClientSessionIdentifier(), requestContainer.getResumptionTicket());
+			}
 		}
 		catch (Exception exception)
 		{
@@ -241,7 +1147,8 @@ public class ServerWorkerThread implements Runnable
 
 	/**
 	 * Instantiate server command object using the class name set by the request
-	 * container. The class is loaded generically by name.
+	 * container. The class is taken from the command registry of the server (see
+	 * <TT>ServerCommandRegistry</TT>).
 	 * <p>
 	 * if an error occurred, the error message is set automatically by this
 	 * method.
@@ -268,20 +1175,12 @@ public class ServerWorkerThread implements Runnable
 		try
 		{
 			// Get class name of class to invoke
-			commandClazzName = "fmagic.server.command." + this.context.getResourceManager().getResourceContainer(context, requestContainer.getCommandIdentifier()).getAliasName();
-
-			// Set an own class loader to define a specific directory to search
-			// for classes
-			ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+			String aliasName = this.context.getResourceManager().getResourceContainer(context, requestContainer.getCommandIdentifier()).getAliasName();
+			commandClazzName = ServerCommandRegistry.getCommandClassName(aliasName);
 
-			String serverClassPath = "file://" + ServerCommand.class.getResource("").getPath();
-			URL classes = new URL(serverClassPath);
-
-			ClassLoader custom = new URLClassLoader(new URL[] { classes }, systemClassLoader);
-			Class<?> serverCommandClass = custom.loadClass(commandClazzName);
-
-			// Create new instance of the class to invoke
-			serverCommand = (ServerCommand) serverCommandClass.newInstance();
+			// Create new instance of the class to invoke, using the command
+			// registry of the server
+			serverCommand = this.serverManager.getCommandRegistry().createServerCommand(aliasName);
 
 			// Set specific session context
 			String clientSessionIdentifier = requestContainer.getClientSessionIdentifier();
@@ -376,6 +1275,7 @@ public class ServerWorkerThread implements Runnable
 			responseContainer.setSession(requestContainer.getClientSessionIdentifier());
 			responseContainer.setClientCodeName(requestContainer.getClientCodeName());
 			responseContainer.setServerCodeName(this.context.getCodeName());
+			responseContainer.setCorrelationIdentifier(requestContainer.getCorrelationIdentifier());
 		}
 		catch (Exception exception)
 		{
@@ -399,11 +1299,15 @@ public class ServerWorkerThread implements Runnable
 	 * @param responseContainer
 	 *            The response container to convert.
 	 * 
+	 * @param sessionCipher
+	 *            The cipher the request was decrypted with, or <TT>null</TT>
+	 *            if the response is not to be encrypted.
+	 * 
 	 * @return Returns the encoded string, or <TT>null</TT> if an error
 	 *         occurred.
 	 * 
 	 */
-	private StringBuffer workstepConvertResponseContainerObjectToSocketData(ResponseContainer responseContainer)
+	private StringBuffer workstepConvertResponseContainerObjectToSocketData(ResponseContainer responseContainer, SessionCipher sessionCipher)
 	{
 		// Validate parameter
 		if (responseContainer == null) return null;
@@ -414,7 +1318,7 @@ public class ServerWorkerThread implements Runnable
 
 		try
 		{
-			commandEncoded = encodingUitility.encodeResponseContainer(this.context, responseContainer, null);
+			commandEncoded = encodingUitility.encodeResponseContainer(this.context, responseContainer, sessionCipher);
 		}
 		catch (Exception exception)
 		{
@@ -504,4 +1408,51 @@ public class ServerWorkerThread implements Runnable
 		// Return
 		return true;
 	}
+
+	/**
+	 * Content stream of the request that starts the deadline of the request
+	 * when the end of the content is reached.
+	 */
+	private class DeadlineContentInputStream extends FilterInputStream
+	{
+		private final RequestContainer requestContainer;
+		private boolean deadlineStarted = false;
+
+		/**
+		 * Constructor
+		 */
+		DeadlineContentInputStream(InputStream inputStream, RequestContainer requestContainer)
+		{
+			super(inputStream);
+			this.requestContainer = requestContainer;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int value = super.read();
+			if (value == -1) this.startDeadline();
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			int byteCount = super.read(buffer, offset, length);
+			if (byteCount == -1) this.startDeadline();
+			return byteCount;
+		}
+
+		/**
+		 * Start the deadline of the request, once.
+		 */
+		private void startDeadline()
+		{
+			if (this.deadlineStarted == true) return;
+			this.deadlineStarted = true;
+
+			this.requestContainer.startDeadline(System.currentTimeMillis());
+			ServerWorkerThread.this.context.setDeadline(this.requestContainer.getDeadline());
+		}
+	}
 }
@@ -0,0 +1,393 @@
+package fmagic.server.application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import fmagic.basic.command.SessionContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.file.FileLocationFunctions;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class implements a thread that writes a snapshot of the client sessions
+ * of the application server to a file periodically, and once more on stopping
+ * the server. On starting the server the snapshot is read again, so clients
+ * can go on with their sessions after a restart, instead of creating new
+ * sessions all at once.
+ * <p>
+ * The snapshot is written to the localdata directory (see
+ * <TT>FileLocationFunctions.getLocaldataSessionSnapshotFileName()</TT>), one
+ * line per session with the fields separated by tabulators: session
+ * identifier, public key of the client, right group, license key, time of
+ * creation and time of last access.
+ * <p>
+ * Sessions with a session key (see command 'CreateSession') are not written,
+ * because the session key must not be stored on disk. These clients get the
+ * error 'ClientSessionDoesNotExistOnServer' after a restart, and create a new
+ * session, or resume it by a resumption ticket (see
+ * <TT>SessionTicketHandler</TT>). Session encryption is enabled by default, so
+ * the snapshot restores sessions only if it was disabled (see configuration
+ * property <TT>Application/EnableSessionEncryption</TT>).
+ * <p>
+ * The snapshot contains the license keys of the clients, so the file may be
+ * read and written by the owner of the server process only. If the file
+ * system doesn't support restricting the access, the snapshot is written
+ * nevertheless, and a warning is logged.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 24.08.2013 - Created
+ */
+public class SessionSnapshotWriter extends Thread
+{
+	// First line of a snapshot file, with the version of the file format
+	private static final String FILE_HEADER = "FMAGIC-SESSIONS\t1";
+
+	// Encoding of the fields
+	private static final String ENCODING = "UTF-8";
+
+	final private ServerManager serverManager;
+	final private Context context;
+	final private int snapshotIntervalInSeconds;
+
+	// Flag if processing is to be continued
+	private volatile boolean stopRunning = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param serverManager
+	 *            The server the sessions are held on.
+	 * 
+	 * @param snapshotIntervalInSeconds
+	 *            Time between two snapshots in seconds.
+	 */
+	public SessionSnapshotWriter(Context context, ServerManager serverManager, int snapshotIntervalInSeconds)
+	{
+		this.context = context;
+		this.serverManager = serverManager;
+		this.snapshotIntervalInSeconds = Math.max(1, snapshotIntervalInSeconds);
+
+		this.setName("SessionSnapshotWriter-" + context.getCodeName());
+		this.setDaemon(true);
+	}
+
+	/**
+	 * Thread running method.
+	 */
+	@Override
+	public void run()
+	{
+		while (this.stopRunning == false)
+		{
+			// Sleep x seconds
+			try
+			{
+				Thread.sleep(this.snapshotIntervalInSeconds * 1000L);
+			}
+			catch (InterruptedException e)
+			{
+				// Be silent
+			}
+
+			// Write snapshot
+			if (this.stopRunning == false) this.writeSnapshot();
+		}
+	}
+
+	/**
+	 * Start writing snapshots.
+	 * 
+	 * @return Returns <TT>true</TT> if the thread could be started, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean startServer()
+	{
+		// Logging
+		this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Starting session snapshot writer [" + this.context.getCodeName() + "], snapshot interval: " + String.valueOf(this.snapshotIntervalInSeconds) + " seconds");
+
+		// Sessions with a session key are not written
+		Boolean enableSessionEncryption = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "Application", "EnableSessionEncryption"), false);
+		if (enableSessionEncryption != null && enableSessionEncryption == true) this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.WARNING, "Session encryption is enabled [" + this.context.getCodeName() + "], so the session snapshot doesn't contain sessions with a session key. These clients have to create a new session, or resume it by a resumption ticket, after a restart.");
+
+		// Start thread
+		try
+		{
+			this.start();
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on starting session snapshot writer";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnHandlingSessionSnapshot"), errorText, e);
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Stop writing snapshots, and write a last snapshot.
+	 */
+	public void stopServer()
+	{
+		// Stop running thread
+		this.stopRunning = true;
+		this.interrupt();
+
+		try
+		{
+			this.join(10000);
+		}
+		catch (InterruptedException e)
+		{
+			// Be silent
+		}
+
+		// Write last snapshot
+		this.writeSnapshot();
+	}
+
+	/**
+	 * Get the directory of the snapshot file.
+	 */
+	private String getSnapshotFilePath()
+	{
+		return FileLocationFunctions.compileFilePath(FileLocationFunctions.getRootPath(), FileLocationFunctions.getLocaldataSubPath());
+	}
+
+	/**
+	 * Get the name of the snapshot file.
+	 */
+	private String getSnapshotFileName()
+	{
+		return FileLocationFunctions.replacePlacholder(this.context, FileLocationFunctions.getLocaldataSessionSnapshotFileName());
+	}
+
+	/**
+	 * Write a snapshot of the client sessions to the snapshot file.
+	 * <p>
+	 * The snapshot is written to a temporary file first, and moves to the
+	 * place of the snapshot file afterwards in one step, so a crash while
+	 * writing doesn't destroy the last snapshot. The access to the temporary
+	 * file is restricted to the owner before writing (see
+	 * <TT>restrictToOwner()</TT>).
+	 * 
+	 * @return Returns <TT>true</TT> if the snapshot could be written,
+	 *         otherwise <TT>false</TT>.
+	 */
+	public boolean writeSnapshot()
+	{
+		String pathName = this.getSnapshotFilePath();
+		String fileName = this.getSnapshotFileName();
+		PrintWriter output = null;
+
+		try
+		{
+			// Create directory
+			File directory = new File(pathName);
+			directory.mkdirs();
+
+			File snapshotFile = new File(pathName, fileName);
+			File temporaryFile = new File(pathName, fileName + ".tmp");
+
+			// Create temporary file, readable and writable by the owner only
+			if (temporaryFile.exists() == true && temporaryFile.delete() == false) throw new Exception("Temporary file could not be deleted");
+			if (temporaryFile.createNewFile() == false) throw new Exception("Temporary file could not be created");
+
+			if (SessionSnapshotWriter.restrictToOwner(temporaryFile) == false)
+			{
+				String logText = "Access to the session snapshot could not be restricted to the owner, because the file system doesn't support it [" + this.context.getCodeName() + "]";
+				logText += "\n--> Directory: '" + pathName + "'";
+				logText += "\n--> File name: '" + fileName + "'";
+				this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.WARNING, logText);
+			}
+
+			// Write sessions
+			output = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), ENCODING));
+			output.print(FILE_HEADER + "\n");
+
+			for (SessionContainer session : this.serverManager.getSessionStore().getSessions())
+			{
+				// Session keys must not be stored
+				if (session.getSessionCipher() != null) continue;
+
+				String line = "";
+				line += SessionSnapshotWriter.encodeField(session.getClientSessionIdentifier()) + "\t";
+				line += SessionSnapshotWriter.encodeField(session.getKeyApplicationPublicKey()) + "\t";
+				line += SessionSnapshotWriter.encodeField(session.getUserRightGroup() != null ? session.getUserRightGroup().getRecourceIdentifier() : null) + "\t";
+				line += SessionSnapshotWriter.encodeField(session.getUserLicenseKey()) + "\t";
+				line += String.valueOf(session.getCreationDate().getTime()) + "\t";
+				line += String.valueOf(session.getLastModificationTime());
+				output.print(line + "\n");
+			}
+
+			output.close();
+			output = null;
+
+			// Replace snapshot file
+			Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on writing snapshot of client sessions";
+			errorText += "\n--> Directory: '" + pathName + "'";
+			errorText += "\n--> File name: '" + fileName + "'";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnHandlingSessionSnapshot"), errorText, e);
+			return false;
+		}
+		finally
+		{
+			if (output != null) output.close();
+		}
+
+		// Return
+		return true;
+	}
+
+	/**
+	 * Restrict the access to a file to the owner, who may read and write it.
+	 * 
+	 * @param file
+	 *            The file to restrict.
+	 * 
+	 * @return Returns <TT>true</TT> if the access could be restricted,
+	 *         otherwise <TT>false</TT>.
+	 */
+	private static boolean restrictToOwner(File file)
+	{
+		boolean success = true;
+
+		// Nobody may access the file
+		if (file.setReadable(false, false) == false) success = false;
+		if (file.setWritable(false, false) == false) success = false;
+
+		// The owner may read and write the file
+		if (file.setReadable(true, true) == false) success = false;
+		if (file.setWritable(true, true) == false) success = false;
+
+		// Return
+		return success;
+	}
+
+	/**
+	 * Read the snapshot file, and restore the client sessions that are not
+	 * expired yet.
+	 * 
+	 * @return Returns the number of sessions restored, or <TT>-1</TT> if an
+	 *         error occurred.
+	 */
+	public int readSnapshot()
+	{
+		String pathName = this.getSnapshotFilePath();
+		String fileName = this.getSnapshotFileName();
+		BufferedReader input = null;
+		int numberOfRestoredSessions = 0;
+		int numberOfSessions = 0;
+
+		try
+		{
+			// Check if a snapshot exists
+			File snapshotFile = new File(pathName, fileName);
+			if (snapshotFile.exists() == false) return 0;
+
+			// Check file format
+			input = new BufferedReader(new InputStreamReader(new FileInputStream(snapshotFile), ENCODING));
+			String line = input.readLine();
+			if (line == null || line.equals(FILE_HEADER) == false) throw new Exception("Unknown file format");
+
+			// Restore sessions
+			SessionStore sessionStore = this.serverManager.getSessionStore();
+
+			while ((line = input.readLine()) != null)
+			{
+				if (line.length() == 0) continue;
+
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 6) throw new Exception("Invalid line in snapshot file: " + String.valueOf(numberOfSessions + 2));
+
+				numberOfSessions++;
+
+				// Create session
+				String clientSessionIdentifier = SessionSnapshotWriter.decodeField(fields[0]);
+				if (clientSessionIdentifier == null) continue;
+
+				SessionContainer session = new SessionContainer(clientSessionIdentifier, SessionSnapshotWriter.decodeField(fields[1]), Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+
+				String rightGroupIdentifier = SessionSnapshotWriter.decodeField(fields[2]);
+
+				if (rightGroupIdentifier != null)
+				{
+					ResourceContainer rightGroup = this.context.getResourceManager().getResourceContainer(this.context, rightGroupIdentifier);
+					if (rightGroup == null) continue;
+					session.setUserRightGroup(rightGroup);
+				}
+
+				session.setUserLicenseKey(SessionSnapshotWriter.decodeField(fields[3]));
+
+				// Add session
+				if (sessionStore.restore(session) == true) numberOfRestoredSessions++;
+			}
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on reading snapshot of client sessions";
+			errorText += "\n--> Directory: '" + pathName + "'";
+			errorText += "\n--> File name: '" + fileName + "'";
+			errorText += "\n--> Number of sessions restored: '" + String.valueOf(numberOfRestoredSessions) + "'";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnHandlingSessionSnapshot"), errorText, e);
+			return -1;
+		}
+		finally
+		{
+			try
+			{
+				if (input != null) input.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+
+		// Logging
+		this.context.getNotificationManager().notifyLogMessage(this.context, NotificationManager.SystemLogLevelEnum.NOTICE, "Client sessions restored from snapshot [" + this.context.getCodeName() + "]: " + String.valueOf(numberOfRestoredSessions) + " of " + String.valueOf(numberOfSessions) + " sessions");
+
+		// Return
+		return numberOfRestoredSessions;
+	}
+
+	/**
+	 * Encode a field of the snapshot file, an empty field stands for
+	 * <TT>null</TT>. The fields of resumption tickets are encoded the same way
+	 * (see <TT>SessionTicketHandler</TT>).
+	 */
+	static String encodeField(String value) throws Exception
+	{
+		if (value == null || value.length() == 0) return "";
+		return URLEncoder.encode(value, ENCODING);
+	}
+
+	/**
+	 * Decode a field of the snapshot file.
+	 */
+	static String decodeField(String value) throws Exception
+	{
+		if (value == null || value.length() == 0) return null;
+		return URLDecoder.decode(value, ENCODING);
+	}
+}
@@ -0,0 +1,472 @@
+package fmagic.server.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fmagic.basic.command.SessionContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class holds the client sessions of the application server.
+ * <p>
+ * Sessions are looked up without locking, because each request of a client
+ * looks up its session. A session expires if it wasn't used for the idle
+ * timeout (see configuration property <TT>Session/IdleTimeoutInMinutes</TT>),
+ * and the least recently used sessions are evicted one by one if the maximum
+ * number of sessions is reached (see configuration property
+ * <TT>Session/MaxNuOfActiveSessions</TT>).
+ * <p>
+ * Expiry is organized by a timer wheel: each session is put into the bucket of
+ * the time it expires, if it isn't used anymore. Looking up a session only
+ * updates its time of last access, it isn't moved within the wheel. Instead,
+ * when a bucket is due, sessions used meanwhile are moved to the bucket of
+ * their new expiry time, and the others are removed. So each lookup, expiry
+ * and eviction takes constant time, and a session is moved at most once per
+ * idle timeout. The buckets are processed by the threads looking up sessions,
+ * at most once per bucket time interval, so there is no extra thread.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 23.08.2013 - Created
+ */
+public class SessionStore
+{
+	// Number of buckets of the timer wheel
+	private static final int NUMBER_OF_BUCKETS = 64;
+
+	// Shortest time interval of a bucket
+	private static final long MINIMUM_TICK_IN_MILLISECONDS = 1000;
+
+	// Time interval the eviction rate is computed for
+	private static final long RATE_INTERVAL_IN_MILLISECONDS = 60000;
+
+	final private Context context;
+	final private int maximumNumberOfSessions;
+	final private long idleTimeoutInMilliseconds;
+	final private long tickInMilliseconds;
+
+	// Sessions by client session identifier
+	private final ConcurrentHashMap<String, SessionContainer> sessions = new ConcurrentHashMap<String, SessionContainer>();
+
+	// Timer wheel, and the last time interval (tick) that was processed
+	private final List<ConcurrentLinkedQueue<SessionContainer>> buckets = new ArrayList<ConcurrentLinkedQueue<SessionContainer>>();
+	private volatile long processedTick;
+
+	// Lock for adding sessions and processing the timer wheel. A lock is used
+	// instead of synchronized methods, because virtual threads must not be
+	// pinned to their carrier thread while notifying events.
+	private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+	// Flag if the maximum number of sessions was reached, in order to notify
+	// it once only
+	private boolean maximumReached = false;
+
+	// Statistics
+	private final AtomicLong expiredCount = new AtomicLong(0);
+	private final AtomicLong evictedCount = new AtomicLong(0);
+	private long rateIntervalStartTime = System.currentTimeMillis();
+	private long rateIntervalStartCount = 0;
+	private volatile double evictionRatePerMinute = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param maximumNumberOfSessions
+	 *            Maximum number of sessions held.
+	 * 
+	 * @param idleTimeoutInMinutes
+	 *            Time in minutes a session expires after its last use.
+	 */
+	public SessionStore(Context context, int maximumNumberOfSessions, int idleTimeoutInMinutes)
+	{
+		this.context = context;
+		this.maximumNumberOfSessions = Math.max(1, maximumNumberOfSessions);
+		this.idleTimeoutInMilliseconds = Math.max(1, idleTimeoutInMinutes) * 60L * 1000L;
+
+		// The wheel spans the idle timeout, with two buckets to spare
+		this.tickInMilliseconds = Math.max(MINIMUM_TICK_IN_MILLISECONDS, (this.idleTimeoutInMilliseconds + NUMBER_OF_BUCKETS - 3) / (NUMBER_OF_BUCKETS - 2));
+		this.processedTick = System.currentTimeMillis() / this.tickInMilliseconds;
+
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+		{
+			this.buckets.add(new ConcurrentLinkedQueue<SessionContainer>());
+		}
+	}
+
+	/**
+	 * Get a session, and update its time of last access.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the client session.
+	 * 
+	 * @return Returns the session, or <TT>null</TT> if it doesn't exist or is
+	 *         expired.
+	 */
+	public SessionContainer get(String clientSessionIdentifier)
+	{
+		if (clientSessionIdentifier == null) return null;
+
+		SessionContainer session = this.sessions.get(clientSessionIdentifier);
+		if (session == null) return null;
+
+		long currentTime = System.currentTimeMillis();
+
+		// Remove expired session, even if its bucket wasn't processed yet
+		if (currentTime - session.getLastModificationTime() >= this.idleTimeoutInMilliseconds)
+		{
+			if (this.sessions.remove(clientSessionIdentifier, session) == true) this.expiredCount.incrementAndGet();
+			return null;
+		}
+
+		// Update time of last access
+		session.setLastModificationTime(currentTime);
+
+		// Process due buckets of the timer wheel
+		if (currentTime / this.tickInMilliseconds > this.processedTick) this.removeExpiredSessions(false);
+
+		// Return
+		return session;
+	}
+
+	/**
+	 * Add a new session. If the maximum number of sessions is reached, the
+	 * least recently used session is evicted.
+	 * 
+	 * @param session
+	 *            The session to add.
+	 * 
+	 * @return Returns <TT>true</TT> if the session was added, or
+	 *         <TT>false</TT> if a session with the same identifier exists
+	 *         already.
+	 */
+	public boolean add(SessionContainer session)
+	{
+		this.maintenanceLock.lock();
+
+		try
+		{
+			// Check if the session exists already
+			if (this.get(session.getClientSessionIdentifier()) != null) return false;
+
+			// Remove expired sessions, and evict sessions if necessary
+			this.removeExpiredSessions(true);
+			long currentTime = System.currentTimeMillis();
+
+			if (this.sessions.size() >= this.maximumNumberOfSessions)
+			{
+				if (this.maximumReached == false)
+				{
+					this.maximumReached = true;
+					this.context.getNotificationManager().notifyEvent(this.context, ResourceManager.notification(this.context, "Application", "MaximumNumberOfSessionsExceeded"), "--> Max nu of sessions: '" + String.valueOf(this.maximumNumberOfSessions) + "'\n--> Least recently used sessions are evicted one by one from now on", null);
+				}
+
+				while (this.sessions.size() >= this.maximumNumberOfSessions)
+				{
+					if (this.evictLeastRecentlyUsedSession(currentTime) == false) break;
+				}
+			}
+			else
+			{
+				this.maximumReached = false;
+			}
+
+			// Add session
+			session.setLastModificationTime(currentTime);
+			if (this.sessions.putIfAbsent(session.getClientSessionIdentifier(), session) != null) return false;
+			this.schedule(session, currentTime + this.idleTimeoutInMilliseconds);
+
+			// Return
+			return true;
+		}
+		finally
+		{
+			this.maintenanceLock.unlock();
+		}
+	}
+
+	/**
+	 * Restore a session, e. g. from a snapshot written on the last run of the
+	 * server. The time of last access of the session is kept.
+	 * 
+	 * @param session
+	 *            The session to restore.
+	 * 
+	 * @return Returns <TT>true</TT> if the session was restored, or
+	 *         <TT>false</TT> if it is expired already, a session with the same
+	 *         identifier exists, or the maximum number of sessions is reached.
+	 */
+	public boolean restore(SessionContainer session)
+	{
+		this.maintenanceLock.lock();
+
+		try
+		{
+			// Check session
+			long expiryTime = session.getLastModificationTime() + this.idleTimeoutInMilliseconds;
+			if (expiryTime <= System.currentTimeMillis()) return false;
+			if (this.sessions.size() >= this.maximumNumberOfSessions) return false;
+
+			// Add session
+			if (this.sessions.putIfAbsent(session.getClientSessionIdentifier(), session) != null) return false;
+			this.schedule(session, expiryTime);
+
+			// Return
+			return true;
+		}
+		finally
+		{
+			this.maintenanceLock.unlock();
+		}
+	}
+
+	/**
+	 * Get a copy of the list of sessions, e. g. for writing a snapshot.
+	 * 
+	 * @return Returns the sessions, including expired sessions that weren't
+	 *         removed yet.
+	 */
+	public List<SessionContainer> getSessions()
+	{
+		return new ArrayList<SessionContainer>(this.sessions.values());
+	}
+
+	/**
+	 * Remove all sessions that expired, by processing the due buckets of the
+	 * timer wheel.
+	 * 
+	 * @param wait
+	 *            Set to <TT>true</TT> in order to wait if another thread is
+	 *            processing the timer wheel at the moment, otherwise the call
+	 *            returns at once.
+	 * 
+	 * @return Returns the number of sessions removed.
+	 */
+	public int removeExpiredSessions(boolean wait)
+	{
+		if (wait == true)
+		{
+			this.maintenanceLock.lock();
+		}
+		else if (this.maintenanceLock.tryLock() == false)
+		{
+			return 0;
+		}
+
+		try
+		{
+			int numberOfRemovedSessions = this.processBuckets(System.currentTimeMillis());
+
+			if (numberOfRemovedSessions > 0)
+			{
+				this.context.getNotificationManager().notifyEvent(this.context, ResourceManager.notification(this.context, "Application", "SessionCleaned"), "--> Number of expired sessions: '" + String.valueOf(numberOfRemovedSessions) + "'\n--> Number of active sessions now: '" + this.sessions.size() + "'", null);
+			}
+
+			return numberOfRemovedSessions;
+		}
+		finally
+		{
+			this.maintenanceLock.unlock();
+		}
+	}
+
+	/**
+	 * Process all buckets of the timer wheel that are due. To be called with
+	 * the maintenance lock held.
+	 * 
+	 * @return Returns the number of sessions removed.
+	 */
+	private int processBuckets(long currentTime)
+	{
+		long currentTick = currentTime / this.tickInMilliseconds;
+		int numberOfRemovedSessions = 0;
+
+		// Each bucket is processed once, even if the wheel wasn't processed
+		// for a longer time
+		long firstTick = Math.max(this.processedTick + 1, currentTick - NUMBER_OF_BUCKETS + 1);
+
+		for (long tick = firstTick; tick <= currentTick; tick++)
+		{
+			// Take all sessions of the bucket
+			ConcurrentLinkedQueue<SessionContainer> bucket = this.getBucket(tick);
+			List<SessionContainer> dueSessions = new ArrayList<SessionContainer>();
+			SessionContainer session;
+
+			while ((session = bucket.poll()) != null)
+			{
+				dueSessions.add(session);
+			}
+
+			this.processedTick = tick;
+
+			// Remove expired sessions, and move the others to the bucket of
+			// their new expiry time
+			for (SessionContainer dueSession : dueSessions)
+			{
+				if (this.isStored(dueSession) == false) continue;
+
+				long expiryTime = dueSession.getLastModificationTime() + this.idleTimeoutInMilliseconds;
+
+				if (expiryTime <= currentTime)
+				{
+					if (this.sessions.remove(dueSession.getClientSessionIdentifier(), dueSession) == true)
+					{
+						this.expiredCount.incrementAndGet();
+						numberOfRemovedSessions++;
+					}
+				}
+				else
+				{
+					this.schedule(dueSession, expiryTime);
+				}
+			}
+		}
+
+		// Update eviction rate
+		this.updateEvictionRate(currentTime);
+
+		// Return
+		return numberOfRemovedSessions;
+	}
+
+	/**
+	 * Evict the least recently used session, that is the first session of
+	 * the timer wheel that wasn't used since it was put into its bucket. To be
+	 * called with the maintenance lock held.
+	 * 
+	 * @return Returns <TT>true</TT> if a session was evicted, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean evictLeastRecentlyUsedSession(long currentTime)
+	{
+		for (long tick = this.processedTick + 1; tick <= this.processedTick + NUMBER_OF_BUCKETS; tick++)
+		{
+			ConcurrentLinkedQueue<SessionContainer> bucket = this.getBucket(tick);
+			SessionContainer session;
+
+			while ((session = bucket.poll()) != null)
+			{
+				if (this.isStored(session) == false) continue;
+
+				// Move a session used meanwhile to a later bucket
+				long expiryTime = session.getLastModificationTime() + this.idleTimeoutInMilliseconds;
+
+				if (expiryTime / this.tickInMilliseconds > tick)
+				{
+					this.schedule(session, expiryTime);
+					continue;
+				}
+
+				// Evict session
+				if (this.sessions.remove(session.getClientSessionIdentifier(), session) == true)
+				{
+					this.evictedCount.incrementAndGet();
+					return true;
+				}
+			}
+		}
+
+		// Return
+		return false;
+	}
+
+	/**
+	 * Put a session into the bucket of its expiry time, but not into a bucket
+	 * that was processed already.
+	 */
+	private void schedule(SessionContainer session, long expiryTime)
+	{
+		long tick = Math.max(expiryTime / this.tickInMilliseconds, this.processedTick + 1);
+		this.getBucket(tick).add(session);
+	}
+
+	/**
+	 * Get the bucket of a time interval.
+	 */
+	private ConcurrentLinkedQueue<SessionContainer> getBucket(long tick)
+	{
+		return this.buckets.get((int) (tick % NUMBER_OF_BUCKETS));
+	}
+
+	/**
+	 * Check if a session taken from the timer wheel is still stored, and was
+	 * not removed or replaced meanwhile.
+	 */
+	private boolean isStored(SessionContainer session)
+	{
+		return this.sessions.get(session.getClientSessionIdentifier()) == session;
+	}
+
+	/**
+	 * Compute the number of sessions expired or evicted per minute, once per
+	 * time interval. To be called with the maintenance lock held.
+	 */
+	private void updateEvictionRate(long currentTime)
+	{
+		long elapsedTime = currentTime - this.rateIntervalStartTime;
+		if (elapsedTime < RATE_INTERVAL_IN_MILLISECONDS) return;
+
+		long count = this.expiredCount.get() + this.evictedCount.get();
+		this.evictionRatePerMinute = (count - this.rateIntervalStartCount) * 60000.0 / elapsedTime;
+
+		this.rateIntervalStartTime = currentTime;
+		this.rateIntervalStartCount = count;
+	}
+
+	/**
+	 * Get the number of sessions held.
+	 * 
+	 * @return Returns the number of sessions, including expired sessions that
+	 *         weren't removed yet.
+	 */
+	public int getNumberOfSessions()
+	{
+		return this.sessions.size();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getExpiredCount()
+	{
+		return this.expiredCount.get();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getEvictedCount()
+	{
+		return this.evictedCount.get();
+	}
+
+	/**
+	 * Get the number of sessions expired or evicted per minute, as computed
+	 * on processing the timer wheel the last time.
+	 * 
+	 * @return Returns the rate.
+	 */
+	public double getEvictionRatePerMinute()
+	{
+		return this.evictionRatePerMinute;
+	}
+
+	@Override
+	public String toString()
+	{
+		String outputString = "Sessions: " + String.valueOf(this.getNumberOfSessions());
+		outputString += ", Maximum: " + String.valueOf(this.maximumNumberOfSessions);
+		outputString += ", Idle timeout: " + String.valueOf(this.idleTimeoutInMilliseconds / 60000L) + " minutes";
+		outputString += ", Expired: " + String.valueOf(this.getExpiredCount());
+		outputString += ", Evicted: " + String.valueOf(this.getEvictedCount());
+		outputString += String.format(", Removed per minute: %.1f", this.getEvictionRatePerMinute());
+		return outputString;
+	}
+}
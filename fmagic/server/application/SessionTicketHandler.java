@@ -0,0 +1,279 @@
+package fmagic.server.application;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+import fmagic.basic.command.SessionCipher;
+import fmagic.basic.command.SessionContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceContainer;
+
+/**
+ * This class issues and opens resumption tickets of client sessions.
+ * <p>
+ * A resumption ticket contains the state of a client session: session
+ * identifier, public key of the client, right group, license key and session
+ * key. It is encrypted and authenticated with a ticket key derived from a
+ * secret (see configuration property <TT>Session/ResumptionTicketSecret</TT>),
+ * so it is opaque to the client and can't be forged.
+ * <p>
+ * The server sends the ticket to the client on the command 'CreateSession'. If
+ * the session is unknown on the server later on, e. g. after a restart of the
+ * server, or because the client connects to another server of the same pool,
+ * the client sends the ticket along with its next command, and the server
+ * restores the session from it, instead of executing the commands 'Handshake'
+ * and 'CreateSession' once more. All servers that share the secret accept the
+ * tickets of each other.
+ * <p>
+ * A ticket is a bearer token, and it is sent in plain text in the prefix of
+ * encrypted commands. Therefore a ticket that contains a session key is
+ * accepted only for a command that is encrypted with this session key, which
+ * proves that the client holds the key (see <TT>openTicket()</TT>). The
+ * lifetime of tickets doesn't exceed the idle timeout of sessions.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 25.08.2013 - Created
+ */
+public class SessionTicketHandler
+{
+	// Version of the ticket format, the first field of a ticket
+	private static final String TICKET_VERSION = "1";
+
+	// Number of fields of a ticket
+	private static final int NUMBER_OF_FIELDS = 8;
+
+	// Minimum strength of the secret
+	public static final int MINIMUM_SECRET_LENGTH = 32;
+	public static final int MINIMUM_SECRET_DISTINCT_CHARACTERS = 8;
+
+	final private Context context;
+	final private long lifetimeInMilliseconds;
+
+	// Cipher for tickets, with the ticket key derived from the secret
+	final private SessionCipher ticketCipher;
+
+	// Statistics
+	private final AtomicLong issuedCount = new AtomicLong(0);
+	private final AtomicLong resumedCount = new AtomicLong(0);
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param secret
+	 *            The secret the ticket key is derived from.
+	 * 
+	 * @param lifetimeInMinutes
+	 *            Time in minutes a ticket is valid after it was issued.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             If the secret is too weak, or the ticket key can't be
+	 *             derived.
+	 */
+	public SessionTicketHandler(Context context, String secret, int lifetimeInMinutes) throws GeneralSecurityException
+	{
+		this.context = context;
+		this.lifetimeInMilliseconds = Math.max(1, lifetimeInMinutes) * 60L * 1000L;
+
+		// Check strength of the secret
+		if (SessionTicketHandler.isSecretStrongEnough(secret) == false)
+		{
+			throw new GeneralSecurityException("The secret of resumption tickets must have at least " + String.valueOf(MINIMUM_SECRET_LENGTH) + " characters, with at least " + String.valueOf(MINIMUM_SECRET_DISTINCT_CHARACTERS) + " different characters");
+		}
+
+		// Derive ticket key, bound to its purpose
+		byte[] ticketKey = null;
+
+		try
+		{
+			Mac derivingMac = Mac.getInstance("HmacSHA256");
+			derivingMac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+			ticketKey = derivingMac.doFinal("fmagic.session.resumption.ticket".getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new GeneralSecurityException(e);
+		}
+
+		this.ticketCipher = new SessionCipher(ticketKey);
+	}
+
+	/**
+	 * Check if a secret is strong enough to derive the ticket key from.
+	 * 
+	 * @param secret
+	 *            The secret to check.
+	 * 
+	 * @return Returns <TT>true</TT> if the secret has the minimum length and
+	 *         the minimum number of different characters, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public static boolean isSecretStrongEnough(String secret)
+	{
+		if (secret == null || secret.length() < MINIMUM_SECRET_LENGTH) return false;
+
+		Set<Character> characters = new HashSet<Character>();
+		for (int i = 0; i < secret.length(); i++)
+		{
+			characters.add(secret.charAt(i));
+		}
+
+		return characters.size() >= MINIMUM_SECRET_DISTINCT_CHARACTERS;
+	}
+
+	/**
+	 * Issue a resumption ticket for a client session.
+	 * 
+	 * @param session
+	 *            The session to issue the ticket for.
+	 * 
+	 * @param sessionKey
+	 *            The session key of the session, or <TT>null</TT> if the
+	 *            session is not encrypted.
+	 * 
+	 * @return Returns the ticket as BASE64 string.
+	 * 
+	 * @throws Exception
+	 *             If the ticket couldn't be created.
+	 */
+	public String issueTicket(SessionContainer session, byte[] sessionKey) throws Exception
+	{
+		// Compose ticket
+		String ticket = TICKET_VERSION + "\t";
+		ticket += SessionSnapshotWriter.encodeField(session.getClientSessionIdentifier()) + "\t";
+		ticket += SessionSnapshotWriter.encodeField(session.getKeyApplicationPublicKey()) + "\t";
+		ticket += SessionSnapshotWriter.encodeField(session.getUserRightGroup() != null ? session.getUserRightGroup().getRecourceIdentifier() : null) + "\t";
+		ticket += SessionSnapshotWriter.encodeField(session.getUserLicenseKey()) + "\t";
+		ticket += SessionSnapshotWriter.encodeField(sessionKey != null ? Base64.encodeBase64String(sessionKey) : null) + "\t";
+		ticket += String.valueOf(session.getCreationDate().getTime()) + "\t";
+		ticket += String.valueOf(System.currentTimeMillis());
+
+		// Encrypt ticket
+		String ticketEncrypted = this.ticketCipher.encrypt(ticket);
+		this.issuedCount.incrementAndGet();
+
+		// Return
+		return ticketEncrypted;
+	}
+
+	/**
+	 * Open a resumption ticket, and restore the client session it was issued
+	 * for.
+	 * 
+	 * @param ticketEncrypted
+	 *            The ticket sent by the client.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the client session the ticket is sent for.
+	 * 
+	 * @param sessionKeyAccepted
+	 *            Set to <TT>true</TT> if the ticket was sent with a command
+	 *            that is encrypted with a session key. The caller has to check
+	 *            that the command can be decrypted with the session key of the
+	 *            ticket, before the session is used. Set to <TT>false</TT> for
+	 *            plain commands, then tickets containing a session key are
+	 *            rejected.
+	 * 
+	 * @return Returns the session restored, or <TT>null</TT> if the ticket is
+	 *         invalid, expired, was issued for another session, or contains a
+	 *         session key that is not accepted.
+	 */
+	public SessionContainer openTicket(String ticketEncrypted, String clientSessionIdentifier, boolean sessionKeyAccepted)
+	{
+		try
+		{
+			// Decrypt ticket, tickets that were changed or encrypted with
+			// another secret are rejected here
+			String[] fields = this.ticketCipher.decrypt(ticketEncrypted).split("\t", -1);
+			if (fields.length != NUMBER_OF_FIELDS || fields[0].equals(TICKET_VERSION) == false) return this.reject();
+
+			// Check session identifier and lifetime
+			String ticketSessionIdentifier = SessionSnapshotWriter.decodeField(fields[1]);
+			if (ticketSessionIdentifier == null || ticketSessionIdentifier.equals(clientSessionIdentifier) == false) return this.reject();
+
+			long issueTime = Long.parseLong(fields[7]);
+			if (System.currentTimeMillis() - issueTime >= this.lifetimeInMilliseconds) return this.reject();
+
+			// Create session
+			SessionContainer session = new SessionContainer(ticketSessionIdentifier, SessionSnapshotWriter.decodeField(fields[2]), Long.parseLong(fields[6]), System.currentTimeMillis());
+
+			String rightGroupIdentifier = SessionSnapshotWriter.decodeField(fields[3]);
+
+			if (rightGroupIdentifier != null)
+			{
+				ResourceContainer rightGroup = this.context.getResourceManager().getResourceContainer(this.context, rightGroupIdentifier);
+				if (rightGroup == null) return this.reject();
+				session.setUserRightGroup(rightGroup);
+			}
+
+			session.setUserLicenseKey(SessionSnapshotWriter.decodeField(fields[4]));
+
+			String sessionKey = SessionSnapshotWriter.decodeField(fields[5]);
+			if (sessionKey != null && sessionKeyAccepted == false) return this.reject();
+			if (sessionKey != null) session.setSessionCipher(new SessionCipher(Base64.decodeBase64(sessionKey)));
+
+			// Return
+			this.resumedCount.incrementAndGet();
+			return session;
+		}
+		catch (Exception e)
+		{
+			return this.reject();
+		}
+	}
+
+	/**
+	 * Count a rejected ticket.
+	 */
+	private SessionContainer reject()
+	{
+		this.rejectedCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getIssuedCount()
+	{
+		return this.issuedCount.get();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getResumedCount()
+	{
+		return this.resumedCount.get();
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getRejectedCount()
+	{
+		return this.rejectedCount.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		String outputString = "Tickets issued: " + String.valueOf(this.getIssuedCount());
+		outputString += ", Sessions resumed: " + String.valueOf(this.getResumedCount());
+		outputString += ", Tickets rejected: " + String.valueOf(this.getRejectedCount());
+		outputString += ", Lifetime: " + String.valueOf(this.lifetimeInMilliseconds / 60000L) + " minutes";
+		return outputString;
+	}
+}
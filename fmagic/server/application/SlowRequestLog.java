@@ -0,0 +1,124 @@
+package fmagic.server.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fmagic.basic.context.Context;
+import fmagic.basic.file.FileLocationFunctions;
+import fmagic.basic.resource.ResourceManager;
+
+/**
+ * This class writes the trace of requests that took longer than a threshold
+ * to the slow request log of the application server.
+ * <p>
+ * The trace of a request lists the latency and the bytes allocated per
+ * workstep (see <TT>CommandMetrics.Measurement</TT>), and is appended to a
+ * file per day in the logging directory (see
+ * <TT>FileLocationFunctions.getLogSlowRequestSubPath()</TT>). The trace
+ * identifier is part of the log messages of the request as well.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 21.08.2013 - Created
+ */
+public class SlowRequestLog
+{
+	final private Context context;
+	final private long thresholdInNanoseconds;
+
+	// Lock for writing records, a monitor would pin virtual threads to their
+	// carrier thread while writing the file
+	final private ReentrantLock writeLock = new ReentrantLock();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param thresholdInMilliseconds
+	 *            Requests taking at least this time are logged.
+	 */
+	public SlowRequestLog(Context context, int thresholdInMilliseconds)
+	{
+		this.context = context;
+		this.thresholdInNanoseconds = Math.max(1, thresholdInMilliseconds) * 1000L * 1000L;
+	}
+
+	/**
+	 * Log the trace of a request, if the request took longer than the
+	 * threshold.
+	 * 
+	 * @param measurement
+	 *            The measurement of the request.
+	 * 
+	 * @return Returns <TT>true</TT> if the request was logged, otherwise
+	 *         <TT>false</TT>.
+	 */
+	public boolean logIfSlow(CommandMetrics.Measurement measurement)
+	{
+		if (measurement == null) return false;
+		if (measurement.getTotalLatency() < this.thresholdInNanoseconds) return false;
+
+		// Compose record
+		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+
+		String recordText = "";
+		recordText += "\n[\n+++ Slow request [" + this.context.getCodeName() + "] at " + simpleDateFormat.format(new Date()) + "\n";
+		recordText += measurement.printTrace();
+		recordText += "]\n";
+
+		// Write record
+		return this.writeRecord(recordText);
+	}
+
+	/**
+	 * Append a record to the slow request log. Worker threads write one after
+	 * another, so the records are not interleaved.
+	 */
+	private boolean writeRecord(String recordText)
+	{
+		String pathName = null;
+		String fileName = null;
+		PrintWriter output = null;
+
+		this.writeLock.lock();
+
+		try
+		{
+			// Get file path
+			pathName = FileLocationFunctions.compileFilePath(FileLocationFunctions.getRootPath(), FileLocationFunctions.getLogSlowRequestSubPath(), FileLocationFunctions.getLogSlowRequestSubSubPath());
+			pathName = FileLocationFunctions.replacePlacholder(this.context, pathName);
+			fileName = FileLocationFunctions.replacePlacholder(this.context, FileLocationFunctions.getLogSlowRequestFileName());
+
+			// Append record
+			File directory = new File(pathName);
+			directory.mkdirs();
+
+			output = new PrintWriter(new FileOutputStream(new File(pathName, fileName), true));
+			output.append(recordText);
+			output.flush();
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on writing slow request log";
+			errorText += "\n--> Directory: '" + pathName + "'";
+			errorText += "\n--> File name: '" + fileName + "'";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Application", "ErrorOnWritingMetrics"), errorText, e);
+			return false;
+		}
+		finally
+		{
+			if (output != null) output.close();
+			this.writeLock.unlock();
+		}
+
+		// Return
+		return true;
+	}
+}
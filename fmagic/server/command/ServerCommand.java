@@ -1,5 +1,7 @@
 package fmagic.server.command;
 
+import java.io.InputStream;
+
 import fmagic.basic.command.Command;
 import fmagic.basic.command.RequestContainer;
 import fmagic.basic.command.ResponseContainer;
@@ -14,6 +16,19 @@ import fmagic.basic.context.Context;
  */
 public abstract class ServerCommand extends Command
 {
+	// Raw content following the request, or null if there is no one
+	protected InputStream contentInputStream = null;
+
+	// Raw content to send following the response, or null if there is no one
+	protected InputStream responseContentInputStream = null;
+
+	// Maximum number of bytes of the raw content to send, or -1 for all
+	protected long responseContentLength = -1;
+
+	// Media category of the media content sent with the response, or null if
+	// the response carries no media content (see CompressionPolicy)
+	protected String responseMediaCategory = null;
+
 	/**
 	 * Constructor 1
 	 */
@@ -41,23 +56,35 @@ public abstract class ServerCommand extends Command
 
 	/**
 	 * Execute the command.
+	 * <p>
+	 * The deadline of the client request is checked before each step, so the
+	 * work is abandoned as soon as the client doesn't wait for the response
+	 * anymore.
 	 */
 	public ResponseContainer execute()
 	{
 		try
 		{
+			if (this.checkDeadline() == false) return this.responseContainer;
+
 			if (this.validateRequestContainer() == false)
 			{
+				if (this.checkDeadline() == false) return this.responseContainer;
 				this.notifyError("Application", "ErrorOnValidatingClientCommandOnServer", null, null);
 				return this.responseContainer;
 			}
 
+			if (this.checkDeadline() == false) return this.responseContainer;
+
 			if (this.processOnServer() == false)
 			{
+				if (this.checkDeadline() == false) return this.responseContainer;
 				this.notifyError("Application", "ErrorOnProcessingRequestFromClient", null, null);
 				return this.responseContainer;
 			}
 
+			if (this.checkDeadline() == false) return this.responseContainer;
+
 			if (this.arrangeResults() == false)
 			{
 				this.notifyError("Application", "ErrorOnEvaluatingServerResults", null, null);
@@ -76,6 +103,24 @@ public abstract class ServerCommand extends Command
 		return this.responseContainer;
 	}
 
+	/**
+	 * Check if the deadline of the client request is exceeded, and set the
+	 * error code <TT>Application/DeadlineExceeded</TT> if so.
+	 * 
+	 * @return Returns <TT>true</TT> if the command may go on, or
+	 *         <TT>false</TT> if the deadline is exceeded.
+	 */
+	protected boolean checkDeadline()
+	{
+		if (this.context == null || this.context.isDeadlineExceeded() == false) return true;
+
+		String errorText = "--> The client doesn't wait for the response anymore, processing abandoned";
+		errorText += "\n--> Command identifier: '" + this.commandIdentifier + "'";
+		errorText += "\n--> Deadline exceeded by: '" + String.valueOf(System.currentTimeMillis() - this.context.getDeadline()) + "' milliseconds";
+		this.notifyError("Application", "DeadlineExceeded", errorText, null);
+		return false;
+	}
+
 	/**
 	 * Prepare all parameters and resources of the command.
 	 * 
@@ -118,6 +163,46 @@ public abstract class ServerCommand extends Command
 		return responseContainer;
 	}
 
+	/**
+	 * Getter
+	 */
+	public InputStream getContentInputStream()
+	{
+		return contentInputStream;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setContentInputStream(InputStream contentInputStream)
+	{
+		this.contentInputStream = contentInputStream;
+	}
+
+	/**
+	 * Getter
+	 */
+	public InputStream getResponseContentInputStream()
+	{
+		return responseContentInputStream;
+	}
+
+	/**
+	 * Getter
+	 */
+	public long getResponseContentLength()
+	{
+		return responseContentLength;
+	}
+
+	/**
+	 * Getter
+	 */
+	public String getResponseMediaCategory()
+	{
+		return responseMediaCategory;
+	}
+
 	/**
 	 * Getter
 	 */
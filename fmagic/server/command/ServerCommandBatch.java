@@ -0,0 +1,445 @@
+package fmagic.server.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.RequestContainer;
+import fmagic.basic.command.ResponseContainer;
+import fmagic.basic.context.Context;
+import fmagic.basic.notification.NotificationManager;
+import fmagic.basic.resource.ResourceManager;
+import fmagic.server.application.AdmissionController;
+import fmagic.server.application.ServerCommandRegistry;
+import fmagic.server.application.ServerManager;
+
+/**
+ * COMMAND: Execute a list of commands in one single round trip.
+ * <p>
+ * The request carries an ordered list of request containers of other commands.
+ * Each of them is executed by its own server command object, passing all steps
+ * of <TT>ServerCommand.execute()</TT> as if it was sent on its own, and gets
+ * its own response container with its own error code. An error on a single
+ * command doesn't affect the other commands of the batch.
+ * <p>
+ * If the client allows it, the commands are executed in parallel: The thread
+ * processing the request and some threads of the thread pool take the next
+ * command of the list, one after another, until all commands are executed. If
+ * the thread pool is busy, the thread processing the request executes all
+ * commands on its own.
+ * <p>
+ * Each command of the batch passes the admission control of the server on its
+ * own, so the limits per command can't be bypassed by wrapping requests in a
+ * batch. A command exceeding a limit gets the error code
+ * <TT>Application/ServerOverloaded</TT>. Commands executed by the thread
+ * processing the request are checked against the limits per command only,
+ * because the batch request already holds a slot of the limit of all
+ * commands. Commands executed by helper threads are checked against all
+ * limits.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 16.08.2013 - Created
+ */
+public class ServerCommandBatch extends ServerCommand
+{
+	private List<RequestContainer> requests = null;
+	private boolean parallel = false;
+
+	private List<ResponseContainer> responses = null;
+
+	/**
+	 * Constructor 1
+	 */
+	public ServerCommandBatch()
+	{
+		super();
+	}
+
+	/**
+	 * Constructor 2
+	 */
+	public ServerCommandBatch(Context context, String commandIdentifier)
+	{
+		super(context, commandIdentifier);
+	}
+
+	@Override
+	public void setCommandIdentifier(Context context)
+	{
+		this.commandIdentifier = ResourceManager.command(context, "Batch").getRecourceIdentifier();
+	}
+
+	@Override
+	protected boolean validateRequestContainer()
+	{
+		try
+		{
+			String errorText = "--> Error on validating command parameter";
+			boolean isError = false;
+
+			// Get parameter: Requests
+			String requestsString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Requests").getAliasName(), null);
+
+			if (requestsString == null || requestsString.length() == 0)
+			{
+				errorText += "\n--> Missing value 'Requests'";
+				isError = true;
+			}
+			else
+			{
+				this.requests = EncodingHandler.convertJsonToRequestContainerList(requestsString);
+
+				if (this.requests == null)
+				{
+					errorText += "\n--> Invalid value 'Requests'";
+					isError = true;
+				}
+			}
+
+			// Check maximum number of commands
+			Integer maximumNumberOfCommands = this.getContext().getConfigurationManager().getPropertyAsIntegerValue(this.getContext(), ResourceManager.configuration(this.getContext(), "CommandBatch", "MaximumNumberOfCommands"), false);
+			if (maximumNumberOfCommands == null) maximumNumberOfCommands = 1000;
+
+			if (this.requests != null && this.requests.size() > maximumNumberOfCommands)
+			{
+				errorText += "\n--> Too many commands within the batch";
+				errorText += "\n--> Number of commands: '" + String.valueOf(this.requests.size()) + "'";
+				errorText += "\n--> Maximum number of commands: '" + String.valueOf(maximumNumberOfCommands) + "'";
+				isError = true;
+			}
+
+			// Get parameter: Parallel
+			String parallelString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Parallel").getAliasName(), "false");
+			this.parallel = parallelString != null && parallelString.equalsIgnoreCase("true");
+
+			// Fire error message
+			if (isError == true)
+			{
+				this.notifyError("Command", "IntegrityError", errorText, null);
+				return false;
+			}
+
+			// Return
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean processOnServer()
+	{
+		try
+		{
+			// Get number of threads to use
+			Integer maximumParallelCommands = this.getContext().getConfigurationManager().getPropertyAsIntegerValue(this.getContext(), ResourceManager.configuration(this.getContext(), "CommandBatch", "MaximumParallelCommands"), false);
+			if (maximumParallelCommands == null) maximumParallelCommands = 4;
+
+			int numberOfThreads = 1;
+			if (this.parallel == true) numberOfThreads = Math.max(1, Math.min(maximumParallelCommands, this.requests.size()));
+
+			// Execute commands
+			ResponseContainer[] responseArray = new ResponseContainer[this.requests.size()];
+
+			if (numberOfThreads <= 1)
+			{
+				for (int i = 0; i < this.requests.size(); i++)
+				{
+					responseArray[i] = this.executeAdmittedCommand(this.context, this.requests.get(i), true);
+				}
+			}
+			else
+			{
+				this.executeCommandsInParallel(responseArray, numberOfThreads);
+			}
+
+			this.responses = new ArrayList<ResponseContainer>(Arrays.asList(responseArray));
+
+			// Return
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean arrangeResults()
+	{
+		try
+		{
+			// Set parameter: Responses
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Batch", "Responses").getAliasName(), EncodingHandler.convertResponseContainerListToJson(this.responses));
+
+			// Return
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Execute all commands of the batch in parallel.
+	 * <p>
+	 * Helper threads are requested from the thread pool of the server. Each
+	 * thread, including the current one, takes the next command not executed
+	 * yet, until all commands are executed. The current thread never waits for
+	 * a helper thread that hasn't started, so the batch is completed even if
+	 * the thread pool is exhausted.
+	 * 
+	 * @param responseArray
+	 *            Array to fill with the response containers, in the order of
+	 *            the requests.
+	 * 
+	 * @param numberOfThreads
+	 *            Number of threads to use, including the current thread.
+	 * 
+	 * @throws InterruptedException
+	 *             If the current thread was interrupted while waiting.
+	 */
+	private void executeCommandsInParallel(ResponseContainer[] responseArray, int numberOfThreads) throws InterruptedException
+	{
+		AtomicInteger nextIndex = new AtomicInteger(0);
+		CountDownLatch commandsCompleted = new CountDownLatch(responseArray.length);
+
+		// Start helper threads, each working with its own context
+		ServerManager serverManager = this.context.getServerManager();
+
+		for (int i = 1; i < numberOfThreads && serverManager != null; i++)
+		{
+			Context helperContext = this.context.createSilentDumpContext(ResourceManager.context(this.context, "Processing", "ProcessingClientCommand"));
+			helperContext.setServerSession(this.context.getServerSession());
+			if (serverManager.threadPoolExecute(new BatchWorker(helperContext, false, responseArray, nextIndex, commandsCompleted)) == false) break;
+		}
+
+		// Take part in executing
+		new BatchWorker(this.context, true, responseArray, nextIndex, commandsCompleted).run();
+
+		// Wait for commands still executed by helper threads
+		commandsCompleted.await();
+	}
+
+	/**
+	 * Execute a single command of the batch, if it is admitted by the admission
+	 * control of the server.
+	 * 
+	 * @param context
+	 *            The context to execute the command with.
+	 * 
+	 * @param request
+	 *            The request container of the command.
+	 * 
+	 * @param requestThread
+	 *            Set to <TT>true</TT> if the command is executed by the thread
+	 *            processing the batch request, that already holds a slot of the
+	 *            limit of all commands.
+	 * 
+	 * @return Returns the response container of the command, holding the
+	 *         error code if an error occurred or the command was rejected.
+	 */
+	private ResponseContainer executeAdmittedCommand(Context context, RequestContainer request, boolean requestThread)
+	{
+		// Admission control is not active, or the request is invalid
+		ServerManager serverManager = context.getServerManager();
+		AdmissionController admissionController = serverManager != null ? serverManager.getAdmissionController() : null;
+		if (admissionController == null || request == null) return this.executeCommand(context, request);
+
+		String commandIdentifier = request.getCommandIdentifier();
+
+		// Reject the command if too many commands are executed
+		boolean admitted = requestThread == true ? admissionController.tryAcquireCommandLimit(commandIdentifier) : admissionController.tryAcquire(commandIdentifier);
+		if (admitted == false) return this.rejectOverloadedCommand(context, request);
+
+		// Execute command
+		long startTime = System.nanoTime();
+
+		try
+		{
+			return this.executeCommand(context, request);
+		}
+		finally
+		{
+			if (requestThread == true)
+			{
+				admissionController.releaseCommandLimit(commandIdentifier);
+			}
+			else
+			{
+				admissionController.release(commandIdentifier, startTime);
+			}
+		}
+	}
+
+	/**
+	 * Answer a single command of the batch with the error code
+	 * <TT>Application/ServerOverloaded</TT>, because it was rejected by the
+	 * admission control.
+	 * 
+	 * @param context
+	 *            The context the command was to be executed with.
+	 * 
+	 * @param request
+	 *            The request container of the command.
+	 * 
+	 * @return Returns the response container of the command.
+	 */
+	private ResponseContainer rejectOverloadedCommand(Context context, RequestContainer request)
+	{
+		ResponseContainer response = new ResponseContainer(this.responseContainer.getServerApplicationIdentifier(), this.responseContainer.getServerVersion(), request.getCommandIdentifier());
+		request.setClientSessionIdentifier(this.requestContainer.getClientSessionIdentifier());
+
+		// Set error code to the response container, but don't fire an error
+		// notification, because it is an overload situation only
+		response.setErrorCode(ResourceManager.notification(context, "Application", "ServerOverloaded").getRecourceIdentifier());
+
+		// Logging
+		String logText = "Command within a batch rejected by admission control";
+		logText += "\n--> Command identifier: '" + request.getCommandIdentifier() + "'";
+		logText += "\n--> " + context.getServerManager().getAdmissionController().toString();
+		context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, logText);
+
+		// Transfer some client request data to the server response data
+		this.transferContainerData(context, request, response);
+
+		// Return
+		return response;
+	}
+
+	/**
+	 * Execute a single command of the batch.
+	 * 
+	 * @param context
+	 *            The context to execute the command with.
+	 * 
+	 * @param request
+	 *            The request container of the command.
+	 * 
+	 * @return Returns the response container of the command, holding the
+	 *         error code if an error occurred.
+	 */
+	private ResponseContainer executeCommand(Context context, RequestContainer request)
+	{
+		// Create a response container for errors occurred before the server
+		// command is created
+		ResponseContainer response = new ResponseContainer(this.responseContainer.getServerApplicationIdentifier(), this.responseContainer.getServerVersion(), request != null ? request.getCommandIdentifier() : null);
+
+		if (request == null)
+		{
+			response.notifyError(context, "Command", "IntegrityError", "--> Missing request container within batch", null);
+			return response;
+		}
+
+		// The command is executed within the session of the batch
+		request.setClientSessionIdentifier(this.requestContainer.getClientSessionIdentifier());
+
+		String commandClassName = null;
+
+		try
+		{
+			// Check if the command may be part of a batch
+			String commandIdentifier = request.getCommandIdentifier();
+
+			if (commandIdentifier == null || commandIdentifier.equals(ResourceManager.command(context, "Batch").getRecourceIdentifier()) || commandIdentifier.equals(ResourceManager.command(context, "Handshake").getRecourceIdentifier()) || commandIdentifier.equals(ResourceManager.command(context, "CreateSession").getRecourceIdentifier()) || request.isContentFollows() == true || request.isContentAccepted() == true)
+			{
+				String errorText = "--> Command can't be executed within a batch";
+				errorText += "\n--> Command identifier: '" + commandIdentifier + "'";
+				response.notifyError(context, "Command", "IntegrityError", errorText, null);
+				this.transferContainerData(context, request, response);
+				return response;
+			}
+
+			// Create server command, using the command registry of the server
+			String aliasName = context.getResourceManager().getResourceContainer(context, commandIdentifier).getAliasName();
+			commandClassName = ServerCommandRegistry.getCommandClassName(aliasName);
+			ServerCommand serverCommand = context.getServerManager().getCommandRegistry().createServerCommand(aliasName);
+
+			// Initialize server command
+			serverCommand.setContext(context);
+			serverCommand.setCommandIdentifier(context);
+			serverCommand.createResponseContainer(this.responseContainer.getServerApplicationIdentifier(), this.responseContainer.getServerVersion(), serverCommand.getCommandIdentifier());
+			serverCommand.setRequestContainer(request);
+
+			// Execute server command
+			response = serverCommand.execute();
+		}
+		catch (Exception exception)
+		{
+			String errorText = "--> Error on executing command within a batch";
+			errorText += "\n--> Command class name: '" + commandClassName + "'";
+			response.notifyError(context, "Application", "ErrorOnInvokingCommand", errorText, exception);
+		}
+
+		// Transfer some client request data to the server response data
+		this.transferContainerData(context, request, response);
+
+		// Return
+		return response;
+	}
+
+	/**
+	 * Transfer some client request data to the server response data of a
+	 * single command.
+	 */
+	private void transferContainerData(Context context, RequestContainer request, ResponseContainer response)
+	{
+		response.setSession(request.getClientSessionIdentifier());
+		response.setClientCodeName(request.getClientCodeName());
+		response.setServerCodeName(context.getCodeName());
+		response.setCorrelationIdentifier(request.getCorrelationIdentifier());
+	}
+
+	/**
+	 * Worker that executes the next command of the batch not executed yet,
+	 * until all commands are executed.
+	 */
+	private class BatchWorker implements Runnable
+	{
+		private final Context workerContext;
+		private final boolean requestThread;
+		private final ResponseContainer[] responseArray;
+		private final AtomicInteger nextIndex;
+		private final CountDownLatch commandsCompleted;
+
+		/**
+		 * Constructor
+		 */
+		BatchWorker(Context workerContext, boolean requestThread, ResponseContainer[] responseArray, AtomicInteger nextIndex, CountDownLatch commandsCompleted)
+		{
+			this.workerContext = workerContext;
+			this.requestThread = requestThread;
+			this.responseArray = responseArray;
+			this.nextIndex = nextIndex;
+			this.commandsCompleted = commandsCompleted;
+		}
+
+		@Override
+		public void run()
+		{
+			int index;
+
+			while ((index = this.nextIndex.getAndIncrement()) < this.responseArray.length)
+			{
+				try
+				{
+					this.responseArray[index] = ServerCommandBatch.this.executeAdmittedCommand(this.workerContext, ServerCommandBatch.this.requests.get(index), this.requestThread);
+				}
+				finally
+				{
+					this.commandsCompleted.countDown();
+				}
+			}
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package fmagic.server.command;
 
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.SessionCipher;
+import fmagic.basic.command.SessionContainer;
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceManager;
 
@@ -10,17 +13,34 @@ import fmagic.basic.resource.ResourceManager;
  * The basic functionality of this class is the same as in the COMMAND
  * <TT>ServerCommandHandshake</TT>. Thats why it inherits this COMMAND class,
  * but extends it with the function of creating a new session.
+ * <p>
+ * If the client asks for session encryption, and it is enabled on server side
+ * (see configuration property <TT>Application/EnableSessionEncryption</TT>),
+ * the server creates a random session key and sends it back encrypted with the
+ * public key of the client. All further commands of the session are encrypted
+ * with this key (see <TT>SessionCipher</TT>).
+ * <p>
+ * If resumption tickets are enabled (see configuration property
+ * <TT>Session/ResumptionTicketSecret</TT>), the server sends a ticket the
+ * client can resume the session with later on, without creating a new session
+ * (see <TT>SessionTicketHandler</TT>).
  * 
  * @author frank.wuensche (FW)
  * 
  * @changed FW 23.12.2012 - Created
+ * @changed FW 14.08.2013 - Exchange session key
+ * @changed FW 25.08.2013 - Issue resumption ticket
  */
 public class ServerCommandCreateSession extends ServerCommand
 {
 	private String keyApplicationPublicKey = null;
+	private boolean clientSessionEncryption = false;
 
 	private String keyRemotePublicKey = null;
 	private Boolean isSuccessful = null;
+	private String sessionKeyEncrypted = "";
+	private byte[] sessionKey = null;
+	private String resumptionTicket = "";
 
 	/**
 	 * Constructor 1
@@ -60,6 +80,10 @@ public class ServerCommandCreateSession extends ServerCommand
 				return false;
 			}
 
+			// Get parameter: ClientSessionEncryption
+			String clientSessionEncryptionString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "ClientSessionEncryption").getAliasName(), null);
+			this.clientSessionEncryption = clientSessionEncryptionString != null && clientSessionEncryptionString.equalsIgnoreCase("true");
+
 			// Return
 			return true;
 		}
@@ -88,6 +112,14 @@ public class ServerCommandCreateSession extends ServerCommand
 			else
 			{
 				this.isSuccessful = true;
+
+				// Exchange session key
+				this.createSessionKey(clientSessionIdentifier);
+
+				// Issue resumption ticket, empty if resumption tickets are
+				// disabled
+				String ticket = this.getContext().getServerManager().sessionIssueResumptionTicket(clientSessionIdentifier, this.sessionKey);
+				if (ticket != null) this.resumptionTicket = ticket;
 			}
 
 			// Get public key of the server
@@ -114,6 +146,12 @@ public class ServerCommandCreateSession extends ServerCommand
 			// Set parameter: ServerPublicKey
 			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "ServerPublicKey").getAliasName(), this.keyRemotePublicKey);
 
+			// Set parameter: SessionKey
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "SessionKey").getAliasName(), this.sessionKeyEncrypted);
+
+			// Set parameter: ResumptionTicket
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "CreateSession", "ResumptionTicket").getAliasName(), this.resumptionTicket);
+
 			// Return
 			return true;
 		}
@@ -123,4 +161,48 @@ public class ServerCommandCreateSession extends ServerCommand
 			return false;
 		}
 	}
+
+	/**
+	 * Create a session key for the new session, if the client asked for
+	 * session encryption and it is enabled on server side.
+	 * <p>
+	 * If the session key can't be created, the session is kept unencrypted.
+	 * 
+	 * @param clientSessionIdentifier
+	 *            The identifier of the new client session.
+	 */
+	private void createSessionKey(String clientSessionIdentifier)
+	{
+		this.sessionKeyEncrypted = "";
+
+		try
+		{
+			// Check if session encryption is enabled
+			if (this.clientSessionEncryption == false) return;
+
+			Boolean enableSessionEncryption = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "Application", "EnableSessionEncryption"), false);
+			if (enableSessionEncryption == null || enableSessionEncryption == false) return;
+
+			// Get session
+			SessionContainer session = this.getContext().getServerManager().sessionGetClientSession(clientSessionIdentifier);
+			if (session == null) return;
+
+			// Create session key and encrypt it for the client
+			byte[] sessionKey = SessionCipher.createSessionKey();
+			SessionCipher sessionCipher = new SessionCipher(sessionKey);
+			String sessionKeyEncrypted = EncodingHandler.encryptSessionKey(sessionKey, this.keyApplicationPublicKey);
+
+			// Set session key
+			session.setSessionCipher(sessionCipher);
+			this.sessionKeyEncrypted = sessionKeyEncrypted;
+			this.sessionKey = sessionKey;
+		}
+		catch (Exception e)
+		{
+			String errorText = "--> Error on creating the session key";
+			errorText += "\n--> The session is kept unencrypted";
+			this.context.getNotificationManager().notifyError(this.context, ResourceManager.notification(this.context, "Command", "ErrorOnProcessingCommand"), errorText, e);
+			this.sessionKeyEncrypted = "";
+		}
+	}
 }
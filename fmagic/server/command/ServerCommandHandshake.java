@@ -1,5 +1,7 @@
 package fmagic.server.command;
 
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.SocketHandler;
 import fmagic.basic.context.Context;
 import fmagic.basic.resource.ResourceManager;
 
@@ -13,6 +15,15 @@ import fmagic.basic.resource.ResourceManager;
  * known on the server. Please use the COMMAND
  * <TT>ClientCommandCreateSession</TT> first to create a client session on the
  * server.
+ * <p>
+ * If binary framing is enabled on both sides (see configuration property
+ * <TT>Application/EnableBinaryFraming</TT>), the server answers the framing
+ * version <TT>ClientFramingVersion</TT> offered by the client with the framing
+ * version <TT>ServerFramingVersion</TT> to use.
+ * <p>
+ * With binary framing, the server chooses the first of the compression codecs
+ * <TT>ClientCompressionCodecs</TT> offered by the client that is enabled on
+ * server side, and answers it as <TT>ServerCompressionCodec</TT>.
  * 
  * @author frank.wuensche (FW)
  * 
@@ -22,6 +33,8 @@ public class ServerCommandHandshake extends ServerCommand
 {
 	private String keyRemotePublicKey = null;
 	private Boolean isSuccessful = null;
+	private Integer framingVersion = null;
+	private String compressionCodec = null;
 
 	/**
 	 * Constructor 1
@@ -77,6 +90,24 @@ public class ServerCommandHandshake extends ServerCommand
 			// Get public key of the server
 			this.keyRemotePublicKey = this.context.getConfigurationManager().getProperty(this.context, ResourceManager.configuration(this.context, "Application", "PublicKey"), true);
 
+			// Negotiate binary framing, if offered by the client
+			String clientFramingVersion = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ClientFramingVersion").getAliasName(), null);
+			Boolean enableBinaryFraming = this.context.getConfigurationManager().getPropertyAsBooleanValue(this.context, ResourceManager.configuration(this.context, "Application", "EnableBinaryFraming"), false);
+
+			if (clientFramingVersion != null && enableBinaryFraming != null && enableBinaryFraming == true)
+			{
+				this.framingVersion = Math.max(0, Math.min(Integer.parseInt(clientFramingVersion.trim()), SocketHandler.FRAME_VERSION));
+			}
+
+			// Negotiate compression codec, only used with binary framing
+			String clientCompressionCodecs = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ClientCompressionCodecs").getAliasName(), null);
+			this.compressionCodec = "";
+
+			if (this.framingVersion != null && this.framingVersion > 0)
+			{
+				this.compressionCodec = EncodingHandler.negotiateCompressionCodec(this.context, clientCompressionCodecs);
+			}
+
 			// Set command to status successful
 			this.isSuccessful = true;
 
@@ -101,6 +132,16 @@ public class ServerCommandHandshake extends ServerCommand
 			// Set parameter: ServerPublicKey
 			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ServerPublicKey").getAliasName(), this.keyRemotePublicKey);
 
+			// Set parameter: ServerFramingVersion, '0' if binary framing is
+			// not used
+			String framingVersionString = "0";
+			if (this.framingVersion != null) framingVersionString = this.framingVersion.toString();
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ServerFramingVersion").getAliasName(), framingVersionString);
+
+			// Set parameter: ServerCompressionCodec, empty if frames are not
+			// compressed
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Handshake", "ServerCompressionCodec").getAliasName(), this.compressionCodec);
+
 			// Return
 			return true;
 		}
@@ -1,5 +1,8 @@
 package fmagic.server.command;
 
+import java.io.InputStream;
+
+import fmagic.basic.command.CompressionPolicy;
 import fmagic.basic.context.Context;
 import fmagic.basic.file.FileUtilFunctions;
 import fmagic.basic.media.MediaContainer;
@@ -18,6 +21,8 @@ public class ServerCommandMediaFileRead extends ServerCommand
 {
 	private ResourceContainerMedia mediaResourceContainer;
 	private String dataIdentifier;
+	private long offset = 0;
+	private long length = -1;
 
 	private String fileType = null;
 	private Boolean isExisting = null;
@@ -88,6 +93,27 @@ public class ServerCommandMediaFileRead extends ServerCommand
 				isError = true;
 			}
 
+			// Get: Offset and Length, missing if sent by an older client
+			String offsetString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "Offset").getAliasName(), null);
+			String lengthString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileRead", "Length").getAliasName(), null);
+
+			try
+			{
+				if (offsetString != null && offsetString.length() > 0) this.offset = Long.parseLong(offsetString);
+				if (lengthString != null && lengthString.length() > 0) this.length = Long.parseLong(lengthString);
+			}
+			catch (NumberFormatException e)
+			{
+				errorText += "\n--> Invalid value 'Offset' or 'Length': '" + offsetString + "', '" + lengthString + "'";
+				isError = true;
+			}
+
+			if (this.offset < 0)
+			{
+				errorText += "\n--> Invalid value 'Offset': '" + String.valueOf(this.offset) + "'";
+				isError = true;
+			}
+
 			// Fire error message
 			if (isError == true)
 			{
@@ -131,8 +157,23 @@ public class ServerCommandMediaFileRead extends ServerCommand
 				return true;
 			}
 
+			// Get media category, in order to compress only media content that
+			// shrinks
+			this.responseMediaCategory = CompressionPolicy.getMediaCategory(this.context, this.mediaResourceContainer, this.fileType);
+
+			// Stream content of media file following the response, if the
+			// client accepts it
+			if (this.requestContainer.isContentAccepted() == true)
+			{
+				this.responseContentInputStream = this.businessOpenMediaContentStream(this.context, this.mediaResourceContainer, this.dataIdentifier, this.offset);
+				this.responseContentLength = this.length;
+				this.isRead = this.responseContentInputStream != null;
+				if (this.isRead == true) this.mediaContent = "";
+				return true;
+			}
+
 			// Read content from media file
-			this.mediaContent = this.businessReadMediaContentFromMediaFile(this.context, this.mediaResourceContainer, this.dataIdentifier);
+			this.mediaContent = this.businessReadMediaContentFromMediaFile(this.context, this.mediaResourceContainer, this.dataIdentifier, this.offset, this.length);
 
 			if (this.mediaContent == null)
 			{
@@ -197,11 +238,18 @@ public class ServerCommandMediaFileRead extends ServerCommand
 	 * @param dataIdentifier
 	 *            The data identifier of the media.
 	 * 
+	 * @param offset
+	 *            The position of the first byte to read.
+	 * 
+	 * @param length
+	 *            The maximum number of bytes to read, or <TT>-1</TT> to read
+	 *            up to the end of the media file.
+	 * 
 	 * @return Returns the media content as string, or <TT>null</TT> if the
 	 *         media file doesn't exist or couldn't be read.
 	 * 
 	 */
-	private String businessReadMediaContentFromMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String dataIdentifier)
+	private String businessReadMediaContentFromMediaFile(Context context, ResourceContainerMedia mediaResourceContainer, String dataIdentifier, long offset, long length)
 	{
 		try
 		{
@@ -217,8 +265,17 @@ public class ServerCommandMediaFileRead extends ServerCommand
 				return null;
 			}
 
-			// Read file content
-			String mediaContent = mediaContainer.readMediaContentAsString();
+			// Read file content, or the range requested
+			String mediaContent = null;
+
+			if (offset == 0 && length < 0)
+			{
+				mediaContent = mediaContainer.readMediaContentAsString();
+			}
+			else
+			{
+				mediaContent = mediaContainer.readMediaContentAsString(offset, length);
+			}
 
 			if (mediaContent == null)
 			{
@@ -249,6 +306,56 @@ public class ServerCommandMediaFileRead extends ServerCommand
 		}
 	}
 
+	/**
+	 * Open the content of a media file as a stream, in order to send it
+	 * directly following the response.
+	 * 
+	 * @param context
+	 *            The context to use.
+	 * 
+	 * @param mediaResourceContainer
+	 *            The media resource container to consider.
+	 * 
+	 * @param dataIdentifier
+	 *            The data identifier of the media.
+	 * 
+	 * @param offset
+	 *            The position of the first byte to stream.
+	 * 
+	 * @return Returns the content stream, or <TT>null</TT> if the media file
+	 *         doesn't exist or couldn't be opened.
+	 * 
+	 */
+	private InputStream businessOpenMediaContentStream(Context context, ResourceContainerMedia mediaResourceContainer, String dataIdentifier, long offset)
+	{
+		try
+		{
+			// Get the current file name of the most recent media file
+			String currentFileName = mediaResourceContainer.mediaFileGetRealFileName(context, dataIdentifier);
+
+			if (currentFileName == null || currentFileName.length() == 0) { return null; }
+
+			// Open file content
+			InputStream mediaContentStream = context.getMediaManager().localOpenMediaContentStream(context, mediaResourceContainer, currentFileName, offset);
+
+			if (mediaContentStream == null)
+			{
+				String errorString = "--> COMMAND MEDIA FILE READ: Error on opening media content";
+				errorString += "\n--> Media resource identifier: '" + mediaResourceContainer.getRecourceIdentifier() + "'";
+				errorString += "\n--> Data identifier: '" + dataIdentifier + "'";
+				context.getNotificationManager().notifyError(context, ResourceManager.notification(context, "Command", "ErrorOnProcessingCommand"), errorString, null);
+				return null;
+			}
+
+			// Return
+			return mediaContentStream;
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
 	/**
 	 * Get the file type of a media file.
 	 * 
@@ -1,5 +1,10 @@
 package fmagic.server.command;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
 import fmagic.basic.context.Context;
 import fmagic.basic.file.FileUtilFunctions;
 import fmagic.basic.media.ResourceContainerMedia;
@@ -20,9 +25,12 @@ public class ServerCommandMediaFileUpload extends ServerCommand
 	protected String dataIdentifier;
 	protected String hashValue;
 	private String mediaContent = null;
+	private long offset = -1;
+	private long fileSize = -1;
 
 	private Boolean isExisting = null;
 	private Boolean isUploaded = null;
+	private Long uploadedLength = null;
 
 	/**
 	 * Constructor 1
@@ -106,10 +114,31 @@ public class ServerCommandMediaFileUpload extends ServerCommand
 				isError = true;
 			}
 
-			// Get: Media Content
+			// Get: Offset and FileSize, missing if sent by an older client
+			String offsetString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "Offset").getAliasName(), null);
+			String fileSizeString = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "FileSize").getAliasName(), null);
+
+			try
+			{
+				if (offsetString != null && offsetString.length() > 0) this.offset = Long.parseLong(offsetString);
+				if (fileSizeString != null && fileSizeString.length() > 0) this.fileSize = Long.parseLong(fileSizeString);
+			}
+			catch (NumberFormatException e)
+			{
+				errorText += "\n--> Invalid value 'Offset' or 'FileSize': '" + offsetString + "', '" + fileSizeString + "'";
+				isError = true;
+			}
+
+			if (this.offset >= 0 && this.fileSize < 0)
+			{
+				errorText += "\n--> Missing value 'FileSize' on resumable upload";
+				isError = true;
+			}
+
+			// Get: Media Content, may be empty on resumable uploads
 			this.mediaContent = this.requestContainer.getProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "MediaContent").getAliasName(), null);
 
-			if (this.mediaContent == null || this.mediaContent.length() == 0)
+			if (this.offset < 0 && this.contentInputStream == null && (this.mediaContent == null || this.mediaContent.length() == 0))
 			{
 				errorText += "\n--> Missing value 'MediaContent'";
 				isError = true;
@@ -139,9 +168,36 @@ public class ServerCommandMediaFileUpload extends ServerCommand
 		{
 			// Check if file already exists
 			this.isExisting = this.businessIsMediaFileExists(this.context, this.mediaResourceContainer, this.dataIdentifier, this.fileType, this.hashValue);
-			
-			// Get media content
-			this.isUploaded = this.getContext().getMediaManager().localWriteMediaContentToMediaFile(this.getContext(), this.mediaResourceContainer, this.dataIdentifier, this.fileType, this.mediaContent);
+
+			// Resumable upload: Write part into the upload session
+			if (this.offset >= 0)
+			{
+				// Media file exists already, the part isn't needed
+				if (this.isExisting == true)
+				{
+					this.uploadedLength = this.fileSize;
+					this.isUploaded = false;
+					return true;
+				}
+
+				InputStream partInputStream = this.contentInputStream;
+				if (partInputStream == null) partInputStream = new ByteArrayInputStream(Base64.decodeBase64(this.mediaContent == null ? "" : this.mediaContent));
+
+				this.uploadedLength = this.getContext().getMediaManager().localWriteMediaContentToUploadSession(this.getContext(), this.mediaResourceContainer, this.dataIdentifier, this.fileType, this.hashValue, this.offset, this.fileSize, partInputStream);
+				this.isUploaded = this.uploadedLength != null && this.uploadedLength >= this.fileSize;
+				return true;
+			}
+
+			// Get media content, streamed directly after the request or
+			// embedded in the request
+			if (this.contentInputStream != null)
+			{
+				this.isUploaded = this.getContext().getMediaManager().localWriteMediaContentStreamToMediaFile(this.getContext(), this.mediaResourceContainer, this.dataIdentifier, this.fileType, this.hashValue, this.contentInputStream);
+			}
+			else
+			{
+				this.isUploaded = this.getContext().getMediaManager().localWriteMediaContentToMediaFile(this.getContext(), this.mediaResourceContainer, this.dataIdentifier, this.fileType, this.mediaContent);
+			}
 		
 			// Return
 			return true;
@@ -167,6 +223,11 @@ public class ServerCommandMediaFileUpload extends ServerCommand
 			String isUploadedString = null;
 			if (this.isUploaded != null) isUploadedString = this.isUploaded.toString();
 			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFile", "IsUploaded").getAliasName(), isUploadedString);
+
+			// Set result value: UploadedLength
+			String uploadedLengthString = null;
+			if (this.uploadedLength != null) uploadedLengthString = this.uploadedLength.toString();
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "MediaFileUpload", "UploadedLength").getAliasName(), uploadedLengthString);
 			
 			// Return
 			return true;
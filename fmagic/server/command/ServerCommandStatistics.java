@@ -0,0 +1,137 @@
+package fmagic.server.command;
+
+import java.util.Map;
+
+import fmagic.basic.command.CompressionPolicy;
+import fmagic.basic.context.Context;
+import fmagic.basic.resource.ResourceManager;
+import fmagic.server.application.CommandMetrics;
+import fmagic.server.application.ServerManager;
+
+/**
+ * COMMAND: Get the statistics of a server, that are the command metrics (see
+ * <TT>CommandMetrics</TT>), the state of the admission control, the number
+ * of client sessions and the compression ratios observed.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 20.08.2013 - Created
+ */
+public class ServerCommandStatistics extends ServerCommand
+{
+	private String statistics = null;
+
+	/**
+	 * Constructor 1
+	 */
+	public ServerCommandStatistics()
+	{
+		super();
+	}
+
+	/**
+	 * Constructor 2
+	 */
+	public ServerCommandStatistics(Context context, String commandIdentifier)
+	{
+		super(context, commandIdentifier);
+	}
+
+	@Override
+	public void setCommandIdentifier(Context context)
+	{
+		this.commandIdentifier = ResourceManager.command(context, "Statistics").getRecourceIdentifier();
+	}
+
+	@Override
+	protected boolean validateRequestContainer()
+	{
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+
+		// Return
+		return true;
+	}
+
+	@Override
+	protected boolean processOnServer()
+	{
+		try
+		{
+			ServerManager serverManager = this.getContext().getServerManager();
+			String statisticsText = "";
+
+			// Command metrics
+			CommandMetrics commandMetrics = serverManager != null ? serverManager.getCommandMetrics() : null;
+
+			statisticsText += "Command metrics\n";
+			statisticsText += "----------\n";
+			statisticsText += commandMetrics != null ? commandMetrics.printMetrics() : "Recording of command metrics is disabled\n";
+
+			// Admission control
+			if (serverManager != null && serverManager.getAdmissionController() != null)
+			{
+				statisticsText += "\nAdmission control\n";
+				statisticsText += "----------\n";
+				statisticsText += serverManager.getAdmissionController().toString() + "\n";
+			}
+
+			// Sessions
+			if (serverManager != null)
+			{
+				statisticsText += "\nSessions\n";
+				statisticsText += "----------\n";
+				statisticsText += serverManager.getSessionStore().toString() + "\n";
+				if (serverManager.getSessionTicketHandler() != null) statisticsText += serverManager.getSessionTicketHandler().toString() + "\n";
+			}
+
+			// Compression ratios
+			Map<String, Double> compressionRatios = CompressionPolicy.getCompressionRatios();
+
+			if (compressionRatios.isEmpty() == false)
+			{
+				statisticsText += "\nCompression ratios\n";
+				statisticsText += "----------\n";
+
+				for (Map.Entry<String, Double> entry : compressionRatios.entrySet())
+				{
+					statisticsText += entry.getKey() + ": " + String.format("%.3f", entry.getValue()) + "\n";
+				}
+			}
+
+			this.statistics = statisticsText;
+
+			// Return
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean arrangeResults()
+	{
+		try
+		{
+			// Set parameter: Report
+			this.responseContainer.addProperty(ResourceManager.commandParameter(this.getContext(), "Statistics", "Report").getAliasName(), this.statistics);
+
+			// Return
+			return true;
+		}
+		catch (Exception e)
+		{
+			this.notifyError("Command", "ErrorOnProcessingCommand", null, e);
+			return false;
+		}
+	}
+}
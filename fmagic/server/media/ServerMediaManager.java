@@ -1,9 +1,12 @@
 package fmagic.server.media;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Future;
 
 import fmagic.basic.command.ConnectionContainer;
 import fmagic.basic.context.Context;
@@ -12,6 +15,7 @@ import fmagic.basic.file.FileUtilFunctions;
 import fmagic.basic.media.MediaContainer;
 import fmagic.basic.media.MediaManager;
 import fmagic.basic.media.ResourceContainerMedia;
+import fmagic.basic.notification.FlightRecorderEvent;
 import fmagic.basic.notification.NotificationManager;
 import fmagic.basic.resource.ResourceContainer;
 import fmagic.basic.resource.ResourceManager;
@@ -681,6 +685,7 @@ public class ServerMediaManager extends MediaManager
 		synchronized (this.commandMainQueue)
 		{
 			command = this.commandMainQueue.poll();
+			if (command != null) command.commitQueueEvent("Main", this.commandMainQueue.size());
 		}
 
 		return command;
@@ -735,6 +740,9 @@ public class ServerMediaManager extends MediaManager
 				errorText += "\n--> Media resource identifier to be added: '" + mediaResourceIdentifier + "'";
 				context.getNotificationManager().notifyWatchdogError(context, ResourceManager.notification(context, "MediaServer", "MediaCommandItemLost"), errorText, null);
 
+				// Record rejecting for the Java Flight Recorder
+				this.recordQueueRejected("Main", mediaResourceIdentifier, dataIdentifier, this.getNumberOfCommandsInMainQueue());
+
 				// Return
 				return false;
 			}
@@ -743,6 +751,8 @@ public class ServerMediaManager extends MediaManager
 			ServerMediaPoolCommand command = new ServerMediaPoolCommand(context, mediaResourceIdentifier, mediaPendingFileName, dataIdentifier);
 
 			// Add to queue
+			command.beginQueueEvent();
+
 			synchronized (this.commandMainQueue)
 			{
 				this.commandMainQueue.add(command);
@@ -811,6 +821,9 @@ public class ServerMediaManager extends MediaManager
 				errorText += "\n--> Media resource identifier to be added: '" + mediaResourceIdentifier + "'";
 				context.getNotificationManager().notifyWatchdogError(context, ResourceManager.notification(context, "MediaServer", "MediaCommandItemLost"), errorText, null);
 
+				// Record rejecting for the Java Flight Recorder
+				this.recordQueueRejected("Secondary", mediaResourceIdentifier, dataIdentifier, this.getNumberOfCommandsInSecondaryQueue());
+
 				// Return
 				return false;
 			}
@@ -819,6 +832,8 @@ public class ServerMediaManager extends MediaManager
 			ServerMediaPoolCommand command = new ServerMediaPoolCommand(context, mediaResourceIdentifier, mediaPendingFileName, dataIdentifier);
 
 			// Add to queue
+			command.beginQueueEvent();
+
 			synchronized (this.commandSecondaryQueue)
 			{
 				this.commandSecondaryQueue.add(command);
@@ -880,6 +895,9 @@ public class ServerMediaManager extends MediaManager
 				errorText += "\n--> Media resource identifier to be added: '" + mediaResourceIdentifier + "'";
 				context.getNotificationManager().notifyWatchdogError(context, ResourceManager.notification(context, "MediaServer", "MediaCommandItemLost"), errorText, null);
 
+				// Record rejecting for the Java Flight Recorder
+				this.recordQueueRejected("Synchronizing", mediaResourceIdentifier, dataIdentifier, this.getNumberOfCommandsInSynchronizingQueue());
+
 				// Return
 				return false;
 			}
@@ -926,6 +944,7 @@ public class ServerMediaManager extends MediaManager
 		this.commandSynchronizingMap.put(command.getCommandHashKey(), command);
 
 		// add command to queue
+		command.beginQueueEvent();
 		this.commandSynchronizingQueue.add(command);
 
 		// Return
@@ -974,6 +993,9 @@ public class ServerMediaManager extends MediaManager
 				errorText += "\n--> Media resource identifier to be added: '" + mediaResourceIdentifier + "'";
 				context.getNotificationManager().notifyWatchdogError(context, ResourceManager.notification(context, "MediaServer", "MediaCommandItemLost"), errorText, null);
 
+				// Record rejecting for the Java Flight Recorder
+				this.recordQueueRejected("CheckIntegrity", mediaResourceIdentifier, dataIdentifier, this.getNumberOfCommandsInCheckIntegrityQueue());
+
 				// Return
 				return false;
 			}
@@ -1020,12 +1042,35 @@ public class ServerMediaManager extends MediaManager
 		this.commandCheckIntegrityMap.put(command.getCommandHashKey(), command);
 
 		// add command to queue
+		command.beginQueueEvent();
 		this.commandCheckIntegrityQueue.add(command);
 
 		// Return
 		return true;
 	}
 
+	/**
+	 * Record a command that was rejected because a command queue was full, for
+	 * the Java Flight Recorder.
+	 * 
+	 * @param queueName
+	 *            The name of the queue.
+	 * 
+	 * @param mediaResourceIdentifier
+	 *            The media resource identifier of the command.
+	 * 
+	 * @param dataIdentifier
+	 *            The data identifier of the command.
+	 * 
+	 * @param queueSize
+	 *            The number of commands in the queue.
+	 */
+	private void recordQueueRejected(String queueName, String mediaResourceIdentifier, String dataIdentifier, int queueSize)
+	{
+		FlightRecorderEvent event = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_POOL_QUEUE_REJECTED);
+		if (event != null) event.commit(queueName, mediaResourceIdentifier, dataIdentifier, queueSize);
+	}
+
 	/**
 	 * Get the next element of media server <TT>Secondary</TT> command queue.
 	 * <p>
@@ -1042,6 +1087,7 @@ public class ServerMediaManager extends MediaManager
 		synchronized (this.commandSecondaryQueue)
 		{
 			command = this.commandSecondaryQueue.poll();
+			if (command != null) command.commitQueueEvent("Secondary", this.commandSecondaryQueue.size());
 		}
 
 		return command;
@@ -1062,6 +1108,7 @@ public class ServerMediaManager extends MediaManager
 		// Poll command from queue
 		ServerMediaPoolCommand command = null;
 		command = this.commandSynchronizingQueue.poll();
+		if (command != null) command.commitQueueEvent("Synchronizing", this.commandSynchronizingQueue.size());
 
 		// Remove command from hash map of commands
 		if (command != null) this.commandSynchronizingMap.remove(command.getCommandHashKey());
@@ -1085,6 +1132,7 @@ public class ServerMediaManager extends MediaManager
 		// Poll command from queue
 		ServerMediaPoolCommand command = null;
 		command = this.commandCheckIntegrityQueue.poll();
+		if (command != null) command.commitQueueEvent("CheckIntegrity", this.commandCheckIntegrityQueue.size());
 
 		// Please notice: The command is NOT removed in the command hash map,
 		// because if an item is checked once during runtime it doesn't have to
@@ -1204,6 +1252,8 @@ public class ServerMediaManager extends MediaManager
 
 					if (connectionContainer != null)
 					{
+						if (this.isDeadlineExceeded(context, "CHECK ON POOL")) break;
+
 						if (this.doMediaFileCheckOnMediaPool(context, connectionContainer, mediaResourceContainer, fileType, dataIdentifier, hashValue))
 						{
 							mediaFileExists = true;
@@ -1220,6 +1270,7 @@ public class ServerMediaManager extends MediaManager
 					for (ConnectionContainer connectionContainer : this.mediaPoolList.values())
 					{
 						if (connectionContainer.getNumber() == mainServerNumber) continue;
+						if (this.isDeadlineExceeded(context, "CHECK ON POOL")) break;
 
 						if (this.doMediaFileCheckOnMediaPool(context, connectionContainer, mediaResourceContainer, fileType, dataIdentifier, hashValue))
 						{
@@ -1316,6 +1367,8 @@ public class ServerMediaManager extends MediaManager
 
 					if (connectionContainer != null)
 					{
+						if (this.isDeadlineExceeded(context, "INFO ON POOL")) break;
+
 						command = this.doMediaFileInfoOnMediaPool(context, connectionContainer, mediaResourceContainer, dataIdentifier);
 
 						if (command != null && command.isExisting())
@@ -1334,6 +1387,7 @@ public class ServerMediaManager extends MediaManager
 					for (ConnectionContainer connectionContainer : this.mediaPoolList.values())
 					{
 						if (connectionContainer.getNumber() == mainServerNumber) continue;
+						if (this.isDeadlineExceeded(context, "INFO ON POOL")) break;
 
 						command = this.doMediaFileInfoOnMediaPool(context, connectionContainer, mediaResourceContainer, dataIdentifier);
 
@@ -1436,6 +1490,8 @@ public class ServerMediaManager extends MediaManager
 
 					if (connectionContainer != null)
 					{
+						if (this.isDeadlineExceeded(context, "READ ON POOL")) break;
+
 						pendingFileName = this.doMediaFileReadOnMediaPool(context, connectionContainer, mediaResourceContainer, dataIdentifier);
 
 						if (pendingFileName != null)
@@ -1457,6 +1513,7 @@ public class ServerMediaManager extends MediaManager
 					for (ConnectionContainer connectionContainer : this.mediaPoolList.values())
 					{
 						if (connectionContainer.getNumber() == mainServerNumber) continue;
+						if (this.isDeadlineExceeded(context, "READ ON POOL")) break;
 
 						pendingFileName = this.doMediaFileReadOnMediaPool(context, connectionContainer, mediaResourceContainer, dataIdentifier);
 
@@ -1472,8 +1529,9 @@ public class ServerMediaManager extends MediaManager
 				}
 
 				// Add order to media synchronizing queue, if the media file was
-				// not found on one of the servers of the media pool
-				if (lostMediaFile == true)
+				// not found on one of the servers of the media pool. If the
+				// reading was abandoned, the media file may not be lost at all.
+				if (lostMediaFile == true && context.isDeadlineExceeded() == false)
 				{
 					this.addCommandToSynchronizingQueue(context, mediaResourceContainer.getRecourceIdentifier(), dataIdentifier);
 				}
@@ -1706,6 +1764,27 @@ public class ServerMediaManager extends MediaManager
 		return true;
 	}
 
+	/**
+	 * Check if the deadline of the client request processed is exceeded, so
+	 * the servers of the media pool needn't be asked anymore.
+	 * 
+	 * @param context
+	 *            Application context.
+	 * 
+	 * @param operation
+	 *            Name of the operation on the media pool, for logging.
+	 * 
+	 * @return Returns <TT>true</TT> if the deadline is exceeded, otherwise
+	 *         <TT>false</TT>.
+	 */
+	private boolean isDeadlineExceeded(Context context, String operation)
+	{
+		if (context.isDeadlineExceeded() == false) return false;
+
+		context.getNotificationManager().notifyLogMessage(context, NotificationManager.SystemLogLevelEnum.NOTICE, "\n--> " + operation + ": Deadline of the request exceeded, asking the media pool abandoned.");
+		return true;
+	}
+
 	/**
 	 * Check if a media file already exists on a media server pool. Only the
 	 * most recent media file is searched for on server, not any obsolete files.
@@ -2071,10 +2150,22 @@ public class ServerMediaManager extends MediaManager
 
 			if (numberOfServerInPool > 0)
 			{
-				for (ConnectionContainer connectionContainer : this.mediaPoolList.values())
+				// Ask all media servers of the media pool at once, instead of
+				// waiting for each server in turn
+				List<ConnectionContainer> connectionContainers = new ArrayList<ConnectionContainer>(this.mediaPoolList.values());
+				List<Future<ClientCommandMediaFileInfo>> infoRequests = new ArrayList<Future<ClientCommandMediaFileInfo>>();
+
+				for (ConnectionContainer connectionContainer : connectionContainers)
+				{
+					infoRequests.add(this.commandInfoOnServerAsync(context, connectionContainer, mediaResourceContainer, dataIdentifier));
+				}
+
+				for (int i = 0; i < connectionContainers.size(); i++)
 				{
+					ConnectionContainer connectionContainer = connectionContainers.get(i);
+
 					// Get media file information
-					command = this.commandInfoOnServer(context, connectionContainer, mediaResourceContainer, dataIdentifier);
+					command = infoRequests.get(i).get();
 
 					if (command == null)
 					{
@@ -2377,6 +2468,23 @@ public class ServerMediaManager extends MediaManager
 		return false;
 	}
 
+	/**
+	 * Close all idle socket connections to the media pool, kept open for
+	 * further commands (keep-alive).
+	 * 
+	 * @param context
+	 *            The context to use.
+	 */
+	public void closeRemoteConnections(Context context)
+	{
+		if (this.mediaPoolList == null) return;
+
+		for (ConnectionContainer connectionContainer : this.mediaPoolList.values())
+		{
+			connectionContainer.closeConnection();
+		}
+	}
+
 	/**
 	 * Getter
 	 */
@@ -3,6 +3,7 @@ package fmagic.server.media;
 import java.util.Date;
 
 import fmagic.basic.context.Context;
+import fmagic.basic.notification.FlightRecorderEvent;
 
 /**
  * This class implements a container used for media pool commands to be executed
@@ -25,6 +26,9 @@ public class ServerMediaPoolCommand
 	private final Date requestDate;
 	private final String commandHashKey;
 
+	// Java Flight Recorder: Event of waiting in a command queue
+	private volatile FlightRecorderEvent queueEvent = null;
+
 	/**
 	 * Constructor
 	 */
@@ -96,6 +100,35 @@ public class ServerMediaPoolCommand
 		return this.commandHashKey;
 	}
 
+	/**
+	 * Begin recording the time the command waits in a command queue, for the
+	 * Java Flight Recorder. To be called before the command is added to the
+	 * queue.
+	 */
+	void beginQueueEvent()
+	{
+		this.queueEvent = FlightRecorderEvent.begin(FlightRecorderEvent.EventTypeEnum.MEDIA_POOL_QUEUE);
+	}
+
+	/**
+	 * Commit the time the command waited in a command queue, for the Java
+	 * Flight Recorder. To be called after the command was polled from the
+	 * queue.
+	 * 
+	 * @param queueName
+	 *            The name of the queue.
+	 * 
+	 * @param queueSize
+	 *            The number of commands remaining in the queue.
+	 */
+	void commitQueueEvent(String queueName, int queueSize)
+	{
+		FlightRecorderEvent event = this.queueEvent;
+		this.queueEvent = null;
+
+		if (event != null) event.commit(queueName, this.mediaResourceIdentifier, this.dataIdentifier, queueSize);
+	}
+
 	@Override
 	public String toString()
 	{
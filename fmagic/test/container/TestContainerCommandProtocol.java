@@ -0,0 +1,1575 @@
+package fmagic.test.container;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.gson.Gson;
+
+import fmagic.basic.command.CompressionCodec;
+import fmagic.basic.command.CompressionCodecDeflate;
+import fmagic.basic.command.CompressionCodecLz;
+import fmagic.basic.command.ConnectionPool;
+import fmagic.basic.command.EncodingHandler;
+import fmagic.basic.command.RequestContainer;
+import fmagic.basic.command.ResponseContainer;
+import fmagic.basic.command.SessionCipher;
+import fmagic.basic.command.SessionContainer;
+import fmagic.basic.command.SocketHandler;
+import fmagic.basic.context.Context;
+import fmagic.basic.file.FileUtilFunctions;
+import fmagic.basic.media.MediaContainer;
+import fmagic.basic.media.ResourceContainerMedia;
+import fmagic.basic.resource.ResourceContainer;
+import fmagic.basic.resource.ResourceManager;
+import fmagic.client.application.ClientManager;
+import fmagic.client.command.ClientCommandBatch;
+import fmagic.client.command.ClientCommandMediaFileInfo;
+import fmagic.client.command.ClientCommandStatistics;
+import fmagic.server.application.AdmissionController;
+import fmagic.server.application.CommandMetrics;
+import fmagic.server.command.ServerCommand;
+import fmagic.server.command.ServerCommandStatistics;
+import fmagic.server.application.ServerCommandRegistry;
+import fmagic.server.application.ServerManager;
+import fmagic.server.application.SessionStore;
+import fmagic.server.application.SessionTicketHandler;
+import fmagic.test.application.TestManager;
+import fmagic.test.runner.TestRunner;
+
+/**
+ * This class implements testing functionality regarding the command protocol
+ * between client and server: binary frames, encryption of commands, sessions
+ * and resumption tickets, resumable uploads and command batches.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 26.08.2013 - Created
+ * 
+ */
+public class TestContainerCommandProtocol extends TestContainer
+{
+	// Organization
+	private String parameterUploadResourceGroup = "Factory";
+	private String parameterUploadResourceName = "Doorway";
+	private String parameterUploadDataIdentifier = "9301";
+	private int parameterBenchmarkNumberOfRounds = 200;
+
+	// Command properties
+	private ClientManager parameterClient = null;
+	private ServerManager parameterServer = null;
+
+	// Secrets of resumption tickets
+	private static final String TICKET_SECRET = "0123456789abcdefghijklmnopqrstuvwxyz";
+	private static final String TICKET_SECRET_OTHER = "zyxwvutsrqponmlkjihgfedcba9876543210";
+
+	// Seed of the random test data, so each run uses the same data
+	private static final long RANDOM_SEED = 20130826L;
+
+	/**
+	 * Constructor 1
+	 * 
+	 * @param context
+	 *            The application context.
+	 * 
+	 * @param testRunner
+	 *            The test runner that holds this container, or <TT>null</TT> if
+	 *            no test runner is available.
+	 * 
+	 * @param concurrentAccess
+	 *            Set to <TT>true</TT> if the test container is supposed to run
+	 *            in a concurrent environment with other parallel threads or
+	 *            applications, otherwise to <TT>false</TT>.
+	 */
+	public TestContainerCommandProtocol(Context context, TestRunner testRunner,
+			boolean concurrentAccess)
+	{
+		super(context, testRunner, concurrentAccess);
+	}
+
+	/**
+	 * Constructor 2
+	 * 
+	 * @param testRunner
+	 *            The test runner that holds this container, or <TT>null</TT> if
+	 *            no test runner is available.
+	 */
+	public TestContainerCommandProtocol(TestRunner testRunner)
+	{
+		super(null, testRunner, false);
+	}
+
+	@Override
+	public void executeComponentTest()
+	{
+		try
+		{
+			this.componentTestExecuteIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void setupComponentTest()
+	{
+		try
+		{
+			this.setupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void cleanupComponentTest()
+	{
+		try
+		{
+			this.cleanupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Setup environment
+	 */
+	private void setupComponentTestIntern()
+	{
+		// Setup
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Execute
+	 */
+	private void componentTestExecuteIntern()
+	{
+		try
+		{
+			// Setup
+			this.setupComponentTestIntern();
+
+			// Test
+			this.testFrameHeader();
+			this.testFramePayload();
+			this.testContentLargerThanMaximumFrameSize();
+			this.testSessionCipher();
+			this.testSessionStoreExpiry();
+			this.testSessionStoreEviction();
+			this.testResumptionTicket();
+			this.testResumptionTicketExpiry();
+			this.testFileReadRange();
+			this.testResumableUpload();
+			this.testBatchItemErrors();
+			this.testIdleKeepAliveConnectionLimit();
+			this.testConnectionPool();
+			this.testAdmissionControl();
+			this.testDeadline();
+			this.testCommandMetrics();
+
+			// Cleanup
+			this.cleanupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Cleanup environment
+	 */
+	private void cleanupComponentTestIntern()
+	{
+		// Do nothing if the test is running in concurrent mode
+		if (this.isConcurrentAccess()) return;
+
+		// Cleanup
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			this.componentTestExecuteIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Create headers of binary frames and read them again, and reject
+	 * invalid headers
+	 */
+	public void testFrameHeader()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testFrameHeader()", null);
+
+			// Valid headers
+			int[] lengths = new int[] { 0, 1, 65536, Integer.MAX_VALUE };
+			short flags = (short) (SocketHandler.FRAME_FLAG_CONTENT | SocketHandler.FRAME_FLAG_COMPRESSED | (CompressionCodecLz.IDENTIFIER << SocketHandler.FRAME_FLAG_CODEC_SHIFT));
+
+			for (int i = 0; i < lengths.length; i++)
+			{
+				byte[] header = SocketHandler.createFrameHeader(lengths[i], flags);
+
+				String additionalText = "--> Tried to read a frame header";
+				additionalText += "\n--> Length: '" + String.valueOf(lengths[i]) + "'";
+				TestManager.assertEquals(this.getContext(), this, additionalText, SocketHandler.FRAME_HEADER_SIZE, header.length);
+				TestManager.assertEquals(this.getContext(), this, additionalText, lengths[i], SocketHandler.getFrameLength(header));
+				TestManager.assertEquals(this.getContext(), this, additionalText, (int) flags, (int) SocketHandler.getFrameFlags(header));
+			}
+
+			TestManager.assertEquals(this.getContext(), this, "--> Header without flags", 0, (int) SocketHandler.getFrameFlags(SocketHandler.createFrameHeader(100)));
+
+			// Invalid headers
+			byte[] header = SocketHandler.createFrameHeader(100);
+			TestManager.assertEquals(this.getContext(), this, "--> Header missing", -1, SocketHandler.getFrameLength(null));
+			TestManager.assertEquals(this.getContext(), this, "--> Header too short", -1, SocketHandler.getFrameLength(Arrays.copyOf(header, SocketHandler.FRAME_HEADER_SIZE - 1)));
+
+			byte[] invalidHeader = header.clone();
+			invalidHeader[0] = (byte) 0x7B;
+			TestManager.assertEquals(this.getContext(), this, "--> Wrong magic byte", -1, SocketHandler.getFrameLength(invalidHeader));
+
+			invalidHeader = header.clone();
+			invalidHeader[1] = 0;
+			TestManager.assertEquals(this.getContext(), this, "--> Version 0", -1, SocketHandler.getFrameLength(invalidHeader));
+
+			invalidHeader = header.clone();
+			invalidHeader[1] = (byte) (SocketHandler.FRAME_VERSION + 1);
+			TestManager.assertEquals(this.getContext(), this, "--> Version not supported yet", -1, SocketHandler.getFrameLength(invalidHeader));
+
+			TestManager.assertEquals(this.getContext(), this, "--> Negative length", -1, SocketHandler.getFrameLength(SocketHandler.createFrameHeader(-1)));
+
+			// Text command, beginning with a character instead of the magic
+			// byte
+			TestManager.assertEquals(this.getContext(), this, "--> Text command", -1, SocketHandler.getFrameLength("{\"Command\":\"Handshake\"}".getBytes("UTF-8")));
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Decode plain and compressed payloads of binary frames, and reject
+	 * payloads that exceed the maximum size after decompressing
+	 */
+	public void testFramePayload()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testFramePayload()", null);
+
+			// Payload of 100 KB
+			StringBuilder textBuilder = new StringBuilder();
+			for (int i = 0; textBuilder.length() < 100000; i++)
+				textBuilder.append("{\"Key" + String.valueOf(i % 100) + "\":\"Value \u00e4\u00f6\u00fc " + String.valueOf(i) + "\"},");
+			String text = textBuilder.toString();
+			byte[] payload = text.getBytes(SocketHandler.FRAME_CHARSET);
+
+			// Plain payload, within a larger buffer
+			byte[] buffer = new byte[payload.length + 20];
+			System.arraycopy(payload, 0, buffer, 10, payload.length);
+			TestManager.assertEquals(this.getContext(), this, "--> Plain payload", text, SocketHandler.decodeFramePayload(buffer, 10, payload.length, (short) 0, payload.length));
+
+			// Compressed payloads
+			CompressionCodec[] codecs = new CompressionCodec[] { new CompressionCodecLz(), new CompressionCodecDeflate(6) };
+
+			for (CompressionCodec codec : codecs)
+			{
+				ByteArrayOutputStream compressedStream = new ByteArrayOutputStream();
+				OutputStream compressingStream = codec.openCompressingStream(compressedStream);
+				compressingStream.write(payload);
+				compressingStream.close();
+				byte[] compressedPayload = compressedStream.toByteArray();
+
+				short flags = (short) (SocketHandler.FRAME_FLAG_COMPRESSED | (codec.getIdentifier() << SocketHandler.FRAME_FLAG_CODEC_SHIFT));
+
+				String additionalText = "--> Tried to decode a compressed payload";
+				additionalText += "\n--> Codec: '" + codec.getName() + "'";
+				TestManager.assertEquals(this.getContext(), this, additionalText, text, SocketHandler.decodeFramePayload(compressedPayload, 0, compressedPayload.length, flags, payload.length));
+
+				// Maximum size after decompressing exceeded
+				additionalText = "--> Payload exceeding the maximum size after decompressing must be rejected with an IOException";
+				additionalText += "\n--> Codec: '" + codec.getName() + "'";
+
+				try
+				{
+					SocketHandler.decodeFramePayload(compressedPayload, 0, compressedPayload.length, flags, payload.length - 1);
+					TestManager.assertTrue(this.getContext(), this, additionalText, false);
+				}
+				catch (IOException e)
+				{
+					// Be silent
+				}
+			}
+
+			// Unknown codec
+			try
+			{
+				short flags = (short) (SocketHandler.FRAME_FLAG_COMPRESSED | (0x7F << SocketHandler.FRAME_FLAG_CODEC_SHIFT));
+				SocketHandler.decodeFramePayload(payload, 0, payload.length, flags, payload.length);
+				TestManager.assertTrue(this.getContext(), this, "--> Payload of an unknown codec must be rejected", false);
+			}
+			catch (IllegalStateException e)
+			{
+				// Be silent
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Stream content larger than the maximum frame size, directly from a
+	 * file and chunk by chunk, and read it again
+	 */
+	public void testContentLargerThanMaximumFrameSize()
+	{
+		ServerSocket serverSocket = null;
+		SocketHandler writer = null;
+		SocketHandler reader = null;
+		File file = null;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testContentLargerThanMaximumFrameSize()", null);
+
+			// Content of more than five frames of the maximum size
+			int maximumFrameSize = 4096;
+			byte[] content = new byte[maximumFrameSize * 5 + 100];
+			new Random(RANDOM_SEED).nextBytes(content);
+
+			file = File.createTempFile("fmagic", ".content");
+			FileOutputStream fileOutputStream = new FileOutputStream(file);
+			fileOutputStream.write(content);
+			fileOutputStream.close();
+
+			// Connect two socket handlers via the loopback interface
+			serverSocket = new ServerSocket(0);
+			writer = new SocketHandler(this.getContext(), "localhost", serverSocket.getLocalPort(), 10000);
+			TestManager.assertTrue(this.getContext(), this, "--> Error on opening the socket", writer.openSocket());
+			reader = new SocketHandler(this.getContext());
+			TestManager.assertTrue(this.getContext(), this, "--> Error on adopting the socket", reader.adoptSocket(serverSocket.accept(), 10000));
+
+			writer.setFramingEnabled(true);
+			writer.setMaximumFrameSizeInBytes(maximumFrameSize);
+			reader.setMaximumFrameSizeInBytes(maximumFrameSize);
+
+			// Transfer file content directly, and copy content chunk by chunk,
+			// the chunk size exceeds the maximum frame size in both cases
+			this.assertContentTransferred(writer, reader, new FileInputStream(file), content, "--> File content transferred directly");
+			this.assertContentTransferred(writer, reader, new ByteArrayInputStream(content), content, "--> Content copied chunk by chunk");
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+		finally
+		{
+			if (writer != null) writer.closeSocket();
+			if (reader != null) reader.closeSocket();
+			if (file != null) file.delete();
+
+			try
+			{
+				if (serverSocket != null) serverSocket.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+	}
+
+	/**
+	 * Test: Encrypt and decrypt commands with a session key, and reject
+	 * encrypted data that were changed
+	 */
+	public void testSessionCipher()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testSessionCipher()", null);
+
+			byte[] sessionKey = SessionCipher.createSessionKey();
+			SessionCipher cipher = new SessionCipher(sessionKey);
+			String plainText = "{\"Command\":\"MediaFileInfo\",\"DataIdentifier\":\"\u00e4\u00f6\u00fc 9301\"}";
+
+			// Round trip, also with a second instance of the same session key
+			String encryptedText = cipher.encrypt(plainText);
+			TestManager.assertEquals(this.getContext(), this, "--> Decrypted with the same instance", plainText, cipher.decrypt(encryptedText));
+			TestManager.assertEquals(this.getContext(), this, "--> Decrypted with another instance", plainText, new SessionCipher(sessionKey).decrypt(encryptedText));
+			TestManager.assertEquals(this.getContext(), this, "--> Empty string", "", cipher.decrypt(cipher.encrypt("")));
+
+			// Each encryption uses another initialization vector
+			TestManager.assertNotEquals(this.getContext(), this, "--> Same text encrypted twice", encryptedText, cipher.encrypt(plainText));
+
+			// Each byte changed is detected, in initialization vector,
+			// encrypted data and HMAC
+			byte[] encrypted = Base64.decodeBase64(encryptedText);
+
+			for (int i = 0; i < encrypted.length; i++)
+			{
+				byte[] tampered = encrypted.clone();
+				tampered[i] = (byte) (tampered[i] ^ 0x01);
+				this.assertDecryptRejected(cipher, "Byte " + String.valueOf(i) + " changed", Base64.encodeBase64String(tampered));
+			}
+
+			// Truncated and extended data
+			this.assertDecryptRejected(cipher, "Last byte removed", Base64.encodeBase64String(Arrays.copyOf(encrypted, encrypted.length - 1)));
+			this.assertDecryptRejected(cipher, "Byte appended", Base64.encodeBase64String(Arrays.copyOf(encrypted, encrypted.length + 1)));
+			this.assertDecryptRejected(cipher, "Too short", Base64.encodeBase64String(Arrays.copyOf(encrypted, 10)));
+			this.assertDecryptRejected(cipher, "Empty", "");
+
+			// Another session key
+			this.assertDecryptRejected(new SessionCipher(SessionCipher.createSessionKey()), "Another session key", encryptedText);
+
+			// Invalid session keys
+			try
+			{
+				new SessionCipher(new byte[SessionCipher.SESSION_KEY_LENGTH - 1]);
+				TestManager.assertTrue(this.getContext(), this, "--> Session key of invalid length must be rejected", false);
+			}
+			catch (GeneralSecurityException e)
+			{
+				// Be silent
+			}
+
+			try
+			{
+				new SessionCipher(null);
+				TestManager.assertTrue(this.getContext(), this, "--> Missing session key must be rejected", false);
+			}
+			catch (GeneralSecurityException e)
+			{
+				// Be silent
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Sessions expire after the idle timeout, but not while they are
+	 * used
+	 */
+	public void testSessionStoreExpiry()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testSessionStoreExpiry()", null);
+
+			SessionStore sessionStore = new SessionStore(this.getContext(), 10, 1);
+			long currentTime = System.currentTimeMillis();
+
+			// Session used recently
+			SessionContainer sessionActive = new SessionContainer("active", "publicKeyActive");
+			TestManager.assertTrue(this.getContext(), this, "--> Add session", sessionStore.add(sessionActive));
+			TestManager.assertFalse(this.getContext(), this, "--> Add session twice", sessionStore.add(new SessionContainer("active", "publicKeyActive")));
+			TestManager.assertTrue(this.getContext(), this, "--> Get session used recently", sessionStore.get("active") == sessionActive);
+
+			// Session idle for more than the idle timeout
+			SessionContainer sessionIdle = new SessionContainer("idle", "publicKeyIdle");
+			TestManager.assertTrue(this.getContext(), this, "--> Add session", sessionStore.add(sessionIdle));
+			sessionIdle.setLastModificationTime(currentTime - 61000L);
+			TestManager.assertNull(this.getContext(), this, "--> Get expired session", sessionStore.get("idle"));
+			TestManager.assertEquals(this.getContext(), this, "--> Expired sessions", 1L, sessionStore.getExpiredCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Sessions left", 1, sessionStore.getNumberOfSessions());
+
+			// Restore sessions, e. g. from a snapshot
+			TestManager.assertFalse(this.getContext(), this, "--> Restore expired session", sessionStore.restore(new SessionContainer("restoredExpired", "publicKey", currentTime - 120000L, currentTime - 60000L)));
+			TestManager.assertTrue(this.getContext(), this, "--> Restore session", sessionStore.restore(new SessionContainer("restored", "publicKey", currentTime - 120000L, currentTime - 30000L)));
+			TestManager.assertFalse(this.getContext(), this, "--> Restore session twice", sessionStore.restore(new SessionContainer("restored", "publicKey", currentTime - 120000L, currentTime - 30000L)));
+			TestManager.assertNotNull(this.getContext(), this, "--> Get restored session", sessionStore.get("restored"));
+
+			// Unknown sessions
+			TestManager.assertNull(this.getContext(), this, "--> Get unknown session", sessionStore.get("unknown"));
+			TestManager.assertNull(this.getContext(), this, "--> Get without identifier", sessionStore.get(null));
+
+			TestManager.assertEquals(this.getContext(), this, "--> Evicted sessions", 0L, sessionStore.getEvictedCount());
+			TestManager.servicePrintSubLine(this.getContext(), sessionStore.toString());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: If the maximum number of sessions is reached, the least recently
+	 * used session is evicted
+	 */
+	public void testSessionStoreEviction()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testSessionStoreEviction()", null);
+
+			SessionStore sessionStore = new SessionStore(this.getContext(), 3, 1);
+			long currentTime = System.currentTimeMillis();
+
+			// Two sessions last used half a minute ago, one of them is used now
+			TestManager.assertTrue(this.getContext(), this, "--> Restore session A", sessionStore.restore(new SessionContainer("A", "publicKeyA", currentTime - 60000L, currentTime - 30000L)));
+			TestManager.assertTrue(this.getContext(), this, "--> Restore session B", sessionStore.restore(new SessionContainer("B", "publicKeyB", currentTime - 60000L, currentTime - 30000L)));
+			TestManager.assertNotNull(this.getContext(), this, "--> Get session A", sessionStore.get("A"));
+
+			// Maximum number of sessions reached by session C
+			TestManager.assertTrue(this.getContext(), this, "--> Add session C", sessionStore.add(new SessionContainer("C", "publicKeyC")));
+			TestManager.assertEquals(this.getContext(), this, "--> Evicted sessions after adding C", 0L, sessionStore.getEvictedCount());
+			TestManager.assertFalse(this.getContext(), this, "--> Restore session D beyond the maximum", sessionStore.restore(new SessionContainer("D", "publicKeyD", currentTime, currentTime)));
+
+			// Session D evicts session B, the least recently used one
+			TestManager.assertTrue(this.getContext(), this, "--> Add session D", sessionStore.add(new SessionContainer("D", "publicKeyD")));
+
+			TestManager.assertEquals(this.getContext(), this, "--> Evicted sessions after adding D", 1L, sessionStore.getEvictedCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Expired sessions", 0L, sessionStore.getExpiredCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Number of sessions", 3, sessionStore.getNumberOfSessions());
+			TestManager.assertNull(this.getContext(), this, "--> Get evicted session B", sessionStore.get("B"));
+			TestManager.assertNotNull(this.getContext(), this, "--> Get session A", sessionStore.get("A"));
+			TestManager.assertNotNull(this.getContext(), this, "--> Get session C", sessionStore.get("C"));
+			TestManager.assertNotNull(this.getContext(), this, "--> Get session D", sessionStore.get("D"));
+
+			TestManager.servicePrintSubLine(this.getContext(), sessionStore.toString());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Issue resumption tickets, open them again, and reject tickets that
+	 * were changed, issued with another secret or for another session
+	 */
+	public void testResumptionTicket()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testResumptionTicket()", null);
+
+			// Weak secrets
+			TestManager.assertTrue(this.getContext(), this, "--> Strong secret", SessionTicketHandler.isSecretStrongEnough(TICKET_SECRET));
+			TestManager.assertFalse(this.getContext(), this, "--> Missing secret", SessionTicketHandler.isSecretStrongEnough(null));
+			TestManager.assertFalse(this.getContext(), this, "--> Short secret", SessionTicketHandler.isSecretStrongEnough("0123456789abcdef"));
+			TestManager.assertFalse(this.getContext(), this, "--> Secret of few different characters", SessionTicketHandler.isSecretStrongEnough("abababababababababababababababababab"));
+
+			try
+			{
+				new SessionTicketHandler(this.getContext(), "secret", 10);
+				TestManager.assertTrue(this.getContext(), this, "--> Weak secret must be rejected", false);
+			}
+			catch (GeneralSecurityException e)
+			{
+				// Be silent
+			}
+
+			SessionTicketHandler ticketHandler = new SessionTicketHandler(this.getContext(), TICKET_SECRET, 10);
+
+			// Ticket of a plain session
+			SessionContainer session = new SessionContainer("sessionPlain", "publicKey+/=\t\u00e4");
+			session.setUserLicenseKey("license\tkey");
+
+			String ticket = ticketHandler.issueTicket(session, null);
+			SessionContainer resumedSession = ticketHandler.openTicket(ticket, "sessionPlain", false);
+
+			TestManager.assertNotNull(this.getContext(), this, "--> Open ticket of a plain session", resumedSession);
+
+			if (resumedSession != null)
+			{
+				TestManager.assertEquals(this.getContext(), this, "--> Session identifier", session.getClientSessionIdentifier(), resumedSession.getClientSessionIdentifier());
+				TestManager.assertEquals(this.getContext(), this, "--> Public key", session.getKeyApplicationPublicKey(), resumedSession.getKeyApplicationPublicKey());
+				TestManager.assertEquals(this.getContext(), this, "--> License key", session.getUserLicenseKey(), resumedSession.getUserLicenseKey());
+				TestManager.assertEquals(this.getContext(), this, "--> Creation date", session.getCreationDate().getTime(), resumedSession.getCreationDate().getTime());
+				TestManager.assertNull(this.getContext(), this, "--> Right group", resumedSession.getUserRightGroup());
+				TestManager.assertNull(this.getContext(), this, "--> Session cipher", resumedSession.getSessionCipher());
+			}
+
+			// Ticket of an encrypted session
+			byte[] sessionKey = SessionCipher.createSessionKey();
+			String ticketEncrypted = ticketHandler.issueTicket(new SessionContainer("sessionEncrypted", "publicKey"), sessionKey);
+			resumedSession = ticketHandler.openTicket(ticketEncrypted, "sessionEncrypted", true);
+
+			TestManager.assertNotNull(this.getContext(), this, "--> Open ticket of an encrypted session", resumedSession);
+
+			if (resumedSession != null)
+			{
+				TestManager.assertNotNull(this.getContext(), this, "--> Session cipher", resumedSession.getSessionCipher());
+				if (resumedSession.getSessionCipher() != null) TestManager.assertEquals(this.getContext(), this, "--> Session key of the ticket", "Text", new SessionCipher(sessionKey).decrypt(resumedSession.getSessionCipher().encrypt("Text")));
+			}
+
+			// Rejected tickets
+			TestManager.assertNull(this.getContext(), this, "--> Ticket of another session", ticketHandler.openTicket(ticket, "sessionOther", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket without session identifier", ticketHandler.openTicket(ticket, null, false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket containing a session key, sent with a plain command", ticketHandler.openTicket(ticketEncrypted, "sessionEncrypted", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket issued with another secret", new SessionTicketHandler(this.getContext(), TICKET_SECRET_OTHER, 10).openTicket(ticket, "sessionPlain", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket missing", ticketHandler.openTicket(null, "sessionPlain", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket not BASE64 encoded", ticketHandler.openTicket("no ticket", "sessionPlain", false));
+
+			byte[] ticketBytes = Base64.decodeBase64(ticket);
+			ticketBytes[ticketBytes.length / 2] = (byte) (ticketBytes[ticketBytes.length / 2] ^ 0x01);
+			TestManager.assertNull(this.getContext(), this, "--> Ticket changed", ticketHandler.openTicket(Base64.encodeBase64String(ticketBytes), "sessionPlain", false));
+
+			// Tickets of an unknown version or format, encrypted with the
+			// ticket key
+			SessionCipher ticketCipher = this.createTicketCipher(TICKET_SECRET);
+			long currentTime = System.currentTimeMillis();
+			TestManager.assertNull(this.getContext(), this, "--> Ticket of an unknown version", ticketHandler.openTicket(ticketCipher.encrypt("2\tsessionPlain\tpublicKey\t\t\t\t" + String.valueOf(currentTime) + "\t" + String.valueOf(currentTime)), "sessionPlain", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket with a field missing", ticketHandler.openTicket(ticketCipher.encrypt("1\tsessionPlain\tpublicKey\t\t\t" + String.valueOf(currentTime) + "\t" + String.valueOf(currentTime)), "sessionPlain", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket of an unknown right group", ticketHandler.openTicket(ticketCipher.encrypt("1\tsessionPlain\tpublicKey\tunknown\t\t\t" + String.valueOf(currentTime) + "\t" + String.valueOf(currentTime)), "sessionPlain", false));
+
+			// Statistics
+			TestManager.assertEquals(this.getContext(), this, "--> Tickets issued", 2L, ticketHandler.getIssuedCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Sessions resumed", 2L, ticketHandler.getResumedCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Tickets rejected", 9L, ticketHandler.getRejectedCount());
+
+			TestManager.servicePrintSubLine(this.getContext(), ticketHandler.toString());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Tickets are rejected after their lifetime
+	 */
+	public void testResumptionTicketExpiry()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testResumptionTicketExpiry()", null);
+
+			SessionTicketHandler ticketHandler = new SessionTicketHandler(this.getContext(), TICKET_SECRET, 10);
+			SessionCipher ticketCipher = this.createTicketCipher(TICKET_SECRET);
+			long currentTime = System.currentTimeMillis();
+
+			// Tickets issued some time ago, in the format of the ticket handler
+			String ticketValid = ticketCipher.encrypt("1\tsessionValid\tpublicKey\t\t\t\t" + String.valueOf(currentTime - 3600000L) + "\t" + String.valueOf(currentTime - 9L * 60000L));
+			String ticketExpired = ticketCipher.encrypt("1\tsessionExpired\tpublicKey\t\t\t\t" + String.valueOf(currentTime - 3600000L) + "\t" + String.valueOf(currentTime - 10L * 60000L));
+
+			TestManager.assertNotNull(this.getContext(), this, "--> Ticket issued 9 minutes ago, with a lifetime of 10 minutes", ticketHandler.openTicket(ticketValid, "sessionValid", false));
+			TestManager.assertNull(this.getContext(), this, "--> Ticket issued 10 minutes ago, with a lifetime of 10 minutes", ticketHandler.openTicket(ticketExpired, "sessionExpired", false));
+
+			TestManager.assertEquals(this.getContext(), this, "--> Sessions resumed", 1L, ticketHandler.getResumedCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Tickets rejected", 1L, ticketHandler.getRejectedCount());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Read ranges of a file, as done for the parts of an upload,
+	 * including lengths that reach beyond the end of the file. The content of
+	 * a range is returned BASE64 encoded.
+	 */
+	public void testFileReadRange()
+	{
+		File file = null;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testFileReadRange()", null);
+
+			file = File.createTempFile("fmagic", ".range");
+			FileOutputStream fileOutputStream = new FileOutputStream(file);
+			fileOutputStream.write("0123456789".getBytes("ISO-8859-1"));
+			fileOutputStream.close();
+
+			String filePath = file.getPath();
+
+			TestManager.assertEquals(this.getContext(), this, "--> Range within the file", this.encodeRange("2345"), FileUtilFunctions.fileReadRangeToString(filePath, 2, 4));
+			TestManager.assertEquals(this.getContext(), this, "--> Range up to the end of the file", this.encodeRange("789"), FileUtilFunctions.fileReadRangeToString(filePath, 7, -1));
+			TestManager.assertEquals(this.getContext(), this, "--> Range beyond the end of the file", this.encodeRange("789"), FileUtilFunctions.fileReadRangeToString(filePath, 7, 100));
+			TestManager.assertEquals(this.getContext(), this, "--> Range of the maximum length", this.encodeRange("789"), FileUtilFunctions.fileReadRangeToString(filePath, 7, Long.MAX_VALUE));
+			TestManager.assertEquals(this.getContext(), this, "--> Empty range", "", FileUtilFunctions.fileReadRangeToString(filePath, 5, 0));
+			TestManager.assertEquals(this.getContext(), this, "--> Offset at the end of the file", "", FileUtilFunctions.fileReadRangeToString(filePath, 10, 5));
+			TestManager.assertEquals(this.getContext(), this, "--> Offset beyond the end of the file", "", FileUtilFunctions.fileReadRangeToString(filePath, 20, Long.MAX_VALUE));
+			TestManager.assertNull(this.getContext(), this, "--> Negative offset", FileUtilFunctions.fileReadRangeToString(filePath, -1, 5));
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+		finally
+		{
+			if (file != null) file.delete();
+		}
+	}
+
+	/**
+	 * Test: Upload a media file in parts, resume after a part was lost, and
+	 * reject parts beyond the announced file size and media files whose hash
+	 * value doesn't match
+	 */
+	public void testResumableUpload()
+	{
+		// Do nothing if the test is running in concurrent mode
+		if (this.isConcurrentAccess()) return;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testResumableUpload()", null);
+
+			ResourceContainerMedia mediaResource = ResourceManager.media(this.getContext(), this.parameterUploadResourceGroup, this.parameterUploadResourceName);
+
+			// Get file directory
+			ResourceContainer configuration = ResourceManager.configuration(this.getContext(), "MediaTest", "DirectoryToSearchForMediaFiles");
+			String uploadFilePath = this.getContext().getConfigurationManager().getProperty(this.getContext(), configuration, true);
+
+			String additionalText = "--> Tried to read the directory for the media files to process during test";
+			additionalText += "\n--> Please set the test configuration parameter '" + configuration.getRecourceIdentifier() + "' for the application '" + this.getContext().getCodeName() + "'";
+			TestManager.assertNotNull(this.getContext(), this, additionalText, uploadFilePath);
+			if (uploadFilePath == null) return;
+
+			// Get the smallest media file, so it doesn't exceed the maximum
+			// media size
+			List<String> fileList = FileUtilFunctions.directorySearchForFiles(uploadFilePath, "*.jpg");
+
+			additionalText = "--> Tried to read media files in directory '" + uploadFilePath + "'";
+			TestManager.assertNotNull(this.getContext(), this, additionalText, fileList);
+			if (fileList == null || fileList.size() == 0) return;
+
+			String mediaFile = fileList.get(0);
+
+			for (String file : fileList)
+			{
+				if (FileUtilFunctions.fileGetFileSize(file) < FileUtilFunctions.fileGetFileSize(mediaFile)) mediaFile = file;
+			}
+
+			byte[] content = FileUtilFunctions.fileReadToByteArray(mediaFile);
+			String hashValue = FileUtilFunctions.fileGetHashValue(mediaFile);
+			String fileType = FileUtilFunctions.fileGetFileTypePart(mediaFile);
+			long fileSize = content.length;
+			int half = content.length / 2;
+
+			additionalText = "--> Tried to upload a media file in parts";
+			additionalText += "\n--> Media file: '" + mediaFile + "', " + String.valueOf(fileSize) + " bytes";
+
+			// First part
+			Long uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, fileSize, content, 0, half);
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> First part", half, uploadedLength == null ? -1L : uploadedLength);
+
+			// Part beyond the data received so far, the length received so far
+			// is returned unchanged
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, fileSize, content, half + 10, content.length);
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Part beyond the data received", half, uploadedLength == null ? -1L : uploadedLength);
+
+			// Part sent again after a lost response
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, fileSize, content, half / 2, half);
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Part sent again", half, uploadedLength == null ? -1L : uploadedLength);
+
+			// Last part, completing the media file
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, fileSize, content, half, content.length);
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Last part", fileSize, uploadedLength == null ? -1L : uploadedLength);
+
+			// Media file stored
+			MediaContainer mediaContainer = new MediaContainer(this.getContext(), mediaResource, this.parameterUploadDataIdentifier);
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Error on binding media file", mediaContainer.bindMedia());
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Content of the media file stored", true, Arrays.equals(content, mediaContainer.readMediaContentAsByteArray()));
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Error on releasing media file", mediaContainer.releaseMedia());
+
+			// Part exceeding the announced file size
+			String errorIdentifier = ResourceManager.notification(this.getContext(), "Media", "ErrorOnStoringFileLocally").getRecourceIdentifier();
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, half, content, 0, content.length);
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			TestManager.assertNull(this.getContext(), this, additionalText + "\n--> Part exceeding the announced file size", uploadedLength);
+			FileUtilFunctions.fileDelete(mediaResource.mediaFileGetUploadFilePath(this.getContext(), this.parameterUploadDataIdentifier, hashValue, fileType));
+
+			// Hash value doesn't match
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, "0" + hashValue.substring(1), fileType, fileSize, content, 0, content.length);
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			TestManager.assertNull(this.getContext(), this, additionalText + "\n--> Hash value doesn't match", uploadedLength);
+
+			// Invalid file size
+			errorIdentifier = ResourceManager.notification(this.getContext(), "Media", "MaximumMediaSizeExceeded").getRecourceIdentifier();
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, -1, content, 0, content.length);
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			TestManager.assertNull(this.getContext(), this, additionalText + "\n--> Negative file size", uploadedLength);
+
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			uploadedLength = this.uploadPart(mediaResource, this.parameterUploadDataIdentifier, hashValue, fileType, Long.MAX_VALUE, content, 0, content.length);
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			TestManager.assertNull(this.getContext(), this, additionalText + "\n--> File size beyond the maximum media size", uploadedLength);
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Commands of a batch that fail don't affect the other commands of
+	 * the batch
+	 */
+	public void testBatchItemErrors()
+	{
+		// Do nothing if no client is set
+		if (this.parameterClient == null || this.parameterServer == null) return;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testBatchItemErrors()", null);
+
+			Context clientContext = this.parameterClient.getContext();
+			String mediaResourceIdentifier = ResourceManager.media(clientContext, this.parameterUploadResourceGroup, this.parameterUploadResourceName).getRecourceIdentifier();
+
+			boolean[] parallelModes = new boolean[] { false, true };
+
+			for (boolean parallel : parallelModes)
+			{
+				// Commands with a valid and an unknown media resource
+				List<ClientCommandMediaFileInfo> commands = new ArrayList<ClientCommandMediaFileInfo>();
+				commands.add(new ClientCommandMediaFileInfo(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer(), mediaResourceIdentifier, this.parameterUploadDataIdentifier));
+				commands.add(new ClientCommandMediaFileInfo(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer(), mediaResourceIdentifier + ".Unknown", this.parameterUploadDataIdentifier));
+				commands.add(new ClientCommandMediaFileInfo(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer(), mediaResourceIdentifier, "9399"));
+
+				ClientCommandBatch batch = new ClientCommandBatch(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer(), commands, parallel);
+				ResponseContainer batchResponseContainer = batch.execute();
+
+				String additionalText = "--> Tried to execute a batch with a failing command";
+				additionalText += "\n--> Parallel: '" + String.valueOf(parallel) + "'";
+
+				// The batch itself succeeds
+				TestManager.assertNotNull(clientContext, this, additionalText, batchResponseContainer);
+				if (batchResponseContainer != null) TestManager.assertFalse(clientContext, this, additionalText + "\n--> Error code of the batch: '" + batchResponseContainer.getErrorCode() + "'", batchResponseContainer.isError());
+
+				// Each command gets its own result
+				TestManager.assertFalse(clientContext, this, additionalText + "\n--> Command 1 must succeed", commands.get(0).getResponseContainer().isError());
+				TestManager.assertTrue(clientContext, this, additionalText + "\n--> Command 2 must fail", commands.get(1).getResponseContainer().isError());
+				TestManager.assertFalse(clientContext, this, additionalText + "\n--> Command 3 must succeed", commands.get(2).getResponseContainer().isError());
+				TestManager.assertFalse(clientContext, this, additionalText + "\n--> Command 3 refers to a media file that doesn't exist", commands.get(2).isExisting());
+
+				// The media file uploaded before exists
+				if (this.isConcurrentAccess() == false) TestManager.assertTrue(clientContext, this, additionalText + "\n--> Command 1 refers to the media file uploaded", commands.get(0).isExisting());
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Keep-alive connections waiting for the next request of the client
+	 * are limited, so they can't hold all core threads of the thread pool
+	 */
+	public void testIdleKeepAliveConnectionLimit()
+	{
+		// Do nothing if no server is set, or if the test is running in
+		// concurrent mode
+		if (this.parameterServer == null) return;
+		if (this.isConcurrentAccess()) return;
+
+		int numberOfAcquired = 0;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testIdleKeepAliveConnectionLimit()", null);
+
+			int limit = this.parameterServer.getMaximumIdleKeepAliveConnections();
+			String additionalText = "--> Maximum number of idle keep-alive connections: '" + String.valueOf(limit) + "'";
+			additionalText += "\n--> Core size of the thread pool: '" + String.valueOf(this.parameterServer.getThreadPoolCoreSize()) + "'";
+
+			// Limited to half of the core threads
+			if (this.parameterServer.isEnableVirtualThreads() == false) TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Limit must not exceed half of the core size", limit <= this.parameterServer.getThreadPoolCoreSize() / 2);
+
+			// Reserve places up to the limit
+			int numberOfIdleConnections = this.parameterServer.getIdleKeepAliveConnections();
+
+			while (numberOfIdleConnections + numberOfAcquired < limit && this.parameterServer.tryAcquireIdleKeepAliveConnection() == true)
+			{
+				numberOfAcquired++;
+			}
+
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Places reserved", limit, numberOfIdleConnections + numberOfAcquired);
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Idle connections counted", limit, this.parameterServer.getIdleKeepAliveConnections());
+
+			// No further place beyond the limit
+			TestManager.assertFalse(this.getContext(), this, additionalText + "\n--> Place beyond the limit", this.parameterServer.tryAcquireIdleKeepAliveConnection());
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Idle connections after rejecting a place", limit, this.parameterServer.getIdleKeepAliveConnections());
+
+			// A place released can be reserved again
+			if (numberOfAcquired > 0)
+			{
+				this.parameterServer.releaseIdleKeepAliveConnection();
+				TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Place released and reserved again", this.parameterServer.tryAcquireIdleKeepAliveConnection());
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+		finally
+		{
+			for (int i = 0; i < numberOfAcquired; i++)
+			{
+				this.parameterServer.releaseIdleKeepAliveConnection();
+			}
+		}
+	}
+
+	/**
+	 * Test: Reuse connections of the connection pool, and remove connections
+	 * that were closed by the server or were idle for too long
+	 */
+	public void testConnectionPool()
+	{
+		// Do nothing if the test is running in concurrent mode
+		if (this.isConcurrentAccess()) return;
+
+		ServerSocket serverSocket = null;
+		List<Socket> serverSideSockets = new ArrayList<Socket>();
+		ConnectionPool connectionPool = null;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testConnectionPool()", null);
+
+			// Server socket, connections are accepted by the operating system
+			// before calling accept()
+			serverSocket = new ServerSocket(0);
+			connectionPool = new ConnectionPool("localhost", serverSocket.getLocalPort(), 2, 60000, 500);
+
+			// New connection
+			SocketHandler firstConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertNotNull(this.getContext(), this, "--> First connection", firstConnection);
+			if (firstConnection == null) return;
+			TestManager.assertFalse(this.getContext(), this, "--> First connection must be new", firstConnection.isReused());
+			Socket firstServerSideSocket = serverSocket.accept();
+			serverSideSockets.add(firstServerSideSocket);
+
+			connectionPool.returnSocketHandler(firstConnection, true);
+			TestManager.assertEquals(this.getContext(), this, "--> Idle connections after giving back the first connection", 1, connectionPool.getIdleCount());
+			TestManager.assertEquals(this.getContext(), this, "--> Borrowed connections after giving back the first connection", 0, connectionPool.getBorrowedCount());
+
+			// Idle connection is reused
+			SocketHandler secondConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertTrue(this.getContext(), this, "--> Idle connection must be reused", secondConnection == firstConnection);
+			if (secondConnection != null) TestManager.assertTrue(this.getContext(), this, "--> Connection reused must be marked", secondConnection.isReused());
+
+			// New connection, though an idle connection could be reused
+			connectionPool.returnSocketHandler(secondConnection, true);
+			SocketHandler thirdConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000, false);
+			TestManager.assertNotNull(this.getContext(), this, "--> Connection opened instead of reusing one", thirdConnection);
+			if (thirdConnection == null) return;
+			TestManager.assertTrue(this.getContext(), this, "--> Idle connection must not be reused", thirdConnection != firstConnection);
+			TestManager.assertFalse(this.getContext(), this, "--> Connection opened must be new", thirdConnection.isReused());
+			serverSideSockets.add(serverSocket.accept());
+
+			// No connection left within the borrow timeout
+			SocketHandler fourthConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertTrue(this.getContext(), this, "--> Idle connection must be reused", fourthConnection == firstConnection);
+
+			String errorIdentifier = ResourceManager.notification(this.getContext(), "Socket", "ErrorOnSocketConnection").getRecourceIdentifier();
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			TestManager.assertNull(this.getContext(), this, "--> Connection borrowed beyond the maximum size", connectionPool.borrowSocketHandler(this.getContext(), 10000));
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+
+			connectionPool.returnSocketHandler(thirdConnection, false);
+			connectionPool.returnSocketHandler(fourthConnection, true);
+			TestManager.assertEquals(this.getContext(), this, "--> Idle connections after closing one connection", 1, connectionPool.getIdleCount());
+
+			// Connection closed by the server is removed, and a new connection
+			// is opened
+			firstServerSideSocket.close();
+			Thread.sleep(200);
+
+			SocketHandler fifthConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertNotNull(this.getContext(), this, "--> Connection opened instead of a connection closed by the server", fifthConnection);
+			if (fifthConnection == null) return;
+			TestManager.assertTrue(this.getContext(), this, "--> Connection closed by the server must not be reused", fifthConnection != firstConnection);
+			TestManager.assertFalse(this.getContext(), this, "--> Connection opened instead of a connection closed by the server must be new", fifthConnection.isReused());
+			TestManager.assertEquals(this.getContext(), this, "--> Idle connections after removing a connection closed by the server", 0, connectionPool.getIdleCount());
+			serverSideSockets.add(serverSocket.accept());
+			connectionPool.returnSocketHandler(fifthConnection, true);
+			connectionPool.close();
+
+			// Connection idle for too long is closed
+			connectionPool = new ConnectionPool("localhost", serverSocket.getLocalPort(), 2, 100, 500);
+			SocketHandler sixthConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertNotNull(this.getContext(), this, "--> Connection of the pool with a short idle time", sixthConnection);
+			if (sixthConnection == null) return;
+			serverSideSockets.add(serverSocket.accept());
+			connectionPool.returnSocketHandler(sixthConnection, true);
+			Thread.sleep(300);
+
+			SocketHandler seventhConnection = connectionPool.borrowSocketHandler(this.getContext(), 10000);
+			TestManager.assertTrue(this.getContext(), this, "--> Connection idle for too long must not be reused", seventhConnection != null && seventhConnection != sixthConnection);
+			TestManager.assertFalse(this.getContext(), this, "--> Connection idle for too long must be closed", sixthConnection.isConnected());
+			if (seventhConnection != null) serverSideSockets.add(serverSocket.accept());
+			connectionPool.returnSocketHandler(seventhConnection, false);
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+		finally
+		{
+			if (connectionPool != null) connectionPool.close();
+
+			try
+			{
+				for (Socket socket : serverSideSockets)
+				{
+					socket.close();
+				}
+
+				if (serverSocket != null) serverSocket.close();
+			}
+			catch (Exception e)
+			{
+				// Be silent
+			}
+		}
+	}
+
+	/**
+	 * Test: Reject commands beyond the limit of all commands and beyond the
+	 * limit per command, and admit them again after commands were released
+	 */
+	public void testAdmissionControl()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testAdmissionControl()", null);
+
+			String statisticsIdentifier = ResourceManager.command(this.getContext(), "Statistics").getRecourceIdentifier();
+			String mediaFileReadIdentifier = ResourceManager.command(this.getContext(), "MediaFileRead").getRecourceIdentifier();
+
+			// Limits per command
+			Map<String, Integer> commandLimits = AdmissionController.parseCommandLimits(this.getContext(), "Statistics:1 , MediaFileRead:16");
+			TestManager.assertEquals(this.getContext(), this, "--> Number of limits per command", 2, commandLimits.size());
+			TestManager.assertEquals(this.getContext(), this, "--> Limit of the command 'Statistics'", 1, commandLimits.get("Statistics") == null ? -1 : commandLimits.get("Statistics"));
+
+			if (this.isConcurrentAccess() == false)
+			{
+				String errorIdentifier = ResourceManager.notification(this.getContext(), "Configuration", "IntegrityError").getRecourceIdentifier();
+				TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+				TestManager.assertEquals(this.getContext(), this, "--> Invalid limit must be ignored", 0, AdmissionController.parseCommandLimits(this.getContext(), "Statistics:0").size());
+				TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			}
+
+			// At most two commands, and one command 'Statistics'
+			AdmissionController admissionController = new AdmissionController(2, commandLimits, false, 100, 0);
+			String additionalText = "--> Admission control: " + admissionController.toString();
+
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> First command 'Statistics'", admissionController.tryAcquire(statisticsIdentifier));
+			TestManager.assertFalse(this.getContext(), this, additionalText + "\n--> Second command 'Statistics' exceeds the limit of the command", admissionController.tryAcquire(statisticsIdentifier));
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Commands executed after rejecting the limit of the command", 1, admissionController.getExecutingCommands());
+			TestManager.assertFalse(this.getContext(), this, additionalText + "\n--> Overloaded with one command", admissionController.isOverloaded());
+
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Command 'MediaFileRead'", admissionController.tryAcquire(mediaFileReadIdentifier));
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Overloaded with two commands", admissionController.isOverloaded());
+			TestManager.assertFalse(this.getContext(), this, additionalText + "\n--> Third command exceeds the limit of all commands", admissionController.tryAcquire(mediaFileReadIdentifier));
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Commands rejected", 2L, admissionController.getRejectedCount());
+
+			// Admitted again after releasing
+			admissionController.release(statisticsIdentifier, System.nanoTime());
+			TestManager.assertFalse(this.getContext(), this, additionalText + "\n--> Overloaded after releasing a command", admissionController.isOverloaded());
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Command 'Statistics' after releasing", admissionController.tryAcquire(statisticsIdentifier));
+
+			admissionController.release(statisticsIdentifier, System.nanoTime());
+			admissionController.release(mediaFileReadIdentifier, System.nanoTime());
+			TestManager.assertEquals(this.getContext(), this, additionalText + "\n--> Commands executed after releasing all commands", 0, admissionController.getExecutingCommands());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Start the deadline of a request, and abandon a server command if
+	 * its deadline is exceeded
+	 */
+	public void testDeadline()
+	{
+		// Do nothing if the test is running in concurrent mode, because the
+		// deadline is set on the context of the test
+		if (this.isConcurrentAccess()) return;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testDeadline()", null);
+
+			String statisticsIdentifier = ResourceManager.command(this.getContext(), "Statistics").getRecourceIdentifier();
+			long currentTime = System.currentTimeMillis();
+
+			// Deadline of the request
+			RequestContainer requestContainer = new RequestContainer(this.getContext().getCodeName(), 1, this.getContext().getCodeName(), statisticsIdentifier);
+
+			requestContainer.setTimeoutInMilliseconds(5000);
+			requestContainer.startDeadline(currentTime);
+			TestManager.assertEquals(this.getContext(), this, "--> Deadline of a request with a timeout", currentTime + 5000, requestContainer.getDeadline());
+
+			requestContainer.setTimeoutInMilliseconds(-1);
+			requestContainer.startDeadline(currentTime);
+			TestManager.assertEquals(this.getContext(), this, "--> Negative timeout", 0, requestContainer.getTimeoutInMilliseconds());
+			TestManager.assertEquals(this.getContext(), this, "--> Deadline of a request without timeout", 0L, requestContainer.getDeadline());
+
+			// Deadline of the context
+			this.getContext().setDeadline(0);
+			TestManager.assertFalse(this.getContext(), this, "--> No deadline is never exceeded", this.getContext().isDeadlineExceeded());
+			TestManager.assertEquals(this.getContext(), this, "--> Remaining time without deadline", -1L, this.getContext().getRemainingTimeInMilliseconds());
+
+			this.getContext().setDeadline(currentTime + 60000);
+			TestManager.assertFalse(this.getContext(), this, "--> Deadline in the future", this.getContext().isDeadlineExceeded());
+			TestManager.assertTrue(this.getContext(), this, "--> Remaining time of a deadline in the future", this.getContext().getRemainingTimeInMilliseconds() > 0 && this.getContext().getRemainingTimeInMilliseconds() <= 60000);
+
+			this.getContext().setDeadline(currentTime - 1000);
+			TestManager.assertTrue(this.getContext(), this, "--> Deadline in the past", this.getContext().isDeadlineExceeded());
+			TestManager.assertEquals(this.getContext(), this, "--> Remaining time of a deadline in the past", 0L, this.getContext().getRemainingTimeInMilliseconds());
+
+			// Server command abandoned after the deadline
+			String errorIdentifier = ResourceManager.notification(this.getContext(), "Application", "DeadlineExceeded").getRecourceIdentifier();
+			TestManager.errorSuppressErrorMessageOnce(this.getContext(), errorIdentifier);
+			ResponseContainer responseContainer = this.createServerCommand(new ServerCommandStatistics(), requestContainer).execute();
+			TestManager.assertRuntimeErrorCode(this.getContext(), this, null, errorIdentifier);
+			TestManager.assertEquals(this.getContext(), this, "--> Error code of a command whose deadline is exceeded", errorIdentifier, responseContainer.getErrorCode());
+
+			// Server command executed before the deadline
+			this.getContext().setDeadline(System.currentTimeMillis() + 60000);
+			responseContainer = this.createServerCommand(new ServerCommandStatistics(), requestContainer).execute();
+			TestManager.assertNull(this.getContext(), this, "--> Error code of a command whose deadline is not exceeded", responseContainer.getErrorCode());
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+		finally
+		{
+			this.getContext().setDeadline(0);
+		}
+	}
+
+	/**
+	 * Test: Record measurements of requests per command, requests of unknown
+	 * commands together, and read the metrics of the server by the command
+	 * 'Statistics'
+	 */
+	public void testCommandMetrics()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testCommandMetrics()", null);
+
+			String commandIdentifier = ResourceManager.command(this.getContext(), "Statistics").getRecourceIdentifier();
+
+			// Request of a known command
+			CommandMetrics commandMetrics = new CommandMetrics();
+			CommandMetrics.Measurement measurement = new CommandMetrics.Measurement(false);
+			measurement.measure(CommandMetrics.WorkstepEnum.READ);
+			measurement.measure(CommandMetrics.WorkstepEnum.EXECUTE);
+			measurement.setCommandIdentifier(commandIdentifier);
+			measurement.setRequestSize(100);
+			measurement.setResponseSize(300);
+			commandMetrics.record(measurement);
+
+			// Failed requests of unknown commands
+			for (int i = 0; i < 2; i++)
+			{
+				measurement = new CommandMetrics.Measurement(false);
+				measurement.measure(CommandMetrics.WorkstepEnum.READ);
+				measurement.setCommandIdentifier(null);
+				measurement.setError(true);
+				commandMetrics.record(measurement);
+			}
+
+			String metrics = commandMetrics.printMetrics();
+			String additionalText = "--> Metrics recorded:\n" + metrics;
+
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Command missing", metrics.contains("\n" + commandIdentifier + "\n  Requests: 1, Errors: 0\n"));
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Sizes of the command missing", metrics.contains("  Request size: avg=100 max=100\n  Response size: avg=300 max=300\n"));
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Unknown commands missing", metrics.contains("\nUnknown\n  Requests: 2, Errors: 2\n"));
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Workstep missing", metrics.contains("  EXECUTE: "));
+
+			commandMetrics.reset();
+			TestManager.assertFalse(this.getContext(), this, "--> Metrics after reset", commandMetrics.printMetrics().contains("Requests: "));
+
+			// Metrics of the server, read by the command 'Statistics'
+			if (this.parameterClient == null || this.parameterServer == null || this.parameterServer.getCommandMetrics() == null) return;
+
+			Context clientContext = this.parameterClient.getContext();
+			new ClientCommandStatistics(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer()).execute();
+			ClientCommandStatistics command = new ClientCommandStatistics(clientContext, clientContext.getApplicationManager(), this.parameterClient.getConnectionContainer());
+			ResponseContainer responseContainer = command.execute();
+
+			additionalText = "--> Tried to read the statistics of the server";
+			TestManager.assertNotNull(clientContext, this, additionalText, responseContainer);
+			if (responseContainer != null) TestManager.assertFalse(clientContext, this, additionalText + "\n--> Error code: '" + responseContainer.getErrorCode() + "'", responseContainer.isError());
+			TestManager.assertNotNull(clientContext, this, additionalText + "\n--> Report missing", command.getStatistics());
+			if (command.getStatistics() != null) TestManager.assertTrue(clientContext, this, additionalText + "\n--> The command 'Statistics' executed before must be recorded\n" + command.getStatistics(), command.getStatistics().contains("\n" + commandIdentifier + "\n"));
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Benchmark: Encode a response carrying 267 KB of BASE64 data, write it
+	 * into the payload of a binary frame, and decode it again. The shared
+	 * serializer that streams the JSON code is compared with a new reflective
+	 * serializer per call that builds the JSON code as string, as used before.
+	 * The average times of a round trip are printed to the assertion file.
+	 */
+	public void benchmarkResponseRoundTrip()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> benchmarkResponseRoundTrip()", null);
+
+			// Response carrying the content of a media file
+			byte[] mediaContent = new byte[200000];
+			new Random(RANDOM_SEED).nextBytes(mediaContent);
+			String mediaContentBase64 = Base64.encodeBase64String(mediaContent);
+
+			ResponseContainer responseContainer = new ResponseContainer(this.getContext().getCodeName(), 1, ResourceManager.command(this.getContext(), "MediaFileRead").getRecourceIdentifier());
+			responseContainer.addProperty("MediaContent", mediaContentBase64);
+			responseContainer.addProperty("FileType", "jpg");
+
+			TestManager.servicePrintSubLine(this.getContext(), "Response with " + String.valueOf(mediaContentBase64.length()) + " characters of BASE64 data, " + String.valueOf(this.parameterBenchmarkNumberOfRounds) + " rounds:");
+
+			// Shared serializer, streaming
+			ResponseContainer decodedContainer = this.roundTripStreaming(responseContainer);
+			TestManager.assertNotNull(this.getContext(), this, "--> Streaming round trip", decodedContainer);
+			if (decodedContainer != null) TestManager.assertEquals(this.getContext(), this, "--> Streaming round trip", mediaContentBase64, decodedContainer.getProperty("MediaContent", null));
+
+			long startTime = System.nanoTime();
+			for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+				this.roundTripStreaming(responseContainer);
+			long duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+			TestManager.servicePrintSubLine(this.getContext(), "--> Shared serializer, streaming: " + String.valueOf(duration / 1000L) + " us");
+
+			// New reflective serializer per call, via strings
+			decodedContainer = this.roundTripReflective(responseContainer);
+			TestManager.assertEquals(this.getContext(), this, "--> Reflective round trip", mediaContentBase64, decodedContainer.getProperty("MediaContent", null));
+
+			startTime = System.nanoTime();
+			for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+				this.roundTripReflective(responseContainer);
+			duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+			TestManager.servicePrintSubLine(this.getContext(), "--> New reflective serializer per call, via strings: " + String.valueOf(duration / 1000L) + " us");
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Benchmark: Create server commands through the command registry of the
+	 * server, compared with a new class loader per request that loads the
+	 * command class by name, as used before. The average times of creating a
+	 * command are printed to the assertion file.
+	 */
+	public void benchmarkCommandDispatch()
+	{
+		// Do nothing if no server is set
+		if (this.parameterServer == null) return;
+
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> benchmarkCommandDispatch()", null);
+
+			ServerCommandRegistry commandRegistry = this.parameterServer.getCommandRegistry();
+			String aliasName = ResourceManager.command(this.getContext(), "Handshake").getAliasName();
+			String commandClassName = ServerCommandRegistry.getCommandClassName(aliasName);
+
+			TestManager.assertGreaterThan(this.getContext(), this, "--> Commands registered", commandRegistry.getNumberOfCommands(), 0);
+			TestManager.servicePrintSubLine(this.getContext(), "Command '" + commandClassName + "', " + String.valueOf(this.parameterBenchmarkNumberOfRounds) + " rounds:");
+
+			// Command registry
+			TestManager.assertEquals(this.getContext(), this, "--> Command created by the registry", commandClassName, commandRegistry.createServerCommand(aliasName).getClass().getName());
+
+			long startTime = System.nanoTime();
+			for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+				commandRegistry.createServerCommand(aliasName);
+			long duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+			TestManager.servicePrintSubLine(this.getContext(), "--> Command registry: " + String.valueOf(duration) + " ns");
+
+			// New class loader per request
+			TestManager.assertEquals(this.getContext(), this, "--> Command created by a new class loader", commandClassName, this.createServerCommandByClassLoader(commandClassName).getClass().getName());
+
+			startTime = System.nanoTime();
+			for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+				this.createServerCommandByClassLoader(commandClassName);
+			duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+			TestManager.servicePrintSubLine(this.getContext(), "--> New class loader per request: " + String.valueOf(duration) + " ns");
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Prepare a server command for executing a request on the context of the
+	 * test, the same way as the server does it.
+	 */
+	private ServerCommand createServerCommand(ServerCommand serverCommand, RequestContainer requestContainer)
+	{
+		serverCommand.setContext(this.getContext());
+		serverCommand.setCommandIdentifier(this.getContext());
+		serverCommand.createResponseContainer(this.getContext().getCodeName(), 1, serverCommand.getCommandIdentifier());
+		serverCommand.setRequestContainer(requestContainer);
+		return serverCommand;
+	}
+
+	/**
+	 * Create a server command with a new class loader for the directory of the
+	 * server commands, as the server did it for each request before the
+	 * command registry was introduced.
+	 */
+	private ServerCommand createServerCommandByClassLoader(String commandClassName) throws Exception
+	{
+		URL classes = new URL("file://" + ServerCommand.class.getResource("").getPath());
+		ClassLoader custom = new URLClassLoader(new URL[] { classes }, ClassLoader.getSystemClassLoader());
+		Class<?> serverCommandClass = custom.loadClass(commandClassName);
+		return (ServerCommand) serverCommandClass.getConstructor().newInstance();
+	}
+
+	/**
+	 * Encode a response container and decode it again, as server and client
+	 * do it: the JSON code is written into a buffer, encoded in chunks into
+	 * the payload of a frame, and parsed from a reader of the payload.
+	 */
+	private ResponseContainer roundTripStreaming(ResponseContainer responseContainer) throws Exception
+	{
+		EncodingHandler encodingHandler = new EncodingHandler();
+
+		// Encode
+		StringBuffer data = encodingHandler.encodeResponseContainer(this.getContext(), responseContainer, (String) null);
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length() + 64);
+		Writer payloadWriter = new OutputStreamWriter(payload, SocketHandler.FRAME_CHARSET);
+		char[] characters = new char[8192];
+
+		for (int position = 0; position < data.length(); position += characters.length)
+		{
+			int characterCount = Math.min(characters.length, data.length() - position);
+			data.getChars(position, position + characterCount, characters, 0);
+			payloadWriter.write(characters, 0, characterCount);
+		}
+
+		payloadWriter.close();
+
+		// Decode
+		byte[] payloadBytes = payload.toByteArray();
+		Reader payloadReader = SocketHandler.openFramePayloadReader(payloadBytes, 0, payloadBytes.length, (short) 0, payloadBytes.length);
+
+		try
+		{
+			return encodingHandler.decodeResponseContainer(this.getContext(), payloadReader, (String) null);
+		}
+		finally
+		{
+			payloadReader.close();
+		}
+	}
+
+	/**
+	 * Encode a response container and decode it again, with a new reflective
+	 * serializer per call, and copying the JSON code into strings.
+	 */
+	private ResponseContainer roundTripReflective(ResponseContainer responseContainer) throws Exception
+	{
+		// Encode
+		String json = new Gson().toJson(responseContainer);
+		StringBuffer data = new StringBuffer("1" + json);
+		byte[] payloadBytes = data.toString().getBytes(SocketHandler.FRAME_CHARSET);
+
+		// Decode
+		String command = new String(payloadBytes, SocketHandler.FRAME_CHARSET);
+		return new Gson().fromJson(command.substring(1), ResponseContainer.class);
+	}
+
+	/**
+	 * Write a part of a media file into an upload session, as the command
+	 * 'MediaFileUpload' does.
+	 */
+	private Long uploadPart(ResourceContainerMedia mediaResource, String dataIdentifier, String hashValue, String fileType, long fileSize, byte[] content, int from, int to)
+	{
+		ByteArrayInputStream partInputStream = new ByteArrayInputStream(content, from, to - from);
+		return this.getContext().getMediaManager().localWriteMediaContentToUploadSession(this.getContext(), mediaResource, dataIdentifier, fileType, hashValue, from, fileSize, partInputStream);
+	}
+
+	/**
+	 * Encode the expected content of a range the same way as
+	 * <TT>FileUtilFunctions.fileReadRangeToString()</TT>.
+	 */
+	private String encodeRange(String content) throws Exception
+	{
+		return Base64.encodeBase64URLSafeString(content.getBytes("ISO-8859-1"));
+	}
+
+	/**
+	 * Write content to one socket handler and read it from the other, and
+	 * compare the content received with the content sent.
+	 */
+	private void assertContentTransferred(SocketHandler writer, SocketHandler reader, InputStream source, byte[] content, String description) throws Exception
+	{
+		// Write content
+		try
+		{
+			TestManager.assertTrue(this.getContext(), this, description + "\n--> Error on writing content", writer.writeContent(source, -1, 65536));
+		}
+		finally
+		{
+			source.close();
+		}
+
+		// Read content
+		reader.setContentPending(true);
+		InputStream contentStream = reader.getContentInputStream();
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int byteCount = 0;
+
+		while ((byteCount = contentStream.read(buffer, 0, buffer.length)) != -1)
+		{
+			received.write(buffer, 0, byteCount);
+		}
+
+		// Compare
+		TestManager.assertEquals(this.getContext(), this, description + "\n--> Number of bytes received", content.length, received.size());
+		TestManager.assertTrue(this.getContext(), this, description + "\n--> Content received differs from content sent", Arrays.equals(content, received.toByteArray()));
+	}
+
+	/**
+	 * Check if decrypting is rejected with a
+	 * <TT>GeneralSecurityException</TT>.
+	 */
+	private void assertDecryptRejected(SessionCipher cipher, String description, String encryptedText)
+	{
+		try
+		{
+			cipher.decrypt(encryptedText);
+			TestManager.assertTrue(this.getContext(), this, "--> Encrypted data must be rejected: " + description, false);
+		}
+		catch (GeneralSecurityException e)
+		{
+			// Be silent
+		}
+		catch (Exception e)
+		{
+			TestManager.assertTrue(this.getContext(), this, "--> Encrypted data must be rejected with a GeneralSecurityException: " + description + "\n--> Exception: " + e.toString(), false);
+		}
+	}
+
+	/**
+	 * Create the cipher of resumption tickets, deriving the ticket key from
+	 * the secret as the ticket handler does. This way tickets of any content
+	 * can be created, e. g. tickets issued a long time ago.
+	 */
+	private SessionCipher createTicketCipher(String secret) throws Exception
+	{
+		Mac derivingMac = Mac.getInstance("HmacSHA256");
+		derivingMac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+		return new SessionCipher(derivingMac.doFinal("fmagic.session.resumption.ticket".getBytes("UTF-8")));
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterUploadResourceGroup(String parameterUploadResourceGroup)
+	{
+		this.parameterUploadResourceGroup = parameterUploadResourceGroup;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterUploadResourceName(String parameterUploadResourceName)
+	{
+		this.parameterUploadResourceName = parameterUploadResourceName;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterUploadDataIdentifier(String parameterUploadDataIdentifier)
+	{
+		this.parameterUploadDataIdentifier = parameterUploadDataIdentifier;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterBenchmarkNumberOfRounds(int parameterBenchmarkNumberOfRounds)
+	{
+		this.parameterBenchmarkNumberOfRounds = parameterBenchmarkNumberOfRounds;
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterClientServer(ClientManager parameterClient, ServerManager parameterServer)
+	{
+		this.parameterClient = parameterClient;
+		this.parameterServer = parameterServer;
+	}
+}
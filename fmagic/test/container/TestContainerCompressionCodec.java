@@ -0,0 +1,606 @@
+package fmagic.test.container;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
+import fmagic.basic.command.CompressionCodec;
+import fmagic.basic.command.CompressionCodecDeflate;
+import fmagic.basic.command.CompressionCodecLz;
+import fmagic.basic.context.Context;
+import fmagic.test.application.TestManager;
+import fmagic.test.runner.TestRunner;
+
+/**
+ * This class implements testing functionality regarding the compression
+ * codecs of binary frames (see <TT>CompressionCodec</TT>).
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 26.08.2013 - Created
+ * 
+ */
+public class TestContainerCompressionCodec extends TestContainer
+{
+	// Organization
+	private int parameterBenchmarkNumberOfRounds = 200;
+
+	// Seed of the random test data, so each run uses the same data
+	private static final long RANDOM_SEED = 20130826L;
+
+	/**
+	 * Constructor 1
+	 * 
+	 * @param context
+	 *            The application context.
+	 * 
+	 * @param testRunner
+	 *            The test runner that holds this container, or <TT>null</TT> if
+	 *            no test runner is available.
+	 * 
+	 * @param concurrentAccess
+	 *            Set to <TT>true</TT> if the test container is supposed to run
+	 *            in a concurrent environment with other parallel threads or
+	 *            applications, otherwise to <TT>false</TT>.
+	 */
+	public TestContainerCompressionCodec(Context context, TestRunner testRunner,
+			boolean concurrentAccess)
+	{
+		super(context, testRunner, concurrentAccess);
+	}
+
+	/**
+	 * Constructor 2
+	 * 
+	 * @param testRunner
+	 *            The test runner that holds this container, or <TT>null</TT> if
+	 *            no test runner is available.
+	 */
+	public TestContainerCompressionCodec(TestRunner testRunner)
+	{
+		super(null, testRunner, false);
+	}
+
+	@Override
+	public void executeComponentTest()
+	{
+		try
+		{
+			this.componentTestExecuteIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void setupComponentTest()
+	{
+		try
+		{
+			this.setupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void cleanupComponentTest()
+	{
+		try
+		{
+			this.cleanupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Setup environment
+	 */
+	private void setupComponentTestIntern()
+	{
+		// Setup
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Execute
+	 */
+	private void componentTestExecuteIntern()
+	{
+		try
+		{
+			// Setup
+			this.setupComponentTestIntern();
+
+			// Test
+			this.testRoundTrip();
+			this.testRoundTripByteByByte();
+			this.testStoredBlocks();
+			this.testMalformedInputLz();
+			this.testMalformedInputDeflate();
+
+			// Cleanup
+			this.cleanupComponentTestIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Component Test: Cleanup environment
+	 */
+	private void cleanupComponentTestIntern()
+	{
+		// Do nothing if the test is running in concurrent mode
+		if (this.isConcurrentAccess()) return;
+
+		// Cleanup
+		try
+		{
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			this.componentTestExecuteIntern();
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Compress and decompress data of different kinds and sizes with all
+	 * codecs
+	 */
+	public void testRoundTrip()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testRoundTrip()", null);
+
+			for (CompressionCodec codec : this.getCodecs())
+			{
+				for (int i = 0; i < this.getTestDataNames().length; i++)
+				{
+					byte[] data = this.getTestData(i);
+
+					String additionalText = "--> Tried to compress and decompress data";
+					additionalText += "\n--> Codec: '" + codec.getName() + "'";
+					additionalText += "\n--> Data: '" + this.getTestDataNames()[i] + "', " + String.valueOf(data.length) + " bytes";
+
+					byte[] compressedData = compress(codec, data);
+					byte[] decompressedData = decompress(codec, compressedData);
+					TestManager.assertTrue(this.getContext(), this, additionalText, Arrays.equals(data, decompressedData));
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Write and read the data byte by byte instead of in arrays, crossing
+	 * the block borders of the LZ codec
+	 */
+	public void testRoundTripByteByByte()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testRoundTripByteByByte()", null);
+
+			byte[] data = this.createTextData(200000);
+
+			for (CompressionCodec codec : this.getCodecs())
+			{
+				String additionalText = "--> Tried to compress and decompress data byte by byte";
+				additionalText += "\n--> Codec: '" + codec.getName() + "'";
+
+				// Compress
+				ByteArrayOutputStream compressedStream = new ByteArrayOutputStream();
+				OutputStream compressingStream = codec.openCompressingStream(compressedStream);
+				for (int i = 0; i < data.length; i++)
+					compressingStream.write(data[i]);
+				compressingStream.close();
+
+				// Decompress
+				ByteArrayOutputStream decompressedStream = new ByteArrayOutputStream();
+				InputStream decompressingStream = codec.openDecompressingStream(new ByteArrayInputStream(compressedStream.toByteArray()));
+				int value;
+				while ((value = decompressingStream.read()) != -1)
+					decompressedStream.write(value);
+				decompressingStream.close();
+
+				TestManager.assertTrue(this.getContext(), this, additionalText, Arrays.equals(data, decompressedStream.toByteArray()));
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Data that can't be compressed are stored as is by the LZ codec,
+	 * with a header of 8 bytes per block of 64 KB only
+	 */
+	public void testStoredBlocks()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testStoredBlocks()", null);
+
+			byte[] data = this.createRandomData(300000);
+			byte[] compressedData = compress(new CompressionCodecLz(), data);
+
+			String additionalText = "--> Tried to compress random data with the LZ codec";
+			additionalText += "\n--> Data: " + String.valueOf(data.length) + " bytes";
+			additionalText += "\n--> Compressed: " + String.valueOf(compressedData.length) + " bytes";
+			TestManager.assertTrue(this.getContext(), this, additionalText, compressedData.length <= data.length + 8 * (data.length / 65536 + 1));
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Malformed data are rejected by the LZ codec with an
+	 * <TT>IOException</TT>
+	 */
+	public void testMalformedInputLz()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testMalformedInputLz()", null);
+
+			CompressionCodec codec = new CompressionCodecLz();
+			byte[] compressedData = compress(codec, this.createTextData(100000));
+
+			// Truncated data
+			this.assertMalformed(codec, "Truncated block header", Arrays.copyOf(compressedData, 5));
+			this.assertMalformed(codec, "Truncated block", Arrays.copyOf(compressedData, compressedData.length - 10));
+
+			// Invalid block headers
+			this.assertMalformed(codec, "Block length zero", new byte[] { 0, 0, 0, 0, 0, 0, 0, 1, 0 });
+			this.assertMalformed(codec, "Block length negative", new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 1, 0 });
+			this.assertMalformed(codec, "Block length beyond 64 KB", new byte[] { 0, 1, 0, 1, 0, 0, 0, 1, 0 });
+			this.assertMalformed(codec, "Stored length beyond block length", new byte[] { 0, 0, 0, 4, 0, 0, 0, 8, 1, 2, 3, 4, 5, 6, 7, 8 });
+
+			// Match referring to data before the block: token with no literal
+			// and a match of 4 bytes at offset 1
+			this.assertMalformed(codec, "Match before start of block", new byte[] { 0, 0, 0, 8, 0, 0, 0, 4, 0x00, 0x01, 0x00, 0x00 });
+
+			// Length of literals missing
+			this.assertMalformed(codec, "Literal length beyond compressed data", new byte[] { 0, 0, 0, 2, 0, 0, 0, 1, (byte) 0xF0 });
+
+			// Corrupted bytes within the compressed blocks
+			Random random = new Random(RANDOM_SEED);
+			int numberOfRejected = 0;
+
+			for (int i = 0; i < 100; i++)
+			{
+				byte[] corruptedData = compressedData.clone();
+				int position = 8 + random.nextInt(corruptedData.length - 8);
+				corruptedData[position] = (byte) (corruptedData[position] ^ (1 + random.nextInt(255)));
+
+				try
+				{
+					decompress(codec, corruptedData);
+				}
+				catch (IOException e)
+				{
+					numberOfRejected++;
+				}
+				catch (RuntimeException e)
+				{
+					String additionalText = "--> Corrupted data must be rejected with an IOException";
+					additionalText += "\n--> Position: " + String.valueOf(position);
+					additionalText += "\n--> Exception: " + e.toString();
+					TestManager.assertTrue(this.getContext(), this, additionalText, false);
+				}
+			}
+
+			TestManager.servicePrintSubLine(this.getContext(), "Corrupted data rejected: " + String.valueOf(numberOfRejected) + " of 100");
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Test: Malformed data are rejected by the DEFLATE codec with an
+	 * <TT>IOException</TT>
+	 */
+	public void testMalformedInputDeflate()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> testMalformedInputDeflate()", null);
+
+			CompressionCodec codec = new CompressionCodecDeflate(6);
+			byte[] compressedData = compress(codec, this.createTextData(100000));
+
+			this.assertMalformed(codec, "Truncated data", Arrays.copyOf(compressedData, compressedData.length / 2));
+			this.assertMalformed(codec, "Invalid block type", new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF });
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Benchmark: Compress and decompress a message and a larger content of
+	 * BASE64 encoded random data with the ZIP+BASE64 encoding of text
+	 * commands, and with each codec of binary frames. The sizes and average
+	 * times of a round trip are printed to the assertion file.
+	 */
+	public void benchmarkRoundTrip()
+	{
+		try
+		{
+			TestManager.servicePrintHeader(this.getContext(), "===> benchmarkRoundTrip()", null);
+
+			byte[][] benchmarkData = new byte[][] { this.createTextData(23000), Base64.encodeBase64(this.createRandomData(200000)) };
+			String[] benchmarkDataNames = new String[] { "Message (JSON like text)", "BASE64 encoded random data" };
+
+			for (int i = 0; i < benchmarkData.length; i++)
+			{
+				byte[] data = benchmarkData[i];
+				TestManager.servicePrintSubLine(this.getContext(), benchmarkDataNames[i] + ", " + String.valueOf(data.length) + " bytes, " + String.valueOf(this.parameterBenchmarkNumberOfRounds) + " rounds:");
+
+				// ZIP and BASE64, as used by text commands
+				String zipped = zipBase64(data);
+				TestManager.assertTrue(this.getContext(), this, "--> ZIP+BASE64 round trip", Arrays.equals(data, unzipBase64(zipped)));
+
+				long startTime = System.nanoTime();
+				for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+					unzipBase64(zipBase64(data));
+				long duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+				TestManager.servicePrintSubLine(this.getContext(), "--> zip+base64: " + String.valueOf(zipped.length()) + " bytes, " + String.valueOf(duration / 1000L) + " us");
+
+				// Codecs of binary frames
+				for (CompressionCodec codec : this.getCodecs())
+				{
+					byte[] compressedData = compress(codec, data);
+					TestManager.assertTrue(this.getContext(), this, "--> Codec round trip: '" + codec.getName() + "'", Arrays.equals(data, decompress(codec, compressedData)));
+
+					startTime = System.nanoTime();
+					for (int round = 0; round < this.parameterBenchmarkNumberOfRounds; round++)
+						decompress(codec, compress(codec, data));
+					duration = (System.nanoTime() - startTime) / this.parameterBenchmarkNumberOfRounds;
+
+					TestManager.servicePrintSubLine(this.getContext(), "--> " + codec.getName() + ": " + String.valueOf(compressedData.length) + " bytes, " + String.valueOf(duration / 1000L) + " us");
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			TestManager.servicePrintException(this.getContext(), this, "Unexpected Exception", e);
+		}
+	}
+
+	/**
+	 * Assert that decompressing malformed data fails with an
+	 * <TT>IOException</TT>.
+	 */
+	private void assertMalformed(CompressionCodec codec, String caseName, byte[] malformedData)
+	{
+		String additionalText = "--> Malformed data must be rejected with an IOException";
+		additionalText += "\n--> Codec: '" + codec.getName() + "'";
+		additionalText += "\n--> Case: '" + caseName + "'";
+
+		try
+		{
+			decompress(codec, malformedData);
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> No exception was thrown", false);
+		}
+		catch (IOException e)
+		{
+			// Be silent
+		}
+		catch (RuntimeException e)
+		{
+			TestManager.assertTrue(this.getContext(), this, additionalText + "\n--> Exception: " + e.toString(), false);
+		}
+	}
+
+	/**
+	 * Get the codecs to test.
+	 */
+	private CompressionCodec[] getCodecs()
+	{
+		return new CompressionCodec[] { new CompressionCodecLz(), new CompressionCodecDeflate(1), new CompressionCodecDeflate(6) };
+	}
+
+	/**
+	 * Get the names of the test data of the round trip test.
+	 */
+	private String[] getTestDataNames()
+	{
+		return new String[] { "Empty", "One byte", "Short text", "Text of several blocks", "Repeated byte", "Random data", "Random data of several blocks", "Mixed data" };
+	}
+
+	/**
+	 * Get the test data of the round trip test.
+	 */
+	private byte[] getTestData(int index)
+	{
+		switch (index)
+		{
+			case 0:
+				return new byte[0];
+			case 1:
+				return new byte[] { 42 };
+			case 2:
+				return this.createTextData(100);
+			case 3:
+				return this.createTextData(300000);
+			case 4:
+				byte[] repeatedData = new byte[200000];
+				Arrays.fill(repeatedData, (byte) 'a');
+				return repeatedData;
+			case 5:
+				return this.createRandomData(1000);
+			case 6:
+				return this.createRandomData(200000);
+			default:
+				byte[] mixedData = new byte[1000000];
+				byte[] textData = this.createTextData(mixedData.length / 2);
+				byte[] randomData = this.createRandomData(mixedData.length / 2);
+				for (int i = 0; i < mixedData.length / 2; i += 10000)
+				{
+					System.arraycopy(textData, i, mixedData, i * 2, 10000);
+					System.arraycopy(randomData, i, mixedData, i * 2 + 10000, 10000);
+				}
+				return mixedData;
+		}
+	}
+
+	/**
+	 * Create text data similar to a command container in JSON format.
+	 */
+	private byte[] createTextData(int length)
+	{
+		Random random = new Random(RANDOM_SEED);
+		StringBuilder text = new StringBuilder(length + 200);
+
+		while (text.length() < length)
+		{
+			text.append("{\"commandIdentifier\":\"Command.Common.All.Command.MediaFileInfo\",\"clientSessionIdentifier\":\"");
+			text.append(Long.toHexString(random.nextLong()));
+			text.append("\",\"properties\":{\"DataIdentifier\":\"");
+			text.append(String.valueOf(random.nextInt(100000)));
+			text.append("\",\"MediaResourceIdentifier\":\"Media.Common.All.Factory.Doorway\"}},");
+		}
+
+		return Arrays.copyOf(text.toString().getBytes(), length);
+	}
+
+	/**
+	 * Create random data that can't be compressed.
+	 */
+	private byte[] createRandomData(int length)
+	{
+		byte[] data = new byte[length];
+		new Random(RANDOM_SEED).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Compress data with a codec.
+	 */
+	private static byte[] compress(CompressionCodec codec, byte[] data) throws IOException
+	{
+		ByteArrayOutputStream compressedStream = new ByteArrayOutputStream();
+		OutputStream compressingStream = codec.openCompressingStream(compressedStream);
+		compressingStream.write(data);
+		compressingStream.close();
+		return compressedStream.toByteArray();
+	}
+
+	/**
+	 * Decompress data with a codec.
+	 */
+	private static byte[] decompress(CompressionCodec codec, byte[] compressedData) throws IOException
+	{
+		InputStream decompressingStream = codec.openDecompressingStream(new ByteArrayInputStream(compressedData));
+		ByteArrayOutputStream decompressedStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+
+		try
+		{
+			while ((length = decompressingStream.read(buffer)) != -1)
+				decompressedStream.write(buffer, 0, length);
+		}
+		finally
+		{
+			decompressingStream.close();
+		}
+
+		return decompressedStream.toByteArray();
+	}
+
+	/**
+	 * ZIP data and encode them as BASE64 string, in the same way as text
+	 * commands are ZIPPED (see <TT>EncodingHandler</TT>).
+	 */
+	private static String zipBase64(byte[] data) throws IOException
+	{
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		ZipOutputStream zippedOutputStream = new ZipOutputStream(byteArrayOutputStream);
+		zippedOutputStream.putNextEntry(new ZipEntry("command"));
+		zippedOutputStream.write(data, 0, data.length);
+		zippedOutputStream.closeEntry();
+		zippedOutputStream.finish();
+		zippedOutputStream.close();
+		return Base64.encodeBase64String(byteArrayOutputStream.toByteArray());
+	}
+
+	/**
+	 * Decode a BASE64 string and UNZIP it, in the same way as text commands
+	 * are UNZIPPED (see <TT>EncodingHandler</TT>).
+	 */
+	private static byte[] unzipBase64(String zipped) throws IOException
+	{
+		ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(Base64.decodeBase64(zipped)));
+		ByteArrayOutputStream unzippedStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+
+		while (zipInputStream.getNextEntry() != null)
+		{
+			while ((length = zipInputStream.read(buffer, 0, buffer.length)) > 0)
+				unzippedStream.write(buffer, 0, length);
+		}
+
+		zipInputStream.close();
+		return unzippedStream.toByteArray();
+	}
+
+	/**
+	 * Setter
+	 */
+	public void setParameterBenchmarkNumberOfRounds(int parameterBenchmarkNumberOfRounds)
+	{
+		this.parameterBenchmarkNumberOfRounds = parameterBenchmarkNumberOfRounds;
+	}
+}
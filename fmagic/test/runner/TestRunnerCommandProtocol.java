@@ -0,0 +1,233 @@
+package fmagic.test.runner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fmagic.client.application.ClientManager;
+import fmagic.server.application.ServerManager;
+import fmagic.test.application.TestManager;
+import fmagic.test.container.TestContainer;
+import fmagic.test.container.TestContainerCommandProtocol;
+import fmagic.test.suite.TestSuite;
+
+/**
+ * This class implements testing functionality regarding the command
+ * protocol between client and server.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 26.08.2013 - Created
+ * 
+ */
+public class TestRunnerCommandProtocol extends TestRunner
+{
+	// Uses the test environment of the media command test
+	private static final String TEST_RUNNER_NAME = "mediacommand";
+
+	private ServerManager serverAp1 = null;
+	private ClientManager clientAp1 = null;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param testSuite
+	 *            The test suite that holds this test runner, or <TT>null</TT>
+	 *            if no test suite is available.
+	 * 
+	 * @param testSessionName
+	 *            The name of the test session.
+	 */
+	public TestRunnerCommandProtocol(TestSuite testSuite, String testSessionName)
+	{
+		// Call super class
+		super(testSuite, TEST_RUNNER_NAME, testSessionName);
+	}
+
+	@Override
+	public void setup()
+	{
+		try
+		{
+			/*
+			 * Please notice that each application is configured with specific
+			 * settings via configuration files.
+			 */
+
+			// Create application servers for the test
+			serverAp1 = this.createApplicationServer("ap1");
+
+			// Create client applications for the test
+			clientAp1 = this.createApplicationClient("cl1");
+			clientAp1.setSocketConnectionParameter("localhost", serverAp1.getServerSocketPort());
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void cleanup()
+	{
+		try
+		{
+			// Release application servers
+			if (serverAp1 != null) this.releaseApplicationServer(serverAp1);
+
+			// Release client applications
+			if (clientAp1 != null) this.releaseApplicationClient(clientAp1);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeSingleFunctionTest(TestContainer testContainer, String methodName)
+	{
+		this.doSingleFunctionTest(serverAp1.getContext(), testContainer, methodName);
+	}
+
+	@Override
+	public void executeComponentTest()
+	{
+		try
+		{
+			this.doComponentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeConcurrentTest()
+	{
+		try
+		{
+			this.doConcurrentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeStressTest()
+	{
+		try
+		{
+			this.doStressTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void collectIntegrationTestContainer(List<Thread> threadList)
+	{
+		try
+		{
+			this.defineIntegrationTest(threadList);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Component Test
+	 */
+	private void doComponentTest()
+	{
+		try
+		{
+			TestContainerCommandProtocol testContainer = new TestContainerCommandProtocol(serverAp1.getContext(), this, false);
+			testContainer.setParameterClientServer(clientAp1, serverAp1);
+			testContainer.executeComponentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Concurrent Test
+	 */
+	private void doConcurrentTest()
+	{
+		try
+		{
+			// Batches of several threads are sent over the same connection
+			List<Thread> threadList = new ArrayList<Thread>();
+
+			for (int i = 0; i < 4; i++)
+			{
+				TestContainerCommandProtocol testContainer = new TestContainerCommandProtocol(serverAp1.getContext(), this, true);
+				testContainer.setParameterClientServer(clientAp1, serverAp1);
+				threadList.add(new Thread(testContainer));
+			}
+
+			TestManager.threadListStart(threadList);
+			TestManager.threadListJoin(threadList);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stress Test: Benchmarks of the encoding of responses and of the
+	 * dispatching of server commands
+	 */
+	private void doStressTest()
+	{
+		try
+		{
+			TestContainerCommandProtocol testContainer = new TestContainerCommandProtocol(serverAp1.getContext(), this, false);
+			testContainer.setParameterClientServer(clientAp1, serverAp1);
+
+			// Warm up
+			testContainer.setParameterBenchmarkNumberOfRounds(50);
+			testContainer.benchmarkResponseRoundTrip();
+			testContainer.benchmarkCommandDispatch();
+
+			// Measure
+			testContainer.setParameterBenchmarkNumberOfRounds(500);
+			testContainer.benchmarkResponseRoundTrip();
+			testContainer.benchmarkCommandDispatch();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Integration Test
+	 */
+	private void defineIntegrationTest(List<Thread> threadList)
+	{
+		try
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				TestContainerCommandProtocol testContainer = new TestContainerCommandProtocol(serverAp1.getContext(), this, true);
+				testContainer.setParameterClientServer(clientAp1, serverAp1);
+				threadList.add(new Thread(testContainer));
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package fmagic.test.runner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fmagic.server.application.ServerManager;
+import fmagic.test.application.TestManager;
+import fmagic.test.container.TestContainer;
+import fmagic.test.container.TestContainerCompressionCodec;
+import fmagic.test.suite.TestSuite;
+
+/**
+ * This class implements testing functionality regarding the compression
+ * codecs of binary frames.
+ * 
+ * @author frank.wuensche (FW)
+ * 
+ * @changed FW 26.08.2013 - Created
+ * 
+ */
+public class TestRunnerCompressionCodec extends TestRunner
+{
+	// Uses the test environment of the media command test
+	private static final String TEST_RUNNER_NAME = "mediacommand";
+
+	private ServerManager serverAp1 = null;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param testSuite
+	 *            The test suite that holds this test runner, or <TT>null</TT>
+	 *            if no test suite is available.
+	 * 
+	 * @param testSessionName
+	 *            The name of the test session.
+	 */
+	public TestRunnerCompressionCodec(TestSuite testSuite, String testSessionName)
+	{
+		// Call super class
+		super(testSuite, TEST_RUNNER_NAME, testSessionName);
+	}
+
+	@Override
+	public void setup()
+	{
+		try
+		{
+			/*
+			 * Please notice that each application is configured with specific
+			 * settings via configuration files.
+			 */
+
+			// Create application servers for the test
+			serverAp1 = this.createApplicationServer("ap1");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void cleanup()
+	{
+		try
+		{
+			// Release application servers
+			if (serverAp1 != null) this.releaseApplicationServer(serverAp1);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeSingleFunctionTest(TestContainer testContainer, String methodName)
+	{
+		this.doSingleFunctionTest(serverAp1.getContext(), testContainer, methodName);
+	}
+
+	@Override
+	public void executeComponentTest()
+	{
+		try
+		{
+			this.doComponentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeConcurrentTest()
+	{
+		try
+		{
+			this.doConcurrentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void executeStressTest()
+	{
+		try
+		{
+			this.doStressTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void collectIntegrationTestContainer(List<Thread> threadList)
+	{
+		try
+		{
+			this.defineIntegrationTest(threadList);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Component Test
+	 */
+	private void doComponentTest()
+	{
+		try
+		{
+			TestContainerCompressionCodec testContainer = new TestContainerCompressionCodec(serverAp1.getContext(), this, false);
+			testContainer.executeComponentTest();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Concurrent Test
+	 */
+	private void doConcurrentTest()
+	{
+		try
+		{
+			// The codecs are used by several threads at the same time
+			List<Thread> threadList = new ArrayList<Thread>();
+
+			for (int i = 0; i < 4; i++)
+			{
+				threadList.add(new Thread(new TestContainerCompressionCodec(serverAp1.getContext(), this, true)));
+			}
+
+			TestManager.threadListStart(threadList);
+			TestManager.threadListJoin(threadList);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stress Test: Benchmark of the codecs, compared to the ZIP+BASE64
+	 * encoding of text commands
+	 */
+	private void doStressTest()
+	{
+		try
+		{
+			TestContainerCompressionCodec testContainer = new TestContainerCompressionCodec(serverAp1.getContext(), this, false);
+
+			// Warm up
+			testContainer.setParameterBenchmarkNumberOfRounds(50);
+			testContainer.benchmarkRoundTrip();
+
+			// Measure
+			testContainer.setParameterBenchmarkNumberOfRounds(500);
+			testContainer.benchmarkRoundTrip();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Integration Test
+	 */
+	private void defineIntegrationTest(List<Thread> threadList)
+	{
+		try
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				threadList.add(new Thread(new TestContainerCompressionCodec(serverAp1.getContext(), this, true)));
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package fmagic.test.suite;
 
+import fmagic.test.runner.TestRunnerCommandProtocol;
+import fmagic.test.runner.TestRunnerCompressionCodec;
 import fmagic.test.runner.TestRunnerMediaClient;
 import fmagic.test.runner.TestRunnerMediaCommand;
 import fmagic.test.runner.TestRunnerMediaPool;
@@ -33,6 +35,8 @@ public class TestSuiteComplete extends TestSuite
 			this.addTestRunner(new TestRunnerMediaClient(this, "client"));
 			this.addTestRunner(new TestRunnerMediaCommand(this, "command"));
 			this.addTestRunner(new TestRunnerMediaPool(this, "pool"));
+			this.addTestRunner(new TestRunnerCompressionCodec(this, "codec"));
+			this.addTestRunner(new TestRunnerCommandProtocol(this, "protocol"));
 
 			this.executeComponentTests();
 			this.executeConcurrentTests();